@@ -0,0 +1,178 @@
+package org.echosoft.common.dbf;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Замеры производительности чтения .DBF таблиц с помощью {@link DBFReader} и {@link DBFFileReader}.
+ * Таблица формируется в памяти (а также во временном файле) в процессе инициализации теста и содержит поля всех поддерживаемых типов.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DBFReaderBenchmark {
+
+    private static final Charset CHARSET = Charset.forName("cp866");
+
+    @Param({"1000"})
+    public int records;
+
+    private byte[] content;
+    private File file;
+
+    @Setup
+    public void setup() throws Exception {
+        content = makeTable(records);
+        file = File.createTempFile("bench", ".dbf");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public int next() throws Exception {
+        final DBFReader reader = new DBFReader(new ByteArrayInputStream(content), CHARSET);
+        int cnt = 0;
+        while (reader.next()) {
+            cnt++;
+        }
+        return cnt;
+    }
+
+    @Benchmark
+    public void nextAndGetObjects(final Blackhole bh) throws Exception {
+        final DBFReader reader = new DBFReader(new ByteArrayInputStream(content), CHARSET);
+        final int fieldsCnt = reader.getFields().length;
+        while (reader.next()) {
+            for (int i = 0; i < fieldsCnt; i++) {
+                bh.consume(reader.getObject(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public void nextAndGetTypedValues(final Blackhole bh) throws Exception {
+        final DBFReader reader = new DBFReader(new ByteArrayInputStream(content), CHARSET);
+        while (reader.next()) {
+            bh.consume(reader.getInteger(0));
+            bh.consume(reader.getString(1));
+            bh.consume(reader.getBigDecimal(2));
+            bh.consume(reader.getDate(3));
+            bh.consume(reader.getBoolean(4));
+        }
+    }
+
+    @Benchmark
+    public void fileNextAndGetPrimitives(final Blackhole bh) throws Exception {
+        try (DBFFileReader reader = new DBFFileReader(file, CHARSET)) {
+            while (reader.next()) {
+                bh.consume(reader.getInt(0));
+                bh.consume(reader.getDouble(2));
+                bh.consume(reader.getInt(4));
+            }
+        }
+    }
+
+    @Benchmark
+    public void fileProjection(final Blackhole bh) throws Exception {
+        try (DBFFileReader reader = new DBFFileReader(file, CHARSET)) {
+            reader.setProjection("ID", "AMOUNT");
+            while (reader.next()) {
+                bh.consume(reader.getLong(0));
+                bh.consume(reader.getDouble(2));
+            }
+        }
+    }
+
+
+    /**
+     * Формирует содержимое .DBF таблицы (dBASE III) с полями <code>ID N(9)</code>, <code>NAME C(40)</code>, <code>AMOUNT N(15,2)</code>,
+     * <code>CREATED D</code>, <code>ACTIVE L</code> и указанным количеством записей.
+     */
+    private static byte[] makeTable(final int records) {
+        final String[] names = {"ID", "NAME", "AMOUNT", "CREATED", "ACTIVE"};
+        final char[] types = {'N', 'C', 'N', 'D', 'L'};
+        final int[] sizes = {9, 40, 15, 8, 1};
+        final int[] precisions = {0, 0, 2, 0, 0};
+        int recordSize = 1;
+        for (int size : sizes) recordSize += size;
+        final int headerSize = 32 + 32 * names.length + 1;
+        final byte[] result = new byte[headerSize + recordSize * records + 1];
+        result[0] = 0x03;
+        result[1] = 120;
+        result[2] = 1;
+        result[3] = 1;
+        writeInt(result, 4, records);
+        writeShort(result, 8, headerSize);
+        writeShort(result, 10, recordSize);
+        result[29] = 0x26;
+        for (int i = 0; i < names.length; i++) {
+            final int offset = 32 + 32 * i;
+            final byte[] name = names[i].getBytes(CHARSET);
+            System.arraycopy(name, 0, result, offset, name.length);
+            result[offset + 11] = (byte) types[i];
+            result[offset + 16] = (byte) sizes[i];
+            result[offset + 17] = (byte) precisions[i];
+        }
+        result[headerSize - 1] = 0x0D;
+        int pos = headerSize;
+        for (int r = 0; r < records; r++) {
+            result[pos++] = ' ';
+            pos = writeText(result, pos, Integer.toString(r + 1), sizes[0], true);
+            pos = writeText(result, pos, "Record #" + r, sizes[1], false);
+            pos = writeText(result, pos, (r * 10) + "." + (r % 100 < 10 ? "0" : "") + (r % 100), sizes[2], true);
+            pos = writeText(result, pos, String.format("2020%02d%02d", r % 12 + 1, r % 28 + 1), sizes[3], false);
+            pos = writeText(result, pos, (r & 1) == 0 ? "T" : "F", sizes[4], false);
+        }
+        result[pos] = 0x1A;
+        return result;
+    }
+
+    private static int writeText(final byte[] buf, final int pos, final String value, final int size, final boolean alignRight) {
+        final byte[] data = value.getBytes(CHARSET);
+        Arrays.fill(buf, pos, pos + size, (byte) ' ');
+        System.arraycopy(data, 0, buf, alignRight ? pos + size - data.length : pos, data.length);
+        return pos + size;
+    }
+
+    private static void writeInt(final byte[] buf, final int offset, final int value) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >>> 8);
+        buf[offset + 2] = (byte) (value >>> 16);
+        buf[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static void writeShort(final byte[] buf, final int offset, final int value) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >>> 8);
+    }
+}
@@ -0,0 +1,78 @@
+package org.echosoft.common.dbf;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Замеры производительности формирования .DBF таблиц с помощью {@link DBFWriter}.
+ * Таблица содержит поля всех поддерживаемых типов и сохраняется во временный файл.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DBFWriterBenchmark {
+
+    private static final Charset CHARSET = Charset.forName("cp866");
+
+    @Param({"1000"})
+    public int records;
+
+    private File file;
+    private String[] names;
+    private Date date;
+
+    @Setup
+    public void setup() throws Exception {
+        file = File.createTempFile("bench", ".dbf");
+        names = new String[records];
+        for (int i = 0; i < records; i++) {
+            names[i] = "Record #" + i;
+        }
+        date = new Date();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public int writeRecords() throws Exception {
+        try (DBFWriter writer = new DBFWriter(file, CHARSET)) {
+            writer.addNumericField("ID", 9, 0);
+            writer.addCharField("NAME", 40);
+            writer.addNumericField("AMOUNT", 15, 2);
+            writer.addDateField("CREATED");
+            writer.addLogicalField("ACTIVE");
+            for (int r = 0; r < records; r++) {
+                writer.setLong(0, r + 1);
+                writer.setString(1, names[r]);
+                writer.setDouble(2, r * 10.01);
+                writer.setDate(3, date);
+                writer.setBoolean(4, (r & 1) == 0);
+                writer.writeRecord();
+            }
+            return writer.getRecordsCount();
+        }
+    }
+}
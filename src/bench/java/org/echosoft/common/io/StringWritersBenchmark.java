@@ -0,0 +1,78 @@
+package org.echosoft.common.io;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Замеры производительности накопления большого объема текста в {@link FastStringWriter} и {@link SegmentedStringWriter}
+ * с последующей передачей результата в байтовый поток.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StringWritersBenchmark {
+
+    @Param({"4000000"})
+    public int size;
+
+    private String[] fragments;
+
+    @Setup
+    public void setup() {
+        fragments = new String[64];
+        for (int i = 0; i < fragments.length; i++) {
+            fragments[i] = "{\"id\":" + i + ",\"name\":\"fragment #" + i + "\"},";
+        }
+    }
+
+    @Benchmark
+    public int fastStringWriter() throws Exception {
+        final FastStringWriter out = new FastStringWriter();
+        for (int i = 0; out.length() < size; i++) {
+            out.write(fragments[i & 63]);
+        }
+        final UTF8Writer writer = new UTF8Writer(NULL_STREAM);
+        writer.write(out.toString());
+        writer.flush();
+        return out.length();
+    }
+
+    @Benchmark
+    public int segmentedStringWriter() throws Exception {
+        final SegmentedStringWriter out = new SegmentedStringWriter();
+        for (int i = 0; out.length() < size; i++) {
+            out.write(fragments[i & 63]);
+        }
+        out.writeOut(NULL_STREAM, StandardCharsets.UTF_8);
+        return out.length();
+    }
+
+
+    private static final OutputStream NULL_STREAM =
+            new OutputStream() {
+                @Override
+                public void write(final int b) {
+                }
+                @Override
+                public void write(final byte[] b, final int off, final int len) {
+                }
+            };
+}
@@ -0,0 +1,73 @@
+package org.echosoft.common.json;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.echosoft.common.json.beans.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Замеры производительности разбора JSON данных с помощью {@link JsonReader}.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JsonReaderBenchmark {
+
+    private JsonContext ctx;
+    private String text;
+
+    @Setup
+    public void setup() throws Exception {
+        ctx = new JsonContext();
+        final StringWriter buf = new StringWriter();
+        final JsonWriter jw = new CompactJsonWriter(ctx, buf);
+        jw.beginArray();
+        for (int i = 0; i < 20; i++) {
+            jw.writeObject(Data.data);
+        }
+        jw.endArray();
+        text = buf.toString();
+    }
+
+    @Benchmark
+    public int tokens() throws Exception {
+        final JsonReader jr = new JsonReader(ctx, text);
+        int cnt = 0;
+        while (jr.next() != JsonToken.EOF) {
+            cnt++;
+        }
+        return cnt;
+    }
+
+    @Benchmark
+    public int tokensFromStream() throws Exception {
+        final JsonReader jr = new JsonReader(ctx, new StringReader(text));
+        int cnt = 0;
+        while (jr.next() != JsonToken.EOF) {
+            cnt++;
+        }
+        return cnt;
+    }
+
+    @Benchmark
+    public void naturalObjects(final Blackhole bh) throws Exception {
+        bh.consume(new JsonReader(ctx, text).readObject(Object.class));
+    }
+}
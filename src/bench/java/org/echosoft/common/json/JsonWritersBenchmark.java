@@ -0,0 +1,223 @@
+package org.echosoft.common.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.echosoft.common.io.FastStringWriter;
+import org.echosoft.common.io.UTF8Writer;
+import org.echosoft.common.json.beans.Address;
+import org.echosoft.common.json.beans.Company;
+import org.echosoft.common.json.beans.Contract;
+import org.echosoft.common.json.beans.Item;
+import org.echosoft.common.json.beans.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Замеры производительности сериализации java объектов в JSON формат с использованием {@link CompactJsonWriter} и {@link PrintableJsonWriter}.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JsonWritersBenchmark {
+
+    private JsonContext ctx;
+    private JsonContext mhctx;
+    private Company company;
+    private List<Map<String, Object>> rows;
+    private double[] doubles;
+    private double[] prices;
+    private long[] longs;
+    private NullWriter out;
+    private JsonWriterPool pool;
+
+    @Setup
+    public void setup() {
+        ctx = new JsonContext();
+        mhctx = new JsonContext();
+        mhctx.setUseMethodHandles(true);
+        final Date now = new Date();
+        company = new Company("Company \"Horns & Hoofs\"", now, new Address("Moscow", "Moscow", "Tverskaya", 1),
+                new Person("Ivanov Ivan", "ivanov@example.com", now, new Address("Moscow", "Moscow", "Arbat", 12)));
+        for (int i = 0; i < 10; i++) {
+            final Contract contract = new Contract(i, now, Contract.State.APPROVED);
+            for (int j = 0; j < 5; j++) {
+                contract.items.add(new Item("item-" + i + "-" + j, j + 1, 10.5 * j));
+            }
+            contract.params.put("priority", i);
+            contract.params.put("comment", "line 1\nline 2\t\"quoted\"");
+            company.getContracts().add(contract);
+        }
+        rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final Map<String, Object> row = new HashMap<>();
+            row.put("id", i);
+            row.put("name", "row #" + i);
+            row.put("amount", new BigDecimal("1234.56").add(BigDecimal.valueOf(i)));
+            row.put("ratio", i / 7.0);
+            row.put("created", now);
+            row.put("active", (i & 1) == 0);
+            rows.add(row);
+        }
+        doubles = new double[1000];
+        for (int i = 0; i < doubles.length; i++) {
+            doubles[i] = Math.PI * i;
+        }
+        prices = new double[1000];
+        longs = new long[1000];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = Math.round(Math.PI * i * 100) / 100.0;
+            longs[i] = 1000000007L * i;
+        }
+        out = new NullWriter();
+        pool = new JsonWriterPool(ctx);
+    }
+
+    @Benchmark
+    public void compactBean(final Blackhole bh) throws Exception {
+        final JsonWriter jw = new CompactJsonWriter(ctx, out);
+        jw.writeObject(company);
+        bh.consume(out.counter);
+    }
+
+    @Benchmark
+    public void compactBeanMethodHandles(final Blackhole bh) throws Exception {
+        final JsonWriter jw = new CompactJsonWriter(mhctx, out);
+        jw.writeObject(company);
+        bh.consume(out.counter);
+    }
+
+    @Benchmark
+    public void printableBean(final Blackhole bh) throws Exception {
+        final JsonWriter jw = new PrintableJsonWriter(ctx, out);
+        jw.writeObject(company);
+        bh.consume(out.counter);
+    }
+
+    @Benchmark
+    public void compactMaps(final Blackhole bh) throws Exception {
+        final JsonWriter jw = new CompactJsonWriter(ctx, out);
+        jw.writeObject(rows);
+        bh.consume(out.counter);
+    }
+
+    @Benchmark
+    public void compactDoubleArray(final Blackhole bh) throws Exception {
+        final JsonWriter jw = new CompactJsonWriter(ctx, out);
+        jw.writeObject(doubles);
+        bh.consume(out.counter);
+    }
+
+    @Benchmark
+    public void compactPriceArray(final Blackhole bh) throws Exception {
+        final JsonWriter jw = new CompactJsonWriter(ctx, out);
+        jw.writeObject(prices);
+        bh.consume(out.counter);
+    }
+
+    @Benchmark
+    public void compactLongArray(final Blackhole bh) throws Exception {
+        final JsonWriter jw = new CompactJsonWriter(ctx, out);
+        jw.writeObject(longs);
+        bh.consume(out.counter);
+    }
+
+    @Benchmark
+    public void compactBeanToStream(final Blackhole bh) throws Exception {
+        final Writer w = new OutputStreamWriter(NULL_STREAM, StandardCharsets.UTF_8);
+        final JsonWriter jw = new CompactJsonWriter(ctx, w);
+        jw.writeObject(company);
+        w.flush();
+        bh.consume(w);
+    }
+
+    @Benchmark
+    public void utf8BeanToStream(final Blackhole bh) throws Exception {
+        final UTF8Writer w = new UTF8Writer(NULL_STREAM);
+        final JsonWriter jw = new UTF8JsonWriter(ctx, w);
+        jw.writeObject(company);
+        w.flush();
+        bh.consume(w);
+    }
+
+    @Benchmark
+    public String compactBeanToString() throws Exception {
+        final FastStringWriter buf = new FastStringWriter(4096);
+        final JsonWriter jw = new CompactJsonWriter(ctx, buf);
+        jw.writeObject(company);
+        return buf.toString();
+    }
+
+    @Benchmark
+    public String compactBeanToGrowingString() throws Exception {
+        final FastStringWriter buf = new FastStringWriter();
+        final JsonWriter jw = new CompactJsonWriter(ctx, buf);
+        jw.writeObject(company);
+        return buf.toString();
+    }
+
+    @Benchmark
+    public String pooledBeanToString() throws Exception {
+        return pool.toJSON(company);
+    }
+
+
+    private static final OutputStream NULL_STREAM =
+            new OutputStream() {
+                @Override
+                public void write(final int b) {
+                }
+                @Override
+                public void write(final byte[] b, final int off, final int len) {
+                }
+            };
+
+    /**
+     * Поток который только подсчитывает количество обращений к нему и никуда не сохраняет данные.
+     */
+    private static final class NullWriter extends Writer {
+        private long counter;
+        @Override
+        public void write(final int c) {
+            counter++;
+        }
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            counter += len;
+        }
+        @Override
+        public void write(final String str, final int off, final int len) {
+            counter += len;
+        }
+        @Override
+        public void flush() throws IOException {
+        }
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
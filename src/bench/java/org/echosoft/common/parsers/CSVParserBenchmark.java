@@ -0,0 +1,142 @@
+package org.echosoft.common.parsers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.echosoft.common.collections.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Замеры производительности разбора CSV данных с помощью {@link CSVParser}.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CSVParserBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    @Param({"plain", "quoted"})
+    public String style;
+
+    private String content;
+    private File file;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        final boolean quoted = "quoted".equals(style);
+        final StringBuilder buf = new StringBuilder(rows * 64);
+        for (int i = 0; i < rows; i++) {
+            buf.append(i).append(',');
+            if (quoted) {
+                buf.append("\"name ").append(i).append(", \"\"quoted\"\"\"").append(',');
+            } else {
+                buf.append("name").append(i).append(',');
+            }
+            buf.append(i * 31L).append(',');
+            buf.append(i / 3.0).append(',');
+            buf.append("2020-01-").append(10 + i % 20).append("T12:00:00").append("\r\n");
+        }
+        content = buf.toString();
+        try {
+            // все значения, содержащие пробелы, должны быть заключены в кавычки, иначе замеры будут выполняться на ошибочных данных ...
+            final CSVParser parser = new CSVParser(new StringReader(content));
+            int tokens = 0;
+            while (parser.nextLine()) {
+                while (parser.hasNextToken()) {
+                    parser.nextToken();
+                    tokens++;
+                }
+            }
+            parser.close();
+            if (tokens != rows * 5)
+                throw new IllegalStateException("Unexpected tokens count: " + tokens);
+            file = File.createTempFile("bench", ".csv");
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+                out.write(content);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        pool = new ForkJoinPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+        file.delete();
+    }
+
+    @Benchmark
+    public void nextToken(final Blackhole bh) throws Exception {
+        final CSVParser parser = new CSVParser(new StringReader(content));
+        while (parser.nextLine()) {
+            while (parser.hasNextToken()) {
+                bh.consume(parser.nextToken());
+            }
+        }
+        parser.close();
+    }
+
+    @Benchmark
+    public int skipLines() throws Exception {
+        final CSVParser parser = new CSVParser(new StringReader(content));
+        int lines = 0;
+        while (parser.nextLine()) {
+            lines++;
+        }
+        parser.close();
+        return lines;
+    }
+
+    @Benchmark
+    public void nextRecord(final Blackhole bh) throws Exception {
+        final CSVParser parser = new CSVParser(new StringReader(content));
+        while (parser.nextRecord()) {
+            final CSVRecord record = parser.getRecord();
+            bh.consume(record.getInt(0));
+            bh.consume(record.get(1));
+            bh.consume(record.getLong(2));
+            bh.consume(record.getDouble(3));
+            bh.consume(record.get(4));
+        }
+        parser.close();
+    }
+
+    @Benchmark
+    public long parallelOrdered(final Blackhole bh) throws Exception {
+        return new ParallelCSVParser(file, Charset.forName("UTF-8"), ',', '"', ParallelCSVParser.MIN_CHUNK_SIZE).process(pool, true, new Consumer<CSVRecord>() {
+            @Override
+            public boolean consume(final CSVRecord record) {
+                bh.consume(record.getLong(2));
+                return true;
+            }
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package org.echosoft.common.parsers;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.echosoft.common.io.FastStringWriter;
+import org.echosoft.common.utils.StringUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Замеры производительности формирования CSV данных с помощью {@link CSVWriter} в сравнении с построчным формированием через {@link StringBuilder}.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CSVWriterBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    private String[] names;
+    private Date date;
+
+    @Setup
+    public void setup() {
+        names = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            names[i] = i % 5 == 0 ? "name, \"" + i + "\"" : "name" + i;
+        }
+        date = new Date(1600000000000L);
+    }
+
+    @Benchmark
+    public int csvWriter() throws Exception {
+        final FastStringWriter out = new FastStringWriter(rows * 64);
+        final CSVWriter writer = new CSVWriter(out);
+        for (int i = 0; i < rows; i++) {
+            writer.writeInt(i);
+            writer.write(names[i]);
+            writer.writeLong(i * 31L);
+            writer.writeDateTime(date);
+            writer.endRecord();
+        }
+        writer.close();
+        return out.length();
+    }
+
+    @Benchmark
+    public int stringBuilder() throws Exception {
+        final FastStringWriter out = new FastStringWriter(rows * 64);
+        for (int i = 0; i < rows; i++) {
+            final StringBuilder buf = new StringBuilder();
+            buf.append(i).append(',');
+            final String name = names[i];
+            if (name.indexOf(',') >= 0 || name.indexOf('"') >= 0 || name.indexOf(' ') >= 0) {
+                buf.append('"').append(name.replace("\"", "\"\"")).append('"');
+            } else {
+                buf.append(name);
+            }
+            buf.append(',').append(i * 31L).append(',');
+            buf.append('"').append(StringUtil.formatISODateTime(date)).append('"').append("\r\n");
+            out.write(buf.toString());
+        }
+        return out.length();
+    }
+}
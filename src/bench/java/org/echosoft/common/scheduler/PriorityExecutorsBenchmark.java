@@ -0,0 +1,93 @@
+package org.echosoft.common.scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Замеры производительности {@link PriorityThreadPoolExecutor} и {@link WorkStealingPriorityExecutor} при выполнении
+ * большого количества коротких задач с различными приоритетами, поставляемых в очередь одновременно из нескольких потоков.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(4)
+public class PriorityExecutorsBenchmark {
+
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+
+    @Param({"1000"})
+    public int tasks;
+
+    @Param({"4"})
+    public int poolSize;
+
+    private PriorityThreadPoolExecutor priorityExecutor;
+    private WorkStealingPriorityExecutor workStealingExecutor;
+
+    @Setup
+    public void setup() {
+        priorityExecutor = new PriorityThreadPoolExecutor(poolSize, 100);
+        workStealingExecutor = new WorkStealingPriorityExecutor(poolSize, 100);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        priorityExecutor.shutdown();
+        workStealingExecutor.shutdown();
+        priorityExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        workStealingExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public long priorityThreadPoolExecutor() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            priorityExecutor.addTask(new ShortTask(latch), PRIORITIES[i % PRIORITIES.length]);
+        }
+        latch.await();
+        return latch.getCount();
+    }
+
+    @Benchmark
+    public long workStealingPriorityExecutor() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            workStealingExecutor.addTask(new ShortTask(latch), PRIORITIES[i % PRIORITIES.length]);
+        }
+        latch.await();
+        return latch.getCount();
+    }
+
+
+    private static final class ShortTask extends AbstractTask<Integer> {
+        private final CountDownLatch latch;
+        private ShortTask(final CountDownLatch latch) {
+            super(null, "bench", "short task");
+            this.latch = latch;
+        }
+        @Override
+        public Integer call() {
+            latch.countDown();
+            return 0;
+        }
+    }
+}
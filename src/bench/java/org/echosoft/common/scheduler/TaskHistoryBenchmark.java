@@ -0,0 +1,133 @@
+package org.echosoft.common.scheduler;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Сравнение затрат на регистрацию выполненной задачи в истории планировщика: кольцевой буфер {@link TaskHistory}
+ * против ограниченной очереди {@link LinkedBlockingDeque} с готовыми объектами {@link TaskSnapshot}.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(4)
+public class TaskHistoryBenchmark {
+
+    @Param({"100"})
+    public int historyLimit;
+
+    private TaskHistory history;
+    private LinkedBlockingDeque<TaskSnapshot> deque;
+    private Descriptor descriptor;
+
+    @Setup
+    public void setup() {
+        history = new TaskHistory(historyLimit);
+        deque = new LinkedBlockingDeque<>(historyLimit);
+        descriptor = new Descriptor();
+        for (int i = 0; i < historyLimit; i++) {
+            history.record(descriptor);
+        }
+    }
+
+    @Benchmark
+    public void ringBuffer() {
+        history.record(descriptor);
+    }
+
+    @Benchmark
+    public void blockingDeque() {
+        final TaskSnapshot snapshot = descriptor.makeSnapshot();
+        while (!deque.offerLast(snapshot)) {
+            deque.pollFirst();
+        }
+    }
+
+    @Benchmark
+    public List<TaskSnapshot> collect() {
+        final List<TaskSnapshot> buf = new ArrayList<>(historyLimit);
+        history.collect(buf);
+        return buf;
+    }
+
+
+    private static final class Descriptor extends FutureTask<Integer> implements TaskDescriptor<Integer> {
+        private final AbstractTask<Integer> task;
+        private final Date enqueueTime = new Date();
+        private final Date startTime = new Date();
+        private final Date finishTime = new Date();
+
+        private Descriptor() {
+            this(new AbstractTask<Integer>(1, "bench", "benchmark task") {
+                public Integer call() {
+                    return 1;
+                }
+            });
+        }
+
+        private Descriptor(final AbstractTask<Integer> task) {
+            super(task);
+            this.task = task;
+        }
+
+        public int getId() {
+            return 1;
+        }
+
+        public TaskPriority getPriority() {
+            return TaskPriority.MEDIUM;
+        }
+
+        public String getOwner() {
+            return "bench";
+        }
+
+        public Date getEnqueueTime() {
+            return enqueueTime;
+        }
+
+        public Date getStartTime() {
+            return startTime;
+        }
+
+        public Date getFinishTime() {
+            return finishTime;
+        }
+
+        public TaskState getState() {
+            return TaskState.COMPLETED;
+        }
+
+        public AbstractTask<Integer> getTask() {
+            return task;
+        }
+
+        public TaskSnapshot makeSnapshot() {
+            return new TaskSnapshot(1, TaskPriority.MEDIUM, "bench", task.getKey(), task.getCategory(), task.getTitle(),
+                    enqueueTime, startTime, finishTime, TaskState.COMPLETED,
+                    task.getStatusLine(), task.getProgress());
+        }
+    }
+}
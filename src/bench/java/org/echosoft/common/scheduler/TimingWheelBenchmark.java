@@ -0,0 +1,77 @@
+package org.echosoft.common.scheduler;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Замеры затрат на регистрацию и отмену отложенного события при большом количестве уже зарегистрированных событий:
+ * {@link TimingWheel} против {@link ScheduledThreadPoolExecutor}.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TimingWheelBenchmark {
+
+    private static final Runnable NOP = new Runnable() {
+        public void run() {
+        }
+    };
+
+    @Param({"100000"})
+    public int pending;
+
+    private TimingWheel<Runnable> wheel;
+    private ScheduledThreadPoolExecutor executor;
+
+    @Setup
+    public void setup() {
+        wheel = new TimingWheel<>("bench-timer", 10, TimeUnit.MILLISECONDS, new TimingWheel.Handler<Runnable>() {
+            public void expired(final Runnable item) {
+            }
+        });
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        for (int i = 0; i < pending; i++) {
+            final long delay = 1 + ThreadLocalRandom.current().nextInt(3600);
+            wheel.schedule(NOP, delay, TimeUnit.SECONDS);
+            executor.schedule(NOP, delay, TimeUnit.SECONDS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        wheel.stop();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean timingWheel() {
+        return wheel.schedule(NOP, 1 + ThreadLocalRandom.current().nextInt(3600), TimeUnit.SECONDS).cancel();
+    }
+
+    @Benchmark
+    public boolean scheduledExecutor() {
+        final ScheduledFuture<?> future = executor.schedule(NOP, 1 + ThreadLocalRandom.current().nextInt(3600), TimeUnit.SECONDS);
+        return future.cancel(false);
+    }
+}
@@ -0,0 +1,67 @@
+package org.echosoft.common.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Замеры производительности {@link BeanUtil#getProperty(Object, String)} на выражениях различной сложности.
+ * Используются те же тестовые классы что и в {@link BeanUtilPerfMeter}.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BeanUtilBenchmark {
+
+    private BeanUtilPerfMeter.Company company;
+
+    @Setup
+    public void setup() {
+        company = new BeanUtilPerfMeter.Company("Company 1", "1001", new BeanUtilPerfMeter.Person("Ivanov", 1, new BeanUtilPerfMeter.Address("russia", "moscow", 101)));
+        company.employee.add(new BeanUtilPerfMeter.Person("Petrov", 2, null));
+    }
+
+    @Benchmark
+    public Object publicField() throws Exception {
+        return BeanUtil.getProperty(company, "cid");
+    }
+
+    @Benchmark
+    public Object getter() throws Exception {
+        return BeanUtil.getProperty(company, "name");
+    }
+
+    @Benchmark
+    public Object nestedGetter() throws Exception {
+        return BeanUtil.getProperty(company, "director.address.country");
+    }
+
+    @Benchmark
+    public Object indexedArray() throws Exception {
+        return BeanUtil.getProperty(company, "director.awards[1].bytes");
+    }
+
+    @Benchmark
+    public Object mapEntry() throws Exception {
+        return BeanUtil.getProperty(company, "director.env.k1");
+    }
+
+    @Benchmark
+    public Object methodWithArgument() throws Exception {
+        return BeanUtil.getProperty(company, "director.getMethod2(1)");
+    }
+}
@@ -0,0 +1,56 @@
+package org.echosoft.common.utils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.echosoft.common.io.FastStringWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Замеры производительности методов форматирования и разбора дат в классе {@link StringUtil}.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StringUtilBenchmark {
+
+    private Date date;
+    private String text;
+
+    @Setup
+    public void setup() {
+        date = new Date(1500000000000L);
+        text = StringUtil.formatISODateTime(date);
+    }
+
+    @Benchmark
+    public String formatISODateTime() {
+        return StringUtil.formatISODateTime(date);
+    }
+
+    @Benchmark
+    public int formatISODateTimeToWriter() throws Exception {
+        final FastStringWriter out = new FastStringWriter(32);
+        StringUtil.formatISODateTime(out, date, 'T');
+        return out.length();
+    }
+
+    @Benchmark
+    public Date parseISODateTime() throws Exception {
+        return StringUtil.parseISODateTime(text);
+    }
+}
@@ -0,0 +1,63 @@
+package org.echosoft.common.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Замеры производительности метода {@link WildcardMatcher#match(String)} на шаблонах различной сложности.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class WildcardMatcherBenchmark {
+
+    private WildcardMatcher exact;
+    private WildcardMatcher suffix;
+    private WildcardMatcher complex;
+    private WildcardMatcher caseInsensitive;
+    private String path;
+
+    @Setup
+    public void setup() {
+        exact = WildcardMatcher.makeMatcher("/var/data/import/2020/01/report.csv");
+        suffix = WildcardMatcher.makeMatcher("*.csv", "*.txt", "*.dbf");
+        complex = WildcardMatcher.makeMatcher("/var/*/import/*/??/*port*.c?v");
+        caseInsensitive = WildcardMatcher.makeMatcher(false, "*/IMPORT/*.CSV");
+        path = "/var/data/import/2020/01/report.csv";
+    }
+
+    @Benchmark
+    public boolean exact() {
+        return exact.match(path);
+    }
+
+    @Benchmark
+    public boolean suffix() {
+        return suffix.match(path);
+    }
+
+    @Benchmark
+    public boolean complex() {
+        return complex.match(path);
+    }
+
+    @Benchmark
+    public boolean caseInsensitive() {
+        return caseInsensitive.match(path);
+    }
+}
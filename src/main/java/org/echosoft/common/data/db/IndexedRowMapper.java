@@ -0,0 +1,93 @@
+package org.echosoft.common.data.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * <p>Шаблон для построения {@link RowMapper}, обращающихся к колонкам курсора по их порядковым номерам вместо имен.</p>
+ * <p>Имена (метки) требуемых колонок указываются в конструкторе. Их порядковые номера определяются по метаданным курсора
+ * только один раз, при вызове метода {@link #bind(ResultSetMetaData)}, после чего полученный {@link RowMapper} при обработке каждой записи
+ * передает их в метод {@link #map(ResultSet, int[])}, избавляя драйвер от поиска колонки по имени для каждого значения.
+ * Экземпляры данного класса не имеют изменяемого состояния и могут использоваться повторно (в том числе параллельно) для разных курсоров.</p>
+ * Пример использования:<br/>
+ * <pre>
+ *  private static final IndexedRowMapper&lt;Order&gt; ORDER = new IndexedRowMapper&lt;Order&gt;("ID", "NAME", "AMOUNT") {
+ *      protected Order map(ResultSet rs, int[] columns) throws SQLException {
+ *          return new Order(rs.getLong(columns[0]), rs.getString(columns[1]), rs.getBigDecimal(columns[2]));
+ *      }
+ *  };
+ *  ...
+ *  final RowMapper&lt;Order&gt; mapper = ORDER.bind(rs.getMetaData());
+ * </pre>
+ *
+ * @author Anton Sharapov
+ */
+public abstract class IndexedRowMapper<T> {
+
+    private final String[] labels;
+
+    /**
+     * @param labels имена (метки) колонок курсора, используемых для формирования объекта. Регистр символов не учитывается.
+     */
+    protected IndexedRowMapper(final String... labels) {
+        if (labels == null)
+            throw new IllegalArgumentException("Column labels should be specified");
+        this.labels = labels.clone();
+    }
+
+    /**
+     * Определяет порядковые номера всех требуемых колонок в курсоре с указанными метаданными.
+     *
+     * @param md метаданные курсора.
+     * @return {@link RowMapper}, предназначенный для работы с курсорами, чьи колонки соответствуют указанным метаданным.
+     * @throws SQLException в случае если какая-либо из требуемых колонок отсутствует в курсоре или при ошибках обращения к метаданным.
+     */
+    public RowMapper<T> bind(final ResultSetMetaData md) throws SQLException {
+        final int count = md.getColumnCount();
+        final String[] columns = new String[count];
+        for (int i = 0; i < count; i++) {
+            columns[i] = md.getColumnLabel(i + 1);
+        }
+        final int[] indexes = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            indexes[i] = indexOf(columns, labels[i]);
+            if (indexes[i] <= 0)
+                throw new SQLException("Column '" + labels[i] + "' not found in " + Arrays.toString(columns));
+        }
+        return new RowMapper<T>() {
+            @Override
+            public T map(final ResultSet rs) throws SQLException {
+                return IndexedRowMapper.this.map(rs, indexes);
+            }
+        };
+    }
+
+    /**
+     * @return имена (метки) колонок курсора, используемых для формирования объекта.
+     */
+    public String[] getLabels() {
+        return labels.clone();
+    }
+
+    /**
+     * Формирует объект на основе данных текущей записи курсора.
+     *
+     * @param rs      курсор, позиционированный на обрабатываемой записи.
+     * @param columns порядковые номера колонок курсора (начиная с 1) в том же порядке, в котором их имена были указаны в конструкторе.
+     *                Массив не должен изменяться.
+     * @return объект, соответствующий текущей записи курсора.
+     * @throws SQLException в случае ошибок при обращении к курсору.
+     */
+    protected abstract T map(ResultSet rs, int[] columns) throws SQLException;
+
+
+    private static int indexOf(final String[] columns, final String label) {
+        for (int i = 0; i < columns.length; i++) {
+            if (label.equalsIgnoreCase(columns[i]))
+                return i + 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,269 @@
+package org.echosoft.common.data.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.echosoft.common.utils.BeanUtil;
+
+/**
+ * <p>Выполняет пакетную модификацию данных (<code>INSERT</code>, <code>UPDATE</code>, <code>DELETE</code>) посредством одного запроса
+ * с именованными параметрами (см. {@link ParameterizedSQL}).</p>
+ * <p>Соответствие между именами параметров и их позициями в запросе вычисляется один раз, в конструкторе. Значение каждого параметра
+ * извлекается из очередной записи (ассоциативного массива, java bean или массива значений) только один раз, даже если параметр встречается в запросе несколько раз.
+ * Записи накапливаются в пакете (см. {@link PreparedStatement#addBatch()}) и передаются в СУБД по достижении указанного размера пакета,
+ * при явном вызове метода {@link #flush()} или при закрытии объекта. Для каждого выполненного пакета фиксируется время его выполнения,
+ * которое может быть передано указанному обработчику {@link BatchListener}.</p>
+ * Пример использования:<br/>
+ * <pre>
+ *  final ParameterizedSQL sql = new ParameterizedSQL("INSERT INTO orders(id, name, amount) VALUES (:id, :name, :amount)");
+ *  try (JdbcBatchWriter writer = new JdbcBatchWriter(conn, sql, 500)) {
+ *      for (Order order : orders) {
+ *          writer.addBean(order);
+ *      }
+ *  }
+ *  conn.commit();
+ * </pre>
+ * Соединение с базой данных данным классом не закрывается, управление транзакциями также остается обязанностью вызывающего кода.<br/>
+ * <strong>Внимание!</strong> Экземпляры данного класса не являются потокобезопасными.
+ *
+ * @author Anton Sharapov
+ */
+public class JdbcBatchWriter implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Получает уведомления о выполнении каждого очередного пакета.
+     */
+    public static interface BatchListener {
+        /**
+         * Вызывается после успешного выполнения очередного пакета.
+         *
+         * @param rows    количество записей в пакете.
+         * @param updated суммарное количество модифицированных записей в базе (если драйвер его сообщает) или <code>-1</code>.
+         * @param nanos   время выполнения пакета (в наносекундах).
+         */
+        public void onBatch(int rows, int updated, long nanos);
+    }
+
+    private final ParameterizedSQL sql;
+    private final PreparedStatement pstmt;
+    private final int batchSize;
+    private final String[] names;           // имена параметров запроса (без повторов).
+    private final int[][] positions;        // позиции (начиная с 1) каждого из параметров в запросе.
+    private BatchListener listener;
+    private int pending;                    // количество записей в текущем пакете.
+    private long rowsCount;
+    private long batchesCount;
+    private long totalTime;
+    private long maxBatchTime;
+
+    public JdbcBatchWriter(final Connection conn, final ParameterizedSQL sql) throws SQLException {
+        this(conn, sql, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param conn      соединение с базой данных.
+     * @param sql       запрос, выполняемый для каждой записи.
+     * @param batchSize максимальное количество записей в одном пакете.
+     * @throws SQLException в случае ошибок при подготовке запроса.
+     */
+    public JdbcBatchWriter(final Connection conn, final ParameterizedSQL sql, final int batchSize) throws SQLException {
+        if (conn == null || sql == null)
+            throw new IllegalArgumentException("Connection and query should be specified");
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Illegal batch size: " + batchSize);
+        final Map<String, List<Integer>> bindings = new LinkedHashMap<>();
+        int pos = 1;
+        for (String name : sql.getParamNames()) {
+            List<Integer> list = bindings.get(name);
+            if (list == null)
+                bindings.put(name, list = new ArrayList<>(2));
+            list.add(pos++);
+        }
+        this.names = bindings.keySet().toArray(new String[bindings.size()]);
+        this.positions = new int[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            final List<Integer> list = bindings.get(names[i]);
+            positions[i] = new int[list.size()];
+            for (int j = 0; j < positions[i].length; j++) {
+                positions[i][j] = list.get(j);
+            }
+        }
+        this.sql = sql;
+        this.batchSize = batchSize;
+        this.pstmt = conn.prepareStatement(sql.getQuery());
+    }
+
+    /**
+     * @return запрос, выполняемый для каждой записи.
+     */
+    public ParameterizedSQL getQuery() {
+        return sql;
+    }
+
+    /**
+     * Возвращает имена параметров запроса без повторов, в порядке их первого вхождения в запрос.
+     * В этом же порядке должны передаваться значения параметров в метод {@link #addValues(Object...)}.
+     *
+     * @return имена параметров запроса.
+     */
+    public String[] getParamNames() {
+        return names.clone();
+    }
+
+    public BatchListener getListener() {
+        return listener;
+    }
+    public void setListener(final BatchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Добавляет в пакет очередную запись, значения параметров которой извлекаются из указанного ассоциативного массива.
+     *
+     * @param params значения параметров запроса.
+     * @throws SQLException в случае если значение какого-либо параметра не указано или в случае ошибок при выполнении пакета.
+     */
+    public void add(final Map<String, ?> params) throws SQLException {
+        for (int i = 0; i < names.length; i++) {
+            final Object value = params.get(names[i]);
+            if (value == null && !params.containsKey(names[i]))
+                throw new SQLException("Parameter '" + names[i] + "' not specified in the arguments");
+            bind(i, value);
+        }
+        addBatch();
+    }
+
+    /**
+     * Добавляет в пакет очередную запись, значения параметров которой извлекаются из одноименных свойств указанного объекта (см. {@link BeanUtil#getProperty(Object, String)}).
+     *
+     * @param bean объект, свойства которого содержат значения параметров запроса.
+     * @throws SQLException в случае ошибок при обращении к свойствам объекта или при выполнении пакета.
+     */
+    public void addBean(final Object bean) throws SQLException {
+        for (int i = 0; i < names.length; i++) {
+            final Object value;
+            try {
+                value = BeanUtil.getProperty(bean, names[i]);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new SQLException("Can't obtain value of parameter '" + names[i] + "'", e);
+            }
+            bind(i, value);
+        }
+        addBatch();
+    }
+
+    /**
+     * Добавляет в пакет очередную запись с указанными значениями параметров.
+     *
+     * @param values значения параметров в порядке, соответствующем {@link #getParamNames()}.
+     * @throws SQLException в случае если количество значений не соответствует количеству параметров или в случае ошибок при выполнении пакета.
+     */
+    public void addValues(final Object... values) throws SQLException {
+        if (values.length != names.length)
+            throw new SQLException("Expected " + names.length + " parameters but found " + values.length);
+        for (int i = 0; i < names.length; i++) {
+            bind(i, values[i]);
+        }
+        addBatch();
+    }
+
+    /**
+     * Передает в СУБД все накопленные в текущем пакете записи.
+     *
+     * @return суммарное количество модифицированных записей в базе (если драйвер его сообщает) или <code>-1</code>.
+     * @throws SQLException в случае ошибок при выполнении пакета.
+     */
+    public int flush() throws SQLException {
+        if (pending == 0)
+            return 0;
+        final int rows = pending;
+        pending = 0;
+        final long started = System.nanoTime();
+        final int[] counts = pstmt.executeBatch();
+        final long time = System.nanoTime() - started;
+        int updated = 0;
+        for (int count : counts) {
+            if (count < 0 || updated < 0) {
+                updated = -1;       // Statement.SUCCESS_NO_INFO
+            } else {
+                updated += count;
+            }
+        }
+        batchesCount++;
+        rowsCount += rows;
+        totalTime += time;
+        if (time > maxBatchTime)
+            maxBatchTime = time;
+        if (listener != null)
+            listener.onBatch(rows, updated, time);
+        return updated;
+    }
+
+    /**
+     * @return общее количество записей в уже выполненных пакетах.
+     */
+    public long getRowsCount() {
+        return rowsCount;
+    }
+
+    /**
+     * @return количество уже выполненных пакетов.
+     */
+    public long getBatchesCount() {
+        return batchesCount;
+    }
+
+    /**
+     * @return суммарное время выполнения всех пакетов (в наносекундах).
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return максимальное время выполнения одного пакета (в наносекундах).
+     */
+    public long getMaxBatchTime() {
+        return maxBatchTime;
+    }
+
+    /**
+     * Передает в СУБД все еще не выполненные записи и закрывает запрос. Соединение с базой данных не закрывается.
+     *
+     * @throws SQLException в случае ошибок при выполнении пакета.
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            flush();
+        } finally {
+            pstmt.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[JdbcBatchWriter{batches:" + batchesCount + ", rows:" + rowsCount + ", pending:" + pending + ", totalTime:" + totalTime / 1000000 + "ms}]";
+    }
+
+
+    private void bind(final int index, final Object value) throws SQLException {
+        for (int pos : positions[index]) {
+            pstmt.setObject(pos, value);
+        }
+    }
+
+    private void addBatch() throws SQLException {
+        pstmt.addBatch();
+        if (++pending >= batchSize)
+            flush();
+    }
+}
@@ -1,24 +1,38 @@
 package org.echosoft.common.data.db;
 
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
- * Описывает результат постраничной выборки данных.
+ * <p>Описывает результат постраничной выборки данных.</p>
+ * <p>Результат постраничной выборки по ключу (см. {@link Query#seekAfter(Object...)}) содержит маркер продолжения ({@link #getContinuationToken()}),
+ * по которому может быть запрошена следующая страница. Общее количество записей в этом случае может быть неизвестно, вычисляться
+ * лишь при первом обращении к нему или быть приблизительным (например, полученным из статистики СУБД).</p>
  *
  * @author Anton Sharapov
  */
 public class PagedQueryResult<T> {
 
+    /**
+     * Общее количество записей неизвестно.
+     */
+    public static final long UNKNOWN_SIZE = -1;
+
     private final List<T> beans;
-    private final long totalSize;
     private final long rangeStart;
     private final int rangeSize;
+    private final String continuationToken;
+    private final boolean totalSizeEstimated;
+    private Callable<Long> totalSizeCounter;
+    private long totalSize;
 
     public PagedQueryResult(final List<T> beans, final long totalSize, final long rangeStart, final int rangeSize) {
         this.beans = beans;
         this.totalSize = totalSize;
         this.rangeStart = rangeStart;
         this.rangeSize = rangeSize;
+        this.continuationToken = null;
+        this.totalSizeEstimated = false;
     }
 
     public PagedQueryResult(final List<T> beans) {
@@ -26,16 +40,63 @@ public class PagedQueryResult<T> {
         this.totalSize = beans.size();
         this.rangeStart = 1;
         this.rangeSize = beans.size();
+        this.continuationToken = null;
+        this.totalSizeEstimated = false;
+    }
+
+    /**
+     * Конструктор для результатов постраничной выборки по ключу.
+     *
+     * @param beans              записи текущей страницы.
+     * @param rangeSize          максимальное количество записей на странице.
+     * @param lastSeekValues     значения полей сортировки последней записи страницы или <code>null</code> если данная страница последняя.
+     * @param totalSizeCounter   вычисляет общее количество записей при первом обращении к методу {@link #getTotalSize()}.
+     *                           Если не указан, то общее количество записей считается неизвестным.
+     * @param totalSizeEstimated <code>true</code> если общее количество записей вычисляется приблизительно.
+     * @throws IllegalArgumentException если значения полей сортировки не могут быть представлены в маркере продолжения.
+     */
+    public PagedQueryResult(final List<T> beans, final int rangeSize, final Object[] lastSeekValues,
+                            final Callable<Long> totalSizeCounter, final boolean totalSizeEstimated) {
+        this.beans = beans;
+        this.totalSize = UNKNOWN_SIZE;
+        this.rangeStart = 0;
+        this.rangeSize = rangeSize;
+        this.continuationToken = lastSeekValues != null ? Query.encodeSeekValues(lastSeekValues) : null;
+        this.totalSizeCounter = totalSizeCounter;
+        this.totalSizeEstimated = totalSizeEstimated;
     }
 
     public List<T> getBeans() {
         return beans;
     }
 
+    /**
+     * Возвращает общее количество записей. Если для его вычисления был указан {@link Callable}, то он вызывается при первом обращении к методу.
+     *
+     * @return общее (возможно, приблизительное) количество записей или {@link #UNKNOWN_SIZE} если оно неизвестно.
+     * @throws IllegalStateException в случае ошибок при вычислении количества записей.
+     */
     public long getTotalSize() {
+        if (totalSizeCounter != null) {
+            final Long size;
+            try {
+                size = totalSizeCounter.call();
+            } catch (Exception e) {
+                throw new IllegalStateException("Can't calculate total size: " + e.getMessage(), e);
+            }
+            totalSize = size != null ? size : UNKNOWN_SIZE;
+            totalSizeCounter = null;
+        }
         return totalSize;
     }
 
+    /**
+     * @return <code>true</code> если общее количество записей, возвращаемое методом {@link #getTotalSize()}, является приблизительным.
+     */
+    public boolean isTotalSizeEstimated() {
+        return totalSizeEstimated;
+    }
+
     public long getRangeStart() {
         return rangeStart;
     }
@@ -44,16 +105,33 @@ public class PagedQueryResult<T> {
         return rangeSize;
     }
 
+    /**
+     * Возвращает маркер, по которому может быть запрошена следующая страница при постраничной выборке по ключу (см. {@link Query#continueAfter(String)}).
+     *
+     * @return маркер продолжения или <code>null</code> если данная страница последняя или выборка выполнялась по номерам записей.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * @return <code>true</code> если за данной страницей (при постраничной выборке по ключу) следуют другие записи.
+     */
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+
     public long getPage() {
         return rangeSize > 0 && rangeStart > 0 ? (rangeStart - 1) / rangeSize + 1 : 0;
     }
 
     public long getPagesCount() {
+        final long totalSize = getTotalSize();
         return rangeSize > 0 && totalSize > 0 ? (totalSize - 1) / rangeSize + 1 : 0;
     }
 
     @Override
     public String toString() {
-        return "[PagedQueryResult{total:" + totalSize + ", start:" + rangeStart + ", size:" + rangeSize + ", beans cnt:" + beans.size() + "}]";
+        return "[PagedQueryResult{total:" + totalSize + ", start:" + rangeStart + ", size:" + rangeSize + ", beans cnt:" + beans.size() + (continuationToken != null ? ", more" : "") + "}]";
     }
 }
@@ -4,9 +4,13 @@ import java.io.Serializable;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.echosoft.common.utils.StringUtil;
 
@@ -26,15 +30,133 @@ import org.echosoft.common.utils.StringUtil;
  */
 public class ParameterizedSQL implements Serializable {
 
+    private static final int MAX_CACHED_QUERIES = 2048;     // при превышении данного количества из кэша вытесняется один из давно не использовавшихся запросов.
+    private static final int EVICTION_SAMPLE_SIZE = 8;      // количество записей кэша, среди которых выбирается вытесняемый запрос.
+    private static final ConcurrentMap<String, CacheEntry> CACHE = new ConcurrentHashMap<>();
+    private static final AtomicLong CACHE_HITS = new AtomicLong();
+    private static final AtomicLong CACHE_MISSES = new AtomicLong();
+    private static final AtomicLong CACHE_EVICTIONS = new AtomicLong();
+
+    /**
+     * Возвращает результат разбора указанного запроса. Результаты разбора кэшируются, поэтому повторные обращения с тем же текстом запроса
+     * не требуют его повторного анализа. Размер кэша ограничен, при его переполнении вытесняется запрос, дольше всех не использовавшийся
+     * среди нескольких первых записей кэша (приближение к LRU, не требующее блокировок при чтении).
+     *
+     * @param namedSql текст SQL запроса в котором возможно есть именованные параметры. Параметр не может быть <code>null</code>.
+     * @return результат разбора запроса.
+     */
+    public static ParameterizedSQL forQuery(final String namedSql) {
+        final CacheEntry entry = CACHE.get(namedSql);
+        if (entry != null) {
+            // счетчик обращений к кэшу одновременно служит и часами, по которым определяется давность использования запроса.
+            entry.lastAccess = CACHE_HITS.incrementAndGet();
+            return entry.sql;
+        }
+        CACHE_MISSES.incrementAndGet();
+        final CacheEntry created = new CacheEntry(new ParameterizedSQL(namedSql), CACHE_HITS.get());
+        if (CACHE.size() >= MAX_CACHED_QUERIES)
+            evict();
+        final CacheEntry prev = CACHE.putIfAbsent(namedSql, created);
+        return prev != null ? prev.sql : created.sql;
+    }
+
+    private static void evict() {
+        Map.Entry<String, CacheEntry> victim = null;
+        int sampled = 0;
+        for (Map.Entry<String, CacheEntry> e : CACHE.entrySet()) {
+            if (victim == null || e.getValue().lastAccess < victim.getValue().lastAccess)
+                victim = e;
+            if (++sampled >= EVICTION_SAMPLE_SIZE)
+                break;
+        }
+        if (victim != null && CACHE.remove(victim.getKey(), victim.getValue()))
+            CACHE_EVICTIONS.incrementAndGet();
+    }
+
+    /**
+     * @return количество обращений к методу {@link #forQuery(String)}, обслуженных из кэша.
+     */
+    public static long getCacheHits() {
+        return CACHE_HITS.get();
+    }
+
+    /**
+     * @return количество обращений к методу {@link #forQuery(String)}, потребовавших разбора запроса.
+     */
+    public static long getCacheMisses() {
+        return CACHE_MISSES.get();
+    }
+
+    /**
+     * @return количество запросов, вытесненных из кэша при его переполнении.
+     */
+    public static long getCacheEvictions() {
+        return CACHE_EVICTIONS.get();
+    }
+
+    /**
+     * @return количество запросов, находящихся в кэше в настоящий момент.
+     */
+    public static int getCacheSize() {
+        return CACHE.size();
+    }
+
+
+    /**
+     * <p>Формирует условие отбора записей, следующих (в порядке, заданном указанными критериями сортировки) за записью с известными значениями полей сортировки.
+     * Используется при постраничной выборке по ключу (см. {@link Query#seekAfter(Object...)}). Например, для критериев <code>{a ASC}, {b DESC}</code> будет сформировано условие:</p>
+     * <pre>
+     *   (a > :seek1 OR (a = :seek1 AND b < :seek2))
+     * </pre>
+     * <p>Для однозначности порядка записей последним критерием сортировки должно быть уникальное поле (как правило, первичный ключ).
+     * Поля сортировки не должны содержать <code>null</code> значений. Выражение <code>ORDER BY</code> запроса должно соответствовать тем же критериям.</p>
+     *
+     * @param criteria критерии сортировки. Имена полей подставляются в текст условия как есть и должны быть корректными SQL идентификаторами.
+     * @return текст условия с именованными параметрами <code>seek1, seek2, ...</code> или пустая строка если критерии сортировки не указаны.
+     * @throws IllegalArgumentException если имя какого-либо поля не является корректным SQL идентификатором.
+     */
+    public static String makeSeekPredicate(final SortCriterion[] criteria) {
+        if (criteria == null || criteria.length == 0)
+            return "";
+        final StringBuilder buf = new StringBuilder(criteria.length * 32);
+        buf.append('(');
+        for (int i = 0; i < criteria.length; i++) {
+            if (i > 0)
+                buf.append(" OR (");
+            for (int j = 0; j < i; j++) {
+                appendField(buf, criteria[j]).append(" = :").append(Query.SEEK_PARAM_PREFIX).append(j + 1).append(" AND ");
+            }
+            appendField(buf, criteria[i]).append(criteria[i].isAscending() ? " > :" : " < :").append(Query.SEEK_PARAM_PREFIX).append(i + 1);
+            if (i > 0)
+                buf.append(')');
+        }
+        return buf.append(')').toString();
+    }
+
+    private static StringBuilder appendField(final StringBuilder buf, final SortCriterion criterion) {
+        final String field = criterion.getField();
+        boolean valid = !field.isEmpty() && Character.isJavaIdentifierStart(field.charAt(0));
+        for (int i = 1; valid && i < field.length(); i++) {
+            final char c = field.charAt(i);
+            valid = c == '.' ? i + 1 < field.length() && Character.isJavaIdentifierStart(field.charAt(i + 1)) : Character.isJavaIdentifierPart(c);
+        }
+        if (!valid)
+            throw new IllegalArgumentException("Illegal sort field: " + field);
+        return buf.append(field);
+    }
+
+
     private final String sql;
     private final List<String> paramNames;
 
     /**
      * @param namedSql текст SQL запроса в котором возможно есть именованные параметры. Параметр не может быть <code>null</code>.
+     * @see #forQuery(String)
      */
     public ParameterizedSQL(final String namedSql) {
-        this.paramNames = new ArrayList<>();
-        this.sql = transform(namedSql, paramNames);
+        final List<String> names = new ArrayList<>();
+        this.sql = transform(namedSql, names);
+        this.paramNames = Collections.unmodifiableList(names);
     }
 
     /**
@@ -52,7 +174,7 @@ public class ParameterizedSQL implements Serializable {
      * встречается два и более раза то в возвращаемом списке он будет встречаться соответствующее количество раз в
      * тех позициях которые соответствовали вхождению данного параметра в исходном запросе.
      *
-     * @return список имен параметров в том порядке в котором они встречаются в запросе.
+     * @return неизменяемый список имен параметров в том порядке в котором они встречаются в запросе.
      *         Метод никогда не возвращает <code>null</code>.
      */
     public List<String> getParamNames() {
@@ -204,4 +326,18 @@ public class ParameterizedSQL implements Serializable {
             paramNames.add(pbuf.toString());
         return buf.toString();
     }
+
+
+    /**
+     * Запись в кэше разобранных запросов.
+     */
+    private static final class CacheEntry {
+        private final ParameterizedSQL sql;
+        private volatile long lastAccess;
+
+        private CacheEntry(final ParameterizedSQL sql, final long lastAccess) {
+            this.sql = sql;
+            this.lastAccess = lastAccess;
+        }
+    }
 }
@@ -0,0 +1,242 @@
+package org.echosoft.common.data.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.echosoft.common.collections.issuers.ReadAheadIssuer;
+
+/**
+ * <p>Итератор по курсору данных читаемых из базы данных, выполняющий чтение записей в отдельном потоке с опережением.</p>
+ * <p>В отличие от {@link JdbcIssuer}, записи курсора читаются и преобразуются в объекты (посредством указанного {@link RowMapper}) в фоновом потоке
+ * пакетами фиксированного размера, которые накапливаются в ограниченной очереди. Таким образом, ожидание очередной порции данных от СУБД
+ * совмещается во времени с обработкой уже полученных записей, а объем памяти, занимаемой еще не обработанными записями, ограничен
+ * размером очереди. Размер пакета также передается драйверу в качестве рекомендуемого количества записей, получаемых от СУБД за одно обращение
+ * (см. {@link ResultSet#setFetchSize(int)}).</p>
+ * <p>Ошибки, возникшие в фоновом потоке при чтении курсора, передаются вызывающему коду из метода {@link #hasNext()} после того как
+ * будут выданы все успешно прочитанные до этого записи.</p>
+ * <strong>Важно!</strong> Как и в случае {@link JdbcIssuer}, ответственность за освобождение ресурсов возложена на пользовательский код.
+ * Метод {@link #close()} прекращает чтение курсора, дожидается завершения фоновой задачи и только после этого закрывает курсор, запрос и соединение с базой.
+ * Пример использования:<br/>
+ * <pre>
+ *  final ResultSet rs = stmt.executeQuery();
+ *  try (Issuer&lt;Order&gt; it = new PrefetchingJdbcIssuer&lt;&gt;(conn, stmt, rs, ORDER.bind(rs.getMetaData()))) {
+ *      while (it.hasNext()) {
+ *          Order order = it.next();
+ *          // ...
+ *      }
+ *  }
+ * </pre>
+ *
+ * @author Anton Sharapov
+ * @see IndexedRowMapper
+ */
+public class PrefetchingJdbcIssuer<T> implements ReadAheadIssuer<T> {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_CAPACITY = 4;
+
+    private static final List<Object> END = Collections.emptyList();    // признак завершения чтения курсора.
+    private static final long POLL_INTERVAL = 100;                       // мс, периодичность проверки признака закрытия итератора фоновой задачей.
+
+    private final Connection conn;
+    private final Statement stmt;
+    private final ResultSet rs;
+    private final RowMapper<T> mapper;
+    private final int batchSize;
+    private final ArrayBlockingQueue<List<T>> queue;
+    private final AtomicBoolean claimed;      // фоновая задача начала работу или итератор был закрыт до ее запуска.
+    private final CountDownLatch finished;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private List<T> batch;
+    private int pos;
+    private boolean exhausted;
+
+    public PrefetchingJdbcIssuer(final Connection conn, final Statement stmt, final ResultSet rs, final RowMapper<T> mapper) throws SQLException {
+        this(conn, stmt, rs, mapper, DEFAULT_BATCH_SIZE, DEFAULT_CAPACITY, null);
+    }
+
+    /**
+     * Инициализирует итератор и запускает фоновое чтение курсора.
+     *
+     * @param conn      соединение с базой данных. Закрывается в методе {@link #close()}.
+     * @param stmt      запрос, результатом которого является курсор. Закрывается в методе {@link #close()}.
+     * @param rs        курсор с данными. С момента вызова конструктора и до завершения метода {@link #close()} используется только фоновой задачей.
+     * @param mapper    отвечает за формирование объектов на основе записей курсора. Вызывается в фоновом потоке.
+     * @param batchSize количество записей в одном пакете.
+     * @param capacity  максимальное количество пакетов, прочитанных с опережением.
+     * @param executor  используется для запуска фоновой задачи. Если не указан, то для нее создается отдельный поток.
+     * @throws SQLException в случае ошибок при настройке курсора.
+     */
+    public PrefetchingJdbcIssuer(final Connection conn, final Statement stmt, final ResultSet rs, final RowMapper<T> mapper,
+                                 final int batchSize, final int capacity, final Executor executor) throws SQLException {
+        if (rs == null || mapper == null)
+            throw new IllegalArgumentException("Result set and row mapper should be specified");
+        if (batchSize <= 0 || capacity <= 0)
+            throw new IllegalArgumentException("Batch size and capacity should be positive");
+        this.conn = conn;
+        this.stmt = stmt;
+        this.rs = rs;
+        this.mapper = mapper;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.claimed = new AtomicBoolean();
+        this.finished = new CountDownLatch(1);
+        if (rs.getFetchSize() < batchSize)
+            rs.setFetchSize(batchSize);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                // итератор мог быть закрыт еще до того, как исполнитель запустил задачу: курсор к этому моменту уже закрыт.
+                if (claimed.compareAndSet(false, true)) {
+                    prefetch();
+                } else {
+                    finished.countDown();
+                }
+            }
+        };
+        if (executor != null) {
+            executor.execute(task);
+        } else {
+            final Thread thread = new Thread(task, "jdbc-prefetch");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws Exception {
+        return ensureBatch();
+    }
+
+    @Override
+    public T next() throws Exception {
+        if (!ensureBatch())
+            throw new NoSuchElementException();
+        return batch.get(pos++);
+    }
+
+    @Override
+    public T readAhead() throws Exception {
+        if (!ensureBatch())
+            throw new NoSuchElementException();
+        return batch.get(pos);
+    }
+
+    /**
+     * Прекращает чтение курсора, дожидается завершения фоновой задачи и закрывает курсор, запрос и соединение с базой.
+     * Если исполнитель еще не запустил фоновую задачу, то ожидание не требуется: запущенная позднее задача завершится, не обращаясь к курсору.
+     * Если ожидание было прервано, то ресурсы все равно освобождаются, признак прерывания потока восстанавливается,
+     * а вызывающему коду выбрасывается {@link SQLException}.
+     *
+     * @throws SQLException в случае ошибок при освобождении ресурсов или если ожидание завершения фоновой задачи было прервано.
+     */
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+        exhausted = true;
+        batch = null;
+        queue.clear();
+        InterruptedException interrupted = null;
+        try {
+            if (!claimed.compareAndSet(false, true))
+                finished.await();
+        } catch (InterruptedException e) {
+            interrupted = e;
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                rs.close();
+            } finally {
+                try {
+                    if (stmt != null)
+                        stmt.close();
+                } finally {
+                    if (conn != null)
+                        conn.close();
+                }
+            }
+        }
+        if (interrupted != null)
+            throw new SQLException("Interrupted while waiting for prefetching task", interrupted);
+    }
+
+
+    private boolean ensureBatch() throws Exception {
+        while (batch == null || pos >= batch.size()) {
+            if (exhausted)
+                return false;
+            final List<T> b = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            if (b == null) {
+                // фоновая задача могла завершиться, так и не поместив в очередь признак завершения (если ее поток был прерван).
+                if (finished.getCount() == 0 && queue.isEmpty()) {
+                    exhausted = true;
+                    if (failure == null)
+                        failure = new InterruptedException("Prefetching task was interrupted");
+                    throw failure instanceof Exception ? (Exception) failure : new SQLException(failure);
+                }
+                continue;
+            }
+            if (b == END) {
+                exhausted = true;
+                batch = null;
+                final Throwable cause = failure;
+                if (cause instanceof Exception)
+                    throw (Exception) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                return false;
+            }
+            batch = b;
+            pos = 0;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void prefetch() {
+        List<T> buf = new ArrayList<>(batchSize);
+        try {
+            while (!closed && rs.next()) {
+                buf.add(mapper.map(rs));
+                if (buf.size() == batchSize) {
+                    if (!put(buf))
+                        return;
+                    buf = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            try {
+                // последний неполный пакет (в том числе записи, прочитанные до возникновения ошибки) передается до признака завершения.
+                if (!buf.isEmpty())
+                    put(buf);
+                put((List<T>) (List) END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+    private boolean put(final List<T> buf) throws InterruptedException {
+        while (!closed) {
+            if (queue.offer(buf, POLL_INTERVAL, TimeUnit.MILLISECONDS))
+                return true;
+        }
+        return false;
+    }
+}
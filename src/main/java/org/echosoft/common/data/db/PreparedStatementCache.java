@@ -0,0 +1,163 @@
+package org.echosoft.common.data.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Кэш подготовленных запросов ({@link PreparedStatement}) в рамках одного соединения с базой данных.</p>
+ * <p>Повторное обращение к запросу с тем же текстом возвращает ранее подготовленный экземпляр {@link PreparedStatement} (с уже очищенными значениями параметров),
+ * избавляя от повторной подготовки запроса драйвером и СУБД. Количество запросов в кэше ограничено, при его превышении закрывается запрос,
+ * к которому дольше всего не было обращений (LRU).</p>
+ * <p><strong>Важно!</strong> Полученные из кэша запросы не должны закрываться вызывающим кодом. Все они закрываются при вызове метода {@link #close()},
+ * само соединение с базой данных при этом остается открытым. Запросы, все же закрытые вызывающим кодом, при очередном обращении к ним подготавливаются заново.</p>
+ * Пример использования:<br/>
+ * <pre>
+ *  try (PreparedStatementCache cache = new PreparedStatementCache(conn, 64)) {
+ *      for (Order order : orders) {
+ *          final ParameterizedSQL sql = ParameterizedSQL.forQuery("UPDATE orders SET state = :state WHERE id = :id");
+ *          final PreparedStatement pstmt = cache.prepare(sql);
+ *          sql.applyParams(pstmt, params);
+ *          pstmt.executeUpdate();
+ *      }
+ *  }
+ * </pre>
+ * <strong>Внимание!</strong> Экземпляры данного класса не являются потокобезопасными (как и большинство реализаций {@link Connection}).
+ *
+ * @author Anton Sharapov
+ */
+public class PreparedStatementCache implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Connection conn;
+    private final int capacity;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public PreparedStatementCache(final Connection conn) {
+        this(conn, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param conn     соединение с базой данных.
+     * @param capacity максимальное количество подготовленных запросов в кэше.
+     */
+    public PreparedStatementCache(final Connection conn, final int capacity) {
+        if (conn == null)
+            throw new IllegalArgumentException("Connection should be specified");
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        this.conn = conn;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return соединение с базой данных, для которого подготавливаются запросы.
+     */
+    public Connection getConnection() {
+        return conn;
+    }
+
+    /**
+     * Возвращает подготовленный запрос для указанного запроса с именованными параметрами.
+     *
+     * @param sql запрос с именованными параметрами.
+     * @return подготовленный запрос. Не должен закрываться вызывающим кодом.
+     * @throws SQLException в случае ошибок при подготовке запроса.
+     * @see ParameterizedSQL#applyParams(PreparedStatement, Map)
+     */
+    public PreparedStatement prepare(final ParameterizedSQL sql) throws SQLException {
+        return prepare(sql.getQuery());
+    }
+
+    /**
+     * Возвращает подготовленный запрос с указанным текстом. Если такой запрос уже есть в кэше, то значения всех его параметров очищаются.
+     *
+     * @param sql текст запроса (с анонимными параметрами).
+     * @return подготовленный запрос. Не должен закрываться вызывающим кодом.
+     * @throws SQLException в случае ошибок при подготовке запроса.
+     */
+    public PreparedStatement prepare(final String sql) throws SQLException {
+        PreparedStatement pstmt = statements.get(sql);
+        if (pstmt != null) {
+            if (!pstmt.isClosed()) {
+                hits++;
+                pstmt.clearParameters();
+                return pstmt;
+            }
+            statements.remove(sql);
+        }
+        misses++;
+        pstmt = conn.prepareStatement(sql);
+        statements.put(sql, pstmt);
+        if (statements.size() > capacity) {
+            final Iterator<PreparedStatement> it = statements.values().iterator();
+            final PreparedStatement eldest = it.next();
+            it.remove();
+            evictions++;
+            eldest.close();
+        }
+        return pstmt;
+    }
+
+    /**
+     * @return количество обращений, обслуженных ранее подготовленными запросами.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return количество обращений, потребовавших подготовки нового запроса.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return количество запросов, вытесненных из кэша из-за превышения его емкости.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return количество подготовленных запросов в кэше.
+     */
+    public int size() {
+        return statements.size();
+    }
+
+    /**
+     * Закрывает все подготовленные запросы. Соединение с базой данных не закрывается.
+     *
+     * @throws SQLException в случае ошибок при закрытии запросов. Закрыть пытаемся все запросы, поднимается первая из возникших ошибок.
+     */
+    @Override
+    public void close() throws SQLException {
+        SQLException failure = null;
+        for (PreparedStatement pstmt : statements.values()) {
+            try {
+                pstmt.close();
+            } catch (SQLException e) {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        statements.clear();
+        if (failure != null)
+            throw failure;
+    }
+
+    @Override
+    public String toString() {
+        return "[PreparedStatementCache{size:" + statements.size() + ", hits:" + hits + ", misses:" + misses + ", evictions:" + evictions + "}]";
+    }
+}
@@ -1,20 +1,40 @@
 package org.echosoft.common.data.db;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.echosoft.common.utils.Base64Util;
+
 /**
  * <p>Базовый класс предназначенный для задания ограничений на выборку данных из некоторого источника.</p>
  * <p>В данном классе реализована возможность сортировки и постраничной выборки данных.</p>
+ * <p>Помимо выборки по номерам записей (<code>OFFSET</code>) поддерживается постраничная выборка по ключу (keyset или seek pagination):
+ * вместо номера первой записи страницы запрос хранит значения полей сортировки последней записи предыдущей страницы (см. {@link #seekAfter(Object...)}),
+ * а условие отбора записей, следующих за ней, формируется методом {@link ParameterizedSQL#makeSeekPredicate(SortCriterion[])}.
+ * В отличие от выборки по номерам записей, стоимость получения очередной страницы не зависит от ее номера при наличии индекса по полям сортировки.</p>
  *
  * @author Anton Sharapov
  */
 public class Query implements Serializable {
 
+    /**
+     * Префикс имен параметров, в которых передаются значения полей сортировки последней записи предыдущей страницы.
+     * Имя параметра для i-го критерия сортировки (начиная с 1) формируется как <code>SEEK_PARAM_PREFIX + i</code>.
+     */
+    public static final String SEEK_PARAM_PREFIX = "seek";
+
     private static final SortCriterion[] EMPTY_SORT_CRITERIA = new SortCriterion[0];
 
     private int rangeSize;
@@ -22,6 +42,7 @@ public class Query implements Serializable {
     private Map<String, Object> params;
     private List<SortCriterion> criteria;
     private boolean complete;
+    private Object[] seekValues;
 
     public Query() {
         this.rangeSize = 0;
@@ -40,11 +61,13 @@ public class Query implements Serializable {
         return rangeStart;
     }
     public Query setRangeStart(final long rangeStart) {
+        clearSeek();
         this.rangeStart = rangeStart >= 0 ? rangeStart : 0;
         return this;
     }
 
     public Query selectPage(final long pageNo, final int pageSize) {
+        clearSeek();
         if (pageSize > 0) {
             this.rangeSize = pageSize;
             this.rangeStart = pageNo > 1 ? (pageNo - 1) * pageSize + 1 : 1;
@@ -94,6 +117,7 @@ public class Query implements Serializable {
     }
 
     public Query setSortCriteria(final String field, final boolean ascending) {
+        clearSeek();
         if (criteria == null) {
             criteria = new ArrayList<SortCriterion>(2);
         } else {
@@ -105,6 +129,7 @@ public class Query implements Serializable {
 
 
     public Query addSortCriterionFirst(final String field, final boolean ascending, final int maxDepth) {
+        clearSeek();
         if (criteria == null) {
             criteria = new ArrayList<SortCriterion>(2);
         } else {
@@ -124,6 +149,7 @@ public class Query implements Serializable {
     }
 
     public Query addSortCriterionLast(final String field, final boolean ascending) {
+        clearSeek();
         if (criteria == null) {
             criteria = new ArrayList<SortCriterion>(2);
         } else {
@@ -140,6 +166,7 @@ public class Query implements Serializable {
     }
 
     public Query toggleSortCriterion(final String field) {
+        clearSeek();
         if (criteria == null) {
             criteria = new ArrayList<SortCriterion>(2);
         } else {
@@ -156,10 +183,172 @@ public class Query implements Serializable {
     }
 
 
+    /**
+     * Переводит запрос в режим постраничной выборки по ключу. Указанные значения полей сортировки последней записи предыдущей страницы
+     * запоминаются в запросе и добавляются в перечень его параметров под именами <code>seek1, seek2, ...</code>,
+     * используемыми в условии {@link ParameterizedSQL#makeSeekPredicate(SortCriterion[])}.
+     * Номер первой записи выборки при этом сбрасывается. Любое последующее изменение критериев сортировки или номера первой записи выборки
+     * (методы {@link #setRangeStart(long)} и {@link #selectPage(long, int)}) отменяет режим выборки по ключу.
+     *
+     * @param lastValues значения всех полей сортировки последней записи предыдущей страницы, в порядке следования критериев сортировки.
+     *                   Значения не могут быть <code>null</code>.
+     * @return данный запрос.
+     * @throws IllegalArgumentException если количество значений не соответствует количеству критериев сортировки или какое-либо значение не указано.
+     */
+    public Query seekAfter(final Object... lastValues) {
+        final int count = criteria != null ? criteria.size() : 0;
+        if (lastValues == null || lastValues.length != count)
+            throw new IllegalArgumentException("Expected " + count + " seek values");
+        for (int i = 0; i < lastValues.length; i++) {
+            if (lastValues[i] == null)
+                throw new IllegalArgumentException("Seek value for '" + criteria.get(i).getField() + "' not specified");
+        }
+        clearSeek();
+        for (int i = 0; i < lastValues.length; i++) {
+            addParam(SEEK_PARAM_PREFIX + (i + 1), lastValues[i]);
+        }
+        this.seekValues = lastValues.clone();
+        this.rangeStart = 0;
+        return this;
+    }
+
+    /**
+     * Переводит запрос в режим постраничной выборки по ключу, используя значения полей сортировки из маркера продолжения,
+     * полученного от предыдущей страницы (см. {@link PagedQueryResult#getContinuationToken()}).
+     *
+     * @param token маркер продолжения. Если <code>null</code>, то запрос будет выбирать первую страницу.
+     * @return данный запрос.
+     * @throws IllegalArgumentException если маркер некорректен или не соответствует критериям сортировки данного запроса.
+     */
+    public Query continueAfter(final String token) {
+        if (token == null) {
+            clearSeek();
+            return this;
+        }
+        return seekAfter(decodeSeekValues(token));
+    }
+
+    /**
+     * Отменяет режим постраничной выборки по ключу.
+     *
+     * @return данный запрос.
+     */
+    public Query clearSeek() {
+        if (seekValues != null && params != null) {
+            for (int i = 1; i <= seekValues.length; i++) {
+                params.remove(SEEK_PARAM_PREFIX + i);
+            }
+        }
+        seekValues = null;
+        return this;
+    }
+
+    /**
+     * @return <code>true</code> если запрос должен выбирать записи, следующие за указанной в методе {@link #seekAfter(Object...)}.
+     */
+    public boolean isSeekMode() {
+        return seekValues != null;
+    }
+
+    /**
+     * @return значения полей сортировки последней записи предыдущей страницы или <code>null</code> если запрос не в режиме выборки по ключу.
+     */
+    public Object[] getSeekValues() {
+        return seekValues != null ? seekValues.clone() : null;
+    }
+
+
     public boolean isComplete() {
         return complete;
     }
     public void setComplete(final boolean complete) {
         this.complete = complete;
     }
+
+
+    /**
+     * Формирует компактное строковое представление значений полей сортировки, пригодное для передачи клиенту.
+     * Поддерживаются строки, числа, логические значения и даты.
+     */
+    static String encodeSeekValues(final Object[] values) {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(buf)) {
+            out.writeByte(values.length);
+            for (Object value : values) {
+                if (value instanceof String) {
+                    out.writeByte('S');
+                    out.writeUTF((String) value);
+                } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                    out.writeByte('L');
+                    out.writeLong(((Number) value).longValue());
+                } else if (value instanceof Double || value instanceof Float) {
+                    out.writeByte('D');
+                    out.writeDouble(((Number) value).doubleValue());
+                } else if (value instanceof BigDecimal) {
+                    out.writeByte('N');
+                    out.writeUTF(value.toString());
+                } else if (value instanceof Boolean) {
+                    out.writeByte('B');
+                    out.writeBoolean((Boolean) value);
+                } else if (value instanceof Timestamp) {
+                    out.writeByte('T');
+                    out.writeLong(((Timestamp) value).getTime());
+                    out.writeInt(((Timestamp) value).getNanos());
+                } else if (value instanceof Date) {
+                    out.writeByte(value instanceof java.sql.Date ? 'd' : 't');
+                    out.writeLong(((Date) value).getTime());
+                } else {
+                    throw new IllegalArgumentException("Unsupported seek value type: " + (value != null ? value.getClass().getName() : null));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        return Base64Util.encode(buf.toByteArray());
+    }
+
+    static Object[] decodeSeekValues(final String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64Util.decode(token)))) {
+            final Object[] values = new Object[in.readUnsignedByte()];
+            for (int i = 0; i < values.length; i++) {
+                final int type = in.readUnsignedByte();
+                switch (type) {
+                    case 'S':
+                        values[i] = in.readUTF();
+                        break;
+                    case 'L':
+                        values[i] = in.readLong();
+                        break;
+                    case 'D':
+                        values[i] = in.readDouble();
+                        break;
+                    case 'N':
+                        values[i] = new BigDecimal(in.readUTF());
+                        break;
+                    case 'B':
+                        values[i] = in.readBoolean();
+                        break;
+                    case 'T': {
+                        final Timestamp ts = new Timestamp(in.readLong());
+                        ts.setNanos(in.readInt());
+                        values[i] = ts;
+                        break;
+                    }
+                    case 'd':
+                        values[i] = new java.sql.Date(in.readLong());
+                        break;
+                    case 't':
+                        values[i] = new Date(in.readLong());
+                        break;
+                    default:
+                        throw new IOException("Unknown value type: " + type);
+                }
+            }
+            if (in.read() >= 0)
+                throw new IOException("Unexpected trailing data");
+            return values;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
+    }
 }
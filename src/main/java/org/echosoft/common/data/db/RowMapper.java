@@ -0,0 +1,23 @@
+package org.echosoft.common.data.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Формирует объект на основе текущей записи курсора.
+ *
+ * @author Anton Sharapov
+ * @see IndexedRowMapper
+ * @see PrefetchingJdbcIssuer
+ */
+public interface RowMapper<T> {
+
+    /**
+     * Формирует объект на основе данных текущей записи курсора. Реализация не должна менять текущую позицию курсора.
+     *
+     * @param rs курсор, позиционированный на обрабатываемой записи.
+     * @return объект, соответствующий текущей записи курсора.
+     * @throws SQLException в случае ошибок при обращении к курсору.
+     */
+    public T map(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,546 @@
+package org.echosoft.common.data.db;
+
+import java.io.Reader;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import org.echosoft.common.parsers.SQLStatementsParser;
+
+/**
+ * <p>Выполняет SQL скрипт, разбираемый на отдельные выражения посредством {@link SQLStatementsParser}.</p>
+ * <p>Скрипт читается потоково, поэтому его размер не ограничен объемом доступной памяти. Идущие подряд выражения <code>INSERT</code>, <code>UPDATE</code>,
+ * <code>DELETE</code> и <code>MERGE</code> объединяются в пакеты (см. {@link Statement#addBatch(String)}) указанного размера. Прочие выражения
+ * (DDL, PL/SQL блоки и т.д.) выполняются по одному, предварительно передав в СУБД все накопленные к этому моменту выражения.</p>
+ * <p>Независимые друг от друга части скрипта могут выполняться параллельно. Для этого в скрипте используются следующие директивы,
+ * записываемые в виде однострочных комментариев перед очередным выражением:</p>
+ * <ul>
+ * <li> <code>--#group</code> - начинает новую группу выражений. Все выражения одной группы выполняются последовательно в отдельном соединении с базой,
+ *      разные группы выполняются параллельно. Первая такая директива начинает параллельную секцию скрипта;
+ * <li> <code>--#end</code> - завершает параллельную секцию скрипта. Выражения, следующие за ней, будут выполнены только после завершения всех групп данной секции.
+ * </ul>
+ * Выражения за пределами параллельных секций выполняются последовательно в одном общем соединении, изменения в котором фиксируются перед началом каждой параллельной секции.
+ * Если соединения работают не в режиме автоматической фиксации транзакций, то изменения фиксируются после успешного выполнения каждой группы (и скрипта в целом),
+ * а в случае ошибки - откатываются. Пример скрипта:
+ * <pre>
+ *  CREATE TABLE orders (...);
+ *  CREATE TABLE clients (...);
+ *  --#group
+ *  INSERT INTO orders VALUES (...);
+ *  INSERT INTO orders VALUES (...);
+ *  --#group
+ *  INSERT INTO clients VALUES (...);
+ *  --#end
+ *  CREATE INDEX orders_client_idx ON orders(client_id);
+ * </pre>
+ * <p>Для каждого выполненного выражения (или пакета выражений) вызывается обработчик {@link Listener}, получающий время выполнения, а также
+ * порядковый номер и номер строки в скрипте каждого выражения (см. {@link SQLStatementsParser#getStatementNumber()}, {@link SQLStatementsParser#getRowNumber()}).
+ * Те же сведения включаются в сообщения об ошибках. При возникновении ошибки в одной из групп выполнение остальных групп прекращается.</p>
+ * <strong>Внимание!</strong> Экземпляры данного класса не являются потокобезопасными.
+ *
+ * @author Anton Sharapov
+ */
+public class SQLScriptExecutor {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final String GROUP_DIRECTIVE = "--#group";
+    public static final String END_DIRECTIVE = "--#end";
+
+    private static final String[] DML_KEYWORDS = {"INSERT", "UPDATE", "DELETE", "MERGE"};
+    private static final ScriptStatement END = new ScriptStatement(0, 0, 0, "", false);    // признак завершения группы выражений.
+    private static final long POLL_INTERVAL = 100;                                         // мс, периодичность проверки признака ошибки в параллельных группах.
+
+    /**
+     * Получает уведомления о выполнении выражений скрипта.
+     * При параллельном выполнении групп выражений может вызываться одновременно из нескольких потоков.
+     */
+    public static interface Listener {
+        /**
+         * Вызывается после успешного выполнения очередного выражения или пакета выражений.
+         *
+         * @param statements выполненные выражения (более одного в случае пакета).
+         * @param nanos      время выполнения выражения или всего пакета (в наносекундах).
+         */
+        public void onExecuted(List<ScriptStatement> statements, long nanos);
+    }
+
+    /**
+     * Описывает отдельное выражение скрипта.
+     */
+    public static final class ScriptStatement {
+        private final int statementNumber;
+        private final int rowNumber;
+        private final int group;
+        private final String sql;
+        private final boolean dml;
+        private int updateCount;
+
+        private ScriptStatement(final int statementNumber, final int rowNumber, final int group, final String sql, final boolean dml) {
+            this.statementNumber = statementNumber;
+            this.rowNumber = rowNumber;
+            this.group = group;
+            this.sql = sql;
+            this.dml = dml;
+            this.updateCount = -1;
+        }
+
+        /**
+         * @return порядковый номер выражения в скрипте (начиная с 1).
+         */
+        public int getStatementNumber() {
+            return statementNumber;
+        }
+
+        /**
+         * @return номер строки скрипта (начиная с 0), с которой начинается выражение.
+         */
+        public int getRowNumber() {
+            return rowNumber;
+        }
+
+        /**
+         * @return порядковый номер группы (начиная с 1), в которой выполнялось выражение, или <code>0</code> для выражений за пределами параллельных секций.
+         */
+        public int getGroup() {
+            return group;
+        }
+
+        /**
+         * @return текст выражения без предшествующих ему комментариев.
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return <code>true</code> если выражение может выполняться в составе пакета.
+         */
+        public boolean isDml() {
+            return dml;
+        }
+
+        /**
+         * @return количество модифицированных выражением записей или <code>-1</code> если оно неизвестно.
+         */
+        public int getUpdateCount() {
+            return updateCount;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + statementNumber + " (line " + (rowNumber + 1) + ")";
+        }
+    }
+
+    private final DataSource dataSource;
+    private final int batchSize;
+    private final Executor executor;
+    private final AtomicLong statementsCount;
+    private final AtomicLong batchesCount;
+    private final AtomicLong totalTime;
+    private Listener listener;
+
+    public SQLScriptExecutor(final DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE, null);
+    }
+
+    /**
+     * @param dataSource источник соединений с базой данных. При параллельном выполнении групп каждая из них использует отдельное соединение.
+     * @param batchSize  максимальное количество выражений в одном пакете. Значение <code>1</code> отключает пакетное выполнение.
+     * @param executor   используется для параллельного выполнения групп выражений. Если не указан, то для каждой группы создается отдельный поток.
+     */
+    public SQLScriptExecutor(final DataSource dataSource, final int batchSize, final Executor executor) {
+        if (dataSource == null)
+            throw new IllegalArgumentException("Data source should be specified");
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Illegal batch size: " + batchSize);
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        this.executor = executor;
+        this.statementsCount = new AtomicLong();
+        this.batchesCount = new AtomicLong();
+        this.totalTime = new AtomicLong();
+    }
+
+    public Listener getListener() {
+        return listener;
+    }
+    public void setListener(final Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Выполняет все выражения указанного скрипта.
+     *
+     * @param script поток с текстом скрипта. Не закрывается данным методом.
+     * @return количество выполненных выражений.
+     * @throws SQLException         в случае ошибок при выполнении какого-либо выражения. Сообщение об ошибке содержит номер выражения и номер строки скрипта.
+     * @throws InterruptedException если поток был прерван во время ожидания завершения параллельных групп.
+     * @throws RuntimeException     в случае ошибок при чтении или разборе скрипта.
+     */
+    public int execute(final Reader script) throws SQLException, InterruptedException {
+        final SQLStatementsParser parser = new SQLStatementsParser(script);
+        final List<String> directives = new ArrayList<>(2);
+        Runner serial = null;
+        Section section = null;
+        int groups = 0;
+        int count = 0;
+        try {
+            while (parser.hasNext()) {
+                final String text = parser.next();
+                directives.clear();
+                final int start = skipComments(text, directives);
+                for (String directive : directives) {
+                    if (GROUP_DIRECTIVE.equals(directive)) {
+                        if (section == null) {
+                            if (serial != null)
+                                serial.commit();
+                            section = new Section();
+                        }
+                        section.startGroup(++groups);
+                    } else if (END_DIRECTIVE.equals(directive) && section != null) {
+                        // секция считается завершенной только после успешного окончания всех ее групп, иначе ее прервет блок finally.
+                        section.finish();
+                        section = null;
+                    }
+                }
+                if (start >= text.length())
+                    continue;
+                final String sql = text.substring(start).trim();
+                final int row = parser.getRowNumber() - countLines(text, start);
+                final ScriptStatement stmt = new ScriptStatement(parser.getStatementNumber(), row, section != null ? groups : 0, sql, isDml(sql));
+                if (section != null) {
+                    section.submit(stmt);
+                } else {
+                    if (serial == null)
+                        serial = new Runner(dataSource.getConnection());
+                    serial.execute(stmt);
+                }
+                count++;
+            }
+            if (section != null) {
+                section.finish();
+                section = null;
+            }
+            if (serial != null)
+                serial.commit();
+            return count;
+        } finally {
+            if (section != null)
+                section.abort();
+            if (serial != null)
+                serial.close();
+        }
+    }
+
+    /**
+     * @return общее количество успешно выполненных выражений.
+     */
+    public long getStatementsCount() {
+        return statementsCount.get();
+    }
+
+    /**
+     * @return количество выполненных пакетов выражений.
+     */
+    public long getBatchesCount() {
+        return batchesCount.get();
+    }
+
+    /**
+     * @return суммарное время выполнения всех выражений (в наносекундах). При параллельном выполнении групп время их выполнения суммируется.
+     */
+    public long getTotalTime() {
+        return totalTime.get();
+    }
+
+    @Override
+    public String toString() {
+        return "[SQLScriptExecutor{statements:" + statementsCount + ", batches:" + batchesCount + ", totalTime:" + totalTime.get() / 1000000 + "ms}]";
+    }
+
+
+    private void executed(final List<ScriptStatement> statements, final long nanos) {
+        statementsCount.addAndGet(statements.size());
+        totalTime.addAndGet(nanos);
+        final Listener l = listener;
+        if (l != null)
+            l.onExecuted(statements, nanos);
+    }
+
+    private static SQLException failed(final ScriptStatement stmt, final SQLException cause) {
+        return new SQLException("Statement " + stmt + " failed: " + cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+    }
+
+    /**
+     * Пропускает пробелы и комментарии в начале выражения, запоминая встретившиеся среди них директивы.
+     *
+     * @return позиция первого символа собственно выражения.
+     */
+    private static int skipComments(final String text, final List<String> directives) {
+        final int len = text.length();
+        int pos = 0;
+        while (pos < len) {
+            if (Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            } else if (text.startsWith("--", pos)) {
+                int eol = text.indexOf('\n', pos);
+                if (eol < 0)
+                    eol = len;
+                final String comment = text.substring(pos, eol).trim().toLowerCase();
+                if (comment.startsWith("--#"))
+                    directives.add(comment);
+                pos = eol;
+            } else if (text.startsWith("/*", pos)) {
+                final int end = text.indexOf("*/", pos + 2);
+                pos = end < 0 ? len : end + 2;
+            } else {
+                break;
+            }
+        }
+        return pos;
+    }
+
+    private static int countLines(final String text, final int from) {
+        int count = 0;
+        for (int i = text.indexOf('\n', from); i >= 0; i = text.indexOf('\n', i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean isDml(final String sql) {
+        for (String keyword : DML_KEYWORDS) {
+            final int len = keyword.length();
+            if (sql.regionMatches(true, 0, keyword, 0, len) && (sql.length() == len || !Character.isJavaIdentifierPart(sql.charAt(len))))
+                return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Последовательно выполняет выражения в рамках одного соединения, объединяя идущие подряд DML выражения в пакеты.
+     */
+    private final class Runner {
+        private final Connection conn;
+        private final Statement stmt;
+        private final List<ScriptStatement> batch;
+        private boolean dirty;          // есть ли незафиксированные изменения.
+
+        private Runner(final Connection conn) throws SQLException {
+            try {
+                this.stmt = conn.createStatement();
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+            this.conn = conn;
+            this.batch = new ArrayList<>(batchSize);
+        }
+
+        private void execute(final ScriptStatement st) throws SQLException {
+            dirty = true;
+            if (st.dml && batchSize > 1) {
+                try {
+                    stmt.addBatch(st.sql);
+                } catch (SQLException e) {
+                    throw failed(st, e);
+                }
+                batch.add(st);
+                if (batch.size() >= batchSize)
+                    flush();
+                return;
+            }
+            flush();
+            final long started = System.nanoTime();
+            try {
+                if (!stmt.execute(st.sql))
+                    st.updateCount = stmt.getUpdateCount();
+            } catch (SQLException e) {
+                throw failed(st, e);
+            }
+            executed(Collections.singletonList(st), System.nanoTime() - started);
+        }
+
+        private void flush() throws SQLException {
+            if (batch.isEmpty())
+                return;
+            final List<ScriptStatement> statements = new ArrayList<>(batch);
+            batch.clear();
+            final long started = System.nanoTime();
+            final int[] counts;
+            try {
+                counts = stmt.executeBatch();
+            } catch (BatchUpdateException e) {
+                throw failed(statements.get(failedIndex(e.getUpdateCounts(), statements.size())), e);
+            } catch (SQLException e) {
+                throw failed(statements.get(0), e);
+            }
+            final long time = System.nanoTime() - started;
+            for (int i = 0; i < statements.size(); i++) {
+                statements.get(i).updateCount = i < counts.length && counts[i] >= 0 ? counts[i] : -1;
+            }
+            batchesCount.incrementAndGet();
+            executed(Collections.unmodifiableList(statements), time);
+        }
+
+        /**
+         * Определяет выражение пакета, вызвавшее ошибку. Одни драйверы прекращают выполнение пакета на первой ошибке
+         * (и тогда количество результатов меньше размера пакета), другие помечают ошибочные выражения признаком {@link Statement#EXECUTE_FAILED}.
+         */
+        private int failedIndex(final int[] counts, final int size) {
+            if (counts == null)
+                return 0;
+            if (counts.length < size)
+                return counts.length;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED)
+                    return i;
+            }
+            return 0;
+        }
+
+        private void commit() throws SQLException {
+            flush();
+            if (dirty && !conn.getAutoCommit())
+                conn.commit();
+            dirty = false;
+        }
+
+        private void close() throws SQLException {
+            try {
+                if (dirty && !conn.getAutoCommit())
+                    conn.rollback();
+            } finally {
+                try {
+                    stmt.close();
+                } finally {
+                    conn.close();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Параллельная секция скрипта. Выражения каждой группы передаются выполняющей их фоновой задаче через ограниченную очередь,
+     * что позволяет продолжать чтение скрипта одновременно с выполнением уже прочитанных выражений.
+     */
+    private final class Section {
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final List<CountDownLatch> groups = new ArrayList<>();
+        private BlockingQueue<ScriptStatement> queue;       // очередь выражений текущей группы.
+
+        private void startGroup(final int group) throws SQLException, InterruptedException {
+            closeGroup();
+            final BlockingQueue<ScriptStatement> q = new ArrayBlockingQueue<>(Math.max(batchSize * 2, 16));
+            final CountDownLatch finished = new CountDownLatch(1);
+            final Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    process(q, finished);
+                }
+            };
+            if (executor != null) {
+                executor.execute(task);
+            } else {
+                final Thread thread = new Thread(task, "sql-script-group-" + group);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            groups.add(finished);
+            queue = q;
+        }
+
+        private void submit(final ScriptStatement stmt) throws SQLException, InterruptedException {
+            while (failure.get() == null) {
+                if (queue.offer(stmt, POLL_INTERVAL, TimeUnit.MILLISECONDS))
+                    return;
+            }
+            finish();
+        }
+
+        private void closeGroup() throws SQLException, InterruptedException {
+            if (queue != null) {
+                final BlockingQueue<ScriptStatement> q = queue;
+                queue = null;
+                while (failure.get() == null) {
+                    if (q.offer(END, POLL_INTERVAL, TimeUnit.MILLISECONDS))
+                        return;
+                }
+                finish();
+            }
+        }
+
+        /**
+         * Дожидается завершения всех групп секции.
+         */
+        private void finish() throws SQLException, InterruptedException {
+            closeGroup();
+            for (CountDownLatch finished : groups) {
+                finished.await();
+            }
+            final Throwable cause = failure.get();
+            if (cause instanceof SQLException)
+                throw (SQLException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            if (cause != null)
+                throw new SQLException(cause.getMessage(), cause);
+        }
+
+        /**
+         * Прерывает выполнение всех групп секции (в случае ошибки при чтении скрипта) и дожидается их завершения.
+         */
+        private void abort() throws InterruptedException {
+            failure.compareAndSet(null, new CancellationException("Script execution aborted"));
+            for (CountDownLatch finished : groups) {
+                finished.await();
+            }
+        }
+
+        private void process(final BlockingQueue<ScriptStatement> q, final CountDownLatch finished) {
+            Runner runner = null;
+            try {
+                runner = new Runner(dataSource.getConnection());
+                while (failure.get() == null) {
+                    final ScriptStatement stmt = q.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (stmt == END) {
+                        runner.commit();
+                        break;
+                    }
+                    if (stmt != null)
+                        runner.execute(stmt);
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                try {
+                    if (runner != null)
+                        runner.close();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    finished.countDown();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package org.echosoft.common.dbf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Выполняет чтение содержимого .DBF файла с произвольным доступом к его записям.</p>
+ * <p>В отличие от {@link DBFReader}, который читает записи строго последовательно из потока, данный класс отображает файл в память
+ * (окнами размером до {@link #DEFAULT_WINDOW_SIZE} байт) и, поскольку все записи таблицы имеют одинаковый размер, позволяет сразу перейти к записи
+ * с любым номером (см. {@link #seek(int)}). Кроме того:</p>
+ * <ul>
+ * <li> можно ограничить набор полей, значения которых будут использоваться (см. {@link #setProjection(String...)}). В этом случае из файла
+ *      в буфер записи копируется только фрагмент записи, содержащий эти поля;
+ * <li> методы {@link #getInt(int)}, {@link #getLong(int)} и {@link #getDouble(int)} разбирают числовые значения непосредственно из байтов записи,
+ *      без создания промежуточных строк и объектов {@link BigDecimal}. Отсутствующие значения возвращаются как <code>0</code>,
+ *      для их распознавания следует использовать метод {@link #isNull(int)}.
+ * </ul>
+ * Пример использования:<br/>
+ * <pre>
+ *  try (DBFFileReader reader = new DBFFileReader(file, Charset.forName("cp866"))) {
+ *      reader.setProjection("ID", "AMOUNT");
+ *      final int id = reader.getFieldIndex("ID");
+ *      final int amount = reader.getFieldIndex("AMOUNT");
+ *      reader.seek(1000);
+ *      do {
+ *          if (!reader.isRecordDeleted())
+ *              process(reader.getLong(id), reader.getDouble(amount));
+ *      } while (reader.next());
+ *  }
+ * </pre>
+ * <strong>Внимание!</strong> Экземпляры данного класса не являются потокобезопасными.
+ *
+ * @author Anton Sharapov
+ */
+public class DBFFileReader implements Closeable, AutoCloseable {
+
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final TableDescriptor descriptor;
+    private final Field[] fields;
+    private final Map<String, Integer> fieldsMap;
+    private final Charset effectiveCharset;
+    private final int recordSize;
+    private final int availableRecords;     // количество записей, реально присутствующих в файле.
+    private final int windowRecords;        // максимальное количество записей в одном отображаемом в память фрагменте файла.
+    private final byte[] recordBuf;
+    private boolean[] projected;            // признаки использования полей. null - используются все поля.
+    private int projectionStart;            // смещение в записи начала фрагмента, содержащего используемые поля.
+    private int projectionEnd;              // смещение в записи конца фрагмента, содержащего используемые поля.
+    private MappedByteBuffer window;        // отображенный в память фрагмент файла.
+    private int windowFirst;                // индекс (начиная с 0) первой записи в отображенном фрагменте.
+    private int windowCount;                // количество записей в отображенном фрагменте.
+    private int currentRecord;
+    private boolean positioned;
+
+    public DBFFileReader(final File file) throws IOException, DBFException {
+        this(file, Charset.defaultCharset());
+    }
+
+    /**
+     * Открывает указанный .DBF файл на чтение. Немедленно будет прочитан заголовок таблицы и получена вся информация о ее структуре.
+     *
+     * @param file           .DBF файл.
+     * @param defaultCharset кодировка в которой будет выполняться попытка чтения содержимого .DBF файла, в случае если программа не сможет определить кодировку файла самостоятельно.
+     * @throws IOException  в случае каких-либо проблем при чтении данных.
+     * @throws DBFException в случае каких-либо проблем при анализе прочтенных данных.
+     */
+    public DBFFileReader(final File file, final Charset defaultCharset) throws IOException, DBFException {
+        this(file, defaultCharset, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param file           .DBF файл.
+     * @param defaultCharset кодировка в которой будет выполняться попытка чтения содержимого .DBF файла, в случае если программа не сможет определить кодировку файла самостоятельно.
+     * @param windowSize     максимальный размер (в байтах) фрагментов файла, отображаемых в память.
+     * @throws IOException  в случае каких-либо проблем при чтении данных.
+     * @throws DBFException в случае каких-либо проблем при анализе прочтенных данных.
+     */
+    public DBFFileReader(final File file, final Charset defaultCharset, final int windowSize) throws IOException, DBFException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final byte[] data1 = new byte[32];
+            if (read(data1, 0) < data1.length)
+                throw new DBFException("Premature end of stream: can't read DBF header.");
+            this.descriptor = new TableDescriptor(data1);
+            if (descriptor.getHeaderSize() - 33 <= 0 || ((descriptor.getHeaderSize() - 1) % 32) != 0)
+                throw new DBFException("Inconsistent dbf file format: incorrect header size.", 8);
+            this.effectiveCharset = descriptor.getLanguageDriver() != LanguageDriver.UNKNOWN ? descriptor.getLanguageDriver().getCharset() : defaultCharset;
+
+            final byte[] data2 = new byte[descriptor.getHeaderSize() - 32];
+            if (read(data2, 32) < data2.length)
+                throw new DBFException("Premature end of stream: can't read DBF fields headers.");
+            this.fields = DBFReader.readFields(data2, effectiveCharset);
+        } catch (IOException | DBFException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.fieldsMap = new HashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            fieldsMap.put(fields[i].getName(), i);
+        }
+        this.recordSize = descriptor.getRecordSize();
+        this.availableRecords = (int) Math.min(descriptor.getRecordsCount(), Math.max(0, (channel.size() - descriptor.getHeaderSize()) / recordSize));
+        this.windowRecords = Math.max(1, windowSize / recordSize);
+        this.recordBuf = new byte[recordSize];
+        this.projectionStart = 0;
+        this.projectionEnd = recordSize;
+        this.currentRecord = 0;
+        this.positioned = false;
+    }
+
+    private int read(final byte[] data, final long position) throws IOException {
+        final ByteBuffer buf = ByteBuffer.wrap(data);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0)
+                break;
+        }
+        return buf.position();
+    }
+
+    /**
+     * Возввращает список всех полей в том порядке в котором они определены в таблице.
+     *
+     * @return список полей таблицы.
+     */
+    public Field[] getFields() {
+        return fields;
+    }
+
+    /**
+     * Возвращает порядковый номер (начиная с 0) поля с указанным именем. Обращение к значениям полей по их номеру выполняется быстрее чем по имени.
+     *
+     * @param fieldName имя поля.
+     * @return порядковый номер поля в таблице.
+     * @throws DBFException если поле с таким именем отсутствует в таблице.
+     */
+    public int getFieldIndex(final String fieldName) throws DBFException {
+        final Integer index = fieldsMap.get(fieldName);
+        if (index == null)
+            throw new DBFException("Field '" + fieldName + "' not found");
+        return index;
+    }
+
+    /**
+     * Возвращает кодировку используемую при чтении данных из таблцы.
+     *
+     * @return применяемая кодировка.
+     */
+    public Charset getCharset() {
+        return effectiveCharset;
+    }
+
+    /**
+     * Возвращает общее количество строк в таблице (инфорамция получается из заголовка таблицы).
+     *
+     * @return общее количество строк в таблице.
+     */
+    public int getRecordsCount() {
+        return descriptor.getRecordsCount();
+    }
+
+    /**
+     * Возвращает размер (в байтах) одной записи таблицы (инфорамция получается из заголовка таблицы).
+     *
+     * @return размер записи, включая байт с признаком удаления.
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Порядковый номер текущей обрабатываемой строки. Первая строка идет с номером <code>1</code>.
+     *
+     * @return порядковый номер текущей обрабатываемой строки.
+     */
+    public int getCurrentRecord() {
+        return currentRecord;
+    }
+
+    /**
+     * Ограничивает набор полей, значения которых будут доступны в последующих записях. Обращение к значениям остальных полей будет приводить к ошибке.
+     *
+     * @param fieldNames имена используемых полей. Если не указано ни одного поля, то доступными становятся все поля таблицы.
+     * @throws IOException  в случае каких-либо проблем при повторном чтении текущей записи.
+     * @throws DBFException если какое-либо из полей отсутствует в таблице.
+     */
+    public void setProjection(final String... fieldNames) throws IOException, DBFException {
+        if (fieldNames == null || fieldNames.length == 0) {
+            projected = null;
+            projectionStart = 0;
+            projectionEnd = recordSize;
+        } else {
+            final boolean[] flags = new boolean[fields.length];
+            int start = recordSize, end = 1;
+            for (String fieldName : fieldNames) {
+                final int index = getFieldIndex(fieldName);
+                final FieldDescriptor fd = fields[index].descriptor;
+                flags[index] = true;
+                start = Math.min(start, fd.getFieldOffset());
+                end = Math.max(end, fd.getFieldOffset() + fd.getSize());
+            }
+            projected = flags;
+            projectionStart = start;
+            projectionEnd = end;
+        }
+        if (positioned)
+            load(currentRecord - 1);
+    }
+
+    /**
+     * Переходит к записи с указанным номером.
+     *
+     * @param recordNo порядковый номер записи (начиная с 1).
+     * @return <code>true</code> если запись с таким номером существует, <code>false</code> если номер превышает количество записей в таблице.
+     * @throws IOException  в случае каких-либо проблем при чтении данных.
+     * @throws DBFException в случае если файл содержит меньше записей чем указано в его заголовке.
+     */
+    public boolean seek(final int recordNo) throws IOException, DBFException {
+        if (recordNo < 1)
+            throw new IllegalArgumentException("Illegal record number: " + recordNo);
+        if (recordNo > descriptor.getRecordsCount()) {
+            currentRecord = descriptor.getRecordsCount();
+            positioned = false;
+            return false;
+        }
+        currentRecord = recordNo;
+        positioned = false;
+        load(recordNo - 1);
+        positioned = true;
+        return true;
+    }
+
+    /**
+     * Переходит к следующей записи таблицы.
+     *
+     * @return <code>true</code> в случае когда была получена очередная строка данных,
+     *         <code>false</code> после того как была прочитана последняя строка данных.
+     * @throws IOException  в случае каких-либо проблем при чтении данных.
+     * @throws DBFException в случае если файл содержит меньше записей чем указано в его заголовке.
+     */
+    public boolean next() throws IOException, DBFException {
+        if (currentRecord >= descriptor.getRecordsCount()) {
+            positioned = false;
+            return false;
+        }
+        return seek(currentRecord + 1);
+    }
+
+    private void load(final int index) throws IOException, DBFException {
+        if (index >= availableRecords)
+            throw new DBFException("Premature end of stream: wrong information about total records count");
+        if (index < windowFirst || index >= windowFirst + windowCount || window == null) {
+            windowFirst = index;
+            windowCount = Math.min(windowRecords, availableRecords - index);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, descriptor.getHeaderSize() + (long) index * recordSize, (long) windowCount * recordSize);
+        }
+        final int base = (index - windowFirst) * recordSize;
+        recordBuf[0] = window.get(base);
+        window.position(base + projectionStart);
+        window.get(recordBuf, projectionStart, projectionEnd - projectionStart);
+    }
+
+    /**
+     * Возвращает <code>true</code> если текущая строка была помечена как удаленная.
+     *
+     * @return <code>true</code>  если текущая строка помечена как удаленная.
+     * @throws DBFException в случае если текущая запись не определена.
+     */
+    public boolean isRecordDeleted() throws DBFException {
+        if (!positioned)
+            throw new DBFException("Illegal state");
+        return recordBuf[0] == 0x2A;
+    }
+
+    /**
+     * Проверяет отсутствие значения указанного поля в текущей записи.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @return <code>true</code> если значение поля не задано.
+     * @throws DBFException в случае если текущая запись не определена или поле недоступно.
+     */
+    public boolean isNull(final int fieldNum) throws DBFException {
+        return field(fieldNum).isEmpty(recordBuf);
+    }
+
+    /**
+     * Возвращает значение указанного поля в виде целого числа. Значение разбирается непосредственно из байтов записи.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @return значение поля или <code>0</code> если значение не задано.
+     * @throws DBFException в случае если значение поля не может быть преобразовано в целое число.
+     */
+    public int getInt(final int fieldNum) throws DBFException {
+        final long value = field(fieldNum).getAsPrimitiveLong(recordBuf);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw new DBFException("Can't convert value " + value + " to integer");
+        return (int) value;
+    }
+
+    /**
+     * Возвращает значение указанного поля в виде целого числа. Значение разбирается непосредственно из байтов записи.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @return значение поля или <code>0</code> если значение не задано.
+     * @throws DBFException в случае если значение поля не может быть преобразовано в целое число.
+     */
+    public long getLong(final int fieldNum) throws DBFException {
+        return field(fieldNum).getAsPrimitiveLong(recordBuf);
+    }
+
+    /**
+     * Возвращает значение указанного поля в виде числа с плавающей точкой. Значение разбирается непосредственно из байтов записи.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @return значение поля или <code>0</code> если значение не задано.
+     * @throws DBFException в случае если значение поля не может быть преобразовано в число.
+     */
+    public double getDouble(final int fieldNum) throws DBFException {
+        return field(fieldNum).getAsPrimitiveDouble(recordBuf);
+    }
+
+    public Object getObject(final String fieldName) throws DBFException {
+        return field(getFieldIndex(fieldName)).getAsObject(recordBuf);
+    }
+
+    public Object getObject(final int fieldNum) throws DBFException {
+        return field(fieldNum).getAsObject(recordBuf);
+    }
+
+    public String getString(final String fieldName) throws DBFException {
+        return field(getFieldIndex(fieldName)).getAsString(recordBuf);
+    }
+
+    public String getString(final int fieldNum) throws DBFException {
+        return field(fieldNum).getAsString(recordBuf);
+    }
+
+    public Boolean getBoolean(final String fieldName) throws DBFException {
+        return field(getFieldIndex(fieldName)).getAsBoolean(recordBuf);
+    }
+
+    public Boolean getBoolean(final int fieldNum) throws DBFException {
+        return field(fieldNum).getAsBoolean(recordBuf);
+    }
+
+    public Integer getInteger(final String fieldName) throws DBFException {
+        return field(getFieldIndex(fieldName)).getAsInteger(recordBuf);
+    }
+
+    public Integer getInteger(final int fieldNum) throws DBFException {
+        return field(fieldNum).getAsInteger(recordBuf);
+    }
+
+    public BigDecimal getBigDecimal(final String fieldName) throws DBFException {
+        return field(getFieldIndex(fieldName)).getAsBigDecimal(recordBuf);
+    }
+
+    public BigDecimal getBigDecimal(final int fieldNum) throws DBFException {
+        return field(fieldNum).getAsBigDecimal(recordBuf);
+    }
+
+    public Date getDate(final String fieldName) throws DBFException {
+        return field(getFieldIndex(fieldName)).getAsDate(recordBuf);
+    }
+
+    public Date getDate(final int fieldNum) throws DBFException {
+        return field(fieldNum).getAsDate(recordBuf);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private Field field(final int fieldNum) throws DBFException {
+        if (!positioned)
+            throw new DBFException("Illegal state");
+        if (fieldNum < 0 || fieldNum >= fields.length)
+            throw new DBFException("Field with index '" + fieldNum + "' not exists");
+        if (projected != null && !projected[fieldNum])
+            throw new DBFException("Field '" + fields[fieldNum].getName() + "' is not included in projection");
+        return fields[fieldNum];
+    }
+}
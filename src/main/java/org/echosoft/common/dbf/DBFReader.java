@@ -49,13 +49,33 @@ public class DBFReader {
             throw new DBFException("Inconsistent dbf file format: incorrect header size.", 8);
         this.effectiveCharset = descriptor.getLanguageDriver() != LanguageDriver.UNKNOWN ? descriptor.getLanguageDriver().getCharset() : defaultCharset;
 
-        this.fields = new Field[(descriptor.getHeaderSize() - 33) / 32];
         final byte[] data2 = new byte[descriptor.getHeaderSize() - 32];
         if (StreamUtil.readFromStream(stream, data2) < data2.length)
             throw new DBFException("Premature end of stream: can't read DBF fields headers.");
+        this.fields = readFields(data2, effectiveCharset);
+
+        this.fieldsMap = new HashMap<String, Field>();
+        for (Field field : fields) {
+            fieldsMap.put(field.getName(), field);
+        }
+        recordBuf = new byte[descriptor.getRecordSize()];
+        currentRecord = 0;
+        positioned = false;
+    }
+
+    /**
+     * Разбирает описания полей таблицы, следующие в .DBF файле непосредственно за первыми 32 байтами заголовка.
+     *
+     * @param data    оставшаяся часть заголовка таблицы (начиная с 33 байта).
+     * @param charset кодировка, используемая в таблице.
+     * @return список полей таблицы.
+     * @throws DBFException в случае некорректного формата заголовка.
+     */
+    static Field[] readFields(final byte[] data, final Charset charset) throws DBFException {
+        final Field[] fields = new Field[(data.length - 1) / 32];
         int offset = 0, fieldOffset = 1;
         for (int i = 0, cnt = fields.length; i < cnt; i++) {
-            final FieldDescriptor fd = new FieldDescriptor(data2, offset, effectiveCharset, fieldOffset);
+            final FieldDescriptor fd = new FieldDescriptor(data, offset, charset, fieldOffset);
             fieldOffset += fd.getSize();
             switch (fd.getType()) {
                 case CHAR: {
@@ -81,16 +101,9 @@ public class DBFReader {
             }
             offset += 32;
         }
-        if (data2[offset] != 0xD)
+        if (data[offset] != 0xD)
             throw new DBFException("Inconsistent DBF file format", 32 + offset);
-
-        this.fieldsMap = new HashMap<String, Field>();
-        for (Field field : fields) {
-            fieldsMap.put(field.getName(), field);
-        }
-        recordBuf = new byte[descriptor.getRecordSize()];
-        currentRecord = 0;
-        positioned = false;
+        return fields;
     }
 
     /**
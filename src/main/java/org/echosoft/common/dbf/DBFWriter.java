@@ -0,0 +1,593 @@
+package org.echosoft.common.dbf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.echosoft.common.utils.NumberUtil;
+
+/**
+ * <p>Формирует .DBF файл (в формате dBASE III) с заданной структурой.</p>
+ * <p>Поддерживаются только поля типов, определенных в dBASE III: символьные, числовые, даты и логические. Memo-поля и расширения формата
+ * dBASE IV и более поздних версий (поля типа <code>F</code>, флаги индексов и т.д.) не поддерживаются, в заголовке файла всегда указывается
+ * версия <code>0x03</code>.</p>
+ * <p>Сначала с помощью методов <code>add*Field</code> описывается структура таблицы, после чего для каждой записи устанавливаются значения ее полей
+ * (методы <code>set*</code>, поля идентифицируются своими порядковыми номерами) и вызывается метод {@link #writeRecord()}. Значения полей, которые
+ * не были установлены, остаются пустыми. Значения чисел, дат и логических величин кодируются непосредственно в буфер записи, без создания
+ * промежуточных строк. Сформированные записи накапливаются в буфере большого размера, который переносится в файл по мере заполнения.
+ * Количество записей в заголовке таблицы корректируется при закрытии файла.</p>
+ * Пример использования:<br/>
+ * <pre>
+ *  try (DBFWriter writer = new DBFWriter(file, Charset.forName("cp866"))) {
+ *      writer.addNumericField("ID", 9, 0);
+ *      writer.addCharField("NAME", 40);
+ *      writer.addDateField("CREATED");
+ *      for (Order order : orders) {
+ *          writer.setLong(0, order.getId());
+ *          writer.setString(1, order.getName());
+ *          writer.setDate(2, order.getCreated());
+ *          writer.writeRecord();
+ *      }
+ *  }
+ * </pre>
+ * <strong>Внимание!</strong> Экземпляры данного класса не являются потокобезопасными.
+ *
+ * @author Anton Sharapov
+ */
+public class DBFWriter implements Closeable, AutoCloseable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_RECORD_SIZE = 65535;
+    private static final double MAX_SCALED_DOUBLE = 1e15;   // до этого значения дробная часть double представлена с точностью не хуже 1/8.
+
+    /**
+     * Описание поля создаваемой таблицы.
+     */
+    private static final class Column {
+        private final String name;
+        private final FieldType type;
+        private final int size;
+        private final int precision;
+        private final int offset;
+
+        private Column(final String name, final FieldType type, final int size, final int precision, final int offset) {
+            this.name = name;
+            this.type = type;
+            this.size = size;
+            this.precision = precision;
+            this.offset = offset;
+        }
+    }
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final LanguageDriver languageDriver;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer out;               // буфер с еще не перенесенными в файл записями.
+    private final List<Column> columns;
+    private final Map<String, Integer> columnsMap;
+    private Column[] fields;                    // поля таблицы (определяются после того как будет начата запись в файл данных).
+    private byte[] record;                      // содержимое текущей записи.
+    private ByteBuffer recordBuf;
+    private int recordSize;
+    private int recordsCount;
+    private Calendar calendar;
+    private boolean closed;
+
+    public DBFWriter(final File file, final Charset charset) throws IOException {
+        this(file, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Создает новый (или перезаписывает существующий) .DBF файл.
+     *
+     * @param file       .DBF файл.
+     * @param charset    кодировка в которой будут сохраняться строковые значения. Если она соответствует одному из известных {@link LanguageDriver},
+     *                   то ее код будет указан в заголовке таблицы.
+     * @param bufferSize размер (в байтах) буфера, в котором накапливаются записи перед помещением их в файл.
+     * @throws IOException в случае каких-либо проблем при создании файла.
+     */
+    public DBFWriter(final File file, final Charset charset, final int bufferSize) throws IOException {
+        if (file == null || charset == null)
+            throw new IllegalArgumentException("File and charset must be specified");
+        LanguageDriver driver = LanguageDriver.UNKNOWN;
+        for (LanguageDriver ld : LanguageDriver.values()) {
+            if (ld != LanguageDriver.UNKNOWN && ld.getCharset().equals(charset)) {
+                driver = ld;
+                break;
+            }
+        }
+        this.languageDriver = driver;
+        this.charset = charset;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.out = ByteBuffer.allocate(Math.max(bufferSize, 4096));
+        this.columns = new ArrayList<>();
+        this.columnsMap = new HashMap<>();
+        this.recordSize = 1;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * @return кодировка в которой сохраняются строковые значения.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Добавляет в таблицу строковое поле (тип <code>C</code>).
+     *
+     * @param name имя поля (не более 10 символов ASCII).
+     * @param size размер поля в байтах (от 1 до 254).
+     * @return порядковый номер поля в таблице (начиная с 0).
+     * @throws DBFException если структура таблицы уже не может быть изменена или параметры поля некорректны.
+     */
+    public int addCharField(final String name, final int size) throws DBFException {
+        if (size < 1 || size > 254)
+            throw new DBFException("Illegal size of field '" + name + "': " + size);
+        return addField(name, FieldType.CHAR, size, 0);
+    }
+
+    /**
+     * Добавляет в таблицу числовое поле (тип <code>N</code>).
+     *
+     * @param name      имя поля (не более 10 символов ASCII).
+     * @param size      общее количество символов в значении поля, включая знак и десятичную точку (от 1 до 38).
+     * @param precision количество знаков после десятичной точки.
+     * @return порядковый номер поля в таблице (начиная с 0).
+     * @throws DBFException если структура таблицы уже не может быть изменена или параметры поля некорректны.
+     */
+    public int addNumericField(final String name, final int size, final int precision) throws DBFException {
+        if (size < 1 || size > 38 || precision < 0 || (precision > 0 && precision > size - 2))
+            throw new DBFException("Illegal size or precision of field '" + name + "': " + size + "," + precision);
+        return addField(name, FieldType.NUMERIC, size, precision);
+    }
+
+    /**
+     * Добавляет в таблицу поле с датой (тип <code>D</code>).
+     *
+     * @param name имя поля (не более 10 символов ASCII).
+     * @return порядковый номер поля в таблице (начиная с 0).
+     * @throws DBFException если структура таблицы уже не может быть изменена или параметры поля некорректны.
+     */
+    public int addDateField(final String name) throws DBFException {
+        return addField(name, FieldType.DATE, 8, 0);
+    }
+
+    /**
+     * Добавляет в таблицу логическое поле (тип <code>L</code>).
+     *
+     * @param name имя поля (не более 10 символов ASCII).
+     * @return порядковый номер поля в таблице (начиная с 0).
+     * @throws DBFException если структура таблицы уже не может быть изменена или параметры поля некорректны.
+     */
+    public int addLogicalField(final String name) throws DBFException {
+        return addField(name, FieldType.LOGICAL, 1, 0);
+    }
+
+    private int addField(final String name, final FieldType type, final int size, final int precision) throws DBFException {
+        if (fields != null)
+            throw new DBFException("Table structure can't be changed after the first record was written");
+        if (name == null || name.isEmpty() || name.length() > 10)
+            throw new DBFException("Illegal field name: '" + name + "'");
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c <= ' ' || c >= 0x7F)
+                throw new DBFException("Illegal field name: '" + name + "'");
+        }
+        if (columnsMap.containsKey(name))
+            throw new DBFException("Duplicate field name: '" + name + "'");
+        if (recordSize + size > MAX_RECORD_SIZE)
+            throw new DBFException("Record size exceeds " + MAX_RECORD_SIZE + " bytes");
+        columns.add(new Column(name, type, size, precision, recordSize));
+        columnsMap.put(name, columns.size() - 1);
+        recordSize += size;
+        return columns.size() - 1;
+    }
+
+    /**
+     * Возвращает порядковый номер (начиная с 0) поля с указанным именем.
+     *
+     * @param fieldName имя поля.
+     * @return порядковый номер поля в таблице.
+     * @throws DBFException если поле с таким именем отсутствует в таблице.
+     */
+    public int getFieldIndex(final String fieldName) throws DBFException {
+        final Integer index = columnsMap.get(fieldName);
+        if (index == null)
+            throw new DBFException("Field '" + fieldName + "' not found");
+        return index;
+    }
+
+    /**
+     * @return количество записей, уже помещенных в таблицу.
+     */
+    public int getRecordsCount() {
+        return recordsCount;
+    }
+
+    /**
+     * Очищает значение указанного поля в текущей записи.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @throws IOException  в случае проблем при записи заголовка таблицы.
+     * @throws DBFException если поле с таким номером отсутствует.
+     */
+    public void setNull(final int fieldNum) throws IOException, DBFException {
+        final Column column = column(fieldNum);
+        Arrays.fill(record, column.offset, column.offset + column.size, (byte) ' ');
+    }
+
+    /**
+     * Устанавливает значение строкового поля в текущей записи. Значения, не помещающиеся в поле, усекаются.
+     * Для полей других типов значение сначала преобразуется в соответствующий тип.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @param value    значение поля или <code>null</code>.
+     * @throws IOException  в случае проблем при записи заголовка таблицы.
+     * @throws DBFException если поле с таким номером отсутствует или значение не может быть преобразовано в тип поля.
+     */
+    public void setString(final int fieldNum, final CharSequence value) throws IOException, DBFException {
+        final Column column = column(fieldNum);
+        if (value == null) {
+            Arrays.fill(record, column.offset, column.offset + column.size, (byte) ' ');
+            return;
+        }
+        switch (column.type) {
+            case CHAR: {
+                recordBuf.limit(column.offset + column.size).position(column.offset);
+                encoder.reset();
+                encoder.encode(CharBuffer.wrap(value), recordBuf, true);     // при переполнении буфера значение усекается.
+                Arrays.fill(record, recordBuf.position(), column.offset + column.size, (byte) ' ');
+                break;
+            }
+            case NUMERIC: {
+                try {
+                    setBigDecimal(fieldNum, new BigDecimal(value.toString().trim()));
+                } catch (NumberFormatException e) {
+                    throw new DBFException("Can't convert '" + value + "' to number", e);
+                }
+                break;
+            }
+            case LOGICAL: {
+                setBoolean(fieldNum, value.length() == 0 ? null : Boolean.valueOf(value.toString()));
+                break;
+            }
+            default:
+                throw new DBFException("Can't assign string to field '" + column.name + "'");
+        }
+    }
+
+    /**
+     * Устанавливает целочисленное значение числового поля в текущей записи.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @param value    значение поля.
+     * @throws IOException  в случае проблем при записи заголовка таблицы.
+     * @throws DBFException если поле с таким номером отсутствует, не является числовым или значение не помещается в поле.
+     */
+    public void setLong(final int fieldNum, final long value) throws IOException, DBFException {
+        final Column column = column(fieldNum);
+        if (column.type == FieldType.LOGICAL) {
+            record[column.offset] = value != 0 ? (byte) 'T' : (byte) 'F';
+            return;
+        }
+        if (column.type != FieldType.NUMERIC)
+            throw new DBFException("Can't assign number to field '" + column.name + "'");
+        if (column.precision == 0) {
+            formatNumber(column, value);
+        } else
+        if (column.precision < NumberUtil.MAX_LONG_POW10 && value > -NumberUtil.longPow10(NumberUtil.MAX_LONG_POW10 - column.precision)
+                && value < NumberUtil.longPow10(NumberUtil.MAX_LONG_POW10 - column.precision)) {
+            formatNumber(column, value * NumberUtil.longPow10(column.precision));
+        } else {
+            setBigDecimal(fieldNum, BigDecimal.valueOf(value));
+        }
+    }
+
+    /**
+     * Устанавливает значение числового поля в текущей записи. Значение округляется до количества знаков после точки, заданного для поля.
+     * Округление выполняется так же, как и для <code>BigDecimal.valueOf(value)</code> в методе {@link #setBigDecimal(int, BigDecimal)}.
+     * Как правило, значение масштабируется и округляется без создания промежуточных объектов, к {@link BigDecimal} метод прибегает лишь
+     * для очень больших значений и для значений, оказавшихся (с учетом погрешности двоичного представления) на границе округления.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @param value    значение поля.
+     * @throws IOException  в случае проблем при записи заголовка таблицы.
+     * @throws DBFException если поле с таким номером отсутствует, не является числовым или значение не помещается в поле.
+     */
+    public void setDouble(final int fieldNum, final double value) throws IOException, DBFException {
+        final Column column = column(fieldNum);
+        if (column.type != FieldType.NUMERIC)
+            throw new DBFException("Can't assign number to field '" + column.name + "'");
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            throw new DBFException("Can't assign " + value + " to field '" + column.name + "'");
+        if (column.precision <= NumberUtil.MAX_DOUBLE_POW10) {
+            final double scaled = Math.abs(value) * NumberUtil.doublePow10(column.precision);
+            if (scaled < MAX_SCALED_DOUBLE) {
+                final double floor = Math.floor(scaled);
+                final double fraction = scaled - floor;
+                // десятичное представление value отличается от двоичного менее чем на ulp, поэтому вдали от середины между соседними
+                // целыми результат округления совпадает с результатом BigDecimal.valueOf(value).setScale(precision, HALF_UP).
+                if (Math.abs(fraction - 0.5) > 4 * Math.ulp(scaled)) {
+                    final long unscaled = fraction > 0.5 ? (long) floor + 1 : (long) floor;
+                    formatNumber(column, value < 0 ? -unscaled : unscaled);
+                    return;
+                }
+            }
+        }
+        if (value == Math.rint(value) && Math.abs(value) < (1L << 53)) {
+            // целое число не требует округления, поэтому результат совпадает с результатом BigDecimal.setScale(...).
+            setLong(fieldNum, (long) value);
+            return;
+        }
+        setBigDecimal(fieldNum, BigDecimal.valueOf(value));
+    }
+
+    /**
+     * Устанавливает значение числового поля в текущей записи. Значение округляется до количества знаков после точки, заданного для поля.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @param value    значение поля или <code>null</code>.
+     * @throws IOException  в случае проблем при записи заголовка таблицы.
+     * @throws DBFException если поле с таким номером отсутствует, не является числовым или значение не помещается в поле.
+     */
+    public void setBigDecimal(final int fieldNum, BigDecimal value) throws IOException, DBFException {
+        final Column column = column(fieldNum);
+        if (value == null) {
+            Arrays.fill(record, column.offset, column.offset + column.size, (byte) ' ');
+            return;
+        }
+        if (column.type != FieldType.NUMERIC)
+            throw new DBFException("Can't assign number to field '" + column.name + "'");
+        value = value.setScale(column.precision, RoundingMode.HALF_UP);
+        if (value.precision() <= 18) {
+            formatNumber(column, value.unscaledValue().longValue());
+            return;
+        }
+        final String text = value.toPlainString();
+        if (text.length() > column.size)
+            throw new DBFException("Value " + text + " doesn't fit into field '" + column.name + "'");
+        final int start = column.offset + column.size - text.length();
+        Arrays.fill(record, column.offset, start, (byte) ' ');
+        for (int i = 0; i < text.length(); i++) {
+            record[start + i] = (byte) text.charAt(i);
+        }
+    }
+
+    /**
+     * Устанавливает значение поля с датой в текущей записи.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @param value    значение поля или <code>null</code>.
+     * @throws IOException  в случае проблем при записи заголовка таблицы.
+     * @throws DBFException если поле с таким номером отсутствует или не является полем с датой.
+     */
+    public void setDate(final int fieldNum, final Date value) throws IOException, DBFException {
+        final Column column = column(fieldNum);
+        if (column.type != FieldType.DATE)
+            throw new DBFException("Can't assign date to field '" + column.name + "'");
+        if (value == null) {
+            Arrays.fill(record, column.offset, column.offset + column.size, (byte) ' ');
+            return;
+        }
+        Calendar cal = calendar;
+        if (cal == null)
+            calendar = cal = Calendar.getInstance();
+        cal.setTime(value);
+        final int year = cal.get(Calendar.YEAR);
+        if (year > 9999)
+            throw new DBFException("Can't assign date " + value + " to field '" + column.name + "'");
+        final int date = year * 10000 + (cal.get(Calendar.MONTH) + 1) * 100 + cal.get(Calendar.DAY_OF_MONTH);
+        formatDigits(record, column.offset, 8, date);
+    }
+
+    /**
+     * Устанавливает значение логического поля в текущей записи.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @param value    значение поля или <code>null</code>.
+     * @throws IOException  в случае проблем при записи заголовка таблицы.
+     * @throws DBFException если поле с таким номером отсутствует или не является логическим полем.
+     */
+    public void setBoolean(final int fieldNum, final Boolean value) throws IOException, DBFException {
+        final Column column = column(fieldNum);
+        if (column.type != FieldType.LOGICAL)
+            throw new DBFException("Can't assign boolean to field '" + column.name + "'");
+        record[column.offset] = value == null ? (byte) ' ' : value ? (byte) 'T' : (byte) 'F';
+    }
+
+    /**
+     * Устанавливает значение поля в текущей записи, выбирая способ кодирования по типу значения.
+     *
+     * @param fieldNum порядковый номер поля (начиная с 0).
+     * @param value    значение поля или <code>null</code>.
+     * @throws IOException  в случае проблем при записи заголовка таблицы.
+     * @throws DBFException если поле с таким номером отсутствует или значение не может быть преобразовано в тип поля.
+     */
+    public void setObject(final int fieldNum, final Object value) throws IOException, DBFException {
+        if (value == null) {
+            setNull(fieldNum);
+        } else
+        if (value instanceof CharSequence) {
+            setString(fieldNum, (CharSequence) value);
+        } else
+        if (value instanceof Boolean) {
+            setBoolean(fieldNum, (Boolean) value);
+        } else
+        if (value instanceof Date) {
+            setDate(fieldNum, (Date) value);
+        } else
+        if (value instanceof BigDecimal) {
+            setBigDecimal(fieldNum, (BigDecimal) value);
+        } else
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            setLong(fieldNum, ((Number) value).longValue());
+        } else
+        if (value instanceof Number) {
+            setDouble(fieldNum, ((Number) value).doubleValue());
+        } else
+            throw new DBFException("Unsupported value type: " + value.getClass().getName());
+    }
+
+    /**
+     * Помещает текущую запись в таблицу. Значения полей следующей записи изначально не заданы.
+     *
+     * @throws IOException  в случае проблем при записи данных в файл.
+     * @throws DBFException если структура таблицы не определена.
+     */
+    public void writeRecord() throws IOException, DBFException {
+        ensureStarted();
+        if (out.remaining() < recordSize)
+            flushBuffer();
+        if (recordSize > out.capacity()) {
+            recordBuf.clear();
+            writeFully(recordBuf);
+        } else {
+            out.put(record, 0, recordSize);
+        }
+        Arrays.fill(record, (byte) ' ');
+        recordsCount++;
+    }
+
+    /**
+     * Завершает формирование таблицы: помещает в файл все накопленные записи, признак конца файла и корректирует количество записей в заголовке.
+     *
+     * @throws IOException в случае проблем при записи данных в файл.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            if (fields == null)
+                writeHeader();
+            if (!out.hasRemaining())
+                flushBuffer();
+            out.put((byte) 0x1A);
+            flushBuffer();
+            final ByteBuffer counter = ByteBuffer.allocate(4);
+            counter.put(0, (byte) recordsCount).put(1, (byte) (recordsCount >>> 8)).put(2, (byte) (recordsCount >>> 16)).put(3, (byte) (recordsCount >>> 24));
+            while (counter.hasRemaining()) {
+                channel.write(counter, 4 + counter.position());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+
+    private Column column(final int fieldNum) throws IOException, DBFException {
+        if (fields == null)
+            ensureStarted();
+        if (fieldNum < 0 || fieldNum >= fields.length)
+            throw new DBFException("Field with index '" + fieldNum + "' not exists");
+        return fields[fieldNum];
+    }
+
+    private void ensureStarted() throws IOException, DBFException {
+        if (closed)
+            throw new IOException("Writer closed");
+        if (fields != null)
+            return;
+        if (columns.isEmpty())
+            throw new DBFException("Table structure is not defined");
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        fields = columns.toArray(new Column[columns.size()]);
+        record = new byte[recordSize];
+        Arrays.fill(record, (byte) ' ');
+        recordBuf = ByteBuffer.wrap(record);
+        final int headerSize = 32 + 32 * fields.length + 1;
+        final ByteBuffer header = ByteBuffer.allocate(headerSize);
+        final Calendar cal = Calendar.getInstance();
+        header.put(0, (byte) 0x03);
+        header.put(1, (byte) (cal.get(Calendar.YEAR) - 1900));
+        header.put(2, (byte) (cal.get(Calendar.MONTH) + 1));
+        header.put(3, (byte) cal.get(Calendar.DAY_OF_MONTH));
+        header.put(8, (byte) headerSize).put(9, (byte) (headerSize >>> 8));
+        header.put(10, (byte) recordSize).put(11, (byte) (recordSize >>> 8));
+        header.put(29, (byte) languageDriver.getCode());
+        for (int i = 0; i < fields.length; i++) {
+            final Column column = fields[i];
+            final int offset = 32 + 32 * i;
+            for (int j = 0; j < column.name.length(); j++) {
+                header.put(offset + j, (byte) column.name.charAt(j));
+            }
+            header.put(offset + 11, (byte) column.type.getCode());
+            header.put(offset + 16, (byte) column.size);
+            header.put(offset + 17, (byte) column.precision);
+        }
+        header.put(headerSize - 1, (byte) 0x0D);
+        writeFully(header);
+    }
+
+    private void flushBuffer() throws IOException {
+        out.flip();
+        writeFully(out);
+        out.clear();
+    }
+
+    private void writeFully(final ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /**
+     * Помещает в поле число <code>unscaled * 10<sup>-precision</sup></code>, выравнивая его по правому краю.
+     */
+    private void formatNumber(final Column column, final long unscaled) throws DBFException {
+        final int scale = column.precision;
+        long v = unscaled > 0 ? -unscaled : unscaled;      // работаем с отрицательными значениями чтобы корректно обрабатывать Long.MIN_VALUE
+        int digits = 1;
+        for (long t = v; t <= -10; t /= 10) digits++;
+        if (digits <= scale)
+            digits = scale + 1;                             // ведущий ноль перед точкой и ноли после нее
+        final int width = digits + (scale > 0 ? 1 : 0) + (unscaled < 0 ? 1 : 0);
+        if (width > column.size)
+            throw new DBFException("Value doesn't fit into field '" + column.name + "'");
+        // размер проверен заранее, поэтому в случае ошибки ранее заданное значение поля остается нетронутым.
+        final byte[] rec = record;
+        final int start = column.offset;
+        int pos = start + column.size;
+        for (int i = 0; i < digits; i++) {
+            if (i == scale && scale > 0)
+                rec[--pos] = '.';
+            final long q = v / 10;
+            rec[--pos] = (byte) ('0' + (q * 10 - v));
+            v = q;
+        }
+        if (unscaled < 0)
+            rec[--pos] = '-';
+        Arrays.fill(rec, start, pos, (byte) ' ');
+    }
+
+    private static void formatDigits(final byte[] buf, final int offset, final int length, int value) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
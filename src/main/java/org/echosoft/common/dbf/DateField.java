@@ -1,32 +1,51 @@
 package org.echosoft.common.dbf;
 
 import java.math.BigDecimal;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
 
 import org.echosoft.common.utils.StringUtil;
 
 /**
+ * Поле с датой в формате <code>yyyyMMdd</code>. Значение разбирается непосредственно из байтов записи, а для вычисления даты используется
+ * отдельный для каждого потока экземпляр {@link Calendar}, поэтому экземпляры данного класса могут использоваться одновременно из нескольких потоков.
+ *
  * @author Anton Sharapov
  */
 class DateField extends Field {
 
-    private final SimpleDateFormat formatter;
+    private static final ThreadLocal<Calendar> CALENDARS = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance();
+        }
+    };
 
     public DateField(final FieldDescriptor descriptor) {
         super(descriptor);
-        this.formatter = new SimpleDateFormat("yyyyMMdd");
     }
 
     @Override
     protected Object getAsObject(final byte[] recordBuf) throws DBFException {
-        final String str = read(recordBuf);
-        try {
-            return str.isEmpty() ? null : formatter.parse(str);
-        } catch (ParseException e) {
-            throw new DBFException("Illegal field format: " + str);
+        int pos = descriptor.getFieldOffset();
+        int end = pos + descriptor.getSize();
+        while (pos < end && (recordBuf[pos] == ' ' || recordBuf[pos] == 0)) pos++;
+        while (end > pos && (recordBuf[end - 1] == ' ' || recordBuf[end - 1] == 0)) end--;
+        if (pos == end)
+            return null;
+        if (end - pos != 8)
+            throw new DBFException("Illegal field format: " + read(recordBuf));
+        int value = 0;
+        for (int i = pos; i < end; i++) {
+            final int digit = recordBuf[i] - '0';
+            if (digit < 0 || digit > 9)
+                throw new DBFException("Illegal field format: " + read(recordBuf));
+            value = value * 10 + digit;
         }
+        final Calendar cal = CALENDARS.get();
+        cal.clear();
+        cal.set(value / 10000, value / 100 % 100 - 1, value % 100);
+        return cal.getTime();
     }
 
     @Override
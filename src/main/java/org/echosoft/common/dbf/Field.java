@@ -35,6 +35,39 @@ public abstract class Field implements Serializable {
         return new String(recordBuf, descriptor.getFieldOffset(), descriptor.getSize(), descriptor.getCharset()).trim();
     }
 
+    /**
+     * Проверяет отсутствие значения поля в записи (поле заполнено пробелами или нулевыми байтами). Строка при этом не создается.
+     *
+     * @param recordBuf содержимое записи.
+     * @return <code>true</code> если значение поля не задано.
+     */
+    protected boolean isEmpty(final byte[] recordBuf) {
+        for (int i = descriptor.getFieldOffset(), end = i + descriptor.getSize(); i < end; i++) {
+            final byte b = recordBuf[i];
+            if (b != ' ' && b != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает значение поля в виде целого числа. Для отсутствующих значений возвращает <code>0</code>.
+     * Реализация по умолчанию использует {@link #getAsLong(byte[])}, наследники могут разбирать значение непосредственно из байтов записи.
+     */
+    protected long getAsPrimitiveLong(final byte[] recordBuf) throws DBFException {
+        final Long value = getAsLong(recordBuf);
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Возвращает значение поля в виде числа с плавающей точкой. Для отсутствующих значений возвращает <code>0</code>.
+     * Реализация по умолчанию использует {@link #getAsBigDecimal(byte[])}, наследники могут разбирать значение непосредственно из байтов записи.
+     */
+    protected double getAsPrimitiveDouble(final byte[] recordBuf) throws DBFException {
+        final BigDecimal value = getAsBigDecimal(recordBuf);
+        return value != null ? value.doubleValue() : 0;
+    }
+
     protected abstract Object getAsObject(final byte[] recordBuf) throws DBFException;
 
     protected abstract String getAsString(final byte[] recordBuf) throws DBFException;
@@ -37,8 +37,8 @@ class FieldDescriptor implements Serializable {
             }
             case NUMERIC:
             case FLOAT: {
-                size = buf[offset + 16];
-                precision = buf[offset + 17];
+                size = buf[offset + 16] & 0xFF;
+                precision = buf[offset + 17] & 0xFF;
                 if (size > 38 || precision > size)
                     throw new DBFException("Unsupported field size");
                 break;
@@ -53,8 +53,8 @@ class FieldDescriptor implements Serializable {
                 break;
             }
             default: {
-                this.size = buf[offset + 16];
-                this.precision = buf[offset + 17];
+                this.size = buf[offset + 16] & 0xFF;
+                this.precision = buf[offset + 17] & 0xFF;
             }
         }
         this.indexed = buf[offset + 31] == 1;
@@ -63,4 +63,15 @@ class LogicalField extends Field {
     protected Date getAsDate(final byte[] recordBuf) throws DBFException {
         throw new DBFException("Can't convert boolean type to date");
     }
+
+    @Override
+    protected long getAsPrimitiveLong(final byte[] recordBuf) throws DBFException {
+        final byte c = recordBuf[descriptor.getFieldOffset()];
+        return 'T' == c || 't' == c || 'Y' == c || 'y' == c ? 1 : 0;
+    }
+
+    @Override
+    protected double getAsPrimitiveDouble(final byte[] recordBuf) throws DBFException {
+        return getAsPrimitiveLong(recordBuf);
+    }
 }
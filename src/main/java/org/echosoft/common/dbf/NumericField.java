@@ -3,6 +3,8 @@ package org.echosoft.common.dbf;
 import java.math.BigDecimal;
 import java.util.Date;
 
+import org.echosoft.common.utils.NumberUtil;
+
 /**
  * @author Anton Sharapov
  */
@@ -14,15 +16,14 @@ class NumericField extends Field {
 
     @Override
     protected Object getAsObject(final byte[] recordBuf) throws DBFException {
-        final String value = read(recordBuf);
-        if (value.isEmpty())
-            return null;
         if (getPrecision() == 0) {
-            return descriptor.getSize() > 8
-                    ? new Long(value)
-                    : new Integer(value);
+            // условный оператор здесь неприменим: он привел бы Integer и Long к примитивному типу.
+            if (descriptor.getSize() > 8)
+                return getAsLong(recordBuf);
+            return getAsInteger(recordBuf);
         } else {
-            return new BigDecimal(value);
+            final String value = read(recordBuf);
+            return value.isEmpty() ? null : new BigDecimal(value);
         }
     }
 
@@ -47,26 +48,18 @@ class NumericField extends Field {
 
     @Override
     protected Integer getAsInteger(final byte[] recordBuf) throws DBFException {
-        final String value = read(recordBuf);
-        if (value.isEmpty())
+        if (isEmpty(recordBuf))
             return null;
-        try {
-            return new Integer(value);
-        } catch (NumberFormatException e) {
-            throw new DBFException("Can't convert type to integer", e);
-        }
+        final long value = getAsPrimitiveLong(recordBuf);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw new DBFException("Can't convert value '" + read(recordBuf) + "' to integer");
+        return (int) value;
     }
 
     @Override
     protected Long getAsLong(final byte[] recordBuf) throws DBFException {
-        final String value = read(recordBuf);
-        if (value.isEmpty())
-            return null;
-        try {
-            return new Long(value);
-        } catch (NumberFormatException e) {
-            throw new DBFException("Can't convert type to long", e);
-        }
+        // значение разбирается так же, как и в getAsPrimitiveLong(), чтобы оба метода одинаково обрабатывали нулевую дробную часть.
+        return isEmpty(recordBuf) ? null : getAsPrimitiveLong(recordBuf);
     }
 
     @Override
@@ -93,4 +86,91 @@ class NumericField extends Field {
             throw new DBFException("Can't convert type to date", e);
         }
     }
+
+    @Override
+    protected long getAsPrimitiveLong(final byte[] recordBuf) throws DBFException {
+        int i = descriptor.getFieldOffset();
+        final int end = i + descriptor.getSize();
+        while (i < end && isPadding(recordBuf[i])) i++;
+        if (i == end)
+            return 0;
+        final boolean negative = recordBuf[i] == '-';
+        if (negative || recordBuf[i] == '+')
+            i++;
+        // накапливаем отрицательное значение чтобы корректно обрабатывать Long.MIN_VALUE
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multmin = limit / 10;
+        long result = 0;
+        boolean hasDigits = false;
+        for (; i < end; i++) {
+            final int digit = recordBuf[i] - '0';
+            if (digit < 0 || digit > 9)
+                break;
+            if (result < multmin || result * 10 < limit + digit)
+                throw new DBFException("Can't convert value '" + read(recordBuf) + "' to long");
+            result = result * 10 - digit;
+            hasDigits = true;
+        }
+        if (i < end && recordBuf[i] == '.') {
+            // допускается только нулевая дробная часть.
+            for (i++; i < end && recordBuf[i] == '0'; i++) ;
+        }
+        while (i < end && isPadding(recordBuf[i])) i++;
+        if (!hasDigits || i != end)
+            throw new DBFException("Can't convert value '" + read(recordBuf) + "' to long");
+        return negative ? result : -result;
+    }
+
+    @Override
+    protected double getAsPrimitiveDouble(final byte[] recordBuf) throws DBFException {
+        int i = descriptor.getFieldOffset();
+        final int end = i + descriptor.getSize();
+        while (i < end && isPadding(recordBuf[i])) i++;
+        if (i == end)
+            return 0;
+        final boolean negative = recordBuf[i] == '-';
+        if (negative || recordBuf[i] == '+')
+            i++;
+        long mantissa = 0;
+        int digits = 0;         // кол-во значащих цифр в мантиссе.
+        int exp10 = 0;
+        boolean hasDigits = false;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            final byte b = recordBuf[i];
+            if (b == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            final int digit = b - '0';
+            if (digit < 0 || digit > 9)
+                break;
+            hasDigits = true;
+            if (mantissa != 0 || digit != 0) {
+                mantissa = mantissa * 10 + digit;
+                digits++;
+            }
+            if (fraction)
+                exp10--;
+        }
+        while (i < end && isPadding(recordBuf[i])) i++;
+        if (hasDigits && i == end && digits <= 15 && exp10 >= -NumberUtil.MAX_DOUBLE_POW10) {
+            final double value = exp10 < 0 ? mantissa / NumberUtil.doublePow10(-exp10) : mantissa;
+            return negative ? -value : value;
+        }
+        // экспоненциальная запись, слишком длинная мантисса или некорректное значение ...
+        final String value = read(recordBuf);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new DBFException("Can't convert value '" + value + "' to double", e);
+        }
+    }
+
+    /**
+     * Значение поля может быть дополнено как пробелами, так и нулевыми байтами (см. {@link #isEmpty(byte[])}).
+     */
+    private static boolean isPadding(final byte b) {
+        return b == ' ' || b == 0;
+    }
 }
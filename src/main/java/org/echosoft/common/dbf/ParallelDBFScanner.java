@@ -0,0 +1,232 @@
+package org.echosoft.common.dbf;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.echosoft.common.collections.Consumer;
+
+/**
+ * <p>Параллельное чтение больших .DBF файлов, расположенных на локальном диске.</p>
+ * <p>Поскольку все записи таблицы имеют одинаковый размер, а их количество известно из заголовка, диапазон номеров записей разбивается
+ * на фрагменты примерно одинакового размера, каждый из которых обрабатывается в потоках указанного {@link ForkJoinPool} отдельным экземпляром
+ * {@link DBFFileReader}. Разбор значений полей (см. методы {@link DBFFileReader#getLong(int)}, {@link DBFFileReader#getString(int)} и т.д.)
+ * выполняется обработчиком непосредственно в этих потоках, поэтому обработчик вызывается параллельно, в произвольном порядке, и должен быть потокобезопасным.
+ * Номер текущей записи в таблице доступен через {@link DBFFileReader#getCurrentRecord()}.</p>
+ * <p>Записи, помеченные как удаленные, могут отбрасываться еще до передачи обработчику (проверяется только первый байт записи).
+ * Если для сканирования задан ограниченный набор полей (см. {@link #setProjection(String...)}), то из файла копируются только фрагменты записей, содержащие эти поля.</p>
+ * Пример использования:<br/>
+ * <pre>
+ *  ParallelDBFScanner scanner = new ParallelDBFScanner(file, Charset.forName("cp866"));
+ *  scanner.setProjection("ID", "AMOUNT");
+ *  scanner.process(pool, true, new Consumer&lt;DBFFileReader&gt;() {
+ *      public boolean consume(DBFFileReader reader) throws Exception {
+ *          long id = reader.getLong(0);
+ *          ...
+ *          return true;    // false - прекратить обработку файла.
+ *      }
+ *  });
+ * </pre>
+ *
+ * @author Anton Sharapov
+ */
+public class ParallelDBFScanner {
+
+    public static final int MIN_RANGE_SIZE = 1024;
+
+    private final File file;
+    private final Charset defaultCharset;
+    private final int recordsCount;
+    private final int recordSize;
+    private String[] projection;
+    private int rangeSize;
+
+    public ParallelDBFScanner(final File file) throws Exception {
+        this(file, Charset.defaultCharset());
+    }
+
+    /**
+     * Подготавливает сканирование указанного файла. Заголовок таблицы читается немедленно.
+     *
+     * @param file           .DBF файл.
+     * @param defaultCharset кодировка в которой будет выполняться попытка чтения содержимого .DBF файла, в случае если программа не сможет определить кодировку файла самостоятельно.
+     * @throws Exception в случае каких-либо проблем при чтении или анализе заголовка таблицы.
+     */
+    public ParallelDBFScanner(final File file, final Charset defaultCharset) throws Exception {
+        if (file == null || defaultCharset == null)
+            throw new IllegalArgumentException("File and charset must be specified");
+        this.file = file;
+        this.defaultCharset = defaultCharset;
+        try (DBFFileReader reader = new DBFFileReader(file, defaultCharset)) {
+            this.recordsCount = reader.getRecordsCount();
+            this.recordSize = reader.getRecordSize();
+        }
+    }
+
+    /**
+     * @return общее количество записей в таблице (согласно заголовку таблицы).
+     */
+    public int getRecordsCount() {
+        return recordsCount;
+    }
+
+    /**
+     * Ограничивает набор полей, значения которых будут доступны обработчику (см. {@link DBFFileReader#setProjection(String...)}).
+     *
+     * @param fieldNames имена используемых полей. Если не указано ни одного поля, то доступными становятся все поля таблицы.
+     */
+    public void setProjection(final String... fieldNames) {
+        this.projection = fieldNames;
+    }
+
+    /**
+     * Задает количество записей в каждом из фрагментов, обрабатываемых отдельными задачами. Значения меньше {@link #MIN_RANGE_SIZE} не используются.
+     * По умолчанию (значение <code>0</code>) таблица разбивается на четыре фрагмента на каждый поток пула.
+     *
+     * @param rangeSize количество записей во фрагменте или <code>0</code>.
+     */
+    public void setRangeSize(final int rangeSize) {
+        if (rangeSize < 0)
+            throw new IllegalArgumentException("Illegal range size: " + rangeSize);
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * Выполняет сканирование таблицы с использованием временного {@link ForkJoinPool}, количество потоков в котором соответствует количеству доступных процессоров.
+     *
+     * @see #process(ForkJoinPool, boolean, Consumer)
+     */
+    public long process(final boolean skipDeleted, final Consumer<DBFFileReader> consumer) throws Exception {
+        final ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return process(pool, skipDeleted, consumer);
+        } finally {
+            pool.shutdown();
+            awaitTermination(pool);
+        }
+    }
+
+    /**
+     * Выполняет параллельное сканирование таблицы и передает ее записи указанному обработчику.
+     * Обработчику передается экземпляр {@link DBFFileReader}, позиционированный на очередной записи. Каждый экземпляр используется
+     * только одним потоком и только в пределах одного фрагмента таблицы, обработчик не должен изменять его позицию или сохранять ссылку на него.
+     *
+     * @param pool        пул потоков в котором будет выполняться обработка фрагментов таблицы.
+     * @param skipDeleted <code>true</code> если записи, помеченные как удаленные, не должны передаваться обработчику.
+     * @param consumer    обработчик записей. Вызывается параллельно из потоков пула. Если он возвращает <code>false</code>, то сканирование прекращается.
+     * @return количество записей, переданных обработчику.
+     * @throws DBFException в случае если файл поврежден или содержит меньше записей чем указано в его заголовке.
+     * @throws Exception    в случае ошибок ввода-вывода или ошибок в обработчике.
+     */
+    public long process(final ForkJoinPool pool, final boolean skipDeleted, final Consumer<DBFFileReader> consumer) throws Exception {
+        final int size = rangeSize > 0
+                ? Math.max(rangeSize, MIN_RANGE_SIZE)
+                : Math.max(MIN_RANGE_SIZE, (int) (((long) recordsCount + pool.getParallelism() * 4 - 1) / (pool.getParallelism() * 4)));
+        final String[] fields = projection;
+        final int windowSize = (int) Math.min(DBFFileReader.DEFAULT_WINDOW_SIZE, (long) size * recordSize);
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        final AtomicLong count = new AtomicLong(0);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final ArrayList<Future<Void>> futures = new ArrayList<>();
+        for (long first = 1; first <= recordsCount; first += size) {
+            final int from = (int) first;
+            final int to = (int) Math.min(recordsCount, first + size - 1);
+            futures.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    if (stopped.get())
+                        return null;
+                    try (DBFFileReader reader = new DBFFileReader(file, defaultCharset, windowSize)) {
+                        if (fields != null)
+                            reader.setProjection(fields);
+                        for (int recordNo = from; recordNo <= to && !stopped.get(); recordNo++) {
+                            reader.seek(recordNo);
+                            if (skipDeleted && reader.isRecordDeleted())
+                                continue;
+                            count.incrementAndGet();
+                            if (!consumer.consume(reader))
+                                stopped.set(true);
+                        }
+                    } catch (Exception e) {
+                        // пул потоков оборачивает проверяемые исключения, поэтому исходное исключение сохраняем отдельно.
+                        failure.compareAndSet(null, e);
+                        stopped.set(true);
+                        throw e;
+                    }
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                try {
+                    get(future);
+                } catch (Exception e) {
+                    final Exception cause = failure.get();
+                    throw cause != null ? cause : e;
+                }
+            }
+        } finally {
+            // задачи, которые еще не начали обработку, завершатся сразу же, а выполняющиеся - после обработки текущей записи.
+            // до их завершения из метода не выходим, чтобы обработчик гарантированно не вызывался после возврата управления.
+            stopped.set(true);
+            awaitCompletion(futures);
+        }
+        return count.get();
+    }
+
+    private static void awaitCompletion(final List<? extends Future<?>> futures) {
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            for (;;) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static void awaitTermination(final ForkJoinPool pool) {
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                if (pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS))
+                    break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static <T> T get(final Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+}
@@ -230,6 +230,35 @@ public final class FastStringWriter extends Writer {
     }
 
 
+    /**
+     * Очищает содержимое потока. Внутренний буфер при этом сохраняется и используется повторно.
+     */
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * Очищает содержимое потока. Внутренний буфер используется повторно только если его емкость не превышает указанной величины,
+     * в противном случае он заменяется буфером указанной емкости. Позволяет многократно использовать один экземпляр потока
+     * без постоянного расширения буфера и без удержания в памяти буферов, выросших при обработке отдельных крупных документов.
+     *
+     * @param maxCapacity максимально допустимая емкость сохраняемого буфера.
+     */
+    public void reset(final int maxCapacity) {
+        count = 0;
+        if (value.length > maxCapacity)
+            value = new char[Math.max(maxCapacity, 0)];
+    }
+
+    /**
+     * Возвращает текущую емкость внутреннего буфера.
+     *
+     * @return количество символов, которое может быть помещено в поток без расширения буфера.
+     */
+    public int capacity() {
+        return value.length;
+    }
+
     /**
      * Переносит весь сохраненный в потоке контент в другой поток.
      *
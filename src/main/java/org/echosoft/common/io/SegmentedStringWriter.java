@@ -0,0 +1,335 @@
+package org.echosoft.common.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * <p>Поток символов, который хранит все помещаемые в него символы в списке буферов (сегментов) фиксированного размера.</p>
+ * <p>В отличие от {@link FastStringWriter}, расширение потока сводится к добавлению очередного сегмента, поэтому уже накопленное содержимое
+ * никогда не копируется повторно, а в памяти не создаются массивы, размер которых сопоставим с размером всего содержимого потока.
+ * Это делает данный класс предпочтительным для формирования документов размером в несколько мегабайт и более. Накопленное содержимое
+ * может быть перенесено в другой поток (см. {@link #writeOut(Writer)} и {@link #writeOut(OutputStream, Charset)}) без создания строки
+ * с полным содержимым потока, а также доступно для чтения посредством интерфейса {@link CharSequence}.</p>
+ * <strong>Внимание!</strong> Экземпляры данного класса не являются потокобезопасными.
+ *
+ * @author Anton Sharapov
+ */
+public final class SegmentedStringWriter extends Writer implements CharSequence {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 8192;
+    private static final int MIN_SEGMENT_SIZE = 16;
+    private static final char[] NULL = {'n', 'u', 'l', 'l'};
+
+    private final int shift;                // log2 от размера сегмента.
+    private final int mask;                 // размер сегмента - 1.
+    private char[][] segments;              // список сегментов. Все сегменты кроме последнего заполненного всегда заполнены полностью.
+    private int segmentsCount;              // количество уже выделенных сегментов.
+    private char[] current;                 // сегмент в который помещаются очередные символы.
+    private int pos;                        // количество символов в текущем сегменте.
+    private int count;                      // общее количество символов в потоке.
+
+    /**
+     * Создает новый пустой экземпляр потока с размером сегмента по умолчанию.
+     */
+    public SegmentedStringWriter() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Создает новый пустой экземпляр потока.
+     *
+     * @param segmentSize размер одного сегмента (в символах). Округляется до ближайшей большей степени двойки.
+     */
+    public SegmentedStringWriter(final int segmentSize) {
+        final int size = segmentSize <= MIN_SEGMENT_SIZE ? MIN_SEGMENT_SIZE : Integer.highestOneBit(segmentSize - 1) << 1;
+        if (size <= 0)
+            throw new IllegalArgumentException("Illegal segment size: " + segmentSize);
+        this.shift = Integer.numberOfTrailingZeros(size);
+        this.mask = size - 1;
+        this.segments = new char[8][];
+        this.segments[0] = current = new char[size];
+        this.segmentsCount = 1;
+    }
+
+    /**
+     * Записывает в поток указанную строку символов.
+     *
+     * @param text строка для записи в поток, может быть <code>null</code>.
+     */
+    @Override
+    public void write(final String text) {
+        if (text == null) {
+            write(NULL, 0, 4);
+        } else {
+            write(text, 0, text.length());
+        }
+    }
+
+    /**
+     * Записывает в поток фрагмент указанной в аргументе строки символов.
+     *
+     * @param text   строка, чей фрагмент требуется записать в поток. Может быть <code>null</code>.
+     * @param offset смещение, по которому доступен первый символ требуемого фрагмента.
+     * @param length кол-во символов для записи в поток.
+     */
+    @Override
+    public void write(final String text, int offset, int length) {
+        if (text == null) {
+            write(NULL, 0, 4);
+            return;
+        }
+        while (length > 0) {
+            if (pos == current.length)
+                nextSegment();
+            final int len = Math.min(length, current.length - pos);
+            text.getChars(offset, offset + len, current, pos);
+            pos += len;
+            count += len;
+            offset += len;
+            length -= len;
+        }
+    }
+
+    /**
+     * Записывает в поток массив символов.
+     *
+     * @param chars массив символов для записи в поток, не может быть <code>null</code>.
+     */
+    @Override
+    public void write(final char[] chars) {
+        write(chars, 0, chars.length);
+    }
+
+    /**
+     * Записывает в поток фрагмент указанного в аргументе массива символов.
+     *
+     * @param chars  массив, чей фрагмент требуется записать в поток.
+     * @param offset смещение, по которому доступен первый символ требуемого фрагмента.
+     * @param length кол-во символов для записи в поток.
+     */
+    @Override
+    public void write(final char[] chars, int offset, int length) {
+        while (length > 0) {
+            if (pos == current.length)
+                nextSegment();
+            final int len = Math.min(length, current.length - pos);
+            System.arraycopy(chars, offset, current, pos, len);
+            pos += len;
+            count += len;
+            offset += len;
+            length -= len;
+        }
+    }
+
+    /**
+     * Записывает в поток отдельный символ.
+     *
+     * @param c символ для записи в поток.
+     */
+    @Override
+    public void write(final int c) {
+        if (pos == current.length)
+            nextSegment();
+        current[pos++] = (char) c;
+        count++;
+    }
+
+    /**
+     * Добавляет в поток указанную последовательность символов.
+     *
+     * @param cseq описывает последовательность символов которую требуется добавить в выходной поток, может быть <code>null</code>.
+     * @return ссылку на данный поток.
+     */
+    @Override
+    public SegmentedStringWriter append(final CharSequence cseq) {
+        if (cseq == null) {
+            write(NULL, 0, 4);
+        } else
+        if (cseq instanceof String) {
+            final String text = (String) cseq;
+            write(text, 0, text.length());
+        } else {
+            final int length = cseq.length();
+            for (int i = 0; i < length; i++) {
+                write(cseq.charAt(i));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Добавляет в поток фрагмент указанной последовательности символов.
+     *
+     * @param cseq  описывает последовательность символов чей фрагмент требуется добавить в выходной поток, может быть <code>null</code>.
+     * @param start индекс первого символа фрагмента который требуется записать в поток.
+     * @param end   индекс символа, следующего за последним символом требуемого фрагмента.
+     * @return ссылку на данный поток.
+     */
+    @Override
+    public SegmentedStringWriter append(final CharSequence cseq, final int start, final int end) {
+        if (cseq == null) {
+            write(NULL, 0, 4);
+        } else
+        if (cseq instanceof String) {
+            write((String) cseq, start, end - start);
+        } else {
+            for (int i = start; i < end; i++) {
+                write(cseq.charAt(i));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Добавляет в поток отдельный символ.
+     *
+     * @param c символ для записи в поток.
+     * @return ссылку на данный поток.
+     */
+    @Override
+    public SegmentedStringWriter append(final char c) {
+        write(c);
+        return this;
+    }
+
+    /**
+     * Сохраняет в поток все буфера (если они есть).
+     * В данной реализации метод не делает ничего.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Сохраняет в поток все буфера (если они есть) и закрывает поток.
+     * В данной реализации метод не делает ничего.
+     */
+    @Override
+    public void close() {
+    }
+
+
+    /**
+     * Очищает содержимое потока. Первый сегмент сохраняется и используется повторно, остальные освобождаются.
+     */
+    public void reset() {
+        Arrays.fill(segments, 1, segmentsCount, null);
+        segmentsCount = 1;
+        current = segments[0];
+        pos = 0;
+        count = 0;
+    }
+
+    /**
+     * Переносит весь сохраненный в потоке контент в другой поток. Содержимое передается посегментно, без создания промежуточных строк.
+     *
+     * @param out выходной поток куда будет помещено все содержимое данного потока.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeOut(final Writer out) throws IOException {
+        final int last = segmentsCount - 1;
+        for (int i = 0; i < last; i++) {
+            out.write(segments[i], 0, segments[i].length);
+        }
+        out.write(current, 0, pos);
+    }
+
+    /**
+     * Кодирует весь сохраненный в потоке контент в указанной кодировке и переносит его в байтовый поток.
+     * Для кодировки <code>UTF-8</code> используется {@link UTF8Writer}. Выходной поток по завершении не закрывается.
+     *
+     * @param out     выходной байтовый поток. Не может быть <code>null</code>.
+     * @param charset кодировка в которой будет сохраняться результат.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeOut(final OutputStream out, final Charset charset) throws IOException {
+        final Writer writer = "UTF-8".equals(charset.name()) ? new UTF8Writer(out) : new OutputStreamWriter(out, charset);
+        writeOut(writer);
+        writer.flush();
+    }
+
+    /**
+     * Возвращает количество символов, помещенных в данный поток.
+     *
+     * @return количество символов в потоке на данный момент.
+     */
+    @Override
+    public int length() {
+        return count;
+    }
+
+    /**
+     * Возвращает символ, находящийся в указанной позиции потока.
+     *
+     * @param index индекс символа.
+     * @return символ в указанной позиции.
+     * @throws IndexOutOfBoundsException если индекс выходит за границы содержимого потока.
+     */
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index: " + index + ", length: " + count);
+        return segments[index >>> shift][index & mask];
+    }
+
+    /**
+     * Возвращает копию указанного фрагмента содержимого потока.
+     *
+     * @param start индекс первого символа фрагмента.
+     * @param end   индекс символа, следующего за последним символом фрагмента.
+     * @return строка с содержимым фрагмента.
+     */
+    @Override
+    public String subSequence(final int start, final int end) {
+        if (start < 0 || end > count || start > end)
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + count);
+        final char[] result = new char[end - start];
+        getChars(start, end, result, 0);
+        return new String(result);
+    }
+
+    /**
+     * Копирует запрошенный фрагмент от всего содержимого потока в указанный массив символов.
+     *
+     * @param srcBegin индекс первого символа для копирования.
+     * @param srcEnd   индекс символа, следующего за последним копируемым символом.
+     * @param dst      целевой буфер.
+     * @param dstBegin смещение по которому будет проводиться запись в целевой буфер.
+     */
+    public void getChars(int srcBegin, final int srcEnd, final char[] dst, int dstBegin) {
+        while (srcBegin < srcEnd) {
+            final char[] segment = segments[srcBegin >>> shift];
+            final int offset = srcBegin & mask;
+            final int len = Math.min(srcEnd - srcBegin, segment.length - offset);
+            System.arraycopy(segment, offset, dst, dstBegin, len);
+            srcBegin += len;
+            dstBegin += len;
+        }
+    }
+
+    /**
+     * Возвращает все символы помещенные в данный поток в виде строки.
+     *
+     * @return все символы помещенные в данный поток в виде строки.
+     */
+    @Override
+    public String toString() {
+        if (segmentsCount == 1)
+            return new String(current, 0, pos);
+        final char[] result = new char[count];
+        getChars(0, count, result, 0);
+        return new String(result);
+    }
+
+
+    private void nextSegment() {
+        if (segmentsCount == segments.length)
+            segments = Arrays.copyOf(segments, segmentsCount * 2);
+        current = segments[segmentsCount++] = new char[mask + 1];
+        pos = 0;
+    }
+}
@@ -0,0 +1,313 @@
+package org.echosoft.common.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Поток символов, который кодирует все помещаемые в него символы в кодировке UTF-8 непосредственно во внутренний байтовый буфер
+ * и по мере его заполнения переносит содержимое буфера в выходной байтовый поток (или в {@link ByteBuffer}).</p>
+ * <p>В отличие от связки <code>java.io.OutputStreamWriter</code> + <code>java.nio.charset.CharsetEncoder</code> здесь не используются
+ * промежуточные символьные буферы, а для символов ASCII диапазона применяется отдельный максимально простой цикл кодирования.
+ * Кроме того, поток позволяет помещать в выходной поток заранее закодированные последовательности байт (см. {@link #writeBytes(byte[])}).</p>
+ * <p>Некорректные суррогатные пары символов заменяются символом <code>'?'</code>.</p>
+ * <strong>Внимание!</strong> Экземпляры данного класса не являются потокобезопасными и должны использоваться только из одного потока в каждую единицу времени.
+ *
+ * @author Anton Sharapov
+ */
+public final class UTF8Writer extends Writer {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MIN_BUFFER_SIZE = 16;
+
+    private final OutputStream out;     // выходной поток (если указан)
+    private final ByteBuffer target;    // выходной буфер (если указан)
+    private final byte[] buf;           // внутренний буфер с уже закодированными в UTF-8 символами.
+    private final int limit;            // граница после которой в буфере может не хватить места для размещения одного произвольного символа.
+    private int count;                  // реальное количество байт в буфере.
+    private char highSurrogate;         // первый символ суррогатной пары если второй символ еще не был получен.
+
+    /**
+     * Создает новый поток с буфером размером {@link #DEFAULT_BUFFER_SIZE} байт.
+     *
+     * @param out выходной поток куда будет помещаться результат. Не может быть <code>null</code>.
+     */
+    public UTF8Writer(final OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Создает новый поток с буфером заданного размера.
+     *
+     * @param out        выходной поток куда будет помещаться результат. Не может быть <code>null</code>.
+     * @param bufferSize размер внутреннего буфера (в байтах).
+     */
+    public UTF8Writer(final OutputStream out, final int bufferSize) {
+        if (out == null)
+            throw new IllegalArgumentException("Output stream should be specified");
+        this.out = out;
+        this.target = null;
+        this.buf = new byte[Math.max(bufferSize, MIN_BUFFER_SIZE)];
+        this.limit = buf.length - 4;
+    }
+
+    /**
+     * Создает новый поток, результат работы которого будет помещаться в указанный буфер.
+     * В случае переполнения выходного буфера методы потока будут поднимать исключение {@link java.nio.BufferOverflowException}.
+     *
+     * @param target буфер куда будет помещаться результат. Не может быть <code>null</code>.
+     */
+    public UTF8Writer(final ByteBuffer target) {
+        if (target == null)
+            throw new IllegalArgumentException("Target buffer should be specified");
+        this.out = null;
+        this.target = target;
+        this.buf = new byte[DEFAULT_BUFFER_SIZE];
+        this.limit = buf.length - 4;
+    }
+
+
+    /**
+     * Записывает в поток отдельный символ.
+     *
+     * @param c символ для записи в поток.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    @Override
+    public void write(final int c) throws IOException {
+        if (count >= limit)
+            flushBuffer();
+        if (c < 0x80 && highSurrogate == 0) {
+            buf[count++] = (byte) c;
+        } else {
+            encode((char) c);
+        }
+    }
+
+    /**
+     * Записывает в поток фрагмент указанного в аргументе массива символов.
+     *
+     * @param chars  массив, чей фрагмент требуется записать в поток.
+     * @param offset смещение, по которому доступен первый символ требуемого фрагмента.
+     * @param length кол-во символов для записи в поток.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    @Override
+    public void write(final char[] chars, final int offset, final int length) throws IOException {
+        final int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            if (count >= limit)
+                flushBuffer();
+            if (highSurrogate != 0) {
+                encode(chars[i++]);
+                continue;
+            }
+            final int max = Math.min(end, i + limit - count);
+            for (char c; i < max && (c = chars[i]) < 0x80; i++) {
+                buf[count++] = (byte) c;
+            }
+            if (i < max)
+                encode(chars[i++]);
+        }
+    }
+
+    /**
+     * Записывает в поток фрагмент указанной в аргументе строки символов.
+     *
+     * @param text   строка, чей фрагмент требуется записать в поток.
+     * @param offset смещение, по которому доступен первый символ требуемого фрагмента.
+     * @param length кол-во символов для записи в поток.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    @Override
+    public void write(final String text, final int offset, final int length) throws IOException {
+        final int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            if (count >= limit)
+                flushBuffer();
+            if (highSurrogate != 0) {
+                encode(text.charAt(i++));
+                continue;
+            }
+            final int max = Math.min(end, i + limit - count);
+            for (char c; i < max && (c = text.charAt(i)) < 0x80; i++) {
+                buf[count++] = (byte) c;
+            }
+            if (i < max)
+                encode(text.charAt(i++));
+        }
+    }
+
+    /**
+     * Записывает в поток указанную строку символов.
+     *
+     * @param text строка для записи в поток. Не может быть <code>null</code>.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    @Override
+    public void write(final String text) throws IOException {
+        write(text, 0, text.length());
+    }
+
+    /**
+     * Добавляет в поток указанную последовательность символов.
+     *
+     * @param cseq описывает последовательность символов которую требуется добавить в выходной поток, может быть <code>null</code>.
+     * @return ссылку на данный поток.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    @Override
+    public UTF8Writer append(final CharSequence cseq) throws IOException {
+        final String text = String.valueOf(cseq);
+        write(text, 0, text.length());
+        return this;
+    }
+
+    /**
+     * Добавляет в поток отдельный символ.
+     *
+     * @param c символ для записи в поток.
+     * @return ссылку на данный поток.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    @Override
+    public UTF8Writer append(final char c) throws IOException {
+        write(c);
+        return this;
+    }
+
+    /**
+     * Помещает в поток заранее закодированную в UTF-8 последовательность байт.
+     *
+     * @param data последовательность байт в кодировке UTF-8.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeBytes(final byte[] data) throws IOException {
+        writeBytes(data, 0, data.length);
+    }
+
+    /**
+     * Помещает в поток фрагмент заранее закодированной в UTF-8 последовательности байт.
+     *
+     * @param data   последовательность байт в кодировке UTF-8.
+     * @param offset смещение, по которому доступен первый байт требуемого фрагмента.
+     * @param length кол-во байт для записи в поток.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeBytes(final byte[] data, final int offset, final int length) throws IOException {
+        if (highSurrogate != 0) {
+            if (count >= limit)
+                flushBuffer();
+            highSurrogate = 0;
+            buf[count++] = '?';
+        }
+        if (length <= buf.length - count) {
+            System.arraycopy(data, offset, buf, count, length);
+            count += length;
+        } else {
+            flushBuffer();
+            if (length <= buf.length) {
+                System.arraycopy(data, offset, buf, 0, length);
+                count = length;
+            } else {
+                drain(data, offset, length);
+            }
+        }
+    }
+
+    /**
+     * Переносит все накопленное в буфере содержимое в выходной поток.
+     *
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        if (out != null)
+            out.flush();
+    }
+
+    /**
+     * Переносит все накопленное в буфере содержимое в выходной поток и закрывает его.
+     *
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    @Override
+    public void close() throws IOException {
+        if (highSurrogate != 0) {
+            if (count >= limit)
+                flushBuffer();
+            highSurrogate = 0;
+            buf[count++] = '?';
+        }
+        flushBuffer();
+        if (out != null)
+            out.close();
+    }
+
+    /**
+     * Возвращает количество байт, находящихся на данный момент во внутреннем буфере потока.
+     *
+     * @return количество байт в буфере.
+     */
+    public int getBufferedBytes() {
+        return count;
+    }
+
+
+    /**
+     * Кодирует в буфер один символ не относящийся к ASCII диапазону (а также любой символ следующий за первым символом суррогатной пары).
+     * Предполагается что в буфере есть место как минимум для четырех байт (максимум что может потребоваться для одного символа
+     * с учетом возможной замены предшествующей ему некорректной суррогатной пары).
+     */
+    private void encode(final char c) {
+        if (highSurrogate != 0) {
+            final char hs = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                final int cp = Character.toCodePoint(hs, c);
+                buf[count++] = (byte) (0xF0 | (cp >> 18));
+                buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (cp & 0x3F));
+                return;
+            }
+            buf[count++] = '?';
+        }
+        if (c < 0x80) {
+            buf[count++] = (byte) c;
+        } else
+        if (c < 0x800) {
+            buf[count++] = (byte) (0xC0 | (c >> 6));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        } else
+        if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else
+        if (Character.isLowSurrogate(c)) {
+            buf[count++] = '?';
+        } else {
+            buf[count++] = (byte) (0xE0 | (c >> 12));
+            buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            drain(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private void drain(final byte[] data, final int offset, final int length) throws IOException {
+        if (out != null) {
+            out.write(data, offset, length);
+        } else {
+            target.put(data, offset, length);
+        }
+    }
+}
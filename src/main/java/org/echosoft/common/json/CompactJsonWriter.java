@@ -14,12 +14,13 @@ import java.lang.reflect.InvocationTargetException;
  *
  * @author Anton Sharapov
  */
-public class CompactJsonWriter implements JsonWriter {
+public class CompactJsonWriter implements PrimitiveJsonWriter, ResettableJsonWriter {
 
     private static enum State {UNKNOWN, ARRAY, OBJECT, OBJATTR}
 
     private static final class Context {
         private final Context prev;
+        private Context next;       // ранее созданный вложенный контекст, используется повторно.
         private State state;
         private int items;
         private boolean inWriteObj;
@@ -31,14 +32,26 @@ public class CompactJsonWriter implements JsonWriter {
             this.prev = prev;
             this.state = state;
         }
+        private Context push(final State state) {
+            Context result = next;
+            if (result == null) {
+                next = result = new Context(this, state);
+            } else {
+                result.state = state;
+                result.items = 0;
+                result.inWriteObj = false;
+            }
+            return result;
+        }
         public String toString() {
             return "[Context{state:" + state + ", items:" + items + ", inWriteObj:" + inWriteObj + "}]";
         }
     }
 
     private final JsonContext ctx;
-    private final Writer out;
     private final JsonFieldNameSerializer fieldNameSerializer;
+    private final Context root;
+    private Writer out;
     private Context current;
 
     /**
@@ -53,7 +66,8 @@ public class CompactJsonWriter implements JsonWriter {
         this.ctx = ctx;
         this.out = out;
         this.fieldNameSerializer = ctx.getFieldNameSerializer();
-        this.current = new Context();
+        this.root = new Context();
+        this.current = root;
     }
 
 
@@ -66,14 +80,14 @@ public class CompactJsonWriter implements JsonWriter {
                 if (!current.inWriteObj && current.items > 0)
                     throw new IllegalStateException();
                 current.items = 1;
-                current = new Context(current, State.ARRAY);
+                current = current.push(State.ARRAY);
                 out.write('[');
                 break;
             }
             case ARRAY: {
                 if (!current.inWriteObj && current.items++ > 0)
                     out.write(',');
-                current = new Context(current, State.ARRAY);
+                current = current.push(State.ARRAY);
                 out.write('[');
                 break;
             }
@@ -82,7 +96,7 @@ public class CompactJsonWriter implements JsonWriter {
             }
             case OBJATTR: {
                 current.state = State.OBJECT;
-                current = new Context(current, State.ARRAY);
+                current = current.push(State.ARRAY);
                 out.write('[');
                 break;
             }
@@ -116,14 +130,14 @@ public class CompactJsonWriter implements JsonWriter {
                 if (!current.inWriteObj && current.items > 0)
                     throw new IllegalStateException();
                 current.items = 1;
-                current = new Context(current, State.OBJECT);
+                current = current.push(State.OBJECT);
                 out.write('{');
                 break;
             }
             case ARRAY: {
                 if (!current.inWriteObj && current.items++ > 0)
                     out.write(',');
-                current = new Context(current, State.OBJECT);
+                current = current.push(State.OBJECT);
                 out.write('{');
                 break;
             }
@@ -132,7 +146,7 @@ public class CompactJsonWriter implements JsonWriter {
             }
             case OBJATTR: {
                 current.state = State.OBJECT;
-                current = new Context(current, State.OBJECT);
+                current = current.push(State.OBJECT);
                 out.write('{');
                 break;
             }
@@ -213,7 +227,7 @@ public class CompactJsonWriter implements JsonWriter {
                 if (current.items++ > 0) {
                     out.write(',');
                 }
-                fieldNameSerializer.serialize(name, out);
+                writeFieldName(name);
                 out.write(':');
                 if (value == null) {
                     out.write(JsonUtil.NULL, 0, 4);
@@ -232,6 +246,34 @@ public class CompactJsonWriter implements JsonWriter {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void writeLongProperty(final String name, final long value) throws IOException {
+        beginPrimitiveProperty(name);
+        JsonUtil.encodeLong(value, out);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void writeDoubleProperty(final String name, final double value) throws IOException {
+        beginPrimitiveProperty(name);
+        JsonUtil.encodeDouble(value, out);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void writeBooleanProperty(final String name, final boolean value) throws IOException {
+        beginPrimitiveProperty(name);
+        if (value) {
+            out.write(JsonUtil.TRUE, 0, 4);
+        } else {
+            out.write(JsonUtil.FALSE, 0, 5);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -241,7 +283,7 @@ public class CompactJsonWriter implements JsonWriter {
                 if (current.items++ > 0) {
                     out.write(',');
                 }
-                fieldNameSerializer.serialize(name, out);
+                writeFieldName(name);
                 out.write(':');
                 current.state = State.OBJATTR;
                 break;
@@ -255,6 +297,20 @@ public class CompactJsonWriter implements JsonWriter {
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public void reset(final Writer out) {
+        if (out == null)
+            throw new IllegalArgumentException("Output stream should be specified");
+        this.out = out;
+        root.state = State.UNKNOWN;
+        root.items = 0;
+        root.inWriteObj = false;
+        current = root;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -268,4 +324,26 @@ public class CompactJsonWriter implements JsonWriter {
     public Writer getOutputWriter() {
         return out;
     }
+
+
+    private void beginPrimitiveProperty(final String name) throws IOException {
+        if (current.state != State.OBJECT)
+            throw new IllegalStateException();
+        if (current.items++ > 0) {
+            out.write(',');
+        }
+        writeFieldName(name);
+        out.write(':');
+    }
+
+    /**
+     * Помещает в выходной поток имя очередного свойства объекта.
+     * Может быть переопределен в классах-наследниках, например, для использования заранее подготовленных представлений имен свойств.
+     *
+     * @param name имя свойства объекта.
+     * @throws IOException в случае каких-либо проблем с вводом-выводом.
+     */
+    protected void writeFieldName(final String name) throws IOException {
+        fieldNameSerializer.serialize(name, out);
+    }
 }
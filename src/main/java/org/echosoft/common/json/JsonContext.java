@@ -2,14 +2,19 @@ package org.echosoft.common.json;
 
 import java.io.Writer;
 import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.echosoft.common.collections.issuers.Issuer;
 import org.echosoft.common.json.annotate.JsonUseSeriazer;
+import org.echosoft.common.json.introspect.BeanDeserializer;
 import org.echosoft.common.json.introspect.BeanSerializer;
 
 /**
@@ -22,65 +27,114 @@ import org.echosoft.common.json.introspect.BeanSerializer;
  */
 public class JsonContext {
 
-    private final Map<Class<?>, JsonSerializer> serializers;
-    private final HashMap<Class<?>, JsonSerializer> cserializers;
-    private final HashMap<Class<?>, JsonSerializer> iserializers;
+    /**
+     * Неизменяемый набор правил сериализации вместе с кэшем уже подобранных по этим правилам сериализаторов.
+     * Разделяется между контекстом и всеми созданными на его основе (копированием) контекстами до тех пор, пока в каком-либо из них
+     * не будут изменены правила - в этом случае такой контекст получает собственный новый экземпляр этого класса (copy-on-write).
+     */
+    private static final class Registry {
+        private final Map<Class<?>, JsonSerializer> serializers;        // сериализаторы явно зарегистрированные для конкретных классов.
+        private final Map<Class<?>, JsonSerializer> cserializers;       // сериализаторы, распространяющиеся на всех потомков указанных классов.
+        private final Map<Class<?>, JsonSerializer> iserializers;       // сериализаторы для классов, реализующих указанные интерфейсы.
+        private final boolean useMethodHandles;
+        private final ConcurrentHashMap<Class<?>, JsonSerializer> resolved;
+
+        private Registry(final Map<Class<?>, JsonSerializer> serializers, final Map<Class<?>, JsonSerializer> cserializers, final Map<Class<?>, JsonSerializer> iserializers,
+                         final boolean useMethodHandles) {
+            this.serializers = serializers;
+            this.cserializers = cserializers;
+            this.iserializers = iserializers;
+            this.useMethodHandles = useMethodHandles;
+            this.resolved = new ConcurrentHashMap<>(64);
+        }
+    }
+
+    private static final Registry DEFAULTS;
+    static {
+        final HashMap<Class<?>, JsonSerializer> serializers = new HashMap<>();
+        final HashMap<Class<?>, JsonSerializer> cserializers = new HashMap<>();
+        final HashMap<Class<?>, JsonSerializer> iserializers = new HashMap<>();
+        register(serializers, cserializers, iserializers, String.class, Serializers.STRING, false);
+        register(serializers, cserializers, iserializers, Character.class, Serializers.CHAR, false);
+        register(serializers, cserializers, iserializers, Boolean.class, Serializers.BOOLEAN, false);
+        register(serializers, cserializers, iserializers, Number.class, Serializers.NUMBER, true);
+        register(serializers, cserializers, iserializers, BigDecimal.class, Serializers.BIGDECIMAL, true);
+        register(serializers, cserializers, iserializers, Enum.class, Serializers.ENUM, true);
+        register(serializers, cserializers, iserializers, Date.class, Serializers.DATE_ISO_FMT, true);
+        register(serializers, cserializers, iserializers, char[].class, Serializers.CHAR_ARRAY, false);
+        register(serializers, cserializers, iserializers, boolean[].class, Serializers.BOOLEAN_ARRAY, false);
+        register(serializers, cserializers, iserializers, byte[].class, Serializers.BYTE_ARRAY, false);
+        register(serializers, cserializers, iserializers, short[].class, Serializers.SHORT_ARRAY, false);
+        register(serializers, cserializers, iserializers, int[].class, Serializers.INT_ARRAY, false);
+        register(serializers, cserializers, iserializers, long[].class, Serializers.LONG_ARRAY, false);
+        register(serializers, cserializers, iserializers, float[].class, Serializers.FLOAT_ARRAY, false);
+        register(serializers, cserializers, iserializers, double[].class, Serializers.DOUBLE_ARRAY, false);
+        register(serializers, cserializers, iserializers, Object[].class, Serializers.OBJECT_ARRAY, true);
+        register(serializers, cserializers, iserializers, String[].class, Serializers.STRING_ARRAY, false);
+        register(serializers, cserializers, iserializers, Character[].class, Serializers.CHARS_ARRAY, false);
+        register(serializers, cserializers, iserializers, Boolean[].class, Serializers.BOOLEANS_ARRAY, false);
+        register(serializers, cserializers, iserializers, Byte[].class, Serializers.BYTES_ARRAY, false);
+        register(serializers, cserializers, iserializers, Short[].class, Serializers.SHORTS_ARRAY, false);
+        register(serializers, cserializers, iserializers, Integer[].class, Serializers.INTEGERS_ARRAY, false);
+        register(serializers, cserializers, iserializers, Long[].class, Serializers.LONGS_ARRAY, false);
+        register(serializers, cserializers, iserializers, Float[].class, Serializers.FLOATS_ARRAY, false);
+        register(serializers, cserializers, iserializers, Double[].class, Serializers.DOUBLES_ARRAY, false);
+        // интерфейсы ...
+        register(serializers, cserializers, iserializers, Iterable.class, Serializers.ITERABLE, true);
+        register(serializers, cserializers, iserializers, Iterator.class, Serializers.ITERATOR, true);
+        register(serializers, cserializers, iserializers, Enumeration.class, Serializers.ENUMERATION, true);
+        register(serializers, cserializers, iserializers, Issuer.class, Serializers.ISSUER, true);
+        register(serializers, cserializers, iserializers, Map.class, Serializers.MAP, true);
+        register(serializers, cserializers, iserializers, CharSequence.class, Serializers.CHAR_SEQUENCE, true);
+        register(serializers, cserializers, iserializers, CharSequence[].class, Serializers.CHAR_SEQUENCE_ARRAY, true);
+        register(serializers, cserializers, iserializers, JSExpression.class, Serializers.JSEXPRESSION, true);
+        DEFAULTS = new Registry(serializers, cserializers, iserializers, false);
+    }
+
+    private static void register(final Map<Class<?>, JsonSerializer> serializers, final Map<Class<?>, JsonSerializer> cserializers, final Map<Class<?>, JsonSerializer> iserializers,
+                                 final Class<?> cls, final JsonSerializer serializer, final boolean recursive) {
+        if (cls.isInterface()) {
+            iserializers.put(cls, serializer);
+        } else {
+            serializers.put(cls, serializer);
+            if (recursive) {
+                cserializers.put(cls, serializer);
+            }
+        }
+    }
+
+    private volatile Registry registry;
     private JsonFieldNameSerializer fieldNameSerializer;
+    private ConcurrentHashMap<String, byte[]> encodedFieldNames;     // имена свойств, закодированные текущим алгоритмом сериализации имен в UTF-8 (см. UTF8JsonWriter).
+    private ConcurrentHashMap<Class<?>, BeanDeserializer> deserializers; // десериализаторы бинов, ожидающие имена свойств в виде, формируемом текущим алгоритмом сериализации имен.
     private JsonWriterFactory writerFactory;
 
     public JsonContext() {
         this(null);
     }
 
+    /**
+     * Создает новый контекст с теми же настройками что и у указанного в аргументе контекста. Правила сериализации и кэш уже подобранных сериализаторов
+     * при этом не копируются а разделяются между обоими контекстами до первого изменения правил в одном из них, поэтому создание такого контекста
+     * является дешевой операцией.
+     *
+     * @param original исходный контекст или <code>null</code> если требуется создать контекст с настройками по умолчанию.
+     */
     public JsonContext(final JsonContext original) {
-        serializers = new ConcurrentHashMap<>(64);
-        cserializers = new HashMap<>();
-        iserializers = new HashMap<>();
         if (original == null) {
-            registerSerializer(String.class, Serializers.STRING, false);
-            registerSerializer(Character.class, Serializers.CHAR, false);
-            registerSerializer(Boolean.class, Serializers.BOOLEAN, false);
-            registerSerializer(Number.class, Serializers.NUMBER, true);
-            registerSerializer(BigDecimal.class, Serializers.BIGDECIMAL, true);
-            registerSerializer(Enum.class, Serializers.ENUM, true);
-            registerSerializer(Date.class, Serializers.DATE_ISO_FMT, true);
-            registerSerializer(char[].class, Serializers.CHAR_ARRAY, false);
-            registerSerializer(boolean[].class, Serializers.BOOLEAN_ARRAY, false);
-            registerSerializer(byte[].class, Serializers.BYTE_ARRAY, false);
-            registerSerializer(short[].class, Serializers.SHORT_ARRAY, false);
-            registerSerializer(int[].class, Serializers.INT_ARRAY, false);
-            registerSerializer(long[].class, Serializers.LONG_ARRAY, false);
-            registerSerializer(float[].class, Serializers.FLOAT_ARRAY, false);
-            registerSerializer(double[].class, Serializers.DOUBLE_ARRAY, false);
-            registerSerializer(Object[].class, Serializers.OBJECT_ARRAY, true);
-            registerSerializer(String[].class, Serializers.STRING_ARRAY, false);
-            registerSerializer(Character[].class, Serializers.CHARS_ARRAY, false);
-            registerSerializer(Boolean[].class, Serializers.BOOLEANS_ARRAY, false);
-            registerSerializer(Byte[].class, Serializers.BYTES_ARRAY, false);
-            registerSerializer(Short[].class, Serializers.SHORTS_ARRAY, false);
-            registerSerializer(Integer[].class, Serializers.INTEGERS_ARRAY, false);
-            registerSerializer(Long[].class, Serializers.LONGS_ARRAY, false);
-            registerSerializer(Float[].class, Serializers.FLOATS_ARRAY, false);
-            registerSerializer(Double[].class, Serializers.DOUBLES_ARRAY, false);
-            // интерфейсы ...
-            registerSerializer(Iterable.class, Serializers.ITERABLE, true);
-            registerSerializer(Iterator.class, Serializers.ITERATOR, true);
-            registerSerializer(Enumeration.class, Serializers.ENUMERATION, true);
-            registerSerializer(Map.class, Serializers.MAP, true);
-            registerSerializer(CharSequence.class, Serializers.CHAR_SEQUENCE, true);
-            registerSerializer(CharSequence[].class, Serializers.CHAR_SEQUENCE_ARRAY, true);
-            registerSerializer(JSExpression.class, Serializers.JSEXPRESSION, true);
+            registry = new Registry(DEFAULTS.serializers, DEFAULTS.cserializers, DEFAULTS.iserializers, false);
             fieldNameSerializer = Serializers.STANDARD_FIELD_NAME_SERIALIZER;
+            encodedFieldNames = new ConcurrentHashMap<>();
+            deserializers = new ConcurrentHashMap<>(64);
             writerFactory = Serializers.COMPACT_JSON_WRITER_FACTORY;
         } else {
-            serializers.putAll(original.serializers);
-            cserializers.putAll(original.cserializers);
-            iserializers.putAll(original.iserializers);
+            registry = original.registry;
             fieldNameSerializer = original.fieldNameSerializer;
+            encodedFieldNames = original.encodedFieldNames;
+            deserializers = original.deserializers;
             writerFactory = original.writerFactory;
         }
     }
-
     /**
      * Рекомендуемый способ для создания в приложении новых экземпляров {@link JsonWriter}.
      *
@@ -116,7 +170,41 @@ public class JsonContext {
     public void setFieldNameSerializer(final JsonFieldNameSerializer serializer) {
         if (serializer == null)
             throw new IllegalArgumentException("Serializer should be specified");
-        this.fieldNameSerializer = serializer;
+        if (serializer != fieldNameSerializer) {
+            this.fieldNameSerializer = serializer;
+            this.encodedFieldNames = new ConcurrentHashMap<>();
+            this.deserializers = new ConcurrentHashMap<>(64);
+        }
+    }
+
+    /**
+     * Кэш имен свойств, закодированных в UTF-8 используемым в настоящий момент алгоритмом сериализации имен полей (см. {@link #getFieldNameSerializer()}).
+     * При смене алгоритма сериализации имен контекст получает новый пустой кэш. Используется экземплярами {@link UTF8JsonWriter}.
+     *
+     * @return кэш закодированных имен свойств.
+     */
+    ConcurrentHashMap<String, byte[]> getEncodedFieldNames() {
+        return encodedFieldNames;
+    }
+
+    /**
+     * Определяет каким образом автоматически создаваемые сериализаторы java бинов (см. {@link BeanSerializer}) будут извлекать значения свойств:
+     * <ol>
+     * <li> <code>false</code> (по умолчанию) - посредством стандартных механизмов рефлексии.
+     * <li> <code>true</code> - посредством {@link java.lang.invoke.MethodHandle}, с записью значений примитивных типов без упаковки в объекты-обертки.
+     * </ol>
+     * Изменение данного свойства сбрасывает кэш ранее подобранных для данного контекста сериализаторов, поэтому его рекомендуется
+     * устанавливать в процессе инициализации контекста.
+     *
+     * @return <code>true</code> если значения свойств бинов извлекаются посредством {@link java.lang.invoke.MethodHandle}.
+     */
+    public boolean isUseMethodHandles() {
+        return registry.useMethodHandles;
+    }
+    public synchronized void setUseMethodHandles(final boolean useMethodHandles) {
+        final Registry r = registry;
+        if (r.useMethodHandles != useMethodHandles)
+            registry = new Registry(r.serializers, r.cserializers, r.iserializers, useMethodHandles);
     }
 
     /**
@@ -126,45 +214,38 @@ public class JsonContext {
      * @param recursive  если <code>true</code> то данный сериализер будет автоматически применяться и для всех классов унаследованных от указанного в аргументе.
      * @param serializer сериализер ассоциируемый c указанным классом (иерархией классов).
      */
-    public void registerSerializer(final Class<?> cls, final JsonSerializer serializer, final boolean recursive) {
+    public synchronized void registerSerializer(final Class<?> cls, final JsonSerializer serializer, final boolean recursive) {
         if (cls == null || serializer == null)
             throw new IllegalArgumentException("All arguments should be specified");
-        if (cls.isInterface()) {
-            iserializers.put(cls, serializer);
-        } else {
-            serializers.put(cls, serializer);
-            if (recursive) {
-                cserializers.put(cls, serializer);
-            }
-        }
+        final Registry r = registry;
+        final HashMap<Class<?>, JsonSerializer> serializers = new HashMap<>(r.serializers);
+        final HashMap<Class<?>, JsonSerializer> cserializers = new HashMap<>(r.cserializers);
+        final HashMap<Class<?>, JsonSerializer> iserializers = new HashMap<>(r.iserializers);
+        register(serializers, cserializers, iserializers, cls, serializer, recursive);
+        registry = new Registry(serializers, cserializers, iserializers, r.useMethodHandles);
     }
 
-    public int removeSerializer(final Class<?> cls, final boolean recursive) {
+    /**
+     * Удаляет ранее зарегистрированные для указанного класса (иерархии классов) или интерфейса сериализаторы.
+     *
+     * @param cls       класс или интерфейс для которого были зарегистрированы сериализаторы.
+     * @param recursive если <code>true</code> то будут удалены также сериализаторы зарегистрированные для всех классов-потомков (интерфейсов-потомков).
+     * @return количество удаленных правил.
+     */
+    public synchronized int removeSerializer(final Class<?> cls, final boolean recursive) {
         if (cls == null)
             throw new IllegalArgumentException("Class must be specified");
-
+        final Registry r = registry;
+        final HashMap<Class<?>, JsonSerializer> serializers = new HashMap<>(r.serializers);
+        final HashMap<Class<?>, JsonSerializer> cserializers = new HashMap<>(r.cserializers);
+        final HashMap<Class<?>, JsonSerializer> iserializers = new HashMap<>(r.iserializers);
         int removed = 0;
         if (recursive) {
             if (cls.isInterface()) {
-                for (Class<?> c : iserializers.keySet()) {
-                    if (cls.isAssignableFrom(c)) {
-                        iserializers.remove(c);
-                        removed++;
-                    }
-                }
+                removed += removeAssignable(iserializers, cls);
             } else {
-                for (Class<?> c : cserializers.keySet()) {
-                    if (cls.isAssignableFrom(c)) {
-                        cserializers.remove(c);
-                        removed++;
-                    }
-                }
-                for (Class<?> c : serializers.keySet()) {
-                    if (cls.isAssignableFrom(c)) {
-                        serializers.remove(c);
-                        removed++;
-                    }
-                }
+                removed += removeAssignable(cserializers, cls);
+                removed += removeAssignable(serializers, cls);
             }
         } else {
             if (iserializers.remove(cls) != null)
@@ -174,6 +255,19 @@ public class JsonContext {
             if (serializers.remove(cls) != null)
                 removed++;
         }
+        if (removed > 0)
+            registry = new Registry(serializers, cserializers, iserializers, r.useMethodHandles);
+        return removed;
+    }
+
+    private static int removeAssignable(final Map<Class<?>, JsonSerializer> map, final Class<?> cls) {
+        int removed = 0;
+        for (Iterator<Class<?>> it = map.keySet().iterator(); it.hasNext(); ) {
+            if (cls.isAssignableFrom(it.next())) {
+                it.remove();
+                removed++;
+            }
+        }
         return removed;
     }
 
@@ -185,10 +279,32 @@ public class JsonContext {
      */
     @SuppressWarnings("unchecked")
     public <T> JsonSerializer<T> getSerializer(final Class<? extends T> cls) {
-        JsonSerializer result = serializers.get(cls);
+        final Registry r = registry;
+        JsonSerializer result = r.resolved.get(cls);
+        if (result == null) {
+            result = resolveSerializer(r, cls);
+            final JsonSerializer prev = r.resolved.putIfAbsent(cls, result);
+            if (prev != null)
+                result = prev;
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает объект, отвечающий за восстановление из JSON формата объектов указанного java класса (см. {@link JsonReader#getObject(java.lang.reflect.Type)}).
+     *
+     * @param cls класс бина.
+     * @return соответствующий десериализатор. Метод никогда не возвращает <code>null</code>.
+     * @throws IllegalArgumentException если объекты указанного класса не могут быть восстановлены (например, класс не имеет конструктора без аргументов).
+     */
+    public BeanDeserializer getDeserializer(final Class<?> cls) {
+        final ConcurrentHashMap<Class<?>, BeanDeserializer> deserializers = this.deserializers;
+        BeanDeserializer result = deserializers.get(cls);
         if (result == null) {
-            result = resolveSerializer(cls);
-            serializers.put(cls, result);
+            result = new BeanDeserializer(cls, this);
+            final BeanDeserializer prev = deserializers.putIfAbsent(cls, result);
+            if (prev != null)
+                result = prev;
         }
         return result;
     }
@@ -196,17 +312,21 @@ public class JsonContext {
     /**
      * Осуществляет поиск подходящего сериализера для указанного класса. Выполняется один раз для каждого класса чьи объекты участвуют в сериализации в JSON.
      *
+     * @param r   используемый набор правил.
      * @param cls класс для которого требуется подобрать сериализер.
      * @return соответствующий сериализер. Метод никогда не возвращает <code>null</code>.
      */
-    private JsonSerializer resolveSerializer(final Class<?> cls) {
+    private JsonSerializer resolveSerializer(final Registry r, final Class<?> cls) {
+        JsonSerializer result = r.serializers.get(cls);
+        if (result != null)
+            return result;
         if (cls.isArray()) {
             // если это массив объектов какого-либо класса ...
             return Serializers.OBJECT_ARRAY;
         }
         // ищем прямые указания как сериализовать данный класс или один из его предков (только с пометкой что это правило применимо к классам-потомкам)ю
         for (Class<?> c = cls; c != null && c.getSuperclass() != null; c = c.getSuperclass()) {
-            JsonSerializer result = cserializers.get(c);
+            result = r.cserializers.get(c);
             if (result != null)
                 return result;
             final JsonUseSeriazer an = JsonUtil.getDeclaredAnnotation(c, JsonUseSeriazer.class);
@@ -217,12 +337,26 @@ public class JsonContext {
             }
         }
         // А может требуемый класс реализует какие-либо знакомые нам интерфейсы ?
-        for (Map.Entry<Class<?>, JsonSerializer> entry : iserializers.entrySet()) {
-            if (entry.getKey().isAssignableFrom(cls)) {
-                return entry.getValue();
+        // Интерфейсы просматриваются начиная с наиболее специфичных: сначала непосредственно реализуемые классом (и их предки), затем - его суперклассами.
+        if (!r.iserializers.isEmpty()) {
+            final ArrayDeque<Class<?>> queue = new ArrayDeque<>();
+            final HashSet<Class<?>> visited = new HashSet<>();
+            if (cls.isInterface())
+                queue.add(cls);
+            for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+                Collections.addAll(queue, c.getInterfaces());
+                while (!queue.isEmpty()) {
+                    final Class<?> i = queue.poll();
+                    if (!visited.add(i))
+                        continue;
+                    result = r.iserializers.get(i);
+                    if (result != null)
+                        return result;
+                    Collections.addAll(queue, i.getInterfaces());
+                }
             }
         }
         // Если никакие иные рецепты не помогли то остается трактовать данный класс как просто очередной java bean.
-        return new BeanSerializer(cls);
+        return r.useMethodHandles ? new BeanSerializer(cls, this) : new BeanSerializer(cls);
     }
 }
@@ -0,0 +1,45 @@
+package org.echosoft.common.json;
+
+import java.io.IOException;
+
+/**
+ * Поднимается в случае обнаружения синтаксических ошибок во входном потоке JSON данных
+ * или невозможности преобразовать очередное значение из потока в объект требуемого класса.
+ *
+ * @author Anton Sharapov
+ */
+public class JsonParseException extends IOException {
+
+    private final int line;
+    private final int column;
+
+    public JsonParseException(final String message, final int line, final int column) {
+        super(message + " at line " + line + ", column " + column);
+        this.line = line;
+        this.column = column;
+    }
+
+    public JsonParseException(final String message, final Throwable cause, final int line, final int column) {
+        super(message + " at line " + line + ", column " + column, cause);
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Возвращает номер строки (начиная с 1) во входном потоке где была обнаружена ошибка.
+     *
+     * @return номер строки где была обнаружена ошибка.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Возвращает номер позиции в строке (начиная с 1) во входном потоке где была обнаружена ошибка.
+     *
+     * @return номер позиции в строке где была обнаружена ошибка.
+     */
+    public int getColumn() {
+        return column;
+    }
+}
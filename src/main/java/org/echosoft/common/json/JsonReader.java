@@ -0,0 +1,1075 @@
+package org.echosoft.common.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.echosoft.common.json.introspect.BeanDeserializer;
+import org.echosoft.common.utils.StringUtil;
+
+/**
+ * <p>Потоковый (pull) парсер данных в формате JSON, аналог {@link JsonWriter} для обратного преобразования.</p>
+ * <p>Парсер последовательно возвращает лексемы входного потока (см. {@link JsonToken}). Текст очередного имени свойства, строки или числа
+ * доступен посредством метода {@link #getText()} в виде последовательности символов, которая ссылается непосредственно на внутренний буфер
+ * парсера (копирование выполняется только для строк содержащих escape-последовательности) и остается корректной только до следующего вызова {@link #next()}.
+ * Для получения значений в виде java объектов (в том числе и бинов, с учетом аннотаций {@link org.echosoft.common.json.annotate.JsonField})
+ * предназначены методы {@link #readObject(Class)} и {@link #getObject(Type)}.</p>
+ * <p>Помимо строгого JSON парсер понимает имена свойств без кавычек (в таком виде их формирует
+ * {@link Serializers#COMPACT_FIELDNAME_SERIALIZER}), а также значения <code>NaN</code> и <code>Infinity</code>.</p>
+ * Пример использования:<br/>
+ * <pre>
+ *  JsonReader jr = new JsonReader(ctx, reader);
+ *  for (JsonToken token = jr.next(); token != JsonToken.EOF; token = jr.next()) {
+ *      if (token == JsonToken.FIELD_NAME) {
+ *          CharSequence name = jr.getText();
+ *      }
+ *  }
+ *
+ *  Company company = new JsonReader(ctx, text).readObject(Company.class);
+ * </pre>
+ * <strong>Внимание!</strong> Экземпляры данного класса не являются потокобезопасными и должны использоваться только из одного потока в каждую единицу времени.
+ *
+ * @author Anton Sharapov
+ */
+public class JsonReader implements Closeable, AutoCloseable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    // состояния парсера в рамках каждого уровня вложенности ...
+    private static final int TOP = 0;               // верхний уровень: ожидается очередное значение или окончание потока.
+    private static final int ARRAY_START = 1;       // сразу после '[' : ожидается значение или ']'
+    private static final int ARRAY_NEXT = 2;        // после элемента массива: ожидается ',' или ']'
+    private static final int OBJECT_START = 3;      // сразу после '{' : ожидается имя свойства или '}'
+    private static final int OBJECT_NAME = 4;       // после имени свойства: ожидается ':' и значение свойства.
+    private static final int OBJECT_NEXT = 5;       // после значения свойства: ожидается ',' или '}'
+    private static final int TOP_DONE = 6;          // верхний уровень после корневого значения: допустимы только пробельные символы до окончания потока.
+
+    /**
+     * Последовательность символов, ссылающаяся на фрагмент некоторого символьного буфера.
+     */
+    private static final class Slice implements CharSequence {
+        private char[] chars;
+        private int offset;
+        private int length;
+
+        private void set(final char[] chars, final int offset, final int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= length)
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (start < 0 || end > length || start > end)
+                throw new IndexOutOfBoundsException();
+            return new String(chars, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+
+    private final JsonContext ctx;
+    private final Reader in;            // входной поток (если указан).
+    private char[] buf;                 // буфер с содержимым входного потока.
+    private int pos;                    // позиция в буфере очередного необработанного символа.
+    private int limit;                  // позиция в буфере за последним прочитанным символом.
+    private int mark;                   // позиция в буфере начала текущей разбираемой лексемы (или -1), используется при подкачке данных из потока.
+    private long offset;                // смещение первого символа буфера относительно начала потока.
+    private boolean eof;
+    private int line;                   // номер текущей строки во входном потоке (начиная с 1).
+    private long lineStart;             // смещение первого символа текущей строки относительно начала потока.
+    private int[] stack;                // состояния парсера на каждом уровне вложенности.
+    private int depth;                  // текущий уровень вложенности.
+    private JsonToken token;            // последняя возвращенная методом next() лексема.
+    private final Slice text;           // текст последней лексемы.
+    private char[] scratch;             // буфер для раскодированного содержимого строк с escape-последовательностями.
+    private int scratchLength;
+
+    /**
+     * Создает парсер для разбора содержимого символьного потока.
+     *
+     * @param ctx глобальный контекст. Обязательное поле, не может быть <code>null</code>.
+     * @param in  входной поток с данными в формате JSON. Не может быть <code>null</code>.
+     */
+    public JsonReader(final JsonContext ctx, final Reader in) {
+        this(ctx, in, new char[DEFAULT_BUFFER_SIZE], 0, 0);
+    }
+
+    /**
+     * Создает парсер для разбора содержимого строки.
+     *
+     * @param ctx  глобальный контекст. Обязательное поле, не может быть <code>null</code>.
+     * @param text строка с данными в формате JSON. Не может быть <code>null</code>.
+     */
+    public JsonReader(final JsonContext ctx, final String text) {
+        this(ctx, null, text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Создает парсер для разбора фрагмента символьного массива. Содержимое массива не копируется, поэтому оно не должно
+     * изменяться в процессе работы парсера.
+     *
+     * @param ctx    глобальный контекст. Обязательное поле, не может быть <code>null</code>.
+     * @param chars  массив с данными в формате JSON. Не может быть <code>null</code>.
+     * @param offset смещение, по которому доступен первый символ требуемого фрагмента.
+     * @param length кол-во символов в разбираемом фрагменте.
+     */
+    public JsonReader(final JsonContext ctx, final char[] chars, final int offset, final int length) {
+        this(ctx, null, chars, offset, length);
+    }
+
+    private JsonReader(final JsonContext ctx, final Reader in, final char[] chars, final int offset, final int length) {
+        if (ctx == null)
+            throw new IllegalArgumentException("JSON context must be specified");
+        this.ctx = ctx;
+        this.in = in;
+        this.buf = chars;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.mark = -1;
+        this.offset = -offset;
+        this.eof = in == null;
+        this.line = 1;
+        this.lineStart = 0;
+        this.stack = new int[16];
+        this.depth = 0;
+        this.stack[0] = TOP;
+        this.text = new Slice();
+    }
+
+    /**
+     * Возвращает глобальный контекст, в рамках которого работает парсер.
+     *
+     * @return глобальный контекст.
+     */
+    public JsonContext getContext() {
+        return ctx;
+    }
+
+    /**
+     * Возвращает последнюю прочитанную методом {@link #next()} лексему.
+     *
+     * @return последняя прочитанная лексема или <code>null</code> если разбор потока еще не начинался.
+     */
+    public JsonToken getToken() {
+        return token;
+    }
+
+    /**
+     * Возвращает текущий уровень вложенности объектов и массивов (<code>0</code> - верхний уровень).
+     *
+     * @return текущий уровень вложенности.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return номер текущей строки во входном потоке (начиная с 1).
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return номер текущей позиции в строке во входном потоке (начиная с 1).
+     */
+    public int getColumn() {
+        return (int) (offset + pos - lineStart) + 1;
+    }
+
+    /**
+     * Читает очередную лексему из входного потока.
+     *
+     * @return тип прочитанной лексемы. По достижении конца потока возвращает {@link JsonToken#EOF}.
+     * @throws JsonParseException в случае синтаксических ошибок во входном потоке.
+     * @throws IOException        в случае каких-либо проблем с чтением данных из входного потока.
+     */
+    public JsonToken next() throws IOException {
+        int c;
+        switch (stack[depth]) {
+            case TOP:
+                c = skipWhitespaces();
+                if (c < 0)
+                    return token = JsonToken.EOF;
+                stack[depth] = TOP_DONE;
+                return token = scanValue(c);
+            case TOP_DONE:
+                c = skipWhitespaces();
+                if (c >= 0)
+                    throw syntaxError(c, "end of stream");
+                return token = JsonToken.EOF;
+            case ARRAY_START:
+                c = skipWhitespaces();
+                if (c == ']') {
+                    depth--;
+                    return token = JsonToken.END_ARRAY;
+                }
+                stack[depth] = ARRAY_NEXT;
+                return token = scanValue(c);
+            case ARRAY_NEXT:
+                c = skipWhitespaces();
+                if (c == ']') {
+                    depth--;
+                    return token = JsonToken.END_ARRAY;
+                }
+                if (c != ',')
+                    throw syntaxError(c, "',' or ']'");
+                return token = scanValue(skipWhitespaces());
+            case OBJECT_START:
+                c = skipWhitespaces();
+                if (c == '}') {
+                    depth--;
+                    return token = JsonToken.END_OBJECT;
+                }
+                scanName(c);
+                stack[depth] = OBJECT_NAME;
+                return token = JsonToken.FIELD_NAME;
+            case OBJECT_NAME:
+                c = skipWhitespaces();
+                if (c != ':')
+                    throw syntaxError(c, "':'");
+                stack[depth] = OBJECT_NEXT;
+                return token = scanValue(skipWhitespaces());
+            case OBJECT_NEXT:
+                c = skipWhitespaces();
+                if (c == '}') {
+                    depth--;
+                    return token = JsonToken.END_OBJECT;
+                }
+                if (c != ',')
+                    throw syntaxError(c, "',' or '}'");
+                scanName(skipWhitespaces());
+                stack[depth] = OBJECT_NAME;
+                return token = JsonToken.FIELD_NAME;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Пропускает значение, первой лексемой которого является текущая лексема. Если текущая лексема {@link JsonToken#BEGIN_OBJECT} или {@link JsonToken#BEGIN_ARRAY}
+     * то будут пропущены все лексемы вплоть до соответствующей ей лексемы {@link JsonToken#END_OBJECT} или {@link JsonToken#END_ARRAY}.
+     * Для остальных типов лексем метод не делает ничего.
+     *
+     * @throws JsonParseException в случае синтаксических ошибок во входном потоке.
+     * @throws IOException        в случае каких-либо проблем с чтением данных из входного потока.
+     */
+    public void skipValue() throws IOException {
+        if (token != JsonToken.BEGIN_OBJECT && token != JsonToken.BEGIN_ARRAY)
+            return;
+        final int level = depth - 1;
+        while (depth > level) {
+            if (next() == JsonToken.EOF)
+                throw syntaxError(-1, "end of the value");
+        }
+    }
+
+    /**
+     * Возвращает текст последней прочитанной лексемы типа {@link JsonToken#FIELD_NAME}, {@link JsonToken#STRING} или {@link JsonToken#NUMBER}.
+     * Возвращаемая последовательность ссылается на внутренний буфер парсера и остается корректной только до очередного вызова метода {@link #next()}.
+     *
+     * @return текст последней прочитанной лексемы.
+     * @throws IllegalStateException если последняя прочитанная лексема не имеет текстового представления.
+     */
+    public CharSequence getText() {
+        if (token != JsonToken.FIELD_NAME && token != JsonToken.STRING && token != JsonToken.NUMBER)
+            throw new IllegalStateException("Illegal token: " + token);
+        return text;
+    }
+
+    /**
+     * Проверяет совпадает ли текст последней прочитанной лексемы (как правило, имени свойства) с указанной строкой. Не создает новых объектов.
+     *
+     * @param str строка с которой требуется сравнить текст лексемы.
+     * @return <code>true</code> если текст последней лексемы совпадает с указанной строкой.
+     */
+    public boolean textEquals(final String str) {
+        final int length = text.length;
+        if (str.length() != length)
+            return false;
+        final char[] chars = text.chars;
+        final int offset = text.offset;
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != str.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает текст последней прочитанной лексемы в виде строки.
+     *
+     * @return текст лексемы типа {@link JsonToken#FIELD_NAME}, {@link JsonToken#STRING} или {@link JsonToken#NUMBER};
+     * <code>"true"</code> или <code>"false"</code> для логических значений, <code>null</code> для лексемы {@link JsonToken#NULL}.
+     * @throws JsonParseException если текущая лексема не является скалярным значением или именем свойства.
+     */
+    public String getString() throws JsonParseException {
+        switch (token) {
+            case FIELD_NAME:
+            case STRING:
+            case NUMBER:
+                return text.toString();
+            case TRUE:
+                return "true";
+            case FALSE:
+                return "false";
+            case NULL:
+                return null;
+            default:
+                throw conversionError("string", null);
+        }
+    }
+
+    /**
+     * Возвращает значение последней прочитанной лексемы типа {@link JsonToken#TRUE} или {@link JsonToken#FALSE}.
+     *
+     * @return логическое значение.
+     * @throws JsonParseException если текущая лексема не является логическим значением.
+     */
+    public boolean getBoolean() throws JsonParseException {
+        if (token == JsonToken.TRUE)
+            return true;
+        if (token == JsonToken.FALSE)
+            return false;
+        throw conversionError("boolean", null);
+    }
+
+    /**
+     * Возвращает значение последней прочитанной лексемы в виде целого числа.
+     *
+     * @return целочисленное значение.
+     * @throws JsonParseException если текущая лексема не является числом (или строкой с числом) либо значение не укладывается в диапазон <code>int</code>.
+     */
+    public int getInt() throws JsonParseException {
+        final long value = getLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw conversionError("int", null);
+        return (int) value;
+    }
+
+    /**
+     * Возвращает значение последней прочитанной лексемы в виде целого числа. Разбор чисел без дробной части и экспоненты выполняется без создания новых объектов.
+     *
+     * @return целочисленное значение.
+     * @throws JsonParseException если текущая лексема не является числом (или строкой с числом) либо значение не укладывается в диапазон <code>long</code>.
+     */
+    public long getLong() throws JsonParseException {
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING)
+            throw conversionError("long", null);
+        final char[] chars = text.chars;
+        final int end = text.offset + text.length;
+        int i = text.offset;
+        final boolean negative = i < end && chars[i] == '-';
+        if (negative || (i < end && chars[i] == '+'))
+            i++;
+        if (i < end && end - i <= 18) {
+            long result = 0;
+            for (; i < end; i++) {
+                final int digit = chars[i] - '0';
+                if (digit < 0 || digit > 9)
+                    break;
+                result = result * 10 + digit;
+            }
+            if (i == end)
+                return negative ? -result : result;
+        }
+        try {
+            return new BigDecimal(text.toString()).longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw conversionError("long", e);
+        }
+    }
+
+    /**
+     * Возвращает значение последней прочитанной лексемы в виде числа с плавающей точкой.
+     *
+     * @return значение в виде числа с плавающей точкой.
+     * @throws JsonParseException если текущая лексема не является числом (или строкой с числом).
+     */
+    public double getDouble() throws JsonParseException {
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING)
+            throw conversionError("double", null);
+        try {
+            return Double.parseDouble(text.toString());
+        } catch (NumberFormatException e) {
+            throw conversionError("double", e);
+        }
+    }
+
+    /**
+     * Возвращает значение последней прочитанной лексемы в виде {@link BigDecimal}.
+     *
+     * @return значение в виде {@link BigDecimal}.
+     * @throws JsonParseException если текущая лексема не является числом (или строкой с числом).
+     */
+    public BigDecimal getBigDecimal() throws JsonParseException {
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING)
+            throw conversionError("BigDecimal", null);
+        try {
+            return new BigDecimal(text.chars, text.offset, text.length);
+        } catch (NumberFormatException e) {
+            throw conversionError("BigDecimal", e);
+        }
+    }
+
+    /**
+     * Возвращает значение последней прочитанной лексемы типа {@link JsonToken#NUMBER} в виде наиболее подходящего объекта:
+     * {@link Long} для целых чисел укладывающихся в диапазон <code>long</code>, {@link BigDecimal} для прочих целых чисел и {@link Double} для остальных.
+     *
+     * @return числовое значение.
+     * @throws JsonParseException если текущая лексема не является числом.
+     */
+    public Number getNumber() throws JsonParseException {
+        if (token != JsonToken.NUMBER)
+            throw conversionError("number", null);
+        final char[] chars = text.chars;
+        final int end = text.offset + text.length;
+        for (int i = text.offset; i < end; i++) {
+            final char c = chars[i];
+            if ((c < '0' || c > '9') && c != '-' && c != '+')
+                return getDouble();
+        }
+        try {
+            return getLong();
+        } catch (JsonParseException e) {
+            return getBigDecimal();
+        }
+    }
+
+    /**
+     * Читает из потока очередное значение и преобразует его в объект указанного класса.
+     *
+     * @param cls класс результата.
+     * @return прочитанный объект или <code>null</code>.
+     * @throws JsonParseException        в случае синтаксических ошибок во входном потоке или невозможности преобразовать значение в объект требуемого класса.
+     * @throws IOException               в случае каких-либо проблем с чтением данных из входного потока.
+     * @throws InvocationTargetException в случае если при создании объекта или установке значений его свойств произошла ошибка.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T readObject(final Class<T> cls) throws IOException, InvocationTargetException {
+        return (T) readObject((Type) cls);
+    }
+
+    /**
+     * Читает из потока очередное значение и преобразует его в объект указанного (в том числе параметризованного) типа.
+     *
+     * @param type тип результата, например <code>List&lt;Person&gt;</code>.
+     * @return прочитанный объект или <code>null</code>.
+     * @throws JsonParseException        в случае синтаксических ошибок во входном потоке или невозможности преобразовать значение в объект требуемого класса.
+     * @throws IOException               в случае каких-либо проблем с чтением данных из входного потока.
+     * @throws InvocationTargetException в случае если при создании объекта или установке значений его свойств произошла ошибка.
+     */
+    public Object readObject(final Type type) throws IOException, InvocationTargetException {
+        if (next() == JsonToken.EOF)
+            throw syntaxError(-1, "value");
+        return getObject(type);
+    }
+
+    /**
+     * Преобразует значение, первой лексемой которого является текущая лексема, в объект указанного типа. Для составных значений (объектов и массивов)
+     * по завершении работы метода текущей лексемой будет соответствующая лексема {@link JsonToken#END_OBJECT} или {@link JsonToken#END_ARRAY}.
+     * Поддерживаются:
+     * <ul>
+     * <li> примитивные типы и их обертки, {@link String}, {@link CharSequence}, {@link BigDecimal}, {@link BigInteger}, {@link Number}.
+     * <li> перечисления (по имени элемента) и {@link Date} (в форматах <code>yyyy-MM-dd</code>, <code>yyyy-MM-dd'T'HH:mm:ss</code> или в виде кол-ва миллисекунд).
+     * <li> массивы, коллекции и ассоциативные массивы (с учетом параметров типа).
+     * <li> {@link Object} - в зависимости от содержимого потока {@link LinkedHashMap}, {@link ArrayList}, {@link String}, {@link Number}, {@link Boolean}.
+     * <li> прочие классы рассматриваются как java бины (см. {@link BeanDeserializer}).
+     * </ul>
+     *
+     * @param type тип результата.
+     * @return прочитанный объект или <code>null</code>.
+     * @throws JsonParseException        в случае синтаксических ошибок во входном потоке или невозможности преобразовать значение в объект требуемого класса.
+     * @throws IOException               в случае каких-либо проблем с чтением данных из входного потока.
+     * @throws InvocationTargetException в случае если при создании объекта или установке значений его свойств произошла ошибка.
+     */
+    public Object getObject(final Type type) throws IOException, InvocationTargetException {
+        if (token == JsonToken.NULL)
+            return null;
+        final Class<?> cls = rawClass(type);
+        if (cls == Object.class)
+            return getNaturalObject();
+        if (cls == String.class || cls == CharSequence.class)
+            return getString();
+        if (cls == int.class || cls == Integer.class)
+            return getInt();
+        if (cls == long.class || cls == Long.class)
+            return getLong();
+        if (cls == double.class || cls == Double.class)
+            return getDouble();
+        if (cls == boolean.class || cls == Boolean.class)
+            return getBoolean();
+        if (cls == BigDecimal.class)
+            return getBigDecimal();
+        if (cls == float.class || cls == Float.class)
+            return (float) getDouble();
+        if (cls == short.class || cls == Short.class) {
+            final int value = getInt();
+            if (value < Short.MIN_VALUE || value > Short.MAX_VALUE)
+                throw conversionError("short", null);
+            return (short) value;
+        }
+        if (cls == byte.class || cls == Byte.class) {
+            final int value = getInt();
+            if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE)
+                throw conversionError("byte", null);
+            return (byte) value;
+        }
+        if (cls == char.class || cls == Character.class) {
+            if (token != JsonToken.STRING || text.length != 1)
+                throw conversionError("char", null);
+            return text.chars[text.offset];
+        }
+        if (cls == BigInteger.class)
+            return getBigDecimal().toBigIntegerExact();
+        if (cls == Number.class)
+            return token == JsonToken.STRING ? getBigDecimal() : getNumber();
+        if (cls == Date.class)
+            return getDate();
+        if (cls.isEnum())
+            return getEnum(cls);
+        if (cls.isArray())
+            return getArray(type, cls);
+        if (Collection.class.isAssignableFrom(cls) || cls == Iterable.class)
+            return getCollection(type, cls);
+        if (Map.class.isAssignableFrom(cls))
+            return getMap(type, cls);
+        if (token != JsonToken.BEGIN_OBJECT)
+            throw conversionError(cls.getName(), null);
+        return ctx.getDeserializer(cls).deserialize(this);
+    }
+
+
+    /**
+     * Закрывает входной поток (если парсер был создан для разбора потока).
+     *
+     * @throws IOException в случае ошибок при закрытии потока.
+     */
+    @Override
+    public void close() throws IOException {
+        if (in != null)
+            in.close();
+    }
+
+
+    private Object getNaturalObject() throws IOException, InvocationTargetException {
+        switch (token) {
+            case BEGIN_OBJECT: {
+                final Map<String, Object> result = new LinkedHashMap<>();
+                while (next() != JsonToken.END_OBJECT) {
+                    final String name = text.toString();
+                    next();
+                    result.put(name, getNaturalObject());
+                }
+                return result;
+            }
+            case BEGIN_ARRAY: {
+                final List<Object> result = new ArrayList<>();
+                while (next() != JsonToken.END_ARRAY) {
+                    result.add(getNaturalObject());
+                }
+                return result;
+            }
+            case STRING:
+                return text.toString();
+            case NUMBER:
+                return getNumber();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case NULL:
+                return null;
+            default:
+                throw conversionError("object", null);
+        }
+    }
+
+    private Date getDate() throws JsonParseException {
+        if (token == JsonToken.NUMBER)
+            return new Date(getLong());
+        if (token != JsonToken.STRING)
+            throw conversionError("date", null);
+        try {
+            return text.length == 10 ? StringUtil.parseISODate(text) : StringUtil.parseISODateTime(text);
+        } catch (ParseException | NumberFormatException e) {
+            throw conversionError("date", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object getEnum(final Class<?> cls) throws JsonParseException {
+        if (token != JsonToken.STRING)
+            throw conversionError(cls.getName(), null);
+        try {
+            return Enum.valueOf((Class<Enum>) cls, text.toString());
+        } catch (IllegalArgumentException e) {
+            throw conversionError(cls.getName(), e);
+        }
+    }
+
+    private Object getArray(final Type type, final Class<?> cls) throws IOException, InvocationTargetException {
+        if (token != JsonToken.BEGIN_ARRAY)
+            throw conversionError(cls.getName(), null);
+        final Type componentType = type instanceof GenericArrayType ? ((GenericArrayType) type).getGenericComponentType() : cls.getComponentType();
+        final Class<?> componentClass = cls.getComponentType();
+        Object result = Array.newInstance(componentClass, 16);
+        int size = 0;
+        while (next() != JsonToken.END_ARRAY) {
+            if (size == Array.getLength(result)) {
+                final Object extended = Array.newInstance(componentClass, size * 2);
+                System.arraycopy(result, 0, extended, 0, size);
+                result = extended;
+            }
+            final Object value = getObject(componentType);
+            if (value != null)
+                Array.set(result, size, value);
+            size++;
+        }
+        if (size < Array.getLength(result)) {
+            final Object trimmed = Array.newInstance(componentClass, size);
+            System.arraycopy(result, 0, trimmed, 0, size);
+            result = trimmed;
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object getCollection(final Type type, final Class<?> cls) throws IOException, InvocationTargetException {
+        if (token != JsonToken.BEGIN_ARRAY)
+            throw conversionError(cls.getName(), null);
+        final Collection<Object> result;
+        if (!cls.isInterface() && !java.lang.reflect.Modifier.isAbstract(cls.getModifiers())) {
+            result = (Collection<Object>) newInstance(cls);
+        } else
+        if (cls.isAssignableFrom(ArrayList.class)) {
+            result = new ArrayList<>();
+        } else
+        if (cls.isAssignableFrom(LinkedHashSet.class)) {
+            result = new LinkedHashSet<>();
+        } else
+        if (cls.isAssignableFrom(TreeSet.class) || cls == SortedSet.class) {
+            result = new TreeSet<>();
+        } else
+            throw conversionError(cls.getName(), null);
+        final Type elementType = typeArgument(type, 0);
+        while (next() != JsonToken.END_ARRAY) {
+            result.add(getObject(elementType));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object getMap(final Type type, final Class<?> cls) throws IOException, InvocationTargetException {
+        if (token != JsonToken.BEGIN_OBJECT)
+            throw conversionError(cls.getName(), null);
+        final Map<Object, Object> result;
+        if (!cls.isInterface() && !java.lang.reflect.Modifier.isAbstract(cls.getModifiers())) {
+            result = (Map<Object, Object>) newInstance(cls);
+        } else
+        if (cls.isAssignableFrom(LinkedHashMap.class)) {
+            result = new LinkedHashMap<>();
+        } else
+        if (cls.isAssignableFrom(TreeMap.class) || cls == SortedMap.class) {
+            result = new TreeMap<>();
+        } else
+            throw conversionError(cls.getName(), null);
+        final Class<?> keyClass = rawClass(typeArgument(type, 0));
+        final Type valueType = typeArgument(type, 1);
+        while (next() != JsonToken.END_OBJECT) {
+            final Object key = keyClass == Object.class || keyClass == String.class || keyClass == CharSequence.class
+                    ? text.toString()
+                    : getObject(keyClass);
+            next();
+            result.put(key, getObject(valueType));
+        }
+        return result;
+    }
+
+    private Object newInstance(final Class<?> cls) throws InvocationTargetException {
+        try {
+            return cls.getDeclaredConstructor().newInstance();
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    private static Type typeArgument(final Type type, final int index) {
+        if (type instanceof ParameterizedType) {
+            final Type[] args = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < args.length)
+                return args[index];
+        }
+        return Object.class;
+    }
+
+    private static Class<?> rawClass(final Type type) {
+        if (type instanceof Class)
+            return (Class<?>) type;
+        if (type instanceof ParameterizedType)
+            return rawClass(((ParameterizedType) type).getRawType());
+        if (type instanceof GenericArrayType)
+            return Array.newInstance(rawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        if (type instanceof WildcardType)
+            return rawClass(((WildcardType) type).getUpperBounds()[0]);
+        if (type instanceof TypeVariable) {
+            final Type[] bounds = ((TypeVariable) type).getBounds();
+            return bounds.length > 0 ? rawClass(bounds[0]) : Object.class;
+        }
+        return Object.class;
+    }
+
+
+    /**
+     * Разбирает значение, первым символом которого является указанный символ.
+     */
+    private JsonToken scanValue(final int c) throws IOException {
+        switch (c) {
+            case '{':
+                push(OBJECT_START);
+                return JsonToken.BEGIN_OBJECT;
+            case '[':
+                push(ARRAY_START);
+                return JsonToken.BEGIN_ARRAY;
+            case '"':
+                scanString();
+                return JsonToken.STRING;
+            case '-':
+                mark = pos - 1;         // при подкачке данных символ '-' должен сохраниться в буфере.
+                if (peek() == 'I') {
+                    scanWord();
+                    if (textEquals("-Infinity"))
+                        return JsonToken.NUMBER;
+                    throw syntaxError(c, "number");
+                }
+                // отрицательное число ...
+            case '0': case '1': case '2': case '3': case '4':
+            case '5': case '6': case '7': case '8': case '9':
+                scanNumber(c);
+                return JsonToken.NUMBER;
+            case 't':
+            case 'f':
+            case 'n':
+            case 'N':
+            case 'I':
+                scanWord();
+                if (textEquals("true"))
+                    return JsonToken.TRUE;
+                if (textEquals("false"))
+                    return JsonToken.FALSE;
+                if (textEquals("null"))
+                    return JsonToken.NULL;
+                if (textEquals("NaN") || textEquals("Infinity"))
+                    return JsonToken.NUMBER;
+                throw syntaxError(c, "value");
+            default:
+                throw syntaxError(c, "value");
+        }
+    }
+
+    /**
+     * Разбирает имя свойства объекта (в кавычках или без), первым символом которого является указанный символ.
+     */
+    private void scanName(final int c) throws IOException {
+        if (c == '"') {
+            scanString();
+        } else
+        if (c == ':') {
+            // свойство с пустым именем (так сериализуется null в режиме Serializers.COMPACT_FIELDNAME_SERIALIZER)
+            pos--;
+            text.set(buf, pos, 0);
+        } else
+        if (c < 0 || c == ',' || c == '}' || c == '{' || c == '[' || c == ']' || c <= ' ') {
+            throw syntaxError(c, "property name");
+        } else {
+            mark = pos - 1;
+            for (;;) {
+                if (pos >= limit && !fill())
+                    break;
+                final char ch = buf[pos];
+                if (ch == ':' || ch <= ' ' || ch == ',' || ch == '}' || ch == '{' || ch == '[' || ch == ']' || ch == '"')
+                    break;
+                pos++;
+            }
+            text.set(buf, mark, pos - mark);
+            mark = -1;
+        }
+    }
+
+    /**
+     * Разбирает число, первый символ которого уже был прочитан. Число должно соответствовать грамматике JSON:
+     * <code>-?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?</code>, за ним не могут непосредственно следовать цифры, буквы и символы <code>'.', '+', '-'</code>.
+     */
+    private void scanNumber(final int first) throws IOException {
+        mark = pos - 1;
+        int c = first == '-' ? read() : first;
+        if (c == '0') {
+            c = peek();
+        } else
+        if (c >= '1' && c <= '9') {
+            c = skipDigits();
+        } else
+            throw syntaxError(c, "digit");
+        if (c == '.') {
+            pos++;
+            c = read();
+            if (c < '0' || c > '9')
+                throw syntaxError(c, "digit");
+            c = skipDigits();
+        }
+        if (c == 'e' || c == 'E') {
+            pos++;
+            c = read();
+            if (c == '+' || c == '-')
+                c = read();
+            if (c < '0' || c > '9')
+                throw syntaxError(c, "digit");
+            c = skipDigits();
+        }
+        if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '.' || c == '-' || c == '+')
+            throw syntaxError(c, "end of number");
+        text.set(buf, mark, pos - mark);
+        mark = -1;
+    }
+
+    /**
+     * Пропускает последовательность цифр.
+     *
+     * @return первый символ после последовательности цифр (остается непрочитанным) или <code>-1</code> если достигнут конец потока.
+     */
+    private int skipDigits() throws IOException {
+        for (;;) {
+            final int c = peek();
+            if (c < '0' || c > '9')
+                return c;
+            pos++;
+        }
+    }
+
+    /**
+     * Разбирает литерал, первый символ которого уже был прочитан.
+     */
+    private void scanWord() throws IOException {
+        mark = pos - 1;
+        for (;;) {
+            if (pos >= limit && !fill())
+                break;
+            final char ch = buf[pos];
+            if ((ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '.' || ch == '-' || ch == '+') {
+                pos++;
+            } else
+                break;
+        }
+        text.set(buf, mark, pos - mark);
+        mark = -1;
+    }
+
+    /**
+     * Разбирает строку, открывающая кавычка которой уже была прочитана.
+     */
+    private void scanString() throws IOException {
+        mark = pos;
+        boolean escaped = false;
+        for (;;) {
+            if (!escaped) {
+                int p = pos;
+                final int lim = limit;
+                final char[] chars = buf;
+                while (p < lim) {
+                    final char ch = chars[p];
+                    if (ch == '"' || ch == '\\')
+                        break;
+                    p++;
+                }
+                pos = p;
+            }
+            if (pos >= limit && !fill())
+                throw syntaxError(-1, "'\"'");
+            final char c = buf[pos++];
+            if (c == '"') {
+                if (escaped) {
+                    text.set(scratch, 0, scratchLength);
+                } else {
+                    text.set(buf, mark, pos - 1 - mark);
+                    mark = -1;
+                }
+                return;
+            }
+            if (c == '\\') {
+                if (!escaped) {
+                    scratchLength = 0;
+                    appendScratch(buf, mark, pos - 1 - mark);
+                    escaped = true;
+                    mark = -1;
+                }
+                appendScratch(scanEscape());
+            } else {
+                appendScratch(c);
+            }
+        }
+    }
+
+    private char scanEscape() throws IOException {
+        final int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+            case '\'':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u': {
+                int result = 0;
+                for (int i = 0; i < 4; i++) {
+                    final int h = read();
+                    final int digit = Character.digit(h, 16);
+                    if (h < 0 || digit < 0)
+                        throw syntaxError(h, "hex digit");
+                    result = (result << 4) | digit;
+                }
+                return (char) result;
+            }
+            default:
+                throw syntaxError(c, "escape sequence");
+        }
+    }
+
+    private void appendScratch(final char c) {
+        if (scratch == null) {
+            scratch = new char[64];
+        } else
+        if (scratchLength == scratch.length) {
+            scratch = Arrays.copyOf(scratch, scratchLength * 2);
+        }
+        scratch[scratchLength++] = c;
+    }
+
+    private void appendScratch(final char[] chars, final int offset, final int length) {
+        if (scratch == null || scratchLength + length > scratch.length)
+            scratch = Arrays.copyOf(scratch != null ? scratch : new char[0], Math.max(64, Math.max(scratchLength + length, scratchLength * 2)));
+        System.arraycopy(chars, offset, scratch, scratchLength, length);
+        scratchLength += length;
+    }
+
+    private void push(final int state) {
+        if (++depth == stack.length)
+            stack = Arrays.copyOf(stack, depth * 2);
+        stack[depth] = state;
+    }
+
+    private int skipWhitespaces() throws IOException {
+        for (;;) {
+            if (pos >= limit && !fill())
+                return -1;
+            final char c = buf[pos++];
+            if (c > ' ')
+                return c;
+            if (c == '\n') {
+                line++;
+                lineStart = offset + pos;
+            }
+        }
+    }
+
+    private int peek() throws IOException {
+        if (pos >= limit && !fill())
+            return -1;
+        return buf[pos];
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit && !fill())
+            return -1;
+        return buf[pos++];
+    }
+
+    /**
+     * Подкачивает очередную порцию данных из входного потока. Текущая разбираемая лексема (начиная с позиции {@link #mark}) при этом сохраняется в буфере.
+     *
+     * @return <code>false</code> если достигнут конец входного потока.
+     */
+    private boolean fill() throws IOException {
+        if (eof)
+            return false;
+        final int keep = mark >= 0 ? mark : pos;
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, limit - keep);
+            offset += keep;
+            limit -= keep;
+            pos -= keep;
+            if (mark >= 0)
+                mark = 0;
+        }
+        if (limit == buf.length)
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        int n;
+        do {
+            n = in.read(buf, limit, buf.length - limit);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    private JsonParseException syntaxError(final int c, final String expected) {
+        final String found = c < 0 ? "end of stream" : "'" + (char) c + "'";
+        return new JsonParseException("Expected " + expected + " but found " + found, line, getColumn());
+    }
+
+    private JsonParseException conversionError(final String type, final Throwable cause) {
+        final String value = token == JsonToken.FIELD_NAME || token == JsonToken.STRING || token == JsonToken.NUMBER
+                ? token + " '" + text + "'"
+                : String.valueOf(token);
+        return new JsonParseException("Can't convert " + value + " to " + type, cause, line, getColumn());
+    }
+}
@@ -0,0 +1,64 @@
+package org.echosoft.common.json;
+
+/**
+ * Перечисляет типы лексем, которые возвращает потоковый парсер {@link JsonReader}.
+ *
+ * @author Anton Sharapov
+ */
+public enum JsonToken {
+
+    /**
+     * Начало JSON объекта (символ <code>'{'</code>).
+     */
+    BEGIN_OBJECT,
+
+    /**
+     * Окончание JSON объекта (символ <code>'}'</code>).
+     */
+    END_OBJECT,
+
+    /**
+     * Начало JSON массива (символ <code>'['</code>).
+     */
+    BEGIN_ARRAY,
+
+    /**
+     * Окончание JSON массива (символ <code>']'</code>).
+     */
+    END_ARRAY,
+
+    /**
+     * Имя очередного свойства JSON объекта. Само имя доступно посредством {@link JsonReader#getText()}.
+     */
+    FIELD_NAME,
+
+    /**
+     * Строковое значение. Раскодированное значение доступно посредством {@link JsonReader#getText()}.
+     */
+    STRING,
+
+    /**
+     * Числовое значение. Текстовое представление числа доступно посредством {@link JsonReader#getText()}.
+     */
+    NUMBER,
+
+    /**
+     * Логическое значение <code>true</code>.
+     */
+    TRUE,
+
+    /**
+     * Логическое значение <code>false</code>.
+     */
+    FALSE,
+
+    /**
+     * Значение <code>null</code>.
+     */
+    NULL,
+
+    /**
+     * Окончание входного потока.
+     */
+    EOF
+}
@@ -8,8 +8,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collection;
 
+import org.echosoft.common.utils.NumberUtil;
+
 /**
  * @author Anton Sharapov
  */
@@ -24,6 +27,17 @@ public final class JsonUtil {
     static final char[] TRUE = {'t', 'r', 'u', 'e'};
     static final char[] FALSE = {'f', 'a', 'l', 's', 'e'};
 
+    private static final double MAX_SCALED = 1L << 50;
+
+    // буфер для форматирования чисел и дат, используется для того чтобы в поток передавался один фрагмент вместо отдельных символов.
+    private static final ThreadLocal<char[]> SCRATCH =
+            new ThreadLocal<char[]>() {
+                @Override
+                protected char[] initialValue() {
+                    return new char[32];
+                }
+            };
+
     private static final char[][] REPLACEMENT_CHARS;
     static {
         REPLACEMENT_CHARS = new char[128][];
@@ -96,6 +110,116 @@ public final class JsonUtil {
         }
     }
 
+    /**
+     * Помещает в поток десятичное представление целого числа. Промежуточная строка не создается.
+     *
+     * @param value число.
+     * @param out   выходной поток.
+     * @throws IOException в случае каких-либо проблем с вводом-выводом.
+     */
+    public static void encodeLong(final long value, final Writer out) throws IOException {
+        final char[] buf = SCRATCH.get();
+        out.write(buf, 0, NumberUtil.formatLong(value, buf, 0));
+    }
+
+    /**
+     * Помещает в поток представление числа с плавающей точкой в том же виде что и {@link Double#toString(double)}.
+     * Для чисел в диапазоне от 10<sup>-3</sup> до 10<sup>7</sup>, которые могут быть точно восстановлены из не более чем 15 значащих цифр,
+     * используется кратчайшее десятичное представление и промежуточная строка не создается.
+     *
+     * @param value число.
+     * @param out   выходной поток.
+     * @throws IOException в случае каких-либо проблем с вводом-выводом.
+     */
+    public static void encodeDouble(final double value, final Writer out) throws IOException {
+        final char[] buf = SCRATCH.get();
+        final int length = formatDouble(value, buf, 0);
+        if (length > 0) {
+            out.write(buf, 0, length);
+        } else {
+            out.write(Double.toString(value));
+        }
+    }
+
+    /**
+     * Помещает в поток заключенную в кавычки дату в формате <code>yyyy-MM-dd</code> либо, если указано время,
+     * в формате <code>yyyy-MM-dd'T'HH:mm:ss</code>. Промежуточные строки не создаются.
+     *
+     * @param cal      календарь, установленный на требуемую дату.
+     * @param withTime <code>true</code> если в поток должно быть помещено и время.
+     * @param out      выходной поток.
+     * @throws IOException в случае каких-либо проблем с вводом-выводом.
+     */
+    static void encodeISODate(final Calendar cal, final boolean withTime, final Writer out) throws IOException {
+        final char[] buf = SCRATCH.get();
+        buf[0] = '"';
+        int pos = NumberUtil.formatLong(cal.get(Calendar.YEAR), buf, 1);
+        buf[pos++] = '-';
+        pos = format2(cal.get(Calendar.MONTH) + 1, buf, pos);
+        buf[pos++] = '-';
+        pos = format2(cal.get(Calendar.DAY_OF_MONTH), buf, pos);
+        if (withTime) {
+            buf[pos++] = 'T';
+            pos = format2(cal.get(Calendar.HOUR_OF_DAY), buf, pos);
+            buf[pos++] = ':';
+            pos = format2(cal.get(Calendar.MINUTE), buf, pos);
+            buf[pos++] = ':';
+            pos = format2(cal.get(Calendar.SECOND), buf, pos);
+        }
+        buf[pos++] = '"';
+        out.write(buf, 0, pos);
+    }
+
+    /**
+     * Помещает в буфер кратчайшее десятичное представление числа с плавающей точкой (не более 24 символов),
+     * если только значение не требует экспоненциальной записи или более 15 значащих цифр.
+     *
+     * @return позиция в буфере, следующая за последним помещенным символом, или <code>-1</code> если число не может быть отформатировано данным методом.
+     */
+    static int formatDouble(final double value, final char[] buf, int pos) {
+        final double abs = Math.abs(value);
+        if (!(abs >= 1e-3 && abs < 1e7)) {
+            if (value != 0)
+                return -1;     // NaN, бесконечности, а также числа, которые Double.toString представляет в экспоненциальной форме.
+            if (1 / value < 0)
+                buf[pos++] = '-';
+            buf[pos++] = '0';
+            buf[pos++] = '.';
+            buf[pos++] = '0';
+            return pos;
+        }
+        // масштабируем число так чтобы в целой части оказалось не более 15-16 значащих цифр. Погрешность масштабирования при этом
+        // заведомо меньше 0.5, поэтому если у числа есть представление с меньшим количеством знаков после точки, то оно будет найдено.
+        // деление точного целого числа (< 2^53) на точную степень десяти (<= 10^15) округляется корректно, поэтому проверка надежна.
+        int scale = 15;
+        while (abs * NumberUtil.longPow10(scale) >= MAX_SCALED) {
+            scale--;
+        }
+        long mantissa = Math.round(abs * NumberUtil.longPow10(scale));
+        if (mantissa / (double) NumberUtil.longPow10(scale) != abs)
+            return -1;
+        while (scale > 1 && mantissa % 10 == 0) {
+            mantissa /= 10;
+            scale--;
+        }
+        if (value < 0)
+            buf[pos++] = '-';
+        pos = NumberUtil.formatLong(mantissa / NumberUtil.longPow10(scale), buf, pos);
+        buf[pos++] = '.';
+        long fraction = mantissa % NumberUtil.longPow10(scale);
+        for (int i = pos + scale - 1; i >= pos; i--) {
+            buf[i] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        return pos + scale;
+    }
+
+    private static int format2(final int value, final char[] buf, final int pos) {
+        buf[pos] = (char) ('0' + value / 10);
+        buf[pos + 1] = (char) ('0' + value % 10);
+        return pos + 2;
+    }
+
     public static JsonSerializer<?> makeInstance(final Class<? extends JsonSerializer> scls) {
         try {
             return scls.newInstance();
@@ -0,0 +1,152 @@
+package org.echosoft.common.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+
+import org.echosoft.common.io.FastStringWriter;
+
+/**
+ * <p>Обеспечивает повторное использование промежуточных буферов {@link FastStringWriter} и экземпляров {@link JsonWriter}
+ * при многократной сериализации объектов в JSON формат.</p>
+ * <p>За каждым потоком, обращающимся к экземпляру данного класса, закрепляется собственная пара из буфера и {@link JsonWriter}.
+ * Перед каждым использованием они возвращаются в исходное состояние (см. {@link FastStringWriter#reset(int)} и {@link ResettableJsonWriter#reset(Writer)}),
+ * при этом буфер сохраняет достигнутую емкость, но не более указанного в конструкторе предела. Таким образом, в установившемся режиме
+ * сериализация не требует ни расширения буфера, ни создания новых экземпляров {@link JsonWriter}.
+ * Экземпляры {@link JsonWriter}, не реализующие интерфейс {@link ResettableJsonWriter}, создаются заново при каждом обращении.</p>
+ * <p>Изменение фабрики {@link JsonWriter} или алгоритма сериализации имен полей в контексте учитывается при очередном обращении к пулу.
+ * Повторные (вложенные) обращения к пулу из того же потока, например из пользовательских сериализаторов, обслуживаются временными экземплярами.</p>
+ * Пример использования:<br/>
+ * <pre>
+ *  private static final JsonWriterPool POOL = new JsonWriterPool(ctx);
+ *  ...
+ *  final String json = POOL.toJSON(bean);
+ * </pre>
+ * Экземпляры данного класса являются потокобезопасными.
+ *
+ * @author Anton Sharapov
+ */
+public class JsonWriterPool {
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private static final class Entry {
+        private final FastStringWriter buf;
+        private JsonWriterFactory factory;
+        private JsonFieldNameSerializer fieldNameSerializer;
+        private JsonWriter writer;
+        private boolean busy;
+        private Entry(final int capacity) {
+            this.buf = new FastStringWriter(capacity);
+        }
+    }
+
+    private final JsonContext ctx;
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+    private final ThreadLocal<Entry> entries;
+
+    public JsonWriterPool(final JsonContext ctx) {
+        this(ctx, DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_RETAINED_CAPACITY);
+    }
+
+    /**
+     * @param ctx                 контекст, в соответствии с правилами которого будет выполняться сериализация объектов. Не может быть <code>null</code>.
+     * @param initialCapacity     начальная емкость буферов (в символах).
+     * @param maxRetainedCapacity максимальная емкость буферов, сохраняемых для повторного использования (в символах).
+     *                            Буфер, выросший сверх этой величины при сериализации крупного объекта, после использования заменяется новым.
+     */
+    public JsonWriterPool(final JsonContext ctx, final int initialCapacity, final int maxRetainedCapacity) {
+        if (ctx == null)
+            throw new IllegalArgumentException("Context should be specified");
+        if (initialCapacity < 0 || maxRetainedCapacity < initialCapacity)
+            throw new IllegalArgumentException("Illegal buffer capacity");
+        this.ctx = ctx;
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+        this.entries = new ThreadLocal<Entry>() {
+            @Override
+            protected Entry initialValue() {
+                return new Entry(JsonWriterPool.this.initialCapacity);
+            }
+        };
+    }
+
+    /**
+     * @return контекст, в соответствии с правилами которого выполняется сериализация объектов.
+     */
+    public JsonContext getContext() {
+        return ctx;
+    }
+
+    /**
+     * Сериализует указанный объект в JSON формат.
+     *
+     * @param obj объект, который требуется представить в JSON формате. Может быть <code>null</code>.
+     * @return строка с JSON представлением объекта.
+     * @throws IOException               в случае каких-либо проблем с вводом-выводом.
+     * @throws IllegalAccessException    в случае когда вызывающий код не имеет достаточно прав для обращения к свойствам сериализуемого объекта.
+     * @throws InvocationTargetException в случае если при обращении к свойствам сериализуемого объекта произошла ошибка.
+     */
+    public String toJSON(final Object obj) throws InvocationTargetException, IllegalAccessException, IOException {
+        final Entry entry = entries.get();
+        if (entry.busy) {
+            final FastStringWriter buf = new FastStringWriter(initialCapacity);
+            ctx.makeJsonWriter(buf).writeObject(obj);
+            return buf.toString();
+        }
+        entry.busy = true;
+        try {
+            return serialize(entry, obj).toString();
+        } finally {
+            release(entry);
+        }
+    }
+
+    /**
+     * Сериализует указанный объект в JSON формат и помещает результат в указанный поток.
+     * Результат предварительно полностью формируется в буфере, поэтому в случае ошибки сериализации в выходной поток не попадает ничего.
+     *
+     * @param obj объект, который требуется представить в JSON формате. Может быть <code>null</code>.
+     * @param out выходной поток куда будет помещен результат. Не может быть <code>null</code>.
+     * @throws IOException               в случае каких-либо проблем с вводом-выводом.
+     * @throws IllegalAccessException    в случае когда вызывающий код не имеет достаточно прав для обращения к свойствам сериализуемого объекта.
+     * @throws InvocationTargetException в случае если при обращении к свойствам сериализуемого объекта произошла ошибка.
+     */
+    public void writeTo(final Object obj, final Writer out) throws InvocationTargetException, IllegalAccessException, IOException {
+        final Entry entry = entries.get();
+        if (entry.busy) {
+            final FastStringWriter buf = new FastStringWriter(initialCapacity);
+            ctx.makeJsonWriter(buf).writeObject(obj);
+            buf.writeOut(out);
+            return;
+        }
+        entry.busy = true;
+        try {
+            serialize(entry, obj).writeOut(out);
+        } finally {
+            release(entry);
+        }
+    }
+
+
+    private FastStringWriter serialize(final Entry entry, final Object obj) throws InvocationTargetException, IllegalAccessException, IOException {
+        final JsonWriterFactory factory = ctx.getWriterFactory();
+        final JsonFieldNameSerializer fieldNameSerializer = ctx.getFieldNameSerializer();
+        if (entry.writer instanceof ResettableJsonWriter && entry.factory == factory && entry.fieldNameSerializer == fieldNameSerializer) {
+            ((ResettableJsonWriter) entry.writer).reset(entry.buf);
+        } else {
+            entry.writer = factory.makeJsonWriter(ctx, entry.buf);
+            entry.factory = factory;
+            entry.fieldNameSerializer = fieldNameSerializer;
+        }
+        entry.writer.writeObject(obj);
+        return entry.buf;
+    }
+
+    private void release(final Entry entry) {
+        entry.buf.reset(maxRetainedCapacity);
+        entry.busy = false;
+    }
+}
@@ -0,0 +1,52 @@
+package org.echosoft.common.json;
+
+import java.io.IOException;
+
+/**
+ * <p>Расширение интерфейса {@link JsonWriter}, позволяющее помещать в поток значения свойств примитивных типов без их упаковки в объекты-обертки.</p>
+ * <p>Поддерживается всеми стандартными реализациями {@link JsonWriter} и используется сериализаторами java бинов
+ * (см. {@link org.echosoft.common.json.introspect.HandleMemberAccessor}) если выходной поток реализует данный интерфейс.</p>
+ *
+ * @author Anton Sharapov
+ */
+public interface PrimitiveJsonWriter extends JsonWriter {
+
+    /**
+     * Помещает в поток имя свойства JSON объекта и его целочисленное значение.
+     * В отличие от {@link JsonWriter#writeProperty(String, Object)} значение не требует упаковки в объект-обертку и всегда записывается
+     * в виде JSON числа, без учета зарегистрированных в контексте сериализаторов.<br>
+     * Данный метод допускается вызывать только между вызовами {@link JsonWriter#beginObject()} и {@link JsonWriter#endObject()} в рамках одного и того же контекста.
+     *
+     * @param name  строка с именем свойства объекта.
+     * @param value значение данного свойства объекта.
+     * @throws IOException           в случае каких-либо проблем с вводом-выводом.
+     * @throws IllegalStateException если в данный момент недопустима установка свойства объекта (например если объект и не начинал обрабатываться).
+     */
+    public void writeLongProperty(String name, long value) throws IOException;
+
+    /**
+     * Помещает в поток имя свойства JSON объекта и его значение в виде числа с плавающей точкой.
+     * В отличие от {@link JsonWriter#writeProperty(String, Object)} значение не требует упаковки в объект-обертку и всегда записывается
+     * в том же виде что и {@link Double#toString(double)}, без учета зарегистрированных в контексте сериализаторов.<br>
+     * Данный метод допускается вызывать только между вызовами {@link JsonWriter#beginObject()} и {@link JsonWriter#endObject()} в рамках одного и того же контекста.
+     *
+     * @param name  строка с именем свойства объекта.
+     * @param value значение данного свойства объекта.
+     * @throws IOException           в случае каких-либо проблем с вводом-выводом.
+     * @throws IllegalStateException если в данный момент недопустима установка свойства объекта (например если объект и не начинал обрабатываться).
+     */
+    public void writeDoubleProperty(String name, double value) throws IOException;
+
+    /**
+     * Помещает в поток имя свойства JSON объекта и его логическое значение.
+     * В отличие от {@link JsonWriter#writeProperty(String, Object)} значение не требует упаковки в объект-обертку и всегда записывается
+     * в виде <code>true</code> или <code>false</code>, без учета зарегистрированных в контексте сериализаторов.<br>
+     * Данный метод допускается вызывать только между вызовами {@link JsonWriter#beginObject()} и {@link JsonWriter#endObject()} в рамках одного и того же контекста.
+     *
+     * @param name  строка с именем свойства объекта.
+     * @param value значение данного свойства объекта.
+     * @throws IOException           в случае каких-либо проблем с вводом-выводом.
+     * @throws IllegalStateException если в данный момент недопустима установка свойства объекта (например если объект и не начинал обрабатываться).
+     */
+    public void writeBooleanProperty(String name, boolean value) throws IOException;
+}
@@ -15,7 +15,7 @@ import java.util.Arrays;
  *
  * @author Anton Sharapov
  */
-public class PrintableJsonWriter implements JsonWriter {
+public class PrintableJsonWriter implements PrimitiveJsonWriter, ResettableJsonWriter {
 
     private static enum State {UNKNOWN, ARRAY, OBJECT, OBJATTR}
 
@@ -29,6 +29,7 @@ public class PrintableJsonWriter implements JsonWriter {
         private final Context prev;
         private final int depth;
         private final int indent;
+        private Context next;       // ранее созданный вложенный контекст, используется повторно.
         private State state;
         private int items;
         private boolean inWriteObj;
@@ -44,15 +45,27 @@ public class PrintableJsonWriter implements JsonWriter {
             this.indent = this.depth * indentFactor;
             this.state = state;
         }
+        private Context push(final State state, final int indentFactor) {
+            Context result = next;
+            if (result == null) {
+                next = result = new Context(this, state, indentFactor);
+            } else {
+                result.state = state;
+                result.items = 0;
+                result.inWriteObj = false;
+            }
+            return result;
+        }
         public String toString() {
             return "[Context{state:" + state + ", items:" + items + ", inWriteObj:" + inWriteObj + "}]";
         }
     }
 
     private final JsonContext ctx;
-    private final Writer out;
     private final JsonFieldNameSerializer fieldNameSerializer;
     private final int indentFactor;
+    private final Context root;
+    private Writer out;
     private char[] whitespaces;
     private Context current;
 
@@ -70,7 +83,8 @@ public class PrintableJsonWriter implements JsonWriter {
         this.out = out;
         this.fieldNameSerializer = ctx.getFieldNameSerializer();
         this.indentFactor = indentFactor >= 0 ? indentFactor : DEFAULT_INDENT_FACTOR;
-        this.current = new Context();
+        this.root = new Context();
+        this.current = root;
         this.whitespaces = new char[16 * indentFactor];
         Arrays.fill(whitespaces, ' ');
     }
@@ -95,7 +109,7 @@ public class PrintableJsonWriter implements JsonWriter {
                 if (!current.inWriteObj && current.items > 0)
                     throw new IllegalStateException();
                 current.items = 1;
-                current = new Context(current, State.ARRAY, indentFactor);
+                current = current.push(State.ARRAY, indentFactor);
                 ensureWhitespaceCapacity(current.indent);
                 out.write('[');
                 break;
@@ -103,7 +117,7 @@ public class PrintableJsonWriter implements JsonWriter {
             case ARRAY: {
                 if (!current.inWriteObj && current.items++ > 0)
                     out.write(',');
-                current = new Context(current, State.ARRAY, indentFactor);
+                current = current.push(State.ARRAY, indentFactor);
                 ensureWhitespaceCapacity(current.indent);
                 out.write('[');
                 break;
@@ -113,7 +127,7 @@ public class PrintableJsonWriter implements JsonWriter {
             }
             case OBJATTR: {
                 current.state = State.OBJECT;
-                current = new Context(current, State.ARRAY, indentFactor);
+                current = current.push(State.ARRAY, indentFactor);
                 ensureWhitespaceCapacity(current.indent);
                 out.write('[');
                 break;
@@ -150,7 +164,7 @@ public class PrintableJsonWriter implements JsonWriter {
                 if (!current.inWriteObj && current.items > 0)
                     throw new IllegalStateException();
                 current.items = 1;
-                current = new Context(current, State.OBJECT, indentFactor);
+                current = current.push(State.OBJECT, indentFactor);
                 ensureWhitespaceCapacity(current.indent);
                 break;
             }
@@ -158,7 +172,7 @@ public class PrintableJsonWriter implements JsonWriter {
                 if (!current.inWriteObj && current.items++ > 0) {
                     out.write(',');
                 }
-                current = new Context(current, State.OBJECT, indentFactor);
+                current = current.push(State.OBJECT, indentFactor);
                 ensureWhitespaceCapacity(current.indent);
                 break;
             }
@@ -167,7 +181,7 @@ public class PrintableJsonWriter implements JsonWriter {
             }
             case OBJATTR: {
                 current.state = State.OBJECT;
-                current = new Context(current, State.OBJECT, indentFactor);
+                current = current.push(State.OBJECT, indentFactor);
                 ensureWhitespaceCapacity(current.indent);
                 break;
             }
@@ -282,6 +296,34 @@ public class PrintableJsonWriter implements JsonWriter {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void writeLongProperty(final String name, final long value) throws IOException {
+        beginPrimitiveProperty(name);
+        JsonUtil.encodeLong(value, out);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void writeDoubleProperty(final String name, final double value) throws IOException {
+        beginPrimitiveProperty(name);
+        JsonUtil.encodeDouble(value, out);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void writeBooleanProperty(final String name, final boolean value) throws IOException {
+        beginPrimitiveProperty(name);
+        if (value) {
+            out.write(JsonUtil.TRUE, 0, 4);
+        } else {
+            out.write(JsonUtil.FALSE, 0, 5);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -308,6 +350,20 @@ public class PrintableJsonWriter implements JsonWriter {
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public void reset(final Writer out) {
+        if (out == null)
+            throw new IllegalArgumentException("Output stream should be specified");
+        this.out = out;
+        root.state = State.UNKNOWN;
+        root.items = 0;
+        root.inWriteObj = false;
+        current = root;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -332,6 +388,19 @@ public class PrintableJsonWriter implements JsonWriter {
         return current.indent;
     }
 
+    private void beginPrimitiveProperty(final String name) throws IOException {
+        if (current.state != State.OBJECT)
+            throw new IllegalStateException();
+        if (current.items++ > 0) {
+            out.write(CME, 0, 2);     // out.write(",\n");
+        } else {
+            out.write(LBE, 0, 2);     // out.write("{\n");
+        }
+        out.write(whitespaces, 0, current.indent);
+        fieldNameSerializer.serialize(name, out);
+        out.write(CLW, 0, 2);         // out.write(": ");
+    }
+
     private void ensureWhitespaceCapacity(final int capacity) {
         if (capacity > whitespaces.length) {
             this.whitespaces = new char[capacity];
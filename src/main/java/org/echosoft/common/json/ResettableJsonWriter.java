@@ -0,0 +1,22 @@
+package org.echosoft.common.json;
+
+import java.io.Writer;
+
+/**
+ * <p>Расширение интерфейса {@link JsonWriter}, позволяющее повторно использовать один и тот же экземпляр для формирования множества JSON выражений.</p>
+ * <p>Поддерживается всеми стандартными реализациями {@link JsonWriter} и используется пулом {@link JsonWriterPool}.</p>
+ *
+ * @author Anton Sharapov
+ */
+public interface ResettableJsonWriter extends JsonWriter {
+
+    /**
+     * Возвращает данный экземпляр в исходное состояние и перенаправляет его вывод в указанный поток, что позволяет повторно использовать
+     * один и тот же экземпляр для формирования множества независимых JSON выражений без создания новых объектов.
+     * Состояние незавершенного выражения (если оно было) при этом отбрасывается, содержимое прежнего выходного потока не изменяется.
+     *
+     * @param out выходной поток куда будет помещаться результат. Не может быть <code>null</code>.
+     * @throws IllegalArgumentException если выходной поток не указан или не поддерживается данной реализацией.
+     */
+    public void reset(Writer out);
+}
@@ -5,13 +5,15 @@ import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.math.BigDecimal;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
-import org.echosoft.common.utils.StringUtil;
+import org.echosoft.common.collections.issuers.Issuer;
+import org.echosoft.common.io.UTF8Writer;
 
 /**
  * Содержит ссылки на объекты - реализации интерфейса {@link JsonSerializer} для базового набора классов:
@@ -35,6 +37,8 @@ import org.echosoft.common.utils.StringUtil;
  * <li> <code>java.lang.Object[]</code>
  * <li> <code>java.lang.String[]</code>
  * <li> <code>java.lang.Integer[]</code>
+ * <li> <code>java.lang.Iterable</code>, <code>java.util.Iterator</code>, <code>java.util.Enumeration</code>
+ * <li> <code>org.echosoft.common.collections.issuers.Issuer</code>
  * <li> <code>ru.topsbi.common.util.json.JSExpression</code>
  * </ul>
  *
@@ -42,6 +46,13 @@ import org.echosoft.common.utils.StringUtil;
  */
 public class Serializers {
 
+    /**
+     * Количество элементов, после помещения в выходной поток которых сериализаторы "ленивых" последовательностей ({@link Iterator}, {@link Enumeration},
+     * {@link Issuer} и отличных от коллекций {@link Iterable}) вызывают метод <code>flush()</code> выходного потока. Это позволяет передавать потребителю
+     * результаты сколь угодно больших выборок (например, из {@link org.echosoft.common.data.db.JdbcIssuer}), не накапливая их в буферах.
+     */
+    public static final int STREAM_FLUSH_INTERVAL = 1000;
+
     public static final JsonWriterFactory SIMPLE_JSON_WRITER_FACTORY =
             new JsonWriterFactory() {
                 public JsonWriter makeJsonWriter(final JsonContext ctx, final Writer out) {
@@ -56,6 +67,19 @@ public class Serializers {
                 }
             };
 
+    /**
+     * Создает экземпляры {@link UTF8JsonWriter} в случае когда выходной поток является экземпляром {@link UTF8Writer}.
+     * Для всех прочих выходных потоков создаются экземпляры {@link CompactJsonWriter}.
+     */
+    public static final JsonWriterFactory UTF8_JSON_WRITER_FACTORY =
+            new JsonWriterFactory() {
+                public JsonWriter makeJsonWriter(final JsonContext ctx, final Writer out) {
+                    return out instanceof UTF8Writer
+                            ? new UTF8JsonWriter(ctx, (UTF8Writer) out)
+                            : new CompactJsonWriter(ctx, out);
+                }
+            };
+
     public static final JsonWriterFactory PRINTABLE_JSON_WRITER_FACTORY =
             new JsonWriterFactory() {
                 public JsonWriter makeJsonWriter(final JsonContext ctx, final Writer out) {
@@ -142,7 +166,13 @@ public class Serializers {
     public static final JsonSerializer<Number> NUMBER =
             new JsonSerializer<Number>() {
                 public void serialize(final Number src, final JsonWriter jw) throws IOException {
-                    jw.getOutputWriter().write(src.toString());
+                    if (src instanceof Integer || src instanceof Long || src instanceof Short || src instanceof Byte) {
+                        JsonUtil.encodeLong(src.longValue(), jw.getOutputWriter());
+                    } else
+                    if (src instanceof Double) {
+                        JsonUtil.encodeDouble(src.doubleValue(), jw.getOutputWriter());
+                    } else
+                        jw.getOutputWriter().write(src.toString());
                 }
                 public String toString() {
                     return "[NUMBER]";
@@ -182,18 +212,18 @@ public class Serializers {
                     final int min = cal.get(Calendar.MINUTE);
                     final int sec = cal.get(Calendar.SECOND);
                     out.write("new Date(");
-                    out.write(Integer.toString(cal.get(Calendar.YEAR)));
+                    JsonUtil.encodeLong(cal.get(Calendar.YEAR), out);
                     out.write(',');
-                    out.write(Integer.toString(cal.get(Calendar.MONTH)));
+                    JsonUtil.encodeLong(cal.get(Calendar.MONTH), out);
                     out.write(',');
-                    out.write(Integer.toString(cal.get(Calendar.DATE)));
+                    JsonUtil.encodeLong(cal.get(Calendar.DATE), out);
                     if (hour != 0 || min != 0 || sec != 0) {
                         out.write(',');
-                        out.write(Integer.toString(hour));
+                        JsonUtil.encodeLong(hour, out);
                         out.write(',');
-                        out.write(Integer.toString(min));
+                        JsonUtil.encodeLong(min, out);
                         out.write(',');
-                        out.write(Integer.toString(sec));
+                        JsonUtil.encodeLong(sec, out);
                     }
                     out.write(')');
                 }
@@ -210,13 +240,7 @@ public class Serializers {
                     final Calendar cal = getCalendarInstanceForThread();
                     cal.setTime(src);
                     final boolean dateOnly = cal.get(Calendar.HOUR_OF_DAY) == 0 && cal.get(Calendar.MINUTE) == 0 && cal.get(Calendar.SECOND) == 0;
-                    out.write('"');
-                    if (dateOnly) {
-                        StringUtil.formatISODate(out, src);
-                    } else {
-                        StringUtil.formatISODateTime(out, src, 'T');
-                    }
-                    out.write('"');
+                    JsonUtil.encodeISODate(cal, !dateOnly, out);
                 }
                 public String toString() {
                     return "[DATE/ISO]";
@@ -226,7 +250,7 @@ public class Serializers {
     public static final JsonSerializer<Date> TIMESTAMP =
             new JsonSerializer<Date>() {
                 public void serialize(final Date src, final JsonWriter jw) throws IOException {
-                    jw.getOutputWriter().write(Long.toString(src.getTime(), 10));
+                    JsonUtil.encodeLong(src.getTime(), jw.getOutputWriter());
                 }
                 public String toString() {
                     return "[DATE/MS]";
@@ -283,7 +307,7 @@ public class Serializers {
                     for (int i = 0; i < length; i++) {
                         if (i > 0)
                             out.write(',');
-                        out.write(Integer.toString(src[i], 10));
+                        JsonUtil.encodeLong(src[i], out);
                     }
                     out.write(']');
                 }
@@ -301,7 +325,7 @@ public class Serializers {
                     for (int i = 0; i < length; i++) {
                         if (i > 0)
                             out.write(',');
-                        out.write(Integer.toString(src[i], 10));
+                        JsonUtil.encodeLong(src[i], out);
                     }
                     out.write(']');
                 }
@@ -319,7 +343,7 @@ public class Serializers {
                     for (int i = 0; i < length; i++) {
                         if (i > 0)
                             out.write(',');
-                        out.write(Integer.toString(src[i]));
+                        JsonUtil.encodeLong(src[i], out);
                     }
                     out.write(']');
                 }
@@ -337,7 +361,7 @@ public class Serializers {
                     for (int i = 0; i < length; i++) {
                         if (i > 0)
                             out.write(',');
-                        out.write(Long.toString(src[i]));
+                        JsonUtil.encodeLong(src[i], out);
                     }
                     out.write(']');
                 }
@@ -373,7 +397,7 @@ public class Serializers {
                     for (int i = 0; i < length; i++) {
                         if (i > 0)
                             out.write(',');
-                        out.write(Double.toString(src[i]));
+                        JsonUtil.encodeDouble(src[i], out);
                     }
                     out.write(']');
                 }
@@ -501,7 +525,7 @@ public class Serializers {
                         if (value == null) {
                             out.write(JsonUtil.NULL, 0, 4);
                         } else {
-                            out.write(Integer.toString(value, 10));
+                            JsonUtil.encodeLong(value, out);
                         }
                     }
                     out.write(']');
@@ -525,7 +549,7 @@ public class Serializers {
                         if (value == null) {
                             out.write(JsonUtil.NULL, 0, 4);
                         } else {
-                            out.write(Integer.toString(value, 10));
+                            JsonUtil.encodeLong(value, out);
                         }
                     }
                     out.write(']');
@@ -549,7 +573,7 @@ public class Serializers {
                         if (value == null) {
                             out.write(JsonUtil.NULL, 0, 4);
                         } else {
-                            out.write(Integer.toString(value, 10));
+                            JsonUtil.encodeLong(value, out);
                         }
                     }
                     out.write(']');
@@ -573,7 +597,7 @@ public class Serializers {
                         if (value == null) {
                             out.write(JsonUtil.NULL, 0, 4);
                         } else {
-                            out.write(Long.toString(value));
+                            JsonUtil.encodeLong(value, out);
                         }
                     }
                     out.write(']');
@@ -621,7 +645,7 @@ public class Serializers {
                         if (value == null) {
                             out.write(JsonUtil.NULL, 0, 4);
                         } else {
-                            out.write(Double.toString(value));
+                            JsonUtil.encodeDouble(value, out);
                         }
                     }
                     out.write(']');
@@ -635,6 +659,11 @@ public class Serializers {
     public static final JsonSerializer ITERABLE =
             new JsonSerializer() {
                 public void serialize(final Object src, final JsonWriter jw) throws IOException, InvocationTargetException, IllegalAccessException {
+                    if (!(src instanceof Collection)) {
+                        // элементы "ленивых" последовательностей могут формироваться по мере обхода, поэтому не накапливаем их в буферах.
+                        ITERATOR.serialize(((Iterable) src).iterator(), jw);
+                        return;
+                    }
                     jw.beginArray();
                     for (Object item : (Iterable) src) {
                         jw.writeObject(item);
@@ -651,8 +680,10 @@ public class Serializers {
                 public void serialize(final Object src, final JsonWriter jw) throws IOException, InvocationTargetException, IllegalAccessException {
                     final Iterator it = (Iterator) src;
                     jw.beginArray();
-                    while (it.hasNext()) {
+                    for (int count = 1; it.hasNext(); count++) {
                         jw.writeObject(it.next());
+                        if (count % STREAM_FLUSH_INTERVAL == 0)
+                            jw.getOutputWriter().flush();
                     }
                     jw.endArray();
                 }
@@ -666,8 +697,10 @@ public class Serializers {
                 public void serialize(final Object src, final JsonWriter jw) throws IOException, InvocationTargetException, IllegalAccessException {
                     final Enumeration en = (Enumeration) src;
                     jw.beginArray();
-                    while (en.hasMoreElements()) {
+                    for (int count = 1; en.hasMoreElements(); count++) {
                         jw.writeObject(en.nextElement());
+                        if (count % STREAM_FLUSH_INTERVAL == 0)
+                            jw.getOutputWriter().flush();
                     }
                     jw.endArray();
                 }
@@ -676,6 +709,33 @@ public class Serializers {
                 }
             };
 
+    /**
+     * Сериализует все оставшиеся элементы {@link Issuer} в виде массива. Сам источник данных по завершении не закрывается,
+     * это остается обязанностью вызывающего кода. Ошибки, поднимаемые источником данных, передаются как {@link InvocationTargetException}.
+     */
+    public static final JsonSerializer ISSUER =
+            new JsonSerializer() {
+                public void serialize(final Object src, final JsonWriter jw) throws IOException, InvocationTargetException, IllegalAccessException {
+                    final Issuer issuer = (Issuer) src;
+                    jw.beginArray();
+                    try {
+                        for (int count = 1; issuer.hasNext(); count++) {
+                            jw.writeObject(issuer.next());
+                            if (count % STREAM_FLUSH_INTERVAL == 0)
+                                jw.getOutputWriter().flush();
+                        }
+                    } catch (IOException | InvocationTargetException | IllegalAccessException | RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new InvocationTargetException(e);
+                    }
+                    jw.endArray();
+                }
+                public String toString() {
+                    return "[ISSUER]";
+                }
+            };
+
     public static final JsonSerializer MAP =
             new JsonSerializer() {
                 public void serialize(final Object src, final JsonWriter jw) throws IOException, InvocationTargetException, IllegalAccessException {
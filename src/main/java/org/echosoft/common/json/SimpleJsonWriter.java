@@ -11,11 +11,11 @@ import java.lang.reflect.InvocationTargetException;
  *
  * @author Anton Sharapov
  */
-public class SimpleJsonWriter implements JsonWriter {
+public class SimpleJsonWriter implements PrimitiveJsonWriter, ResettableJsonWriter {
 
     private final JsonContext ctx;
-    private final Writer out;
     private final JsonFieldNameSerializer fieldNameSerializer;
+    private Writer out;
     private boolean hasPrevFields;
     private int depth;
 
@@ -114,6 +114,34 @@ public class SimpleJsonWriter implements JsonWriter {
         hasPrevFields = true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void writeLongProperty(final String name, final long value) throws IOException {
+        beginPrimitiveProperty(name);
+        JsonUtil.encodeLong(value, out);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void writeDoubleProperty(final String name, final double value) throws IOException {
+        beginPrimitiveProperty(name);
+        JsonUtil.encodeDouble(value, out);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void writeBooleanProperty(final String name, final boolean value) throws IOException {
+        beginPrimitiveProperty(name);
+        if (value) {
+            out.write(JsonUtil.TRUE, 0, 4);
+        } else {
+            out.write(JsonUtil.FALSE, 0, 5);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -129,6 +157,18 @@ public class SimpleJsonWriter implements JsonWriter {
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public void reset(final Writer out) {
+        if (out == null)
+            throw new IllegalArgumentException("Output stream should be specified");
+        this.out = out;
+        hasPrevFields = false;
+        depth = 0;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -142,4 +182,16 @@ public class SimpleJsonWriter implements JsonWriter {
     public Writer getOutputWriter() {
         return out;
     }
-}
\ No newline at end of file
+
+
+    private void beginPrimitiveProperty(final String name) throws IOException {
+        if (depth <= 0)
+            throw new IllegalStateException();
+        if (hasPrevFields) {
+            out.write(',');
+        }
+        fieldNameSerializer.serialize(name, out);
+        out.write(':');
+        hasPrevFields = true;
+    }
+}
@@ -0,0 +1,79 @@
+package org.echosoft.common.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentMap;
+
+import org.echosoft.common.io.FastStringWriter;
+import org.echosoft.common.io.UTF8Writer;
+
+/**
+ * Разновидность {@link CompactJsonWriter}, результат работы которой сразу кодируется в UTF-8 и помещается в байтовый поток
+ * посредством {@link UTF8Writer}. Особенностями данной реализации являются:
+ * <ul>
+ * <li> отсутствие промежуточных символьных буферов и накладных расходов на <code>java.nio.charset.CharsetEncoder</code>.
+ * <li> имена свойств объектов кодируются (с учетом правил используемого в контексте {@link JsonFieldNameSerializer}) только один раз,
+ * в дальнейшем в поток помещаются уже готовые последовательности байт из кэша, хранящегося в контексте {@link JsonContext}.
+ * </ul>
+ * <strong>Внимание!</strong> Экземпляры данного класса не являются потокобезопасными и должны использоваться только из одного потока в каждую единицу времени.
+ *
+ * @author Anton Sharapov
+ * @see Serializers#UTF8_JSON_WRITER_FACTORY
+ */
+public class UTF8JsonWriter extends CompactJsonWriter {
+
+    private static final int MAX_CACHED_NAME_LENGTH = 64;       // имена свойств большей длины не кэшируются.
+    private static final int MAX_CACHED_NAMES = 4096;           // максимальное количество кэшируемых имен для одного контекста.
+
+    private UTF8Writer out;
+    private final JsonFieldNameSerializer fieldNameSerializer;
+    private final ConcurrentMap<String, byte[]> encodedNames;
+
+    /**
+     * Инициализирует поток данных в нотации JSON.
+     *
+     * @param ctx глобальный контекст. Обязательное поле, не может быть <code>null</code>.
+     * @param out выходной поток куда будет помещаться результат. Не может быть <code>null</code>.
+     */
+    public UTF8JsonWriter(final JsonContext ctx, final UTF8Writer out) {
+        super(ctx, out);
+        this.out = out;
+        this.fieldNameSerializer = ctx.getFieldNameSerializer();
+        this.encodedNames = ctx.getEncodedFieldNames();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException если указанный поток не является экземпляром {@link UTF8Writer}.
+     */
+    @Override
+    public void reset(final Writer out) {
+        if (!(out instanceof UTF8Writer))
+            throw new IllegalArgumentException("Output stream should be an instance of " + UTF8Writer.class.getName());
+        super.reset(out);
+        this.out = (UTF8Writer) out;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void writeFieldName(final String name) throws IOException {
+        if (name == null || name.length() > MAX_CACHED_NAME_LENGTH) {
+            fieldNameSerializer.serialize(name, out);
+            return;
+        }
+        byte[] encoded = encodedNames.get(name);
+        if (encoded == null) {
+            final FastStringWriter buf = new FastStringWriter(name.length() + 8);
+            fieldNameSerializer.serialize(name, buf);
+            encoded = buf.toString().getBytes(StandardCharsets.UTF_8);
+            if (encodedNames.size() < MAX_CACHED_NAMES)
+                encodedNames.putIfAbsent(name, encoded);
+        }
+        out.writeBytes(encoded);
+    }
+}
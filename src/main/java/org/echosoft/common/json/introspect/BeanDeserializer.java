@@ -0,0 +1,249 @@
+package org.echosoft.common.json.introspect;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.echosoft.common.json.JsonContext;
+import org.echosoft.common.json.JsonParseException;
+import org.echosoft.common.json.JsonReader;
+import org.echosoft.common.json.JsonToken;
+import org.echosoft.common.json.annotate.JsonField;
+
+/**
+ * <p>Восстанавливает объекты соответствующего java класса из JSON формата. Является обратной стороной {@link BeanSerializer}:
+ * перечень свойств и их имена (включая аннотации {@link JsonField} и алгоритм сериализации имен, используемый в контексте)
+ * определяются тем же способом, что и при сериализации. Для каждого из свойств:</p>
+ * <ul>
+ * <li> для каждого свойства, сериализуемого посредством get/is метода, ищется соответствующий ему set метод с аргументом того же типа.
+ *      Если такого метода нет, но свойство является коллекцией или ассоциативным массивом, то прочитанные данные добавляются в
+ *      уже существующую коллекцию (возвращаемую get методом).
+ * <li> для публичных полей без модификатора <code>final</code> значение присваивается непосредственно полю,
+ *      в <code>final</code> поля-коллекции и ассоциативные массивы прочитанные данные добавляются.
+ * <li> свойства помеченные как <code>dereference</code>, а также неизвестные свойства во входном потоке пропускаются.
+ * </ul>
+ * Класс должен иметь конструктор без аргументов (не обязательно публичный).
+ *
+ * @author Anton Sharapov
+ */
+public final class BeanDeserializer {
+
+    private static final MethodType CONSTRUCTOR = MethodType.methodType(Object.class);
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * Описывает правило восстановления одного свойства бина.
+     */
+    private static final class Property {
+        private final String name;
+        private final Type type;
+        private final boolean primitive;
+        private final MethodHandle setter;      // установка нового значения свойства (если есть).
+        private final MethodHandle getter;      // получение текущего значения свойства-коллекции (если нет setter).
+
+        private Property(final String name, final Type type, final Class<?> cls, final MethodHandle setter, final MethodHandle getter) {
+            this.name = name;
+            this.type = type;
+            this.primitive = cls.isPrimitive();
+            this.setter = setter;
+            this.getter = getter;
+        }
+    }
+
+    private final Class<?> cl;
+    private final MethodHandle constructor;
+    private final Property[] properties;
+
+    public BeanDeserializer(final Class<?> cl) {
+        this(cl, null);
+    }
+
+    /**
+     * Подготавливает правила восстановления бинов указанного класса. Перечень свойств и их имена определяются теми же правилами,
+     * что и при сериализации бинов (см. {@link BeanSerializer#getMembers(Class, JsonContext)}).
+     *
+     * @param cl  класс бина.
+     * @param ctx если указан, то имена свойств во входном потоке ожидаются в том виде, в каком их формирует
+     *            используемый в контексте алгоритм сериализации имен (см. {@link JsonContext#getFieldNameSerializer()}).
+     */
+    public BeanDeserializer(final Class<?> cl, final JsonContext ctx) {
+        this.cl = cl;
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            final Constructor<?> ctor = cl.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            this.constructor = lookup.unreflectConstructor(ctor).asType(CONSTRUCTOR);
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+            throw new IllegalArgumentException("Class " + cl.getName() + " has no accessible default constructor", e);
+        }
+        final ArrayList<Property> list = new ArrayList<>();
+        final HashSet<String> names = new HashSet<>();
+        try {
+            for (BeanMember member : BeanSerializer.introspect(cl)) {
+                if (member.dereference || !names.add(member.name))
+                    continue;
+                final String name = ctx != null ? encodeName(member.name, ctx) : member.name;
+                if (member.method != null) {
+                    final Method method = member.method;
+                    final Class<?> type = method.getReturnType();
+                    final Method setter = findSetter(cl, method, type);
+                    if (setter != null) {
+                        setter.setAccessible(true);
+                        list.add(new Property(name, setter.getGenericParameterTypes()[0], type, lookup.unreflect(setter).asType(SETTER), null));
+                    } else
+                    if (isContainer(type)) {
+                        method.setAccessible(true);
+                        list.add(new Property(name, method.getGenericReturnType(), type, null, lookup.unreflect(method).asType(GETTER)));
+                    }
+                } else {
+                    final Field field = member.field;
+                    final Class<?> type = field.getType();
+                    field.setAccessible(true);
+                    if (!Modifier.isFinal(field.getModifiers())) {
+                        list.add(new Property(name, field.getGenericType(), type, lookup.unreflectSetter(field).asType(SETTER), null));
+                    } else
+                    if (isContainer(type)) {
+                        list.add(new Property(name, field.getGenericType(), type, null, lookup.unreflectGetter(field).asType(GETTER)));
+                    }
+                }
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("Can't access properties of the class " + cl.getName(), e);
+        }
+        this.properties = list.toArray(new Property[list.size()]);
+    }
+
+    private static boolean isContainer(final Class<?> type) {
+        return Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Возвращает имя свойства в том виде, в каком оно будет прочитано парсером из потока, сформированного с использованием указанного контекста.
+     */
+    private static String encodeName(final String name, final JsonContext ctx) {
+        try {
+            final StringWriter out = new StringWriter(name.length() + 2);
+            ctx.getFieldNameSerializer().serialize(name, out);
+            final JsonReader jr = new JsonReader(ctx, "{" + out + ":0}");
+            jr.next();
+            if (jr.next() != JsonToken.FIELD_NAME)
+                throw new JsonParseException("Illegal property name: " + out, 1, 1);
+            return jr.getString();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't encode property name '" + name + "'", e);
+        }
+    }
+
+    private static Method findSetter(final Class<?> cl, final Method getter, final Class<?> type) {
+        final String getterName = getter.getName();
+        final String setterName = "set" + getterName.substring(getterName.startsWith("is") ? 2 : 3);
+        try {
+            final Method setter = cl.getMethod(setterName, type);
+            return Modifier.isStatic(setter.getModifiers()) ? null : setter;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Создает новый экземпляр бина и заполняет его свойства данными из входного потока.
+     * Текущей лексемой парсера должна быть {@link JsonToken#BEGIN_OBJECT}, по завершении работы метода текущей лексемой будет соответствующая ей {@link JsonToken#END_OBJECT}.
+     *
+     * @param jr парсер входного потока.
+     * @return восстановленный бин.
+     * @throws IOException               в случае ошибок при разборе входного потока.
+     * @throws InvocationTargetException в случае если при создании объекта или установке значений его свойств произошла ошибка.
+     */
+    @SuppressWarnings("unchecked")
+    public Object deserialize(final JsonReader jr) throws IOException, InvocationTargetException {
+        if (jr.getToken() != JsonToken.BEGIN_OBJECT)
+            throw new JsonParseException("Expected object of class " + cl.getName() + " but found " + jr.getToken(), jr.getLine(), jr.getColumn());
+        final Object bean;
+        try {
+            bean = (Object) constructor.invokeExact();
+        } catch (Throwable th) {
+            throw wrap(th);
+        }
+        int expected = 0;   // как правило, свойства во входном потоке следуют в том же порядке в котором они были сериализованы.
+        while (jr.next() != JsonToken.END_OBJECT) {
+            final int index = find(jr, expected);
+            jr.next();
+            if (index < 0) {
+                jr.skipValue();
+                continue;
+            }
+            expected = index + 1;
+            final Property property = properties[index];
+            final Object value = jr.getObject(property.type);
+            try {
+                if (property.setter != null) {
+                    if (value != null || !property.primitive)
+                        property.setter.invokeExact(bean, value);
+                } else
+                if (value != null) {
+                    final Object current = (Object) property.getter.invokeExact(bean);
+                    if (current instanceof Collection) {
+                        ((Collection) current).addAll((Collection) value);
+                    } else
+                    if (current instanceof Map) {
+                        ((Map) current).putAll((Map) value);
+                    }
+                }
+            } catch (Throwable th) {
+                throw wrap(th);
+            }
+        }
+        return bean;
+    }
+
+    private int find(final JsonReader jr, final int expected) {
+        final int cnt = properties.length;
+        for (int i = 0; i < cnt; i++) {
+            int index = expected + i;
+            if (index >= cnt)
+                index -= cnt;
+            if (jr.textEquals(properties[index].name))
+                return index;
+        }
+        return -1;
+    }
+
+    private static InvocationTargetException wrap(final Throwable th) {
+        if (th instanceof Error)
+            throw (Error) th;
+        return new InvocationTargetException(th);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return cl.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null || !getClass().equals(obj.getClass()))
+            return false;
+        final BeanDeserializer other = (BeanDeserializer) obj;
+        return cl.equals(other.cl);
+    }
+
+    @Override
+    public String toString() {
+        return "[BeanDeserializer{class:" + cl + "}]";
+    }
+}
@@ -0,0 +1,28 @@
+package org.echosoft.common.json.introspect;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Описание свойства java бина, участвующего в преобразовании в JSON формат (с учетом аннотаций {@link org.echosoft.common.json.annotate.JsonField}).
+ * Формируется методом {@link BeanSerializer#introspect(Class)} и используется как при сериализации бинов, так и при их восстановлении
+ * (см. {@link BeanDeserializer}), что гарантирует одинаковые правила именования свойств в обоих направлениях.
+ *
+ * @author Anton Sharapov
+ */
+final class BeanMember {
+
+    final String name;              // имя свойства в JSON.
+    final Method method;            // get/is метод свойства или null если свойство соответствует публичному полю.
+    final Field field;              // публичное поле или null если свойство соответствует get/is методу.
+    final boolean writeNulls;       // требуется ли сериализовать пустые значения свойства.
+    final boolean dereference;      // требуется ли вместо самого свойства сериализовать все свойства его значения.
+
+    BeanMember(final String name, final Method method, final Field field, final boolean writeNulls, final boolean dereference) {
+        this.name = name;
+        this.method = method;
+        this.field = field;
+        this.writeNulls = writeNulls;
+        this.dereference = dereference;
+    }
+}
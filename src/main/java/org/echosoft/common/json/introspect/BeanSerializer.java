@@ -3,11 +3,14 @@ package org.echosoft.common.json.introspect;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 
+import org.echosoft.common.json.JsonContext;
 import org.echosoft.common.json.JsonSerializer;
 import org.echosoft.common.json.JsonUtil;
 import org.echosoft.common.json.JsonWriter;
@@ -22,12 +25,47 @@ import org.echosoft.common.json.annotate.JsonWriteNulls;
 public final class BeanSerializer implements JsonSerializer {
 
     public static MemberAccessor[] getMembers(final Class<?> cl) {
+        return getMembers(cl, null);
+    }
+
+    /**
+     * Формирует перечень правил сериализации всех свойств указанного класса.
+     *
+     * @param cl  класс бина.
+     * @param ctx если указан, то значения свойств будут извлекаться посредством {@link java.lang.invoke.MethodHandle} (см. {@link HandleMemberAccessor}),
+     *            в противном случае - посредством стандартных механизмов рефлексии.
+     * @return перечень правил сериализации свойств бина.
+     */
+    public static MemberAccessor[] getMembers(final Class<?> cl, final JsonContext ctx) {
+        final List<BeanMember> members = introspect(cl);
+        final ArrayList<MemberAccessor> list = new ArrayList<>(members.size());
+        for (BeanMember member : members) {
+            if (member.dereference) {
+                list.add(member.method != null ? new DereferencedMembersAccessor(member.method) : new DereferencedMembersAccessor(member.field));
+            } else
+            if (member.method != null) {
+                list.add(ctx != null ? handleAccessor(member.name, member.method, member.writeNulls, ctx) : new MethodMemberAccessor(member.name, member.method, member.writeNulls));
+            } else {
+                list.add(ctx != null ? handleAccessor(member.name, member.field, member.writeNulls, ctx) : new FieldMemberAccessor(member.name, member.field, member.writeNulls));
+            }
+        }
+        return list.toArray(new MemberAccessor[list.size()]);
+    }
+
+    /**
+     * Определяет перечень свойств указанного класса, участвующих в преобразовании в JSON формат, и правила их именования (с учетом аннотаций {@link JsonField}).
+     * Свойства, помеченные как <code>isTransient</code>, в перечень не попадают.
+     *
+     * @param cl класс бина.
+     * @return перечень свойств бина: сначала свойства доступные посредством get/is методов, затем публичные поля.
+     */
+    static List<BeanMember> introspect(final Class<?> cl) {
         final JsonWriteNulls jwna = cl.getAnnotation(JsonWriteNulls.class);
         final boolean defWriteNulls = jwna == null || jwna.value();
         String name;
         boolean writeNulls;
         boolean dereference;
-        final ArrayList<MemberAccessor> list = new ArrayList<>();
+        final ArrayList<BeanMember> list = new ArrayList<>();
         final HashSet<String> properties = new HashSet<>();
         for (final JsonUtil.NamedMethod entry : JsonUtil.findGetters(cl)) {
             final Method method = entry.method;
@@ -45,11 +83,7 @@ public final class BeanSerializer implements JsonSerializer {
                 writeNulls = defWriteNulls;
                 dereference = false;
             }
-            if (dereference) {
-                list.add(new DereferencedMembersAccessor(method));
-            } else {
-                list.add(new MethodMemberAccessor(name, method, writeNulls));
-            }
+            list.add(new BeanMember(name, method, null, writeNulls, dereference));
             properties.add(name);
         }
         for (final Field field : cl.getFields()) {
@@ -70,13 +104,22 @@ public final class BeanSerializer implements JsonSerializer {
             }
             if (properties.contains(name))
                 continue;
-            if (dereference) {
-                list.add(new DereferencedMembersAccessor(field));
-            } else {
-                list.add(new FieldMemberAccessor(name, field, writeNulls));
-            }
+            list.add(new BeanMember(name, null, field, writeNulls, dereference));
+        }
+        return list;
+    }
+
+    private static MemberAccessor handleAccessor(final String name, final Member member, final boolean writeNulls, final JsonContext ctx) {
+        try {
+            return member instanceof Method
+                    ? HandleMemberAccessor.forMethod(name, (Method) member, writeNulls, ctx)
+                    : HandleMemberAccessor.forField(name, (Field) member, writeNulls, ctx);
+        } catch (IllegalAccessException | RuntimeException e) {
+            // доступ к члену класса посредством MethodHandle закрыт, используем обычную рефлексию ...
+            return member instanceof Method
+                    ? new MethodMemberAccessor(name, (Method) member, writeNulls)
+                    : new FieldMemberAccessor(name, (Field) member, writeNulls);
         }
-        return list.toArray(new MemberAccessor[list.size()]);
     }
 
     private final Class cl;
@@ -87,6 +130,18 @@ public final class BeanSerializer implements JsonSerializer {
         this.accessors = getMembers(cl);
     }
 
+    /**
+     * Создает сериализатор, извлекающий значения свойств бина посредством {@link java.lang.invoke.MethodHandle}.
+     *
+     * @param cl  класс бина.
+     * @param ctx контекст, в рамках которого будет использоваться данный сериализатор.
+     * @see JsonContext#isUseMethodHandles()
+     */
+    public BeanSerializer(final Class cl, final JsonContext ctx) {
+        this.cl = cl;
+        this.accessors = getMembers(cl, ctx);
+    }
+
 
     @Override
     public void serialize(final Object src, final JsonWriter jw) throws IOException, InvocationTargetException, IllegalAccessException {
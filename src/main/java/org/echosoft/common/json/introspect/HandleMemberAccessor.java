@@ -0,0 +1,231 @@
+package org.echosoft.common.json.introspect;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+
+import org.echosoft.common.json.JsonContext;
+import org.echosoft.common.json.JsonSerializer;
+import org.echosoft.common.json.JsonWriter;
+import org.echosoft.common.json.PrimitiveJsonWriter;
+import org.echosoft.common.json.Serializers;
+
+/**
+ * <p>Правило сериализации свойства бина, значение которого извлекается посредством {@link MethodHandle} вместо рефлективных вызовов
+ * {@link Method#invoke(Object, Object...)} и {@link Field#get(Object)}. Такие вызовы (после прогрева) встраиваются JIT компилятором
+ * в код сериализатора и не требуют создания массива аргументов и проверок доступа при каждом обращении.</p>
+ * <p>Значения свойств примитивных типов <code>byte, short, int, long, double, boolean</code> помещаются в выходной поток
+ * без упаковки в объекты-обертки с помощью методов {@link PrimitiveJsonWriter#writeLongProperty(String, long)}, {@link PrimitiveJsonWriter#writeDoubleProperty(String, double)}
+ * и {@link PrimitiveJsonWriter#writeBooleanProperty(String, boolean)}, но только если в контексте для соответствующих классов-оберток используются
+ * стандартные сериализаторы {@link Serializers#NUMBER} и {@link Serializers#BOOLEAN}, а выходной поток реализует интерфейс {@link PrimitiveJsonWriter}.
+ * В противном случае значения упаковываются и сериализуются обычным образом.</p>
+ *
+ * @author Anton Sharapov
+ */
+public abstract class HandleMemberAccessor implements MemberAccessor {
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType LONG_GETTER = MethodType.methodType(long.class, Object.class);
+    private static final MethodType DOUBLE_GETTER = MethodType.methodType(double.class, Object.class);
+    private static final MethodType BOOLEAN_GETTER = MethodType.methodType(boolean.class, Object.class);
+
+    /**
+     * Создает правило сериализации свойства бина, значение которого возвращается указанным методом.
+     *
+     * @param name       имя свойства в JSON объекте.
+     * @param method     публичный метод без аргументов, возвращающий значение свойства.
+     * @param writeNulls <code>true</code> если свойство должно сериализоваться даже когда его значение равно <code>null</code>.
+     * @param ctx        контекст, в рамках которого будет использоваться данное правило.
+     * @return правило сериализации данного свойства.
+     * @throws IllegalAccessException в случае отсутствия доступа к указанному методу.
+     */
+    public static HandleMemberAccessor forMethod(final String name, final Method method, final boolean writeNulls, final JsonContext ctx) throws IllegalAccessException {
+        makeAccessible(method);
+        return make(name, method, MethodHandles.lookup().unreflect(method), method.getReturnType(), writeNulls, ctx);
+    }
+
+    /**
+     * Создает правило сериализации свойства бина, значение которого хранится в указанном поле.
+     *
+     * @param name       имя свойства в JSON объекте.
+     * @param field      публичное нестатическое поле класса.
+     * @param writeNulls <code>true</code> если свойство должно сериализоваться даже когда его значение равно <code>null</code>.
+     * @param ctx        контекст, в рамках которого будет использоваться данное правило.
+     * @return правило сериализации данного свойства.
+     * @throws IllegalAccessException в случае отсутствия доступа к указанному полю.
+     */
+    public static HandleMemberAccessor forField(final String name, final Field field, final boolean writeNulls, final JsonContext ctx) throws IllegalAccessException {
+        makeAccessible(field);
+        return make(name, field, MethodHandles.lookup().unreflectGetter(field), field.getType(), writeNulls, ctx);
+    }
+
+    private static HandleMemberAccessor make(final String name, final Member member, final MethodHandle handle, final Class<?> type, final boolean writeNulls, final JsonContext ctx) {
+        if (type.isPrimitive()) {
+            final JsonSerializer<?> serializer = ctx.getSerializer(MethodType.methodType(type).wrap().returnType());
+            if ((type == byte.class || type == short.class || type == int.class || type == long.class) && serializer == Serializers.NUMBER) {
+                return new LongAccessor(name, member, handle.asType(LONG_GETTER), type);
+            }
+            if (type == double.class && serializer == Serializers.NUMBER) {
+                return new DoubleAccessor(name, member, handle.asType(DOUBLE_GETTER));
+            }
+            if (type == boolean.class && serializer == Serializers.BOOLEAN) {
+                return new BooleanAccessor(name, member, handle.asType(BOOLEAN_GETTER));
+            }
+        }
+        return new ObjectAccessor(name, member, handle.asType(OBJECT_GETTER), writeNulls);
+    }
+
+    /**
+     * Снимает проверки доступа с указанного члена класса. Начиная с JDK 9 это может быть запрещено для классов из закрытых пакетов модулей
+     * (выбрасывается <code>InaccessibleObjectException</code>), в этом случае дескриптор метода удастся получить только для публичных членов
+     * экспортируемых классов, а для остальных {@link MethodHandles.Lookup} выбросит {@link IllegalAccessException}.
+     */
+    private static void makeAccessible(final AccessibleObject member) {
+        try {
+            member.setAccessible(true);
+        } catch (RuntimeException e) {
+            // доступ будет проверен при получении дескриптора ...
+        }
+    }
+
+    private static InvocationTargetException wrap(final Throwable th) {
+        if (th instanceof Error)
+            throw (Error) th;
+        return new InvocationTargetException(th);
+    }
+
+
+    protected final String name;
+    protected final Member member;
+    protected final MethodHandle getter;
+
+    private HandleMemberAccessor(final String name, final Member member, final MethodHandle getter) {
+        this.name = name;
+        this.member = member;
+        this.getter = getter;
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null || !getClass().equals(obj.getClass()))
+            return false;
+        final HandleMemberAccessor other = (HandleMemberAccessor) obj;
+        return name.equals(other.name) && member.equals(other.member);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + getClass().getSimpleName() + "{name:" + name + ", member:" + member + "}]";
+    }
+
+
+    private static final class ObjectAccessor extends HandleMemberAccessor {
+        private final boolean writeNulls;
+
+        private ObjectAccessor(final String name, final Member member, final MethodHandle getter, final boolean writeNulls) {
+            super(name, member, getter);
+            this.writeNulls = writeNulls;
+        }
+
+        @Override
+        public void serialize(final Object bean, final JsonWriter jw) throws IOException, InvocationTargetException, IllegalAccessException {
+            final Object value;
+            try {
+                value = (Object) getter.invokeExact(bean);
+            } catch (Throwable th) {
+                throw wrap(th);
+            }
+            if (value != null || writeNulls) {
+                jw.writeProperty(name, value);
+            }
+        }
+    }
+
+    private static final class LongAccessor extends HandleMemberAccessor {
+        private final Class<?> type;
+
+        private LongAccessor(final String name, final Member member, final MethodHandle getter, final Class<?> type) {
+            super(name, member, getter);
+            this.type = type;
+        }
+
+        @Override
+        public void serialize(final Object bean, final JsonWriter jw) throws IOException, InvocationTargetException, IllegalAccessException {
+            final long value;
+            try {
+                value = (long) getter.invokeExact(bean);
+            } catch (Throwable th) {
+                throw wrap(th);
+            }
+            if (jw instanceof PrimitiveJsonWriter) {
+                ((PrimitiveJsonWriter) jw).writeLongProperty(name, value);
+            } else {
+                // упаковываем значение в обертку объявленного типа, чтобы сериализатор выбирался так же как и без данной оптимизации.
+                jw.writeProperty(name, box(value));
+            }
+        }
+
+        private Object box(final long value) {
+            if (type == int.class)
+                return (int) value;
+            if (type == short.class)
+                return (short) value;
+            if (type == byte.class)
+                return (byte) value;
+            return value;
+        }
+    }
+
+    private static final class DoubleAccessor extends HandleMemberAccessor {
+        private DoubleAccessor(final String name, final Member member, final MethodHandle getter) {
+            super(name, member, getter);
+        }
+
+        @Override
+        public void serialize(final Object bean, final JsonWriter jw) throws IOException, InvocationTargetException, IllegalAccessException {
+            final double value;
+            try {
+                value = (double) getter.invokeExact(bean);
+            } catch (Throwable th) {
+                throw wrap(th);
+            }
+            if (jw instanceof PrimitiveJsonWriter) {
+                ((PrimitiveJsonWriter) jw).writeDoubleProperty(name, value);
+            } else {
+                jw.writeProperty(name, value);
+            }
+        }
+    }
+
+    private static final class BooleanAccessor extends HandleMemberAccessor {
+        private BooleanAccessor(final String name, final Member member, final MethodHandle getter) {
+            super(name, member, getter);
+        }
+
+        @Override
+        public void serialize(final Object bean, final JsonWriter jw) throws IOException, InvocationTargetException, IllegalAccessException {
+            final boolean value;
+            try {
+                value = (boolean) getter.invokeExact(bean);
+            } catch (Throwable th) {
+                throw wrap(th);
+            }
+            if (jw instanceof PrimitiveJsonWriter) {
+                ((PrimitiveJsonWriter) jw).writeBooleanProperty(name, value);
+            } else {
+                jw.writeProperty(name, value);
+            }
+        }
+    }
+}
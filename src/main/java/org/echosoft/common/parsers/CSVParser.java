@@ -3,10 +3,20 @@ package org.echosoft.common.parsers;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
- * Парсер данных в формате CSV (в соответствии с <a href="https://tools.ietf.org/html/rfc4180">RFC 4180</a>).<br/>
+ * <p>Парсер данных в формате CSV (в соответствии с <a href="https://tools.ietf.org/html/rfc4180">RFC 4180</a>).</p>
+ * <p>Содержимое исходного потока читается крупными блоками во внутренний буфер, в котором затем выполняется поиск границ записей и их полей.
+ * Данные могут извлекаться двумя способами:</p>
+ * <ol>
+ * <li> по записям (см. {@link #nextRecord()} и {@link #getRecord()}) - значения полей доступны в виде последовательностей символов,
+ *      ссылающихся непосредственно на внутренний буфер парсера, без создания строки для каждого поля;
+ * <li> по токенам (см. {@link #nextLine()}, {@link #hasNextToken()} и {@link #nextToken()}) - значения полей возвращаются в виде строк.
+ * </ol>
+ * <p>Разделитель в конце строки всегда означает, что запись завершается полем с пустым значением (например, строка <code>"a,b,"</code>
+ * содержит три поля), независимо от того, является ли эта строка последней в потоке.</p>
  * Пример использования:<br/>
  * <pre>
  *  Reader stream = ...;
@@ -18,6 +28,13 @@ import java.util.NoSuchElementException;
  *      }
  *  }
  *  parser.close();
+ *
+ *  // или то же самое, но без создания строк для каждого поля ...
+ *  while (parser.nextRecord()) {
+ *      CSVRecord record = parser.getRecord();
+ *      long id = record.getLong(0);
+ *      CharSequence name = record.get(1);
+ *  }
  * </pre>
  *
  * @author Anton Sharapov
@@ -26,20 +43,25 @@ public class CSVParser implements Closeable, AutoCloseable {
 
     public static final char TOKENS_DELIMITER = ',';
     public static final char TOKENS_PAYLOAD_WRAPPER = '"';
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
 
     private static enum State {
-        BOF, UNKNOWN, NEXT_TOKEN, LAST_TOKEN_AT_LINE, LAST_TOKEN_AT_FILE, EOL, EOF
+        BOF, LINE, EOF
     }
 
     private final Reader reader;            // входной поток который требуется разобрать на записи и их атрибуты.
     private final char delimiter;           // символ-разделитель между токенами
     private final char wrapper;             // символ в который может быть "завернуто" значение токена (используется если в значениях могут быть пробелы, переводы строк и прочие подобные символы).
+    private final CSVRecord record;         // текущая запись (используется повторно для всех записей потока).
+    private char[] buf;                     // буфер с прочитанным из потока содержимым.
+    private int pos;                        // позиция в буфере первого еще не обработанного символа.
+    private int limit;                      // позиция в буфере, следующая за последним прочитанным из потока символом.
+    private int recordStart;                // позиция в буфере начала текущей записи. Содержимое буфера начиная с этой позиции сохраняется при подкачке данных.
+    private boolean eof;                    // признак того что исходный поток был прочитан полностью.
     private int lineNum;                    // порядковый номер (начиная с 1) текущей обрабатываемой строки (для которой был возвращен последний токен)
     private int lastTokenNum;               // порядковый номер (начиная с 1) последнего возвращенного токена в строке .
     private State state;                    // определяет состояние в котором находится парсер.
-    private String nextToken;               // значение очередного токена который будет возвращен следующим вызовом метода {@link #nextToken()}. Актуален когда state in (NEXT_TOKEN, LAST_TOKEN_AT_LINE, LAST_TOKEN_AT_FILE)
-    private StringBuilder buf;              // буфер для накопления содержимого текущего обрабатываемого токена.
-    private int unreadChar;
+    private String error;                   // описание синтаксической ошибки в текущей записи (если есть).
 
     public CSVParser(final Reader reader) {
         this(reader, TOKENS_DELIMITER, TOKENS_PAYLOAD_WRAPPER);
@@ -50,14 +72,33 @@ public class CSVParser implements Closeable, AutoCloseable {
     }
 
     public CSVParser(final Reader reader, final char delimiter, final char wrapper) {
+        this(reader, delimiter, wrapper, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param reader     исходный поток с данными в формате CSV.
+     * @param delimiter  символ-разделитель между полями записи.
+     * @param wrapper    символ в который может быть заключено значение поля.
+     * @param bufferSize начальный размер внутреннего буфера (в символах). Если очередная запись не помещается в буфер целиком, то он будет увеличен.
+     */
+    public CSVParser(final Reader reader, final char delimiter, final char wrapper, final int bufferSize) {
+        this(reader, delimiter, wrapper, bufferSize, 0);
+    }
+
+    /**
+     * Используется при разборе фрагментов потока, когда номера записей должны отсчитываться от начала всего потока.
+     *
+     * @param lineNum количество записей в потоке, предшествующих данному фрагменту.
+     */
+    CSVParser(final Reader reader, final char delimiter, final char wrapper, final int bufferSize, final int lineNum) {
         this.reader = reader;
         this.delimiter = delimiter;
         this.wrapper = wrapper;
-        this.lineNum = 0;
+        this.record = new CSVRecord();
+        this.buf = new char[Math.max(bufferSize, 16)];
+        this.lineNum = lineNum;
         this.lastTokenNum = 0;
         this.state = State.BOF;
-        this.buf = new StringBuilder();
-        this.unreadChar = -1;
     }
 
     /**
@@ -78,23 +119,49 @@ public class CSVParser implements Closeable, AutoCloseable {
         return lastTokenNum;
     }
 
+    /**
+     * Переводит курсор на следующую запись потока. Пустые строки возвращаются в виде записей без полей.
+     * В отличие от {@link #nextLine()}, о синтаксических ошибках в записи сообщается сразу.
+     *
+     * @return <code>true</code> если очередная запись была прочитана, <code>false</code> если достигнут конец потока.
+     * @throws IOException           в случае проблем с чтением содержимого исходного потока.
+     * @throws IllegalStateException в случае синтаксических ошибок в записи. Последующий вызов метода переводит курсор на следующую за ней запись.
+     */
+    public boolean nextRecord() throws IOException {
+        if (!nextLine())
+            return false;
+        if (error != null)
+            throw new IllegalStateException(error);
+        return true;
+    }
+
+    /**
+     * Возвращает текущую запись потока. Для всех записей потока возвращается один и тот же экземпляр, содержимое которого
+     * актуально только до очередного вызова методов {@link #nextRecord()}, {@link #nextLine()} или {@link #nextLine(int)}.
+     *
+     * @return текущая запись потока.
+     */
+    public CSVRecord getRecord() {
+        return record;
+    }
+
     /**
      * Возвращает <code>true</code> если текущая строка содержит еще токены для чтения. Для перехода на следующую строку следует использовать вызов {@link #nextLine()}.
      *
      * @return <code>true</code> если текущая строка содержит еще токены для чтения.
      * @throws IOException в случае проблем с чтением содержимого исходного потока.
-     * @throws IllegalStateException в случае если в текущей строке больше нет токенов.
+     * @throws IllegalStateException в случае если текущая строка еще не была выбрана или очередной токен в строке содержит синтаксические ошибки.
      */
     public boolean hasNextToken() throws IOException {
-        ensureCurrentStateResolved();
         switch (state) {
             case BOF:
-            case UNKNOWN:
                 throw new IllegalStateException();
-            case NEXT_TOKEN:
-            case LAST_TOKEN_AT_LINE:
-            case LAST_TOKEN_AT_FILE:
-                return true;
+            case LINE:
+                if (lastTokenNum < record.size())
+                    return true;
+                if (error != null)
+                    throw new IllegalStateException(error);
+                return false;
             default:
                 return false;
         }
@@ -107,42 +174,33 @@ public class CSVParser implements Closeable, AutoCloseable {
      *
      * @return Строка со значением следующего токена.
      * @throws IOException в случае проблем с чтением содержимого исходного потока.
-     * @throws IllegalStateException в случае если в текущей строке больше нет токенов.
+     * @throws IllegalStateException в случае если текущая строка еще не была выбрана или очередной токен в строке содержит синтаксические ошибки.
+     * @throws NoSuchElementException в случае если в текущей строке больше нет токенов.
      */
     public String nextToken() throws IOException {
-        ensureCurrentStateResolved();
-        switch (state) {
-            case BOF:
-            case UNKNOWN:
-                throw new IllegalStateException();
-            case NEXT_TOKEN:
-                state = State.UNKNOWN;
-                break;
-            case LAST_TOKEN_AT_LINE:
-                state = State.EOL;
-                break;
-            case LAST_TOKEN_AT_FILE:
-                state = State.EOF;
-                break;
-            default:
-                throw new NoSuchElementException();
-        }
-        final String result = nextToken;
-        nextToken = null;
-        lastTokenNum++;
-        return result;
+        if (!hasNextToken())
+            throw new NoSuchElementException();
+        return record.getString(lastTokenNum++);
     }
 
     /**
-     * Пропускает указанное количество строк.<br/>
+     * Пропускает указанное количество строк. Синтаксический разбор пропускаемых строк (кроме последней) не выполняется,
+     * отслеживаются лишь границы значений заключенных в кавычки.<br/>
      *
      * @param linesCnt количество строк которые должны быть пропущены.
      * @return <code>true</code> если после перевода строки курсор указывает на существующую строку (то есть конец файла еще не достигнут).
      */
     public boolean nextLine(final int linesCnt) throws IOException {
-        for (int i = 0; state != State.EOF && i < linesCnt; i++) {
-            nextLine();
+        for (int i = 1; i < linesCnt && state != State.EOF; i++) {
+            if (hasData()) {
+                pos = skipRest(pos, true);
+                lineNum++;
+            } else {
+                state = State.EOF;
+            }
         }
+        if (linesCnt > 0)
+            nextLine();
         return state != State.EOF;
     }
 
@@ -154,214 +212,244 @@ public class CSVParser implements Closeable, AutoCloseable {
      * @return <code>true</code> если после перевода строки курсор указывает на существующую строку (то есть конец файла еще не достигнут).
      */
     public boolean nextLine() throws IOException {
-        if (state == State.UNKNOWN || state == State.NEXT_TOKEN) {
-            // С учетом возможности наличия токенов содержащих в себе символ перевода строки (токены обрамленные кавычками)
-            // нам все равно придется делать синтаксический разбор до конца текущей записи
-            skipLine();
-        }
-        switch (state) {
-            case BOF:
-            case LAST_TOKEN_AT_LINE:
-            case EOL: {
-                final int b = readChar();
-                if (b >= 0) {
-                    unreadChar((char)b);
-                    lastTokenNum = 0;
-                    lineNum++;
-                    state = State.UNKNOWN;
-                    return true;
-                } else {
-                    state = State.EOF;
-                    return false;
-                }
-            }
-            case LAST_TOKEN_AT_FILE:
-                state = State.EOF;
-            case EOF:
-                return false;
-            default:
-                throw new IllegalStateException();
+        if (state == State.EOF)
+            return false;
+        if (!hasData()) {
+            state = State.EOF;
+            return false;
         }
+        parseRecord();
+        state = State.LINE;
+        return true;
     }
 
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+
     /**
-     * Пропускает текущую обрабатываемую строку и переводит курсор на следующую строку потока.
-     *
-     * @return <code>true</code> если был достигнут символ конца строки, <code>false</code> - если был достигнут конец файла.
+     * Разбирает очередную запись потока, начинающуюся с текущей позиции в буфере. Границы полей записи сохраняются в {@link #record},
+     * а описание обнаруженной синтаксической ошибки (если есть) - в {@link #error}. Поле, содержащее ошибку, и все последующие поля в запись не попадают.
      */
-    protected boolean skipLine() throws IOException {
-        int b, state = 0;
-        while ( (b=readChar()) >= 0 ) {
-            final char c = (char)b;
-            switch (state) {
-                case 0: {
-                    // обрабатываем содержимое потока не заключенное в кавычки ...
-                    if (c == '\n') {
-                        if (this.state == State.UNKNOWN || this.state == State.NEXT_TOKEN)
-                        this.state = State.EOL;
-                        return true;
-                    }
-                    if (c == wrapper)
-                        state = 1;
-                    break;
-                }
-                case 1: {
-                    // обрабатываем содержимое потока которое было заключено в кавычки в ожидании закрывающей кавычки ...
-                    if (c == wrapper)
-                        state = 2;
-                    break;
+    private void parseRecord() throws IOException {
+        recordStart = pos;
+        lineNum++;
+        lastTokenNum = 0;
+        error = null;
+        record.reset(buf, recordStart, lineNum);
+        boolean blank = true;       // в строке еще не встречалось ни одного символа кроме '\r'
+        int p = pos;
+        for (;;) {
+            // пропускаем пробельные символы перед значением поля ...
+            char c = 0;
+            for (;;) {
+                if (p >= limit) {
+                    final int shift = fill();
+                    if (shift < 0)
+                        break;
+                    p -= shift;
+                    continue;
                 }
-                case 2: {
-                    // обрабатываем символ следующий за возможно "закрывающей" кавычкой токена.
-                    // если этот символ - тоже кавычка значит токен продолжается.
-                    if (c == '\n') {
-                        this.state = State.EOL;
-                        return true;
-                    }
-                    state = (c == wrapper) ? 1 : 0;
+                c = buf[p];
+                if (c == delimiter || c == '\n' || c > ' ')
                     break;
-                }
-                default:
-                    throw new IllegalStateException();
+                if (c != '\r')
+                    blank = false;
+                p++;
+            }
+            if (p >= limit || c == '\n') {
+                // строка завершилась до начала значения очередного поля. Если ранее в строке уже был разделитель полей или
+                // пробельные символы, то это поле с пустым значением.
+                if (record.size() > 0 || !blank)
+                    record.add(p - recordStart, p - recordStart);
+                pos = p < limit ? p + 1 : p;
+                return;
+            }
+            if (c == delimiter) {
+                record.add(p - recordStart, p - recordStart);
+                p++;
+                continue;
             }
-        }
-        this.state = State.EOF;
-        return false;
-    }
-
-    protected void ensureCurrentStateResolved() throws IOException {
-        if (state == State.UNKNOWN)
-            state = scanToken();
-    }
-
-
-    private static final int WAIT_TOKEN_START = 0;
-    private static final int PROCESS_TOKEN_PAYLOAD_MASKED = 1;
-    private static final int PROCESS_TOKEN_PAYLOAD_UNMASKED = 2;
-    private static final int WAIT_TOKEN_END = 3;
 
-    protected State scanToken() throws IOException {
-        int state = WAIT_TOKEN_START;
-        int b;
-        boolean hasEmptyChars = false;
-        boolean cw = false;
-        while ( (b = readChar()) >= 0 ) {
-            final char c = (char)b;
-            switch (state) {
-                case WAIT_TOKEN_START: {
-                    // В ожидании начала произвольного токена ...
-                    if (c == delimiter) {
-                        nextToken = "";
-                        return State.NEXT_TOKEN;
-                    } else
-                    if (c == '\n') {
-                        if (hasEmptyChars) {
-                            nextToken = "";
-                            return State.LAST_TOKEN_AT_LINE;
-                        } else {
-                            nextToken = null;
-                            return State.EOL;
-                        }
-                    } else
-                    if (c == wrapper) {
-                        state = PROCESS_TOKEN_PAYLOAD_MASKED;
-                    } else
-                    if (c > ' ') {
-                        state = PROCESS_TOKEN_PAYLOAD_UNMASKED;
-                        buf.append(c);
+            final int start, end;
+            if (c == wrapper) {
+                // значение заключено в кавычки. Экранированные (удвоенные) кавычки заменяются одиночными непосредственно в буфере.
+                int r = ++p;
+                int w = r;
+                start = r - recordStart;
+                for (;;) {
+                    final char[] chars = buf;
+                    final int lim = limit;
+                    if (r == w) {
+                        while (r < lim && chars[r] != wrapper) r++;
+                        w = r;
+                    } else {
+                        while (r < lim && chars[r] != wrapper) chars[w++] = chars[r++];
                     }
-                    if (c != '\r')
-                        hasEmptyChars = true;
-                    break;
-                }
-                case PROCESS_TOKEN_PAYLOAD_MASKED: {
-                    // обработка полезного содержимого обрамленного кавычками токена ...
-                    if (cw) {
-                        if (c == wrapper) {
-                            cw = false;
-                            buf.append(c);
-                        } else {
-                            state = WAIT_TOKEN_END;
-                            unreadChar(c);
+                    if (r + 1 >= lim) {
+                        // для принятия решения нужны как сама кавычка, так и следующий за ней символ ...
+                        final int shift = fill();
+                        if (shift >= 0) {
+                            r -= shift;
+                            w -= shift;
+                            continue;
                         }
-                    } else {
-                        if (c == wrapper) {
-                            cw = true;
-                        } else {
-                            buf.append(c);
+                        if (r >= limit) {
+                            error = "Unterminated quoted value at line " + lineNum + ", field " + (record.size() + 1);
+                            pos = limit;
+                            return;
                         }
+                        break;      // закрывающая кавычка является последним символом потока.
                     }
-                    break;
+                    if (chars[r + 1] != wrapper)
+                        break;
+                    chars[w++] = wrapper;
+                    r += 2;
                 }
-                case PROCESS_TOKEN_PAYLOAD_UNMASKED: {
-                    // обработка неэкранированного токена ...
-                    if (c == delimiter) {
-                        nextToken = buf.toString();
-                        buf.setLength(0);
-                        return State.NEXT_TOKEN;
-                    } else
-                    if (c > ' ') {
-                        buf.append(c);
+                end = w - recordStart;
+                p = r + 1;
+            } else {
+                start = p - recordStart;
+                for (;;) {
+                    final char[] chars = buf;
+                    final int lim = limit;
+                    while (p < lim && (c = chars[p]) > ' ' && c != delimiter) p++;
+                    if (p < lim)
                         break;
-                    } else
-                    if (c == '\n') {
-                        nextToken = buf.toString();
-                        buf.setLength(0);
-                        return State.LAST_TOKEN_AT_LINE;
-                    } else {
-                        state = WAIT_TOKEN_END;
+                    final int shift = fill();
+                    if (shift < 0)
+                        break;
+                    p -= shift;
+                }
+                end = p - recordStart;
+            }
+
+            // после значения поля допустимы только пробельные символы вплоть до разделителя полей или конца строки ...
+            for (;;) {
+                if (p >= limit) {
+                    final int shift = fill();
+                    if (shift < 0) {
+                        record.add(start, end);
+                        pos = p;
+                        return;
                     }
+                    p -= shift;
+                    continue;
                 }
-                case WAIT_TOKEN_END: {
-                    // в ожидании завершения токена (ждем разделитель токенов или символ конца строки) ...
-                    if (c == delimiter) {
-                        nextToken = buf.toString();
-                        buf.setLength(0);
-                        return State.NEXT_TOKEN;
-                    } else
-                    if (c == '\n') {
-                        nextToken = buf.toString();
-                        buf.setLength(0);
-                        return State.LAST_TOKEN_AT_LINE;
-                    } else
-                    if (c > ' ')
-                        throw new IllegalStateException("Illegal character '" + c + "'");
+                c = buf[p++];
+                if (c == delimiter)
                     break;
+                if (c == '\n') {
+                    record.add(start, end);
+                    pos = p;
+                    return;
+                }
+                if (c > ' ') {
+                    error = "Illegal character '" + c + "' at line " + lineNum + ", field " + (record.size() + 1);
+                    pos = skipRest(p, false);
+                    return;
                 }
             }
+            record.add(start, end);
         }
+    }
 
-        switch (state) {
-            case WAIT_TOKEN_START:
-                nextToken = "";
-                break;
-            case WAIT_TOKEN_END:
-            case PROCESS_TOKEN_PAYLOAD_UNMASKED:
-                nextToken = buf.toString();
-                buf.setLength(0);
-                break;
-            default:
-                throw new IllegalStateException();
+    /**
+     * Пропускает содержимое потока до конца текущей записи. Синтаксический разбор не выполняется, учитываются только значения
+     * заключенные в кавычки (которые могут содержать переводы строк).
+     *
+     * @param p          позиция в буфере с которой следует начать поиск конца записи.
+     * @param fieldStart <code>true</code> если данная позиция соответствует началу значения очередного поля.
+     * @return позиция в буфере, следующая за концом записи.
+     */
+    private int skipRest(int p, boolean fieldStart) throws IOException {
+        boolean afterQuote = false;
+        for (;;) {
+            if (p >= limit) {
+                final int shift = fill();
+                if (shift < 0)
+                    return p;
+                p -= shift;
+                continue;
+            }
+            final char c = buf[p++];
+            if (c == wrapper && (fieldStart || afterQuote)) {
+                // пропускаем значение заключенное в кавычки (удвоенная кавычка обрабатывается как закрытие и повторное открытие значения) ...
+                for (;;) {
+                    final char[] chars = buf;
+                    final int lim = limit;
+                    while (p < lim && chars[p] != wrapper) p++;
+                    if (p < lim)
+                        break;
+                    final int shift = fill();
+                    if (shift < 0)
+                        return p;
+                    p -= shift;
+                }
+                p++;
+                fieldStart = false;
+                afterQuote = true;
+                continue;
+            }
+            afterQuote = false;
+            if (c == '\n')
+                return p;
+            if (c == delimiter) {
+                fieldStart = true;
+            } else
+            if (c > ' ') {
+                fieldStart = false;
+            }
         }
-        return State.LAST_TOKEN_AT_FILE;
     }
 
-    protected int readChar() throws IOException {
-        if (unreadChar >= 0) {
-            final int result = unreadChar;
-            unreadChar = -1;
-            return result;
-        } else
-            return reader.read();
-    }
-    protected void unreadChar(final char c) {
-        if (unreadChar >= 0)
-            throw new IllegalStateException();
-        unreadChar = c;
+    /**
+     * Проверяет наличие в потоке данных для разбора очередной записи (при необходимости подкачивает их в буфер).
+     *
+     * @return <code>false</code> если поток был прочитан полностью.
+     */
+    private boolean hasData() throws IOException {
+        recordStart = pos;
+        while (pos >= limit) {
+            if (fill() < 0)
+                return false;
+        }
+        return true;
     }
 
-    @Override
-    public void close() throws IOException {
-        reader.close();
+    /**
+     * Подкачивает в буфер очередную порцию данных из исходного потока. Содержимое буфера начиная с позиции {@link #recordStart}
+     * перемещается в начало буфера, при отсутствии в буфере свободного места он увеличивается.
+     *
+     * @return величина, на которую было смещено содержимое буфера, или <code>-1</code> если поток был прочитан полностью
+     *         (и содержимое буфера не смещалось).
+     */
+    private int fill() throws IOException {
+        if (eof)
+            return -1;
+        final int shift = recordStart;
+        if (shift > 0) {
+            System.arraycopy(buf, shift, buf, 0, limit - shift);
+            pos -= shift;
+            limit -= shift;
+            recordStart = 0;
+        } else
+        if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        record.buf = buf;
+        record.base = 0;
+        int n;
+        do {
+            n = reader.read(buf, limit, buf.length - limit);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return shift > 0 ? shift : -1;     // о смещении содержимого буфера вызывающая сторона должна узнать в любом случае.
+        }
+        limit += n;
+        return shift;
     }
 }
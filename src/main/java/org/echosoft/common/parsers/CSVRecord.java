@@ -0,0 +1,296 @@
+package org.echosoft.common.parsers;
+
+import java.util.Arrays;
+
+import org.echosoft.common.utils.NumberUtil;
+
+/**
+ * <p>Представление очередной записи (строки) CSV потока, возвращаемое парсером {@link CSVParser}.</p>
+ * <p>Значения полей записи доступны в виде последовательностей символов (см. {@link #get(int)}), которые ссылаются непосредственно
+ * на внутренний буфер парсера, а числовые значения могут быть получены методами {@link #getInt(int)}, {@link #getLong(int)} и {@link #getDouble(int)}
+ * без создания промежуточных строк.</p>
+ * <p><strong>Внимание!</strong> Один и тот же экземпляр данного класса используется парсером для всех записей потока,
+ * поэтому его содержимое (как и все полученные из него последовательности символов) актуально только до следующего перехода парсера к очередной записи.
+ * Если значения должны сохраняться дольше то их следует скопировать, например с помощью {@link #getString(int)} или {@link #toArray()}.</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class CSVRecord {
+
+    /**
+     * Значение отдельного поля записи.
+     */
+    private final class Field implements CharSequence {
+        private final int index;
+
+        private Field(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return ends[index] - starts[index];
+        }
+
+        @Override
+        public char charAt(final int i) {
+            if (i < 0 || i >= ends[index] - starts[index])
+                throw new IndexOutOfBoundsException(Integer.toString(i));
+            return buf[base + starts[index] + i];
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (start < 0 || end > ends[index] - starts[index] || start > end)
+                throw new IndexOutOfBoundsException();
+            return new String(buf, base + starts[index] + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buf, base + starts[index], ends[index] - starts[index]);
+        }
+    }
+
+    char[] buf;                 // буфер с содержимым записи.
+    int base;                   // смещение начала записи в буфере.
+    private int[] starts;       // смещения (относительно начала записи) первых символов значений полей.
+    private int[] ends;         // смещения (относительно начала записи) символов, следующих за последними символами значений полей.
+    private Field[] fields;
+    private int size;
+    private int lineNum;
+
+    CSVRecord() {
+        this.starts = new int[16];
+        this.ends = new int[16];
+        this.fields = new Field[16];
+    }
+
+    void reset(final char[] buf, final int base, final int lineNum) {
+        this.buf = buf;
+        this.base = base;
+        this.size = 0;
+        this.lineNum = lineNum;
+    }
+
+    void add(final int start, final int end) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            fields = Arrays.copyOf(fields, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    int start(final int index) {
+        return starts[index];
+    }
+
+    int end(final int index) {
+        return ends[index];
+    }
+
+    /**
+     * Возвращает порядковый номер данной записи в потоке (начиная с 1). Пустые строки также учитываются, а записи, значения которых
+     * содержат переводы строк, считаются за одну строку.
+     *
+     * @return порядковый номер записи.
+     */
+    public int getLineNum() {
+        return lineNum;
+    }
+
+    /**
+     * @return количество полей в записи. Для пустых строк возвращает <code>0</code>.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает значение указанного поля записи в виде последовательности символов, ссылающейся на внутренний буфер парсера.
+     * Для каждого номера поля возвращается один и тот же экземпляр, содержимое которого меняется при переходе к следующей записи.
+     *
+     * @param index порядковый номер поля (начиная с 0).
+     * @return значение поля.
+     * @throws IndexOutOfBoundsException если запись не содержит поля с указанным номером.
+     */
+    public CharSequence get(final int index) {
+        checkIndex(index);
+        Field field = fields[index];
+        if (field == null)
+            fields[index] = field = new Field(index);
+        return field;
+    }
+
+    /**
+     * Возвращает значение указанного поля записи в виде строки.
+     *
+     * @param index порядковый номер поля (начиная с 0).
+     * @return значение поля.
+     * @throws IndexOutOfBoundsException если запись не содержит поля с указанным номером.
+     */
+    public String getString(final int index) {
+        checkIndex(index);
+        return new String(buf, base + starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * Проверяет является ли значение указанного поля пустой строкой.
+     *
+     * @param index порядковый номер поля (начиная с 0).
+     * @return <code>true</code> если значение поля не содержит ни одного символа.
+     * @throws IndexOutOfBoundsException если запись не содержит поля с указанным номером.
+     */
+    public boolean isEmpty(final int index) {
+        checkIndex(index);
+        return starts[index] == ends[index];
+    }
+
+    /**
+     * Возвращает значение указанного поля записи в виде целого числа. Строка не создается.
+     *
+     * @param index порядковый номер поля (начиная с 0).
+     * @return значение поля.
+     * @throws NumberFormatException     если значение поля не является корректным целым числом.
+     * @throws IndexOutOfBoundsException если запись не содержит поля с указанным номером.
+     */
+    public int getInt(final int index) {
+        final long result = getLong(index);
+        if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE)
+            throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+        return (int) result;
+    }
+
+    /**
+     * Возвращает значение указанного поля записи в виде целого числа. Строка не создается.
+     *
+     * @param index порядковый номер поля (начиная с 0).
+     * @return значение поля.
+     * @throws NumberFormatException     если значение поля не является корректным целым числом.
+     * @throws IndexOutOfBoundsException если запись не содержит поля с указанным номером.
+     */
+    public long getLong(final int index) {
+        checkIndex(index);
+        final char[] chars = buf;
+        int i = base + starts[index];
+        final int end = base + ends[index];
+        if (i == end)
+            throw new NumberFormatException("Empty value at field " + index);
+        final boolean negative = chars[i] == '-';
+        if (negative || chars[i] == '+') {
+            if (++i == end)
+                throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+        }
+        // накапливаем отрицательное значение чтобы корректно обрабатывать Long.MIN_VALUE
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multmin = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            final int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9 || result < multmin)
+                throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+            result *= 10;
+            if (result < limit + digit)
+                throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Возвращает значение указанного поля записи в виде числа с плавающей точкой. Для чисел, содержащих не более 15 значащих цифр
+     * и десятичный порядок не более 22 (по модулю), разбор выполняется без создания строки, в остальных случаях используется {@link Double#parseDouble(String)}.
+     *
+     * @param index порядковый номер поля (начиная с 0).
+     * @return значение поля.
+     * @throws NumberFormatException     если значение поля не является корректным числом.
+     * @throws IndexOutOfBoundsException если запись не содержит поля с указанным номером.
+     */
+    public double getDouble(final int index) {
+        checkIndex(index);
+        final char[] chars = buf;
+        int i = base + starts[index];
+        final int end = base + ends[index];
+        final boolean negative = i < end && chars[i] == '-';
+        if (negative || (i < end && chars[i] == '+'))
+            i++;
+        long mantissa = 0;
+        int digits = 0;         // кол-во значащих цифр в мантиссе.
+        int exp10 = 0;
+        boolean hasDigits = false;
+        for (; i < end; i++) {
+            final int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9)
+                break;
+            hasDigits = true;
+            if (mantissa != 0 || digit != 0) {
+                mantissa = mantissa * 10 + digit;
+                digits++;
+            }
+            if (digits > 15)
+                return Double.parseDouble(getString(index));
+        }
+        if (i < end && chars[i] == '.') {
+            for (i++; i < end; i++) {
+                final int digit = chars[i] - '0';
+                if (digit < 0 || digit > 9)
+                    break;
+                hasDigits = true;
+                if (mantissa != 0 || digit != 0) {
+                    mantissa = mantissa * 10 + digit;
+                    digits++;
+                }
+                exp10--;
+                if (digits > 15)
+                    return Double.parseDouble(getString(index));
+            }
+        }
+        if (hasDigits && i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+            i++;
+            final boolean negativeExp = i < end && chars[i] == '-';
+            if (negativeExp || (i < end && chars[i] == '+'))
+                i++;
+            int exp = 0;
+            final int expStart = i;
+            for (; i < end && exp < 1000; i++) {
+                final int digit = chars[i] - '0';
+                if (digit < 0 || digit > 9)
+                    break;
+                exp = exp * 10 + digit;
+            }
+            if (i == expStart)
+                hasDigits = false;
+            exp10 += negativeExp ? -exp : exp;
+        }
+        if (!hasDigits || i != end || exp10 < -NumberUtil.MAX_DOUBLE_POW10 || exp10 > NumberUtil.MAX_DOUBLE_POW10)
+            return Double.parseDouble(getString(index));
+        final double value = exp10 < 0 ? mantissa / NumberUtil.doublePow10(-exp10) : mantissa * NumberUtil.doublePow10(exp10);
+        return negative ? -value : value;
+    }
+
+    /**
+     * Возвращает значения всех полей записи в виде массива строк.
+     *
+     * @return массив значений полей записи.
+     */
+    public String[] toArray() {
+        final String[] result = new String[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = new String(buf, base + starts[i], ends[i] - starts[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "[CSVRecord{line:" + lineNum + ", fields:" + Arrays.toString(toArray()) + "}]";
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Field " + index + " not exists, fields count: " + size);
+    }
+}
@@ -0,0 +1,340 @@
+package org.echosoft.common.parsers;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.echosoft.common.io.UTF8Writer;
+import org.echosoft.common.utils.NumberUtil;
+
+/**
+ * <p>Формирует данные в формате CSV (в соответствии с <a href="https://tools.ietf.org/html/rfc4180">RFC 4180</a>), пригодные для последующего
+ * разбора с помощью {@link CSVParser} с теми же символами разделителя и кавычки.</p>
+ * <p>Значения полей заключаются в кавычки только если они содержат разделитель полей, кавычки, пробельные или управляющие символы
+ * (кавычки внутри значения при этом удваиваются). Записи разделяются последовательностью <code>"\r\n"</code>.</p>
+ * <p>Все данные накапливаются во внутреннем буфере, который используется повторно на протяжении всей работы и переносится в выходной поток
+ * только по мере заполнения. Числа и даты форматируются непосредственно в буфере, без создания промежуточных строк.</p>
+ * Пример использования:<br/>
+ * <pre>
+ *  try (CSVWriter writer = new CSVWriter(out, StandardCharsets.UTF_8)) {
+ *      for (Order order : orders) {
+ *          writer.writeLong(order.getId());
+ *          writer.write(order.getName());
+ *          writer.writeDateTime(order.getCreated());
+ *          writer.endRecord();
+ *      }
+ *  }
+ * </pre>
+ * <strong>Внимание!</strong> Экземпляры данного класса не являются потокобезопасными.
+ *
+ * @author Anton Sharapov
+ */
+public class CSVWriter implements Closeable, Flushable, AutoCloseable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MIN_BUFFER_SIZE = 64;     // должно хватать для размещения любого числа или даты.
+
+    private final Writer out;               // выходной поток.
+    private final char delimiter;           // символ-разделитель между полями.
+    private final char wrapper;             // символ в который заключаются значения полей, требующие экранирования.
+    private final char[] buf;               // буфер с еще не переданным в выходной поток содержимым.
+    private int count;                      // количество символов в буфере.
+    private int fields;                     // количество полей, уже помещенных в текущую запись.
+    private boolean lastEmpty;              // признак того что последнее помещенное в запись поле было пустым и не заключалось в кавычки.
+    private Calendar calendar;              // используется для форматирования дат.
+
+    public CSVWriter(final Writer out) {
+        this(out, CSVParser.TOKENS_DELIMITER, CSVParser.TOKENS_PAYLOAD_WRAPPER, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CSVWriter(final Writer out, final char delimiter) {
+        this(out, delimiter, CSVParser.TOKENS_PAYLOAD_WRAPPER, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param out        выходной поток куда будет помещаться результат. Не может быть <code>null</code>.
+     * @param delimiter  символ-разделитель между полями записи.
+     * @param wrapper    символ в который заключаются значения полей, требующие экранирования.
+     * @param bufferSize размер внутреннего буфера (в символах).
+     */
+    public CSVWriter(final Writer out, final char delimiter, final char wrapper, final int bufferSize) {
+        if (out == null)
+            throw new IllegalArgumentException("Output stream should be specified");
+        if (delimiter == wrapper || delimiter == '\n' || delimiter == '\r' || wrapper <= ' ')
+            throw new IllegalArgumentException("Illegal delimiter or wrapper character");
+        this.out = out;
+        this.delimiter = delimiter;
+        this.wrapper = wrapper;
+        this.buf = new char[Math.max(bufferSize, MIN_BUFFER_SIZE)];
+    }
+
+    /**
+     * Создает поток, результат работы которого помещается в байтовый поток в указанной кодировке.
+     * Для кодировки <code>UTF-8</code> используется {@link UTF8Writer}.
+     *
+     * @param out     выходной байтовый поток. Не может быть <code>null</code>.
+     * @param charset кодировка в которой будет сохраняться результат.
+     */
+    public CSVWriter(final OutputStream out, final Charset charset) {
+        this(out, charset, CSVParser.TOKENS_DELIMITER, CSVParser.TOKENS_PAYLOAD_WRAPPER);
+    }
+
+    public CSVWriter(final OutputStream out, final Charset charset, final char delimiter, final char wrapper) {
+        this("UTF-8".equals(charset.name()) ? new UTF8Writer(out) : new OutputStreamWriter(out, charset), delimiter, wrapper, DEFAULT_BUFFER_SIZE);
+    }
+
+
+    /**
+     * Помещает в текущую запись поле с указанным значением. Если значение содержит разделитель полей, кавычки, пробельные или управляющие символы,
+     * то оно заключается в кавычки.
+     *
+     * @param value значение поля. Значение <code>null</code> соответствует пустой строке.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void write(final CharSequence value) throws IOException {
+        beginField();
+        if (value == null || value.length() == 0) {
+            lastEmpty = true;
+            return;
+        }
+        final int length = value.length();
+        boolean escape = false;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c <= ' ' || c == delimiter || c == wrapper) {
+                escape = true;
+                break;
+            }
+        }
+        if (escape) {
+            append(wrapper);
+            for (int i = 0; i < length; i++) {
+                final char c = value.charAt(i);
+                if (c == wrapper)
+                    append(c);
+                append(c);
+            }
+            append(wrapper);
+        } else
+        if (value instanceof String) {
+            appendPlain((String) value, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                append(value.charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Помещает в текущую запись поле с пустым значением.
+     *
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeNull() throws IOException {
+        beginField();
+        lastEmpty = true;
+    }
+
+    /**
+     * Помещает в текущую запись поле с указанным целочисленным значением.
+     *
+     * @param value значение поля.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeInt(final int value) throws IOException {
+        writeLong(value);
+    }
+
+    /**
+     * Помещает в текущую запись поле с указанным целочисленным значением.
+     *
+     * @param value значение поля.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeLong(final long value) throws IOException {
+        beginField();
+        ensureCapacity(20);
+        count = NumberUtil.formatLong(value, buf, count);
+    }
+
+    /**
+     * Помещает в текущую запись поле с указанным значением (в формате {@link Double#toString(double)}, для целых значений до 10<sup>7</sup> - без создания строки).
+     *
+     * @param value значение поля.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeDouble(final double value) throws IOException {
+        beginField();
+        if (value == (long) value && Math.abs(value) < 1e7) {
+            ensureCapacity(20);
+            if (value == 0 && 1 / value < 0)
+                buf[count++] = '-';
+            count = NumberUtil.formatLong((long) value, buf, count);
+            buf[count++] = '.';
+            buf[count++] = '0';
+        } else {
+            appendPlain(Double.toString(value), -1);
+        }
+    }
+
+    /**
+     * Помещает в текущую запись поле с указанным логическим значением (<code>true</code> или <code>false</code>).
+     *
+     * @param value значение поля.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeBoolean(final boolean value) throws IOException {
+        beginField();
+        appendPlain(value ? "true" : "false", value ? 4 : 5);
+    }
+
+    /**
+     * Помещает в текущую запись поле с датой в формате <code>yyyy-MM-dd</code>.
+     *
+     * @param date значение поля. Значение <code>null</code> соответствует пустой строке.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeDate(final Date date) throws IOException {
+        beginField();
+        if (date == null) {
+            lastEmpty = true;
+            return;
+        }
+        ensureCapacity(24);
+        formatDate(date);
+    }
+
+    /**
+     * Помещает в текущую запись поле с датой и временем в формате <code>yyyy-MM-dd HH:mm:ss</code> (как и {@link org.echosoft.common.utils.StringUtil#formatISODateTime(Date)}).
+     * Поскольку значение содержит пробел, оно заключается в кавычки.
+     *
+     * @param date значение поля. Значение <code>null</code> соответствует пустой строке.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeDateTime(final Date date) throws IOException {
+        beginField();
+        if (date == null) {
+            lastEmpty = true;
+            return;
+        }
+        ensureCapacity(36);
+        buf[count++] = wrapper;
+        final Calendar cal = formatDate(date);
+        buf[count++] = ' ';
+        format2(cal.get(Calendar.HOUR_OF_DAY));
+        buf[count++] = ':';
+        format2(cal.get(Calendar.MINUTE));
+        buf[count++] = ':';
+        format2(cal.get(Calendar.SECOND));
+        buf[count++] = wrapper;
+    }
+
+    /**
+     * Помещает в поток запись, состоящую из указанных значений, и завершает ее.
+     *
+     * @param values значения полей записи.
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void writeRecord(final CharSequence... values) throws IOException {
+        for (CharSequence value : values) {
+            write(value);
+        }
+        endRecord();
+    }
+
+    /**
+     * Завершает текущую запись. Последующие поля будут помещаться в новую запись.
+     *
+     * @throws IOException в случае проблем при помещении данных в выходной поток.
+     */
+    public void endRecord() throws IOException {
+        ensureCapacity(4);
+        if (fields == 1 && lastEmpty) {
+            // строка без символов соответствует записи без полей, поэтому единственное пустое поле заключаем в кавычки.
+            buf[count++] = wrapper;
+            buf[count++] = wrapper;
+        }
+        buf[count++] = '\r';
+        buf[count++] = '\n';
+        fields = 0;
+        lastEmpty = false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+
+
+    private void beginField() throws IOException {
+        if (fields++ > 0)
+            append(delimiter);
+        lastEmpty = false;
+    }
+
+    private void append(final char c) throws IOException {
+        if (count == buf.length)
+            flushBuffer();
+        buf[count++] = c;
+    }
+
+    private void appendPlain(final String text, int length) throws IOException {
+        if (length < 0)
+            length = text.length();
+        int offset = 0;
+        while (offset < length) {
+            if (count == buf.length)
+                flushBuffer();
+            final int len = Math.min(length - offset, buf.length - count);
+            text.getChars(offset, offset + len, buf, count);
+            count += len;
+            offset += len;
+        }
+    }
+
+    private void ensureCapacity(final int size) throws IOException {
+        if (count + size > buf.length)
+            flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private Calendar formatDate(final Date date) {
+        Calendar cal = calendar;
+        if (cal == null)
+            calendar = cal = Calendar.getInstance();
+        cal.setTime(date);
+        count = NumberUtil.formatLong(cal.get(Calendar.YEAR), buf, count);
+        buf[count++] = '-';
+        format2(cal.get(Calendar.MONTH) + 1);
+        buf[count++] = '-';
+        format2(cal.get(Calendar.DAY_OF_MONTH));
+        return cal;
+    }
+
+    private void format2(final int value) {
+        buf[count++] = (char) ('0' + value / 10);
+        buf[count++] = (char) ('0' + value % 10);
+    }
+}
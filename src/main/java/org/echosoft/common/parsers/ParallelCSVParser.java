@@ -0,0 +1,378 @@
+package org.echosoft.common.parsers;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.echosoft.common.collections.Consumer;
+
+/**
+ * <p>Параллельный разбор больших CSV файлов, расположенных на локальном диске.</p>
+ * <p>Файл отображается в память и разбивается на фрагменты примерно одинакового размера. Границы фрагментов смещаются на ближайший
+ * перевод строки, находящийся за пределами заключенных в кавычки значений (для этого в каждом фрагменте параллельно подсчитываются
+ * кавычки и переводы строк, после чего состояние на границах фрагментов восстанавливается последовательно). Каждый фрагмент затем
+ * разбирается отдельным экземпляром {@link CSVParser} в потоках указанного {@link ForkJoinPool}. Номера записей (см. {@link CSVRecord#getLineNum()}),
+ * в том числе и в сообщениях о синтаксических ошибках, отсчитываются от начала файла.</p>
+ * <p>Записи могут передаваться обработчику двумя способами:</p>
+ * <ul>
+ * <li> в исходном порядке - обработчик вызывается только из потока, вызвавшего метод {@link #process(ForkJoinPool, boolean, Consumer)}.
+ *      Разобранные фрагменты при этом накапливаются в промежуточных буферах (одновременно обрабатывается не более двух фрагментов на каждый поток пула);
+ * <li> в произвольном порядке - обработчик вызывается параллельно из потоков пула сразу по мере разбора записей и должен быть потокобезопасным.
+ * </ul>
+ * <p>Ограничения:</p>
+ * <ul>
+ * <li> кодировка файла должна быть совместима с ASCII: символы перевода строки, разделителя и кавычки должны кодироваться одним байтом, который
+ *      не может встретиться внутри многобайтовых последовательностей (например <code>UTF-8</code>, <code>windows-1251</code>, но не <code>UTF-16</code>);
+ * <li> символ кавычки должен использоваться только для обрамления значений полей (и, в удвоенном виде, внутри них).
+ * </ul>
+ * Пример использования:<br/>
+ * <pre>
+ *  ParallelCSVParser parser = new ParallelCSVParser(file, StandardCharsets.UTF_8);
+ *  parser.process(pool, true, new Consumer&lt;CSVRecord&gt;() {
+ *      public boolean consume(CSVRecord record) {
+ *          long id = record.getLong(0);
+ *          ...
+ *          return true;    // false - прекратить обработку файла.
+ *      }
+ *  });
+ * </pre>
+ *
+ * @author Anton Sharapov
+ */
+public class ParallelCSVParser {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    public static final int MIN_CHUNK_SIZE = 4096;
+
+    /**
+     * Статистика по отдельному фрагменту файла, собираемая на первом этапе разбора.
+     */
+    private static final class Chunk {
+        private final long start;
+        private final int length;
+        private final int[] newlines = new int[2];      // количество переводов строк при четном и нечетном количестве предшествующих им в данном фрагменте кавычек.
+        private final int[] first = {-1, -1};           // смещение первого перевода строки при четном и нечетном количестве предшествующих ему кавычек.
+        private int quotes;                             // общее количество кавычек во фрагменте.
+
+        private Chunk(final long start, final int length) {
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Фрагмент файла, начинающийся с начала записи и заканчивающийся концом записи.
+     */
+    private static final class Segment {
+        private final long start;
+        private final long end;
+        private final int lineNum;                      // количество записей в файле, предшествующих данному фрагменту.
+
+        private Segment(final long start, final long end, final int lineNum) {
+            this.start = start;
+            this.end = end;
+            this.lineNum = lineNum;
+        }
+    }
+
+    /**
+     * Копии всех записей одного фрагмента, накапливаемые для последующей передачи обработчику в исходном порядке.
+     */
+    private static final class Batch {
+        private char[] chars = new char[4096];          // значения всех полей всех записей.
+        private int length;
+        private int[] bounds = new int[512];            // начало и конец (в chars) значения каждого поля.
+        private int boundsCnt;
+        private int[] records = new int[128];           // номер записи и количество ее полей.
+        private int recordsCnt;
+        private IllegalStateException error;            // синтаксическая ошибка, прервавшая разбор фрагмента.
+
+        private void add(final CSVRecord record) {
+            final int size = record.size();
+            if (recordsCnt * 2 + 2 > records.length)
+                records = Arrays.copyOf(records, records.length * 2);
+            records[recordsCnt * 2] = record.getLineNum();
+            records[recordsCnt * 2 + 1] = size;
+            recordsCnt++;
+            if (boundsCnt + size * 2 > bounds.length)
+                bounds = Arrays.copyOf(bounds, Math.max(bounds.length * 2, boundsCnt + size * 2));
+            for (int i = 0; i < size; i++) {
+                final int start = record.start(i);
+                final int len = record.end(i) - start;
+                if (length + len > chars.length)
+                    chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + len));
+                System.arraycopy(record.buf, record.base + start, chars, length, len);
+                bounds[boundsCnt++] = length;
+                bounds[boundsCnt++] = length += len;
+            }
+        }
+    }
+
+
+    private final File file;
+    private final Charset charset;
+    private final char delimiter;
+    private final char wrapper;
+    private final byte wrapperByte;
+    private final int chunkSize;
+
+    public ParallelCSVParser(final File file, final Charset charset) {
+        this(file, charset, CSVParser.TOKENS_DELIMITER, CSVParser.TOKENS_PAYLOAD_WRAPPER, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param file      CSV файл.
+     * @param charset   кодировка файла.
+     * @param delimiter символ-разделитель между полями записи.
+     * @param wrapper   символ в который может быть заключено значение поля.
+     * @param chunkSize примерный размер фрагментов (в байтах), на которые разбивается файл для параллельной обработки.
+     *                  Каждый фрагмент отображается в память отдельно, поэтому значения меньше {@link #MIN_CHUNK_SIZE} не используются.
+     * @throws IllegalArgumentException если указанная кодировка не позволяет определять границы записей без декодирования файла.
+     */
+    public ParallelCSVParser(final File file, final Charset charset, final char delimiter, final char wrapper, final int chunkSize) {
+        if (file == null || charset == null)
+            throw new IllegalArgumentException("File and charset must be specified");
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
+        final byte[] newline = "\n".getBytes(charset);
+        final byte[] wrapperBytes = String.valueOf(wrapper).getBytes(charset);
+        if (newline.length != 1 || newline[0] != '\n' || wrapperBytes.length != 1 || String.valueOf(delimiter).getBytes(charset).length != 1)
+            throw new IllegalArgumentException("Charset " + charset + " is not supported");
+        this.file = file;
+        this.charset = charset;
+        this.delimiter = delimiter;
+        this.wrapper = wrapper;
+        this.wrapperByte = wrapperBytes[0];
+        this.chunkSize = Math.max(chunkSize, MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Выполняет разбор файла с использованием временного {@link ForkJoinPool}, количество потоков в котором соответствует количеству доступных процессоров.
+     *
+     * @see #process(ForkJoinPool, boolean, Consumer)
+     */
+    public long process(final boolean ordered, final Consumer<CSVRecord> consumer) throws Exception {
+        final ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return process(pool, ordered, consumer);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Выполняет разбор файла и передает все его записи (включая пустые строки) указанному обработчику.
+     * Передаваемый обработчику экземпляр {@link CSVRecord} используется повторно, его содержимое актуально только до возврата из обработчика.
+     *
+     * @param pool     пул потоков в котором будет выполняться разбор фрагментов файла.
+     * @param ordered  <code>true</code> если записи должны передаваться обработчику в исходном порядке (из текущего потока),
+     *                 <code>false</code> если обработчик может вызываться параллельно из потоков пула в произвольном порядке.
+     * @param consumer обработчик записей. Если он возвращает <code>false</code>, то разбор файла прекращается.
+     * @return количество записей, переданных обработчику.
+     * @throws IllegalStateException в случае синтаксических ошибок в файле (номер записи указывается в сообщении).
+     * @throws Exception             в случае ошибок ввода-вывода или ошибок в обработчике.
+     */
+    public long process(final ForkJoinPool pool, final boolean ordered, final Consumer<CSVRecord> consumer) throws Exception {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final List<Segment> segments = split(pool, channel);
+            return ordered
+                    ? processOrdered(pool, channel, segments, consumer)
+                    : processUnordered(pool, channel, segments, consumer);
+        }
+    }
+
+
+    /**
+     * Разбивает файл на фрагменты, начинающиеся и заканчивающиеся на границах записей.
+     */
+    private List<Segment> split(final ForkJoinPool pool, final FileChannel channel) throws Exception {
+        final long size = channel.size();
+        final List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (long start = 0; start < size; start += chunkSize) {
+            final Chunk chunk = new Chunk(start, (int) Math.min(chunkSize, size - start));
+            tasks.add(new Callable<Chunk>() {
+                @Override
+                public Chunk call() throws IOException {
+                    return scan(channel, chunk);
+                }
+            });
+        }
+        final List<Segment> segments = new ArrayList<>();
+        long segmentStart = 0;
+        int segmentLine = 0;
+        int lines = 0;          // количество переводов строк вне кавычек в предшествующих фрагментах.
+        int parity = 0;         // четность количества кавычек в предшествующих фрагментах.
+        final List<Future<Chunk>> futures = pool.invokeAll(tasks);
+        for (int i = 0; i < futures.size(); i++) {
+            final Chunk chunk = get(futures.get(i));
+            if (i > 0 && chunk.first[parity] >= 0) {
+                final long boundary = chunk.start + chunk.first[parity] + 1;
+                segments.add(new Segment(segmentStart, boundary, segmentLine));
+                segmentStart = boundary;
+                segmentLine = lines + 1;
+            }
+            lines += chunk.newlines[parity];
+            parity ^= chunk.quotes & 1;
+        }
+        if (segmentStart < size)
+            segments.add(new Segment(segmentStart, size, segmentLine));
+        return segments;
+    }
+
+    private Chunk scan(final FileChannel channel, final Chunk chunk) throws IOException {
+        final MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.length);
+        final byte quote = wrapperByte;
+        final int[] newlines = chunk.newlines;
+        final int[] first = chunk.first;
+        int quotes = 0;
+        for (int i = 0, len = chunk.length; i < len; i++) {
+            final byte b = buf.get(i);
+            if (b == quote) {
+                quotes++;
+            } else
+            if (b == '\n') {
+                final int parity = quotes & 1;
+                if (first[parity] < 0)
+                    first[parity] = i;
+                newlines[parity]++;
+            }
+        }
+        chunk.quotes = quotes;
+        return chunk;
+    }
+
+    private CSVParser open(final FileChannel channel, final Segment segment) throws IOException {
+        final long length = segment.end - segment.start;
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalStateException("Too large fragment of file at line " + (segment.lineNum + 1));
+        final ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, segment.start, length);
+        final CharBuffer chars = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(bytes);
+        final CharArrayReader reader = new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+        return new CSVParser(reader, delimiter, wrapper, CSVParser.DEFAULT_BUFFER_SIZE, segment.lineNum);
+    }
+
+    private long processUnordered(final ForkJoinPool pool, final FileChannel channel, final List<Segment> segments, final Consumer<CSVRecord> consumer) throws Exception {
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        final AtomicLong count = new AtomicLong(0);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final ArrayList<Future<Void>> futures = new ArrayList<>(segments.size());
+        for (final Segment segment : segments) {
+            futures.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try (CSVParser parser = open(channel, segment)) {
+                        final CSVRecord record = parser.getRecord();
+                        while (!stopped.get() && parser.nextRecord()) {
+                            count.incrementAndGet();
+                            if (!consumer.consume(record))
+                                stopped.set(true);
+                        }
+                    } catch (Exception e) {
+                        // пул потоков оборачивает проверяемые исключения, поэтому исходное исключение сохраняем отдельно.
+                        failure.compareAndSet(null, e);
+                        stopped.set(true);
+                        throw e;
+                    }
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                try {
+                    get(future);
+                } catch (Exception e) {
+                    final Exception cause = failure.get();
+                    throw cause != null ? cause : e;
+                }
+            }
+        } finally {
+            stopped.set(true);
+            for (Future<Void> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return count.get();
+    }
+
+    private long processOrdered(final ForkJoinPool pool, final FileChannel channel, final List<Segment> segments, final Consumer<CSVRecord> consumer) throws Exception {
+        final int window = Math.max(2, pool.getParallelism() * 2);
+        final ArrayDeque<Future<Batch>> pending = new ArrayDeque<>(window);
+        final CSVRecord record = new CSVRecord();
+        long count = 0;
+        int next = 0;
+        try {
+            while (next < segments.size() || !pending.isEmpty()) {
+                while (next < segments.size() && pending.size() < window) {
+                    final Segment segment = segments.get(next++);
+                    pending.add(pool.submit(new Callable<Batch>() {
+                        @Override
+                        public Batch call() throws Exception {
+                            final Batch batch = new Batch();
+                            try (CSVParser parser = open(channel, segment)) {
+                                final CSVRecord record = parser.getRecord();
+                                while (parser.nextRecord()) {
+                                    batch.add(record);
+                                }
+                            } catch (IllegalStateException e) {
+                                batch.error = e;
+                            }
+                            return batch;
+                        }
+                    }));
+                }
+                final Batch batch = get(pending.poll());
+                for (int i = 0, field = 0; i < batch.recordsCnt; i++) {
+                    record.reset(batch.chars, 0, batch.records[i * 2]);
+                    for (int j = batch.records[i * 2 + 1]; j > 0; j--, field += 2) {
+                        record.add(batch.bounds[field], batch.bounds[field + 1]);
+                    }
+                    count++;
+                    if (!consumer.consume(record))
+                        return count;
+                }
+                if (batch.error != null)
+                    throw batch.error;
+            }
+            return count;
+        } finally {
+            for (Future<Batch> future : pending) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private static <T> T get(final Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+}
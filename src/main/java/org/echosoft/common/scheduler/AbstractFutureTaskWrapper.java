@@ -0,0 +1,193 @@
+package org.echosoft.common.scheduler;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.concurrent.FutureTask;
+
+import org.echosoft.common.utils.StringUtil;
+
+/**
+ * <p>Общая часть оберток над задачами, используемых планировщиками данного пакета ({@link PriorityThreadPoolExecutor},
+ * {@link WorkStealingPriorityExecutor}, {@link VirtualThreadTaskExecutor}).</p>
+ * <p>Содержит расширенную информацию о помещенной в очередь на выполнение или выполняемой в настоящий момент задаче
+ * и методы, посредством которых планировщики отмечают смену ее состояния.</p>
+ *
+ * @param <V> характеризует тип возвращаемых данных в методе <code>call()</code> задачи.
+ * @author Anton Sharapov
+ */
+public abstract class AbstractFutureTaskWrapper<V> extends FutureTask<V> implements TaskDescriptor<V> {
+
+    /**
+     * Порядок извлечения задач из очереди: в порядке их приоритетов, а при равных приоритетах - в порядке постановки в очередь.
+     */
+    static final Comparator<AbstractFutureTaskWrapper<?>> QUEUE_COMPARATOR =
+            new Comparator<AbstractFutureTaskWrapper<?>>() {
+                public int compare(final AbstractFutureTaskWrapper<?> t1, final AbstractFutureTaskWrapper<?> t2) {
+                    if (t1.id == t2.id)
+                        return 0;
+                    int result = t1.priority.compareTo(t2.priority);
+                    if (result == 0) {
+                        result = t1.id > t2.id ? 1 : -1;
+                    }
+                    return result;
+                }
+            };
+
+    final AbstractTask<V> task;         // исходный обработчик задачи.
+    final int id;                       // внутренний идентификатор задачи.
+    final TaskPriority priority;        // приоритет задачи.
+    final String owner;                 // от какого пользователя выполняется.
+    volatile long enqueueMillis;        // время постановки в очередь.
+    volatile long enqueueNanos;         // время постановки в очередь (для расчета времени ожидания).
+    volatile long startMillis;          // время начала фактической обработки задачи или 0.
+    volatile long startNanos;           // время начала обработки задачи (для расчета времени выполнения).
+    volatile long finishMillis;         // время завершения обработки задачи или 0.
+    volatile TaskState state;           // текущее состояние задачи.
+    volatile Throwable failure;         // ошибка, возникшая при выполнении задачи.
+
+    AbstractFutureTaskWrapper(final AbstractTask<V> task, final int id, final TaskPriority priority, final String owner, final TaskState state) {
+        super(task);
+        this.task = task;
+        this.id = id;
+        this.priority = priority != null ? priority : TaskPriority.MEDIUM;
+        this.owner = owner;
+        this.enqueueMillis = System.currentTimeMillis();
+        this.enqueueNanos = System.nanoTime();
+        this.state = state;
+    }
+
+    /**
+     * Отмечает постановку задачи в очередь на выполнение.
+     */
+    void enqueued() {
+        enqueueMillis = System.currentTimeMillis();
+        enqueueNanos = System.nanoTime();
+        state = TaskState.AWAITING;
+    }
+
+    /**
+     * Отмечает начало выполнения задачи.
+     */
+    void started() {
+        startMillis = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+        state = TaskState.PROCESSING;
+    }
+
+    /**
+     * Отмечает завершение выполнения задачи.
+     *
+     * @param failed <code>true</code> если задача завершилась с ошибкой.
+     */
+    void finished(final boolean failed) {
+        finishMillis = System.currentTimeMillis();
+        state = failed ? TaskState.FAILED : TaskState.COMPLETED;
+    }
+
+    /**
+     * Отмечает отмену задачи, ожидавшей наступления своего срока.
+     */
+    void cancelled() {
+        finishMillis = System.currentTimeMillis();
+        state = TaskState.CANCELLED;
+    }
+
+    @Override
+    protected void setException(final Throwable t) {
+        failure = t;
+        super.setException(t);
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public TaskPriority getPriority() {
+        return priority;
+    }
+
+    @Override
+    public String getOwner() {
+        return owner;
+    }
+
+    @Override
+    public Date getEnqueueTime() {
+        return date(enqueueMillis);
+    }
+
+    @Override
+    public Date getStartTime() {
+        return date(startMillis);
+    }
+
+    @Override
+    public Date getFinishTime() {
+        return date(finishMillis);
+    }
+
+    @Override
+    public TaskState getState() {
+        return state;
+    }
+
+    @Override
+    public AbstractTask<V> getTask() {
+        return task;
+    }
+
+    /**
+     * Возвращает слепок информации о текущем состоянии выполнения задачи.
+     *
+     * @return копия информация о текущем состоянии задачи. Со временем не изменяется.
+     */
+    @Override
+    public TaskSnapshot makeSnapshot() {
+        return new TaskSnapshot(id, priority, owner, task.getKey(), task.getCategory(), task.getTitle(),
+                date(enqueueMillis), date(startMillis), date(finishMillis), state,
+                task.getStatusLine(), task.getProgress());
+    }
+
+    /**
+     * Объекты {@link Date} создаются только по запросу, на каждом этапе жизненного цикла задачи запоминается лишь время в миллисекундах.
+     */
+    private static Date date(final long millis) {
+        return millis != 0 ? new Date(millis) : null;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null || !getClass().equals(obj.getClass()))
+            return false;
+        final AbstractFutureTaskWrapper other = (AbstractFutureTaskWrapper) obj;
+        return id == other.id && task.equals(other.task);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder(100);
+        buf.append("[");
+        buf.append(StringUtil.extractClass(task.getClass().getName()));
+        buf.append("{id:");
+        buf.append(id);
+        buf.append(", owner:");
+        buf.append(owner);
+        buf.append(", priority:");
+        buf.append(priority);
+        buf.append(", category:");
+        buf.append(task.getCategory());
+        buf.append(", title:");
+        buf.append(task.getTitle());
+        buf.append(", state:");
+        buf.append(state);
+        buf.append("}]");
+        return buf.toString();
+    }
+}
@@ -0,0 +1,186 @@
+package org.echosoft.common.scheduler;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Неблокирующая гистограмма распределения длительностей (в наносекундах) с логарифмически-линейной шкалой, аналогичной HdrHistogram.</p>
+ * <p>Каждый интервал <code>[2<sup>k</sup>, 2<sup>k+1</sup>)</code> разбит на 32 равных поддиапазона, поэтому относительная погрешность
+ * вычисляемых перцентилей не превышает 3%. Значения до 32 нс учитываются точно, значения свыше 2<sup>44</sup> нс (примерно 4.9 часа)
+ * учитываются в последнем поддиапазоне. Запись значения сводится к нескольким атомарным операциям и не требует блокировок,
+ * а объем занимаемой памяти не зависит от количества записанных значений (около 10 Кб).</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_BITS = 44;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Учитывает очередное значение.
+     *
+     * @param nanos длительность в наносекундах. Отрицательные значения учитываются как 0.
+     */
+    public void record(final long nanos) {
+        final long value = nanos > 0 ? nanos : 0;
+        counts.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        for (long m = max.get(); value > m && !max.compareAndSet(m, value); m = max.get()) ;
+    }
+
+    /**
+     * @return количество учтенных значений.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Сбрасывает все накопленные данные. Значения, учитываемые одновременно с вызовом данного метода, могут быть учтены лишь частично.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Возвращает копию текущего состояния гистограммы. Поскольку запись значений не блокируется, копия может не учитывать
+     * значения, записанные одновременно с ее формированием.
+     *
+     * @return неизменяемая копия состояния гистограммы.
+     */
+    public Snapshot snapshot() {
+        final long[] buckets = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets[i] = counts.get(i);
+        }
+        return new Snapshot(buckets, total, sum.get(), max.get());
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_COUNT)
+            return (int) value;
+        final long v = value < MAX_VALUE ? value : MAX_VALUE;
+        final int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (v >>> shift);
+    }
+
+    /**
+     * @return наибольшее значение, учитываемое в указанном поддиапазоне.
+     */
+    static long highestValue(final int index) {
+        if (index < SUB_COUNT)
+            return index;
+        final int shift = (index >>> SUB_BITS) - 1;
+        final long mantissa = (index & (SUB_COUNT - 1)) + SUB_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+
+    /**
+     * Неизменяемая копия состояния гистограммы.
+     */
+    public static final class Snapshot implements Serializable {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(final long[] counts, final long count, final long sum, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return количество учтенных значений.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return максимальное из учтенных значений (в наносекундах).
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return среднее значение (в наносекундах).
+         */
+        public double getMean() {
+            return count > 0 ? (double) sum / count : 0;
+        }
+
+        /**
+         * Возвращает значение, которое не превышают указанный процент учтенных значений.
+         *
+         * @param percentile процент в диапазоне от 0 до 100.
+         * @return значение (в наносекундах) с точностью до ширины соответствующего поддиапазона гистограммы или <code>0</code> если гистограмма пуста.
+         */
+        public long getValueAtPercentile(final double percentile) {
+            if (count == 0)
+                return 0;
+            final double p = percentile < 0 ? 0 : (percentile > 100 ? 100 : percentile);
+            final long rank = Math.max(1, (long) Math.ceil(p / 100 * count));
+            long accumulated = 0;
+            for (int i = 0; i < counts.length; i++) {
+                accumulated += counts[i];
+                if (accumulated >= rank)
+                    return Math.min(highestValue(i), max);
+            }
+            return max;
+        }
+
+        /**
+         * Объединяет данную копию гистограммы с другой.
+         *
+         * @param other копия другой гистограммы.
+         * @return новая копия, учитывающая значения обеих гистограмм.
+         */
+        public Snapshot merge(final Snapshot other) {
+            final long[] buckets = counts.clone();
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += other.counts[i];
+            }
+            return new Snapshot(buckets, count + other.count, sum + other.sum, Math.max(max, other.max));
+        }
+
+        @Override
+        public String toString() {
+            return "{count:" + count + ", mean:" + Math.round(getMean() / 1000) + "us, p50:" + getValueAtPercentile(50) / 1000 + "us, p90:" + getValueAtPercentile(90) / 1000 +
+                    "us, p99:" + getValueAtPercentile(99) / 1000 + "us, max:" + max / 1000 + "us}";
+        }
+    }
+}
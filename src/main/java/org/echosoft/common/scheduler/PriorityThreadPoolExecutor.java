@@ -1,26 +1,35 @@
 package org.echosoft.common.scheduler;
 
+import java.lang.management.ManagementFactory;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.Date;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.FutureTask;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-
-import org.echosoft.common.utils.StringUtil;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
- * Планировщик для задач с различными приоритетами выполнения.
+ * <p>Планировщик для задач с различными приоритетами выполнения.</p>
+ * <p>Планировщик собирает статистику по времени ожидания задач в очереди и времени их выполнения в разрезе категорий и приоритетов задач
+ * (см. {@link #getMetrics()}), которая также может быть опубликована через JMX (см. {@link #registerMBean(String)}).</p>
+ * <p>Помимо немедленного выполнения задач планировщик поддерживает их отложенное и периодическое выполнение
+ * (см. {@link #scheduleTask(AbstractTask, TaskPriority, long, TimeUnit)}, {@link #scheduleTaskAtFixedRate(AbstractTask, TaskPriority, long, long, TimeUnit)},
+ * {@link #scheduleTaskWithFixedDelay(AbstractTask, TaskPriority, long, long, TimeUnit)}). До наступления своего срока такие задачи хранятся
+ * в иерархическом колесе таймеров ({@link TimingWheel}) и находятся в состоянии {@link TaskState#SCHEDULED}, после чего ставятся в общую очередь
+ * планировщика с указанным для них приоритетом.</p>
  *
  * @author Anton Sharapov
  */
-public class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
+public class PriorityThreadPoolExecutor extends ThreadPoolExecutor implements PriorityThreadPoolExecutorMBean {
 
     public static final Comparator<TaskDescriptor> PROCESSING_TASKS_COMPARATOR =
             new Comparator<TaskDescriptor>() {
@@ -49,35 +58,165 @@ public class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
             };
 
 
-    private static final Comparator<FutureTaskWrapper> QUEUE_COMPARATOR =
-            new Comparator<FutureTaskWrapper>() {
-                public int compare(final FutureTaskWrapper t1, final FutureTaskWrapper t2) {
-                    if (t1.id==t2.id)
-                        return 0;
-                    int result = t1.priority.compareTo(t2.priority);
-                    if (result==0) {
-                        result = t1.id>t2.id ? 1 : -1;
-                    }
-                    return result;
-                }
-            };
     private static final Object present = new Object();
 
+    /**
+     * Длительность такта колеса таймеров, используемого для отложенного выполнения задач (в миллисекундах).
+     */
+    public static final long DEFAULT_TIMER_TICK = 10;
+
     private final AtomicInteger counter;
     private final ConcurrentHashMap<FutureTaskWrapper,Object> processingTasks;
-    private final LinkedBlockingDeque<TaskSnapshot> processedTasks;
+    private final TaskHistory processedTasks;
+    private final TaskMetrics metrics;
+    private final long timerTick;
+    private volatile TimingWheel<FutureTaskWrapper<?>> timer;
+    private ObjectName objectName;
 
     /**
      * Создает и инициализирует планировщик задач.
      * @param poolSize  максимальное количество одновременно выполняющихся задач.
      * @param historyLimit  определяет максимальное количество выполненых задач информация о которых будет храниться в соответствующем буфере планировщика.
      */
-    @SuppressWarnings("unchecked")
     public PriorityThreadPoolExecutor(int poolSize, int historyLimit) {
-        super(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue(11,QUEUE_COMPARATOR) );
+        this(poolSize, historyLimit, DEFAULT_TIMER_TICK, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Создает и инициализирует планировщик задач.
+     * @param poolSize  максимальное количество одновременно выполняющихся задач.
+     * @param historyLimit  определяет максимальное количество выполненых задач информация о которых будет храниться в соответствующем буфере планировщика.
+     * @param timerTick  точность, с которой соблюдаются сроки постановки в очередь отложенных и периодических задач.
+     * @param unit  единица измерения для аргумента <code>timerTick</code>.
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityThreadPoolExecutor(int poolSize, int historyLimit, long timerTick, TimeUnit unit) {
+        super(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue(11,AbstractFutureTaskWrapper.QUEUE_COMPARATOR) );
+        if (timerTick<=0)
+            throw new IllegalArgumentException("Timer tick must be positive");
         counter = new AtomicInteger(0);
         processingTasks = new ConcurrentHashMap<FutureTaskWrapper,Object>();
-        processedTasks = new LinkedBlockingDeque<TaskSnapshot>(historyLimit);
+        processedTasks = new TaskHistory(historyLimit);
+        metrics = new TaskMetrics();
+        this.timerTick = unit.toNanos(timerTick);
+        setRejectedExecutionHandler(getRejectedExecutionHandler());
+    }
+
+    /**
+     * @return статистика выполнения задач данным планировщиком.
+     */
+    public TaskMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Регистрирует данный планировщик в платформенном JMX сервере. При завершении работы планировщика регистрация будет снята автоматически.
+     * @param name  имя, под которым должен быть зарегистрирован планировщик (например <code>org.echosoft:type=Scheduler,name=reports</code>).
+     * @throws JMException  в случае некорректного имени или если под этим именем уже зарегистрирован другой объект.
+     */
+    public synchronized void registerMBean(final String name) throws JMException {
+        if (objectName!=null)
+            throw new IllegalStateException("Executor already registered as " + objectName);
+        final ObjectName on = new ObjectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+        objectName = on;
+    }
+
+    /**
+     * Снимает регистрацию данного планировщика в платформенном JMX сервере (если он был ранее зарегистрирован).
+     * @throws JMException  в случае ошибок при снятии регистрации.
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (objectName!=null) {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                if (server.isRegistered(objectName))
+                    server.unregisterMBean(objectName);
+            } finally {
+                objectName = null;
+            }
+        }
+    }
+
+    @Override
+    public int getQueueSize() {
+        return getQueue().size();
+    }
+
+    @Override
+    public long getSubmittedTaskCount() {
+        return metrics.getSubmitted();
+    }
+
+    @Override
+    public long getRejectedTaskCount() {
+        return metrics.getRejected();
+    }
+
+    @Override
+    public long getProcessedTaskCount() {
+        return metrics.getCompleted();
+    }
+
+    @Override
+    public long getFailedTaskCount() {
+        return metrics.getFailed();
+    }
+
+    @Override
+    public double getThroughput() {
+        return metrics.snapshot().getThroughput();
+    }
+
+    @Override
+    public String[] getCategories() {
+        final List<String> categories = metrics.snapshot().getCategories();
+        return categories.toArray(new String[categories.size()]);
+    }
+
+    @Override
+    public double getWaitTimePercentile(final String category, final String priority, final double percentile) {
+        final LatencyHistogram.Snapshot snapshot = metrics.snapshot().getWaitTime(category, parsePriority(priority));
+        return snapshot!=null ? snapshot.getValueAtPercentile(percentile) / 1e6 : 0;
+    }
+
+    @Override
+    public double getRunTimePercentile(final String category, final String priority, final double percentile) {
+        final LatencyHistogram.Snapshot snapshot = metrics.snapshot().getRunTime(category, parsePriority(priority));
+        return snapshot!=null ? snapshot.getValueAtPercentile(percentile) / 1e6 : 0;
+    }
+
+    @Override
+    public String getMetricsReport() {
+        return metrics.snapshot().toString();
+    }
+
+    @Override
+    public void resetMetrics() {
+        metrics.reset();
+    }
+
+    /**
+     * Обеспечивает учет задач, отклоненных планировщиком, в статистике планировщика.
+     * @param handler  обработчик задач, которые не могут быть приняты планировщиком к исполнению.
+     */
+    @Override
+    public void setRejectedExecutionHandler(final RejectedExecutionHandler handler) {
+        if (handler==null)
+            throw new NullPointerException();
+        super.setRejectedExecutionHandler( handler instanceof RejectionCounter ? handler : new RejectionCounter(handler) );
+    }
+
+    @Override
+    public RejectedExecutionHandler getRejectedExecutionHandler() {
+        final RejectedExecutionHandler handler = super.getRejectedExecutionHandler();
+        return handler instanceof RejectionCounter ? ((RejectionCounter)handler).delegate : handler;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        super.execute(command);
+        metrics.taskSubmitted();
     }
 
     /**
@@ -91,6 +230,16 @@ public class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
         }
     }
 
+    /**
+     * Копирует в указанный буфер снапшоты всех отложенных и периодических задач, срок постановки в очередь которых еще не наступил.
+     * @param buf  коллекция в которую будут помещены срезы состояния всех задач ожидающих наступления своего срока.
+     */
+    public void collectScheduledTasks(final Collection<TaskDescriptor> buf) {
+        final TimingWheel<FutureTaskWrapper<?>> wheel = timer;
+        if (wheel!=null)
+            wheel.collect(buf);
+    }
+
     /**
      * Копирует в указанный буфер снапшоты всех задач которые выполняются в настоящий момент.
      * @param buf  коллекция в которую будут помещены срезы состояния всех задач которые выполняются в настоящий момент.
@@ -106,7 +255,7 @@ public class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
      * @param buf  коллекция в которую будут помещены срезы состояния последних выполненных задач.
      */
     public void collectProcessedTasks(final Collection<TaskSnapshot> buf) {
-        buf.addAll( processedTasks );
+        processedTasks.collect( buf );
     }
 
     /**
@@ -144,6 +293,90 @@ public class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
         return future;
     }
 
+    /**
+     * Ставит задачу в очередь на обработку по истечении указанного времени.
+     * До этого момента задача находится в состоянии {@link TaskState#SCHEDULED}.
+     * @param task  новая задача. Не может быть <code>null</code>.
+     * @param priority  приоритет, с которым должна выполняться данная задача. Значение по умолчанию - {@link TaskPriority#MEDIUM}.
+     * @param delay  время, по истечении которого задача будет поставлена в очередь на обработку.
+     * @param unit  единица измерения для аргумента <code>delay</code>.
+     * @param <V>  тип возвращаемых задачей данных.
+     * @return  экземпляр класса {@link FutureTaskWrapper} который позволит всегда быть в курсе текущего состояния данной задачи и управлять ее состоянием.
+     */
+    public <V> FutureTaskWrapper<V> scheduleTask(final AbstractTask<V> task, final TaskPriority priority, final long delay, final TimeUnit unit) {
+        return schedule(task, priority, unit.toNanos(delay), 0);
+    }
+
+    /**
+     * Обеспечивает периодическое выполнение задачи с фиксированной частотой: задача ставится в очередь на обработку по истечении времени
+     * <code>initialDelay</code>, затем через <code>initialDelay + period</code>, <code>initialDelay + 2 * period</code> и т.д.
+     * Если очередное выполнение задачи затягивается, то следующее ее выполнение начнется с опозданием, но одновременно два экземпляра задачи не выполняются никогда.
+     * Периодическое выполнение задачи прекращается при ее отмене, при ее завершении с ошибкой или при остановке планировщика.
+     * @param task  новая задача. Не может быть <code>null</code>.
+     * @param priority  приоритет, с которым должна выполняться данная задача. Значение по умолчанию - {@link TaskPriority#MEDIUM}.
+     * @param initialDelay  время, по истечении которого задача будет впервые поставлена в очередь на обработку.
+     * @param period  период между последовательными постановками задачи в очередь на обработку.
+     * @param unit  единица измерения для аргументов <code>initialDelay</code> и <code>period</code>.
+     * @param <V>  тип возвращаемых задачей данных.
+     * @return  экземпляр класса {@link FutureTaskWrapper} который позволит всегда быть в курсе текущего состояния данной задачи и управлять ее состоянием.
+     */
+    public <V> FutureTaskWrapper<V> scheduleTaskAtFixedRate(final AbstractTask<V> task, final TaskPriority priority, final long initialDelay, final long period, final TimeUnit unit) {
+        if (period<=0)
+            throw new IllegalArgumentException("Period must be positive");
+        return schedule(task, priority, unit.toNanos(initialDelay), unit.toNanos(period));
+    }
+
+    /**
+     * Обеспечивает периодическое выполнение задачи с фиксированной задержкой: задача ставится в очередь на обработку по истечении времени
+     * <code>initialDelay</code>, а затем каждый раз по истечении времени <code>delay</code> с момента завершения ее предыдущего выполнения.
+     * Периодическое выполнение задачи прекращается при ее отмене, при ее завершении с ошибкой или при остановке планировщика.
+     * @param task  новая задача. Не может быть <code>null</code>.
+     * @param priority  приоритет, с которым должна выполняться данная задача. Значение по умолчанию - {@link TaskPriority#MEDIUM}.
+     * @param initialDelay  время, по истечении которого задача будет впервые поставлена в очередь на обработку.
+     * @param delay  время между завершением очередного выполнения задачи и ее следующей постановкой в очередь на обработку.
+     * @param unit  единица измерения для аргументов <code>initialDelay</code> и <code>delay</code>.
+     * @param <V>  тип возвращаемых задачей данных.
+     * @return  экземпляр класса {@link FutureTaskWrapper} который позволит всегда быть в курсе текущего состояния данной задачи и управлять ее состоянием.
+     */
+    public <V> FutureTaskWrapper<V> scheduleTaskWithFixedDelay(final AbstractTask<V> task, final TaskPriority priority, final long initialDelay, final long delay, final TimeUnit unit) {
+        if (delay<=0)
+            throw new IllegalArgumentException("Delay must be positive");
+        return schedule(task, priority, unit.toNanos(initialDelay), -unit.toNanos(delay));
+    }
+
+    /**
+     * Останавливает планировщик. Задачи, уже поставленные в очередь на обработку, будут выполнены,
+     * а отложенные и периодические задачи, срок постановки в очередь которых еще не наступил, будут отменены.
+     */
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        final TimingWheel<FutureTaskWrapper<?>> wheel = getTimer();
+        if (wheel!=null) {
+            for (FutureTaskWrapper<?> future : wheel.stop()) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Немедленно останавливает планировщик. Отложенные и периодические задачи, срок постановки в очередь которых еще не наступил,
+     * отменяются, чтобы ожидающие их результата потоки не были заблокированы навсегда.
+     * @return  список задач, которые стояли в очереди на обработку, а также (уже отмененных) отложенных и периодических задач, срок постановки в очередь которых еще не наступил.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> result = super.shutdownNow();
+        final TimingWheel<FutureTaskWrapper<?>> wheel = getTimer();
+        if (wheel!=null) {
+            for (FutureTaskWrapper<?> future : wheel.stop()) {
+                future.cancel(false);
+                result.add(future);
+            }
+        }
+        return result;
+    }
+
 
     /**
      * Переопределение данного метода обеспечивает нам синхронизацию свойств обрабатываемых задач.
@@ -154,9 +387,9 @@ public class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
     protected void beforeExecute(final Thread t, final Runnable r) {
         super.beforeExecute(t, r);
         final FutureTaskWrapper future = (FutureTaskWrapper)r;
-        future.startTime = new Date();
-        future.state = TaskState.PROCESSING;
+        future.started();
         processingTasks.put(future, present);
+        metrics.taskStarted(future.task.getCategory(), future.priority, future.startNanos - future.enqueueNanos);
     }
 
     /**
@@ -167,12 +400,16 @@ public class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
     @Override
     protected void afterExecute(final Runnable r, final Throwable t) {
         final FutureTaskWrapper future = (FutureTaskWrapper)r;
-        future.finishTime = new Date();
-        future.state = t==null ? TaskState.COMPLETED : TaskState.FAILED;
+        final boolean failed = t!=null || future.failure!=null;
+        future.finished(failed);
         processingTasks.remove(future);
-        final TaskSnapshot snapshot = future.makeSnapshot();
-        while ( !processedTasks.offerLast(snapshot) ) {
-            processedTasks.pollFirst();
+        metrics.taskFinished(future.task.getCategory(), future.priority, System.nanoTime() - future.startNanos, failed);
+        processedTasks.record( future );
+        if (future.period!=0 && !failed && !future.isDone()) {
+            future.time = future.period>0 ? future.time + future.period : System.nanoTime() - future.period;
+            future.state = TaskState.SCHEDULED;
+            if (isShutdown() || !delay(future))
+                future.cancel(false);
         }
         super.afterExecute(r, t);
     }
@@ -204,138 +441,176 @@ public class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
 
 
     /**
-     * <p>Возвращает пользователя системы с которым ассоциирован в настоящий момент текущий поток выполнения. Вызывается в процессе регистрации новой задачи в очереди на исполнение</p>
-     * Предназначено для переопределения в классах-наследниках.
-     * @return имя пользователя (аккаунт) от чьего имени выполняется код в текущем потоке.
+     * Снимает регистрацию планировщика в JMX сервере при завершении его работы.
      */
-    protected String getCurrentUser() {
-        return null;
+    @Override
+    protected void terminated() {
+        try {
+            unregisterMBean();
+        } catch (JMException e) {
+            // планировщик уже остановлен, ошибка снятия регистрации на его работу не влияет.
+        }
+        super.terminated();
     }
 
 
+    private <V> FutureTaskWrapper<V> schedule(final AbstractTask<V> task, final TaskPriority priority, final long delay, final long period) {
+        if (task==null)
+            throw new NullPointerException();
+        final FutureTaskWrapper<V> future = new FutureTaskWrapper<V>(task, priority, getCurrentUser(), System.nanoTime() + Math.max(0, delay), period);
+        if (isShutdown() || !delay(future))
+            super.getRejectedExecutionHandler().rejectedExecution(future, this);
+        return future;
+    }
+
     /**
-     * Содержит расширенную информацию о каждой помещенной в очередь на выполнение или выполняемой в настоящий момент задаче.
-     * @param <V>  характеризует тип возвращаемых данных в методе <code>call()</code> задачи.
+     * Помещает задачу в колесо таймеров до наступления ее срока.
+     * Колесо таймеров создается при первом обращении, но только если планировщик еще не остановлен.
+     * @return <code>false</code> если колесо таймеров уже остановлено.
      */
-    public final class FutureTaskWrapper<V> extends FutureTask<V> implements TaskDescriptor<V> {
-        private final AbstractTask<V> task;     // исходный обработчик задачи.
-        private final int id;                   // внутренний идентификатор задачи.
-        private final TaskPriority priority;    // приоритет задачи.
-        private final String owner;             // от какого пользователя выполняется.
-        private final Date enqueueTime;         // время постановки в очередь.
-        private volatile Date startTime;        // время начала фактической обработки задачи.
-        private volatile Date finishTime;       // время завершения обработки задачи.
-        private volatile TaskState state;       // текущее состояние задачи.
-
-        private FutureTaskWrapper(final AbstractTask<V> task, final TaskPriority priority, final String owner) {
-            super(task);
-            this.task = task;
-            this.id = counter.incrementAndGet();
-            this.priority = priority!=null ? priority : TaskPriority.MEDIUM;
-            this.owner = owner;
-            this.enqueueTime = new Date();
-            this.startTime = null;
-            this.finishTime = null;
-            this.state = TaskState.AWAITING;
+    private boolean delay(final FutureTaskWrapper<?> future) {
+        TimingWheel<FutureTaskWrapper<?>> wheel = timer;
+        if (wheel==null) {
+            synchronized (this) {
+                wheel = timer;
+                if (wheel==null) {
+                    // проверка выполняется при той же блокировке, при которой shutdown() получает колесо таймеров для его остановки.
+                    if (isShutdown())
+                        return false;
+                    timer = wheel = new TimingWheel<FutureTaskWrapper<?>>("PriorityThreadPoolExecutor-timer", timerTick, TimeUnit.NANOSECONDS,
+                            new TimingWheel.Handler<FutureTaskWrapper<?>>() {
+                                public void expired(final FutureTaskWrapper<?> future) {
+                                    release(future);
+                                }
+                            });
+                }
+            }
         }
+        final TimingWheel<FutureTaskWrapper<?>>.Timeout timeout = wheel.schedule(future, future.time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        future.timeout = timeout;
+        return timeout!=null;
+    }
 
-        private FutureTaskWrapper(final Callable<V> task, final String owner) {
-            super(task);
-            this.task = new CallableTaskAdapter<V>(task);
-            this.id = counter.incrementAndGet();
-            this.priority = TaskPriority.MEDIUM;
-            this.owner = owner;
-            this.enqueueTime = new Date();
-            this.startTime = null;
-            this.finishTime = null;
-            this.state = TaskState.AWAITING;
-        }
+    /**
+     * @return колесо таймеров или <code>null</code> если отложенные задачи планировщику еще не передавались.
+     */
+    private synchronized TimingWheel<FutureTaskWrapper<?>> getTimer() {
+        return timer;
+    }
 
-        private FutureTaskWrapper(final Runnable task, final V result, final String owner) {
-            this( new RunnableTaskAdapter<V>(task, result), owner );
+    /**
+     * Ставит в очередь на обработку отложенную задачу, срок которой наступил.
+     */
+    private void release(final FutureTaskWrapper<?> future) {
+        future.timeout = null;
+        if (future.isDone())
+            return;
+        future.enqueued();
+        try {
+            execute(future);
+        } catch (RejectedExecutionException e) {
+            future.cancel(false);
         }
+    }
 
-        @Override
-        public int getId() {
-            return id;
-        }
+    private static TaskPriority parsePriority(final String priority) {
+        return priority!=null && !priority.isEmpty() ? TaskPriority.valueOf(priority.trim().toUpperCase()) : null;
+    }
 
-        @Override
-        public TaskPriority getPriority() {
-            return priority;
-        }
 
-        @Override
-        public String getOwner() {
-            return owner;
+    /**
+     * Учитывает в статистике планировщика задачи, которые не могут быть приняты к исполнению, и передает их исходному обработчику.
+     */
+    private final class RejectionCounter implements RejectedExecutionHandler {
+        private final RejectedExecutionHandler delegate;
+
+        private RejectionCounter(final RejectedExecutionHandler delegate) {
+            this.delegate = delegate;
         }
 
         @Override
-        public Date getEnqueueTime() {
-            return enqueueTime;
+        public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
+            metrics.taskRejected();
+            delegate.rejectedExecution(r, executor);
         }
+    }
 
-        @Override
-        public Date getStartTime() {
-            return startTime;
+
+    /**
+     * <p>Возвращает пользователя системы с которым ассоциирован в настоящий момент текущий поток выполнения. Вызывается в процессе регистрации новой задачи в очереди на исполнение</p>
+     * Предназначено для переопределения в классах-наследниках.
+     * @return имя пользователя (аккаунт) от чьего имени выполняется код в текущем потоке.
+     */
+    protected String getCurrentUser() {
+        return null;
+    }
+
+
+    /**
+     * Обертка над задачами данного планировщика. Дополнительно поддерживает отложенное и периодическое выполнение задач.
+     * @param <V>  характеризует тип возвращаемых данных в методе <code>call()</code> задачи.
+     */
+    public final class FutureTaskWrapper<V> extends AbstractFutureTaskWrapper<V> {
+        private final long period;              // период выполнения: 0 - однократная задача, >0 - с фиксированной частотой, <0 - с фиксированной задержкой.
+        private volatile long time;             // срок постановки в очередь отложенной или периодической задачи.
+        private volatile TimingWheel<FutureTaskWrapper<?>>.Timeout timeout;   // регистрация задачи в колесе таймеров.
+
+        private FutureTaskWrapper(final AbstractTask<V> task, final TaskPriority priority, final String owner) {
+            super(task, counter.incrementAndGet(), priority, owner, TaskState.AWAITING);
+            this.period = 0;
         }
 
-        @Override
-        public Date getFinishTime() {
-            return finishTime;
+        private FutureTaskWrapper(final AbstractTask<V> task, final TaskPriority priority, final String owner, final long time, final long period) {
+            super(task, counter.incrementAndGet(), priority, owner, TaskState.SCHEDULED);
+            this.period = period;
+            this.time = time;
         }
 
-        @Override
-        public TaskState getState() {
-            return state;
+        private FutureTaskWrapper(final Callable<V> task, final String owner) {
+            this( new CallableTaskAdapter<V>(task), TaskPriority.MEDIUM, owner );
         }
 
-        @Override
-        public AbstractTask<V> getTask() {
-            return task;
+        private FutureTaskWrapper(final Runnable task, final V result, final String owner) {
+            this( new RunnableTaskAdapter<V>(task, result), TaskPriority.MEDIUM, owner );
         }
 
         /**
-         * Возвращает слепок информации о текущем состоянии выполнения задачи.
-         * @return  копия информация о текущем состоянии задачи. Со временем не изменяется.
+         * @return <code>true</code> если задача выполняется периодически.
          */
-        @Override
-        public TaskSnapshot makeSnapshot() {
-            return new TaskSnapshot(id, priority, owner, task.getKey(), task.getCategory(), task.getTitle(), 
-                                    enqueueTime, startTime, finishTime, state,
-                                    task.getStatusLine(), task.getProgress());
+        public boolean isPeriodic() {
+            return period!=0;
         }
 
-        @Override
-        public int hashCode() {
-            return id;
+        /**
+         * Возвращает время, оставшееся до постановки отложенной или периодической задачи в очередь на обработку.
+         * @param unit  единица измерения возвращаемого значения.
+         * @return  оставшееся время или <code>0</code> если задача не ожидает наступления своего срока.
+         */
+        public long getDelay(final TimeUnit unit) {
+            return state==TaskState.SCHEDULED ? unit.convert(Math.max(0, time - System.nanoTime()), TimeUnit.NANOSECONDS) : 0;
         }
 
         @Override
-        public boolean equals(final Object obj) {
-            if (obj==null || !getClass().equals(obj.getClass()))
-                return false;
-            final FutureTaskWrapper other = (FutureTaskWrapper)obj;
-            return  id==other.id && task.equals(other.task);
+        public void run() {
+            if (period==0) {
+                super.run();
+            } else {
+                runAndReset();
+            }
         }
 
         @Override
-        public String toString() {
-            final StringBuilder buf = new StringBuilder(100);
-            buf.append("[");
-            buf.append(StringUtil.extractClass(task.getClass().getName()));
-            buf.append("{id:");
-            buf.append(id);
-            buf.append(", owner:");
-            buf.append(owner);
-            buf.append(", category:");
-            buf.append(task.getCategory());
-            buf.append(", title:");
-            buf.append(task.getTitle());
-            buf.append(", state:");
-            buf.append(state);
-            buf.append("]}");
-            return buf.toString();
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                final TimingWheel<FutureTaskWrapper<?>>.Timeout t = timeout;
+                if (t!=null)
+                    t.cancel();
+                // задача, ожидающая своего срока, больше не будет поставлена в очередь и не должна числиться запланированной.
+                if (state==TaskState.SCHEDULED)
+                    cancelled();
+            }
+            return cancelled;
         }
     }
 
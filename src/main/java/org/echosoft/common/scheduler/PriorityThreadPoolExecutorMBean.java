@@ -0,0 +1,85 @@
+package org.echosoft.common.scheduler;
+
+/**
+ * JMX интерфейс для мониторинга планировщика {@link PriorityThreadPoolExecutor}.
+ * Все значения времени возвращаются в миллисекундах.
+ *
+ * @author Anton Sharapov
+ */
+public interface PriorityThreadPoolExecutorMBean {
+
+    /**
+     * @return текущее количество потоков в пуле.
+     */
+    public int getPoolSize();
+
+    /**
+     * @return количество выполняющихся в настоящий момент задач.
+     */
+    public int getActiveCount();
+
+    /**
+     * @return количество задач, ожидающих выполнения в очереди.
+     */
+    public int getQueueSize();
+
+    /**
+     * @return количество задач, поставленных в очередь с момента последнего сброса статистики.
+     */
+    public long getSubmittedTaskCount();
+
+    /**
+     * @return количество задач, отклоненных планировщиком с момента последнего сброса статистики.
+     */
+    public long getRejectedTaskCount();
+
+    /**
+     * @return количество задач, выполненных с момента последнего сброса статистики.
+     */
+    public long getProcessedTaskCount();
+
+    /**
+     * @return количество задач, завершившихся с ошибкой с момента последнего сброса статистики.
+     */
+    public long getFailedTaskCount();
+
+    /**
+     * @return среднее количество задач, выполняемых в секунду с момента последнего сброса статистики.
+     */
+    public double getThroughput();
+
+    /**
+     * @return перечень категорий задач, для которых собрана статистика.
+     */
+    public String[] getCategories();
+
+    /**
+     * Возвращает перцентиль времени ожидания задач в очереди.
+     *
+     * @param category   категория задач или <code>null</code> для задач всех категорий.
+     * @param priority   приоритет задач (см. {@link TaskPriority}) или <code>null</code> для задач любых приоритетов.
+     * @param percentile процент в диапазоне от 0 до 100.
+     * @return время ожидания (в миллисекундах) или <code>0</code> если задач с указанными характеристиками не было.
+     */
+    public double getWaitTimePercentile(String category, String priority, double percentile);
+
+    /**
+     * Возвращает перцентиль времени выполнения задач.
+     *
+     * @param category   категория задач или <code>null</code> для задач всех категорий.
+     * @param priority   приоритет задач (см. {@link TaskPriority}) или <code>null</code> для задач любых приоритетов.
+     * @param percentile процент в диапазоне от 0 до 100.
+     * @return время выполнения (в миллисекундах) или <code>0</code> если задач с указанными характеристиками не было.
+     */
+    public double getRunTimePercentile(String category, String priority, double percentile);
+
+    /**
+     * @return текстовый отчет по всей собранной статистике.
+     */
+    public String getMetricsReport();
+
+    /**
+     * Сбрасывает всю накопленную статистику.
+     */
+    public void resetMetrics();
+}
@@ -0,0 +1,147 @@
+package org.echosoft.common.scheduler;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Хранит информацию о последних N выполненных планировщиком задачах.</p>
+ * <p>Информация хранится в заранее выделенном кольцевом буфере фиксированного размера в примитивном виде (идентификаторы, время в миллисекундах
+ * и ссылки на уже существующие объекты задачи), так что регистрация очередной выполненной задачи не требует ни блокировок, ни выделения памяти.
+ * Объекты {@link TaskSnapshot} создаются лишь при обращении к методу {@link #collect(Collection)}.</p>
+ * <p>Каждая ячейка буфера защищена собственным счетчиком версий: запись в ячейку выполняется только после ее захвата (установки нечетной версии),
+ * а при чтении ячейки ее содержимое используется лишь если версия ячейки до и после чтения соответствует ожидаемой записи.
+ * Поэтому одновременно выполняющиеся записи и чтения никогда не приводят к появлению в результате несогласованных данных.</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class TaskHistory {
+
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+    private static final TaskState[] STATES = TaskState.values();
+    private static final long NONE = 0;      // отсутствующее время (так же отмечается и в AbstractFutureTaskWrapper).
+
+    /**
+     * Ячейка кольцевого буфера. Видимость ее полей обеспечивается операциями над версией ячейки в {@link TaskHistory#versions}.
+     */
+    private static final class Slot {
+        private int id;
+        private int priority;
+        private int state;
+        private int progress;
+        private long enqueueTime;
+        private long startTime;
+        private long finishTime;
+        private String owner;
+        private Object key;
+        private String category;
+        private String title;
+        private String statusLine;
+    }
+
+    private final Slot[] slots;
+    private final AtomicLongArray versions;     // для каждой ячейки: 2*seq+1 - идет запись seq-й задачи, 2*seq+2 - запись seq-й задачи завершена.
+    private final AtomicLong sequence;          // порядковый номер следующей регистрируемой задачи.
+
+    /**
+     * @param limit максимальное количество задач, информация о которых будет храниться в буфере.
+     */
+    public TaskHistory(final int limit) {
+        if (limit <= 0)
+            throw new IllegalArgumentException("History limit must be positive");
+        this.slots = new Slot[limit];
+        for (int i = 0; i < limit; i++) {
+            slots[i] = new Slot();
+        }
+        this.versions = new AtomicLongArray(limit);
+        this.sequence = new AtomicLong();
+    }
+
+    /**
+     * @return максимальное количество задач, информация о которых хранится в буфере.
+     */
+    public int getLimit() {
+        return slots.length;
+    }
+
+    /**
+     * @return количество задач, информация о которых хранится в буфере в настоящий момент.
+     */
+    public int size() {
+        return (int) Math.min(sequence.get(), slots.length);
+    }
+
+    /**
+     * Регистрирует очередную выполненную задачу. Если буфер заполнен, то из него вытесняется информация о самой давней задаче.
+     *
+     * @param descriptor описание выполненной задачи.
+     */
+    public void record(final TaskDescriptor<?> descriptor) {
+        final long seq = sequence.getAndIncrement();
+        final int index = (int) (seq % slots.length);
+        final long writing = 2 * seq + 1;
+        for (long v = versions.get(index); ; v = versions.get(index)) {
+            if (v > writing)
+                return;     // буфер успел обернуться и в ячейку уже пишется более свежая задача.
+            if ((v & 1) == 0 && versions.compareAndSet(index, v, writing))
+                break;
+            Thread.yield();  // ячейку еще заполняет более давняя задача, ждем ее завершения.
+        }
+        final AbstractTask<?> task = descriptor.getTask();
+        final Slot slot = slots[index];
+        slot.id = descriptor.getId();
+        slot.priority = descriptor.getPriority().ordinal();
+        slot.state = descriptor.getState().ordinal();
+        slot.progress = task.getProgress();
+        if (descriptor instanceof AbstractFutureTaskWrapper) {
+            // обертки планировщиков хранят время в миллисекундах (0 - если не задано), объекты Date не создаем.
+            final AbstractFutureTaskWrapper<?> wrapper = (AbstractFutureTaskWrapper<?>) descriptor;
+            slot.enqueueTime = wrapper.enqueueMillis;
+            slot.startTime = wrapper.startMillis;
+            slot.finishTime = wrapper.finishMillis;
+        } else {
+            slot.enqueueTime = millis(descriptor.getEnqueueTime());
+            slot.startTime = millis(descriptor.getStartTime());
+            slot.finishTime = millis(descriptor.getFinishTime());
+        }
+        slot.owner = descriptor.getOwner();
+        slot.key = task.getKey();
+        slot.category = task.getCategory();
+        slot.title = task.getTitle();
+        slot.statusLine = task.getStatusLine();
+        versions.lazySet(index, writing + 1);
+    }
+
+    /**
+     * Копирует в указанный буфер информацию о последних выполненных задачах в порядке их регистрации (от более давних к более свежим).
+     * Информация о задачах, которые регистрируются одновременно с вызовом данного метода, может в результат не попасть.
+     *
+     * @param buf коллекция в которую будут помещены срезы состояния последних выполненных задач.
+     */
+    public void collect(final Collection<TaskSnapshot> buf) {
+        final long last = sequence.get();
+        for (long seq = Math.max(0, last - slots.length); seq < last; seq++) {
+            final int index = (int) (seq % slots.length);
+            final long expected = 2 * seq + 2;
+            if (versions.get(index) != expected)
+                continue;
+            final Slot slot = slots[index];
+            final TaskSnapshot snapshot = new TaskSnapshot(slot.id, PRIORITIES[slot.priority], slot.owner, slot.key, slot.category, slot.title,
+                    date(slot.enqueueTime), date(slot.startTime), date(slot.finishTime), STATES[slot.state],
+                    slot.statusLine, slot.progress);
+            // сравнение с обменом не допускает переупорядочивания предшествующего чтения полей ячейки после проверки ее версии.
+            if (versions.compareAndSet(index, expected, expected))
+                buf.add(snapshot);
+        }
+    }
+
+
+    private static long millis(final Date date) {
+        return date != null ? date.getTime() : NONE;
+    }
+
+    private static Date date(final long millis) {
+        return millis != NONE ? new Date(millis) : null;
+    }
+}
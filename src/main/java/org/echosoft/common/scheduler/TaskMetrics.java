@@ -0,0 +1,358 @@
+package org.echosoft.common.scheduler;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Накапливает статистику выполнения задач планировщиком: количество поставленных в очередь, отклоненных, выполненных и завершившихся с ошибкой задач,
+ * а также распределения времени ожидания задач в очереди и времени их выполнения (см. {@link LatencyHistogram}) в разрезе категорий
+ * ({@link AbstractTask#getCategory()}) и приоритетов ({@link TaskPriority}) задач.</p>
+ * <p>Все методы, фиксирующие события, неблокирующие и могут вызываться одновременно из любого количества потоков.</p>
+ *
+ * @author Anton Sharapov
+ */
+public class TaskMetrics {
+
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+    private static final String NO_CATEGORY = "";
+
+    /**
+     * Статистика по задачам одной категории и одного приоритета.
+     */
+    private static final class Group {
+        private final LatencyHistogram wait = new LatencyHistogram();
+        private final LatencyHistogram run = new LatencyHistogram();
+        private final AtomicLong failed = new AtomicLong();
+    }
+
+    private final ConcurrentMap<String, AtomicReferenceArray<Group>> groups;
+    private final AtomicLong submitted;
+    private final AtomicLong rejected;
+    private final AtomicLong completed;
+    private final AtomicLong failed;
+    private volatile long startTime;
+
+    public TaskMetrics() {
+        this.groups = new ConcurrentHashMap<>();
+        this.submitted = new AtomicLong();
+        this.rejected = new AtomicLong();
+        this.completed = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Фиксирует постановку задачи в очередь на выполнение.
+     */
+    public void taskSubmitted() {
+        submitted.incrementAndGet();
+    }
+
+    /**
+     * Фиксирует отказ планировщика в постановке задачи в очередь.
+     */
+    public void taskRejected() {
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * Фиксирует начало выполнения задачи.
+     *
+     * @param category категория задачи (может быть <code>null</code>).
+     * @param priority приоритет задачи.
+     * @param waitTime время ожидания задачи в очереди (в наносекундах).
+     */
+    public void taskStarted(final String category, final TaskPriority priority, final long waitTime) {
+        group(category, priority).wait.record(waitTime);
+    }
+
+    /**
+     * Фиксирует завершение выполнения задачи.
+     *
+     * @param category категория задачи (может быть <code>null</code>).
+     * @param priority приоритет задачи.
+     * @param runTime  время выполнения задачи (в наносекундах).
+     * @param failure  <code>true</code> если задача завершилась с ошибкой.
+     */
+    public void taskFinished(final String category, final TaskPriority priority, final long runTime, final boolean failure) {
+        final Group group = group(category, priority);
+        group.run.record(runTime);
+        completed.incrementAndGet();
+        if (failure) {
+            group.failed.incrementAndGet();
+            failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return количество поставленных в очередь задач.
+     */
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * @return количество отклоненных планировщиком задач.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return количество выполненных задач.
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return количество задач, завершившихся с ошибкой.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Сбрасывает всю накопленную статистику.
+     */
+    public void reset() {
+        groups.clear();
+        submitted.set(0);
+        rejected.set(0);
+        completed.set(0);
+        failed.set(0);
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return копия всей накопленной на данный момент статистики.
+     */
+    public Snapshot snapshot() {
+        final Map<String, AtomicReferenceArray<Group>> sorted = new TreeMap<>(groups);
+        final List<GroupSnapshot> result = new ArrayList<>(sorted.size());
+        for (Map.Entry<String, AtomicReferenceArray<Group>> entry : sorted.entrySet()) {
+            final String category = NO_CATEGORY.equals(entry.getKey()) ? null : entry.getKey();
+            for (int i = 0; i < PRIORITIES.length; i++) {
+                final Group group = entry.getValue().get(i);
+                if (group != null)
+                    result.add(new GroupSnapshot(category, PRIORITIES[i], group.failed.get(), group.wait.snapshot(), group.run.snapshot()));
+            }
+        }
+        return new Snapshot(startTime, System.currentTimeMillis(), submitted.get(), rejected.get(), completed.get(), failed.get(), result);
+    }
+
+
+    private Group group(final String category, final TaskPriority priority) {
+        final String key = category != null ? category : NO_CATEGORY;
+        AtomicReferenceArray<Group> array = groups.get(key);
+        if (array == null) {
+            final AtomicReferenceArray<Group> a = new AtomicReferenceArray<>(PRIORITIES.length);
+            array = groups.putIfAbsent(key, a);
+            if (array == null)
+                array = a;
+        }
+        final int index = (priority != null ? priority : TaskPriority.MEDIUM).ordinal();
+        Group group = array.get(index);
+        if (group == null) {
+            final Group g = new Group();
+            group = array.compareAndSet(index, null, g) ? g : array.get(index);
+        }
+        return group;
+    }
+
+
+    /**
+     * Статистика выполнения задач одной категории и одного приоритета.
+     */
+    public static final class GroupSnapshot implements Serializable {
+        private final String category;
+        private final TaskPriority priority;
+        private final long failed;
+        private final LatencyHistogram.Snapshot waitTime;
+        private final LatencyHistogram.Snapshot runTime;
+
+        private GroupSnapshot(final String category, final TaskPriority priority, final long failed,
+                              final LatencyHistogram.Snapshot waitTime, final LatencyHistogram.Snapshot runTime) {
+            this.category = category;
+            this.priority = priority;
+            this.failed = failed;
+            this.waitTime = waitTime;
+            this.runTime = runTime;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public TaskPriority getPriority() {
+            return priority;
+        }
+
+        /**
+         * @return количество выполненных задач.
+         */
+        public long getCompleted() {
+            return runTime.getCount();
+        }
+
+        /**
+         * @return количество задач, завершившихся с ошибкой.
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return распределение времени ожидания задач в очереди.
+         */
+        public LatencyHistogram.Snapshot getWaitTime() {
+            return waitTime;
+        }
+
+        /**
+         * @return распределение времени выполнения задач.
+         */
+        public LatencyHistogram.Snapshot getRunTime() {
+            return runTime;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + category + "/" + priority + "{completed:" + runTime.getCount() + ", failed:" + failed + ", wait:" + waitTime + ", run:" + runTime + "}]";
+        }
+    }
+
+
+    /**
+     * Копия статистики выполнения задач на определенный момент времени.
+     */
+    public static final class Snapshot implements Serializable {
+        private final long startTime;
+        private final long time;
+        private final long submitted;
+        private final long rejected;
+        private final long completed;
+        private final long failed;
+        private final List<GroupSnapshot> groups;
+
+        private Snapshot(final long startTime, final long time, final long submitted, final long rejected, final long completed, final long failed,
+                         final List<GroupSnapshot> groups) {
+            this.startTime = startTime;
+            this.time = time;
+            this.submitted = submitted;
+            this.rejected = rejected;
+            this.completed = completed;
+            this.failed = failed;
+            this.groups = Collections.unmodifiableList(groups);
+        }
+
+        /**
+         * @return момент времени, начиная с которого накапливалась статистика.
+         */
+        public Date getStartTime() {
+            return new Date(startTime);
+        }
+
+        /**
+         * @return момент времени, на который получена данная копия статистики.
+         */
+        public Date getTime() {
+            return new Date(time);
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return среднее количество задач, выполняемых в секунду.
+         */
+        public double getThroughput() {
+            return time > startTime ? completed * 1000.0 / (time - startTime) : 0;
+        }
+
+        /**
+         * @return статистика в разрезе категорий и приоритетов задач (упорядочена по категориям и приоритетам).
+         */
+        public List<GroupSnapshot> getGroups() {
+            return groups;
+        }
+
+        /**
+         * @return перечень категорий задач, для которых есть статистика.
+         */
+        public List<String> getCategories() {
+            final List<String> result = new ArrayList<>();
+            for (GroupSnapshot group : groups) {
+                if (!result.contains(group.category))
+                    result.add(group.category);
+            }
+            return result;
+        }
+
+        /**
+         * Возвращает распределение времени ожидания в очереди задач указанных категории и приоритета.
+         *
+         * @param category категория задач или <code>null</code> для задач всех категорий.
+         * @param priority приоритет задач или <code>null</code> для задач любых приоритетов.
+         * @return объединенное распределение времени ожидания задач или <code>null</code> если таких задач не было.
+         */
+        public LatencyHistogram.Snapshot getWaitTime(final String category, final TaskPriority priority) {
+            LatencyHistogram.Snapshot result = null;
+            for (GroupSnapshot group : groups) {
+                if ((category == null || category.equals(group.category)) && (priority == null || priority == group.priority))
+                    result = result != null ? result.merge(group.waitTime) : group.waitTime;
+            }
+            return result;
+        }
+
+        /**
+         * Возвращает распределение времени выполнения задач указанных категории и приоритета.
+         *
+         * @param category категория задач или <code>null</code> для задач всех категорий.
+         * @param priority приоритет задач или <code>null</code> для задач любых приоритетов.
+         * @return объединенное распределение времени выполнения задач или <code>null</code> если таких задач не было.
+         */
+        public LatencyHistogram.Snapshot getRunTime(final String category, final TaskPriority priority) {
+            LatencyHistogram.Snapshot result = null;
+            for (GroupSnapshot group : groups) {
+                if ((category == null || category.equals(group.category)) && (priority == null || priority == group.priority))
+                    result = result != null ? result.merge(group.runTime) : group.runTime;
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buf = new StringBuilder(128 + groups.size() * 256);
+            buf.append("[TaskMetrics{submitted:").append(submitted).append(", rejected:").append(rejected)
+                    .append(", completed:").append(completed).append(", failed:").append(failed)
+                    .append(", throughput:").append(Math.round(getThroughput() * 100) / 100.0).append("/s}]");
+            for (GroupSnapshot group : groups) {
+                buf.append('\n').append(group);
+            }
+            return buf.toString();
+        }
+    }
+}
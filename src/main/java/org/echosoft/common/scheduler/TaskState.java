@@ -26,4 +26,14 @@ public enum TaskState {
      */
     AWAITING,
 
+    /**
+     * Задача ожидает наступления срока, после которого она будет поставлена в очередь обработки.
+     */
+    SCHEDULED,
+
+    /**
+     * Задача отменена до того, как наступил срок ее постановки в очередь обработки (в том числе при остановке планировщика).
+     */
+    CANCELLED,
+
 }
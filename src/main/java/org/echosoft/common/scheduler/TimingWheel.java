@@ -0,0 +1,405 @@
+package org.echosoft.common.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Иерархическое колесо таймеров (hierarchical timing wheel) для отложенного выполнения большого количества событий.</p>
+ * <p>Время разбивается на такты фиксированной длительности. Колесо состоит из {@link #LEVELS} уровней по {@link #WHEEL_SIZE} ячеек в каждом,
+ * ячейка уровня <i>L</i> охватывает 64<sup><i>L</i></sup> тактов. Событие помещается в ячейку того уровня, диапазон которого покрывает оставшееся до него время,
+ * а по мере приближения срока события переносится на все более низкие уровни. Поэтому регистрация и отмена события выполняются за O(1),
+ * независимо от количества зарегистрированных событий и их сроков.</p>
+ * <p>Обработка наступивших событий выполняется в отдельном потоке-демоне, который просыпается только к сроку ближайшего события.
+ * Точность срабатывания событий ограничена длительностью такта: событие никогда не срабатывает раньше указанного срока, но может сработать
+ * позднее него не более чем на один такт (при отсутствии задержек в обработке событий).</p>
+ *
+ * @param <T> тип событий.
+ * @author Anton Sharapov
+ */
+public final class TimingWheel<T> {
+
+    /**
+     * Обработчик наступивших событий. Вызывается в потоке колеса таймеров, поэтому не должен выполнять длительных операций.
+     *
+     * @param <T> тип событий.
+     */
+    public static interface Handler<T> {
+        public void expired(T item);
+    }
+
+    public static final int WHEEL_SIZE = 64;
+    public static final int LEVELS = 6;
+
+    private static final int BITS = 6;
+    private static final int MASK = WHEEL_SIZE - 1;
+    private static final long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+    private final long tick;
+    private final long origin;
+    private final Handler<T> handler;
+    private final ReentrantLock lock;
+    private final Condition changed;
+    private final Bucket[][] wheels;
+    private final int[] levelSizes;
+    private final Thread thread;
+    private long nextTick;          // номер ближайшего еще не обработанного такта.
+    private long wakeTick;          // номер такта, до наступления которого спит поток обработки событий.
+    private int size;               // общее количество зарегистрированных событий.
+    private boolean started;
+    private boolean stopped;
+
+    /**
+     * @param threadName имя потока, в котором будут обрабатываться наступившие события.
+     * @param tick       длительность одного такта.
+     * @param unit       единица измерения длительности такта.
+     * @param handler    обработчик наступивших событий.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(final String threadName, final long tick, final TimeUnit unit, final Handler<T> handler) {
+        if (tick <= 0)
+            throw new IllegalArgumentException("Tick duration must be positive");
+        if (handler == null)
+            throw new NullPointerException("Handler must be specified");
+        this.tick = unit.toNanos(tick);
+        this.origin = System.nanoTime();
+        this.handler = handler;
+        this.lock = new ReentrantLock();
+        this.changed = lock.newCondition();
+        this.wheels = (Bucket[][]) new TimingWheel<?>.Bucket[LEVELS][WHEEL_SIZE];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheels[level][i] = new Bucket(level);
+            }
+        }
+        this.levelSizes = new int[LEVELS];
+        this.thread = new Thread(new Worker(), threadName);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Регистрирует новое событие. Поток обработки событий запускается при регистрации первого события.
+     *
+     * @param item  событие.
+     * @param delay время, через которое событие должно наступить.
+     * @param unit  единица измерения времени.
+     * @return объект, позволяющий отменить событие, или <code>null</code> если колесо таймеров уже остановлено.
+     */
+    public Timeout schedule(final T item, final long delay, final TimeUnit unit) {
+        if (item == null)
+            throw new NullPointerException();
+        final long deadline = System.nanoTime() + Math.max(0, unit.toNanos(delay)) - origin;
+        lock.lock();
+        try {
+            if (stopped)
+                return null;
+            if (!started) {
+                started = true;
+                thread.start();
+            }
+            final Timeout timeout = new Timeout(item, Math.max((deadline + tick - 1) / tick, nextTick));
+            place(timeout);
+            if (timeout.deadline < wakeTick)
+                changed.signal();   // новое событие наступит раньше, чем проснется поток обработки событий.
+            return timeout;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return количество зарегистрированных и еще не наступивших событий.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Копирует в указанный буфер все зарегистрированные и еще не наступившие события.
+     *
+     * @param buf коллекция в которую будут помещены события.
+     */
+    public void collect(final Collection<? super T> buf) {
+        lock.lock();
+        try {
+            for (Bucket[] wheel : wheels) {
+                for (Bucket bucket : wheel) {
+                    for (Timeout t = bucket.head; t != null; t = t.next) {
+                        buf.add(t.item);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Останавливает обработку событий. Регистрация новых событий после этого невозможна.
+     *
+     * @return список всех зарегистрированных и еще не наступивших событий.
+     */
+    public List<T> stop() {
+        final List<T> result = new ArrayList<>();
+        lock.lock();
+        try {
+            if (!stopped) {
+                stopped = true;
+                collect(result);
+                for (Bucket[] wheel : wheels) {
+                    for (Bucket bucket : wheel) {
+                        for (Timeout t = bucket.detach(); t != null; t = t.next) {
+                            t.bucket = null;
+                        }
+                    }
+                }
+                for (int i = 0; i < LEVELS; i++) {
+                    levelSizes[i] = 0;
+                }
+                size = 0;
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+
+    /**
+     * Помещает событие в соответствующую ячейку колеса. Вызывается при захваченной блокировке.
+     *
+     * @return <code>false</code> если срок события уже наступил.
+     */
+    private boolean place(final Timeout timeout) {
+        final long deadline = timeout.deadline;
+        if (deadline < nextTick)
+            return false;
+        long delta = deadline - nextTick;
+        long position = deadline;
+        if (delta > MAX_DELTA) {
+            delta = MAX_DELTA;      // событие будет перенесено в нужную ячейку при очередном обороте верхнего уровня.
+            position = nextTick + MAX_DELTA;
+        }
+        int level = 0;
+        while (delta >= WHEEL_SIZE) {
+            delta >>>= BITS;
+            level++;
+        }
+        wheels[level][(int) ((position >>> (BITS * level)) & MASK)].add(timeout);
+        levelSizes[level]++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Обрабатывает все такты вплоть до указанного включительно. Вызывается при захваченной блокировке.
+     *
+     * @param expired  список, в который помещаются наступившие события.
+     */
+    private void advance(final long currentTick, final List<T> expired) {
+        while (size > 0) {
+            final long n = nextEventTick();
+            if (n > currentTick)
+                break;
+            nextTick = n;
+            if ((n & MASK) == 0) {
+                for (int level = 1; level < LEVELS; level++) {
+                    final int index = (int) ((n >>> (BITS * level)) & MASK);
+                    cascade(wheels[level][index], level, expired);
+                    if (index != 0)
+                        break;
+                }
+            }
+            final Bucket bucket = wheels[0][(int) (n & MASK)];
+            for (Timeout t = bucket.detach(); t != null; t = t.next) {
+                t.bucket = null;
+                levelSizes[0]--;
+                size--;
+                expired.add(t.item);
+            }
+            nextTick = n + 1;
+        }
+        if (size == 0 && nextTick <= currentTick)
+            nextTick = currentTick + 1;
+    }
+
+    private void cascade(final Bucket bucket, final int level, final List<T> expired) {
+        Timeout t = bucket.detach();
+        while (t != null) {
+            final Timeout next = t.next;
+            t.bucket = null;
+            t.prev = t.next = null;
+            levelSizes[level]--;
+            size--;
+            if (!place(t))
+                expired.add(t.item);
+            t = next;
+        }
+    }
+
+    /**
+     * @return номер ближайшего такта, на котором будет обработана хотя бы одна непустая ячейка колеса,
+     * или {@link Long#MAX_VALUE} если событий нет. Вызывается при захваченной блокировке.
+     */
+    private long nextEventTick() {
+        long result = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            if (levelSizes[level] == 0)
+                continue;
+            final int shift = BITS * level;
+            final long period = 1L << (shift + BITS);
+            final long base = nextTick - (nextTick & (period - 1));
+            final Bucket[] wheel = wheels[level];
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                if (wheel[i].head == null)
+                    continue;
+                long t = base + ((long) i << shift);
+                if (t < nextTick)
+                    t += period;
+                if (t < result)
+                    result = t;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Зарегистрированное в колесе таймеров событие.
+     */
+    public final class Timeout {
+        private final T item;
+        private final long deadline;    // номер такта, на котором событие должно наступить.
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(final T item, final long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * Отменяет событие.
+         *
+         * @return <code>true</code> если событие было отменено и <code>false</code> если оно уже наступило или было отменено ранее.
+         */
+        public boolean cancel() {
+            lock.lock();
+            try {
+                if (bucket == null)
+                    return false;
+                levelSizes[bucket.level]--;
+                size--;
+                bucket.remove(this);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Ячейка колеса таймеров: двусвязный список событий.
+     */
+    private final class Bucket {
+        private final int level;
+        private Timeout head;
+        private Timeout tail;
+
+        private Bucket(final int level) {
+            this.level = level;
+        }
+
+        private void add(final Timeout t) {
+            t.bucket = this;
+            t.next = null;
+            t.prev = tail;
+            if (tail != null) {
+                tail.next = t;
+            } else {
+                head = t;
+            }
+            tail = t;
+        }
+
+        private void remove(final Timeout t) {
+            if (t.prev != null) {
+                t.prev.next = t.next;
+            } else {
+                head = t.next;
+            }
+            if (t.next != null) {
+                t.next.prev = t.prev;
+            } else {
+                tail = t.prev;
+            }
+            t.bucket = null;
+            t.prev = t.next = null;
+        }
+
+        private Timeout detach() {
+            final Timeout result = head;
+            head = tail = null;
+            return result;
+        }
+    }
+
+    /**
+     * Поток обработки наступивших событий.
+     */
+    private final class Worker implements Runnable {
+        @Override
+        public void run() {
+            final List<T> expired = new ArrayList<>();
+            while (true) {
+                lock.lock();
+                try {
+                    while (!stopped) {
+                        final long now = System.nanoTime() - origin;
+                        advance(now / tick, expired);
+                        if (!expired.isEmpty())
+                            break;
+                        final long next = nextEventTick();
+                        wakeTick = next;
+                        if (next == Long.MAX_VALUE) {
+                            changed.awaitUninterruptibly();
+                        } else {
+                            try {
+                                changed.awaitNanos(next * tick - now);
+                            } catch (InterruptedException e) {
+                                // продолжаем работу до вызова метода stop().
+                            }
+                        }
+                    }
+                    wakeTick = 0;
+                    if (stopped)
+                        return;
+                } finally {
+                    lock.unlock();
+                }
+                for (T item : expired) {
+                    try {
+                        handler.expired(item);
+                    } catch (RuntimeException e) {
+                        // ошибка обработки одного события не должна останавливать обработку остальных.
+                    }
+                }
+                expired.clear();
+            }
+        }
+    }
+}
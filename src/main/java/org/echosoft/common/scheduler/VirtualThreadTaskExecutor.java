@@ -0,0 +1,511 @@
+package org.echosoft.common.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Планировщик, выполняющий каждую задачу в отдельном (по возможности виртуальном, см. {@link VirtualThreads}) потоке.</p>
+ * <p>Предназначен для задач, большую часть времени ожидающих завершения операций ввода-вывода (обращения к базе данных, копирование файлов и т.д.),
+ * для которых фиксированный размер пула потоков {@link PriorityThreadPoolExecutor} становится ограничением. Вместо размера пула задаются
+ * максимальное количество одновременно выполняющихся задач (в целом и для каждой категории задач, см. {@link AbstractTask#getCategory()}).
+ * Задачи, которые не могут быть запущены из-за этих ограничений, ожидают в очередях (отдельной для каждой категории) и запускаются по мере
+ * освобождения места в порядке их приоритетов, а при равных приоритетах - в порядке постановки в очередь.</p>
+ * <p>Информация о задачах предоставляется через те же интерфейсы {@link TaskDescriptor} и {@link TaskSnapshot}, что и в {@link PriorityThreadPoolExecutor},
+ * включая состояние выполнения, сообщаемое задачами посредством методов {@link AbstractTask#setProgress(int)} и {@link AbstractTask#setStatusLine(String)}.</p>
+ *
+ * @author Anton Sharapov
+ */
+public class VirtualThreadTaskExecutor extends AbstractExecutorService {
+
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+    private static final Object present = new Object();
+
+    /**
+     * Очередь и количество выполняющихся задач одной категории.
+     */
+    private static final class Lane {
+        private final PriorityQueue<FutureTaskWrapper<?>> queue = new PriorityQueue<>(11, AbstractFutureTaskWrapper.QUEUE_COMPARATOR);
+        private int limit;
+        private int running;
+
+        private Lane(final int limit) {
+            this.limit = limit;
+        }
+    }
+
+    private final ThreadFactory threadFactory;
+    private final int maxConcurrency;
+    private final int defaultCategoryLimit;
+    private final AtomicInteger counter;
+    private final ReentrantLock lock;
+    private final Condition termination;
+    private final Map<String, Integer> categoryLimits;
+    private final Map<String, Lane> lanes;
+    private final ConcurrentHashMap<FutureTaskWrapper<?>, Object> processingTasks;
+    private final TaskHistory processedTasks;
+    private volatile int state;                // изменяется только при захваченной блокировке.
+    private int running;
+    private int pending;
+
+    /**
+     * Создает планировщик без ограничений на количество одновременно выполняющихся задач одной категории.
+     *
+     * @param maxConcurrency максимальное количество одновременно выполняющихся задач.
+     * @param historyLimit   определяет максимальное количество выполненых задач информация о которых будет храниться в соответствующем буфере планировщика.
+     */
+    public VirtualThreadTaskExecutor(final int maxConcurrency, final int historyLimit) {
+        this(maxConcurrency, UNLIMITED, historyLimit, null);
+    }
+
+    /**
+     * Создает и инициализирует планировщик задач.
+     *
+     * @param maxConcurrency       максимальное количество одновременно выполняющихся задач.
+     * @param defaultCategoryLimit максимальное количество одновременно выполняющихся задач каждой категории, для которой не задано собственное ограничение
+     *                             (см. {@link #setCategoryLimit(String, int)}).
+     * @param historyLimit         определяет максимальное количество выполненых задач информация о которых будет храниться в соответствующем буфере планировщика.
+     * @param threadFactory        используется для создания потоков, в которых выполняются задачи. Если не указан, используются виртуальные потоки
+     *                             (или обычные потоки-демоны если JVM не поддерживает виртуальные потоки).
+     */
+    public VirtualThreadTaskExecutor(final int maxConcurrency, final int defaultCategoryLimit, final int historyLimit, final ThreadFactory threadFactory) {
+        if (maxConcurrency <= 0 || defaultCategoryLimit <= 0)
+            throw new IllegalArgumentException("Concurrency limits should be positive");
+        this.threadFactory = threadFactory != null ? threadFactory : VirtualThreads.newThreadFactory("task-");
+        this.maxConcurrency = maxConcurrency;
+        this.defaultCategoryLimit = defaultCategoryLimit;
+        this.counter = new AtomicInteger(0);
+        this.lock = new ReentrantLock();
+        this.termination = lock.newCondition();
+        this.categoryLimits = new HashMap<>();
+        this.lanes = new HashMap<>();
+        this.processingTasks = new ConcurrentHashMap<>();
+        this.processedTasks = new TaskHistory(historyLimit);
+        this.state = RUNNING;
+    }
+
+    /**
+     * Устанавливает максимальное количество одновременно выполняющихся задач указанной категории.
+     *
+     * @param category категория задач.
+     * @param limit    максимальное количество одновременно выполняющихся задач данной категории.
+     */
+    public void setCategoryLimit(final String category, final int limit) {
+        if (limit <= 0)
+            throw new IllegalArgumentException("Illegal limit: " + limit);
+        final List<FutureTaskWrapper<?>> ready;
+        lock.lock();
+        try {
+            categoryLimits.put(category, limit);
+            final Lane lane = lanes.get(category);
+            if (lane != null)
+                lane.limit = limit;
+            ready = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        start(ready);
+    }
+
+    /**
+     * @param category категория задач.
+     * @return максимальное количество одновременно выполняющихся задач указанной категории.
+     */
+    public int getCategoryLimit(final String category) {
+        lock.lock();
+        try {
+            final Integer limit = categoryLimits.get(category);
+            return limit != null ? limit : defaultCategoryLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Копирует в указанный буфер все задачи которые стоят в данный момент в очереди на выполнение.
+     *
+     * @param buf коллекция в которую будут помещены все задачи которые в настоящий момент стоят в очереди на выполнение.
+     */
+    public void collectEnqueuedTasks(final Collection<TaskDescriptor> buf) {
+        lock.lock();
+        try {
+            for (Lane lane : lanes.values()) {
+                buf.addAll(lane.queue);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Копирует в указанный буфер все задачи которые выполняются в настоящий момент.
+     *
+     * @param buf коллекция в которую будут помещены все задачи которые выполняются в настоящий момент.
+     */
+    public void collectProcessingTasks(final Collection<TaskDescriptor> buf) {
+        buf.addAll(processingTasks.keySet());
+    }
+
+    /**
+     * Копирует в указанный буфер снапшоты N последних выполнененных задач.
+     *
+     * @param buf коллекция в которую будут помещены срезы состояния последних выполненных задач.
+     */
+    public void collectProcessedTasks(final Collection<TaskSnapshot> buf) {
+        processedTasks.collect(buf);
+    }
+
+    /**
+     * Ставит в очередь на обработку очередную задачу которая должна выполняться с указанным приоритетом.
+     *
+     * @param task     новая задача. Не может быть <code>null</code>.
+     * @param priority приоритет, с которым должна выполняться данная задача. Значение по умолчанию - {@link TaskPriority#MEDIUM}.
+     * @param <V>      тип возвращаемых задачей данных.
+     * @return экземпляр класса {@link FutureTaskWrapper} который позволит всегда быть в курсе текущего состояния данной задачи и управлять ее состоянием.
+     * @throws RejectedExecutionException если работа планировщика уже была остановлена.
+     */
+    public <V> FutureTaskWrapper<V> addTask(final AbstractTask<V> task, final TaskPriority priority) {
+        if (task == null)
+            throw new NullPointerException();
+        final FutureTaskWrapper<V> future = new FutureTaskWrapper<>(task, priority, getCurrentUser());
+        enqueue(future, false);
+        return future;
+    }
+
+    /**
+     * Ставит в очередь на обработку очередную задачу которая должна выполняться с указанным приоритетом и которой еще нет в очереди на обработку.
+     * Если подобная задача уже присутствует в очереди на обработку то новая подобная задача добавляться в очередь уже не будет и метод вернет <code>null</code>.
+     *
+     * @param task     новая задача. Не может быть <code>null</code>.
+     * @param priority приоритет, с которым должна выполняться данная задача. Значение по умолчанию - {@link TaskPriority#MEDIUM}.
+     * @param <V>      тип возвращаемых задачей данных.
+     * @return экземпляр класса {@link FutureTaskWrapper} который позволит всегда быть в курсе текущего состояния данной задачи и управлять ее состоянием.
+     * @throws RejectedExecutionException если работа планировщика уже была остановлена.
+     */
+    public <V> FutureTaskWrapper<V> addUniqueTask(final AbstractTask<V> task, final TaskPriority priority) {
+        if (task == null)
+            throw new NullPointerException();
+        final FutureTaskWrapper<V> future = new FutureTaskWrapper<>(task, priority, getCurrentUser());
+        return enqueue(future, true) ? future : null;
+    }
+
+    /**
+     * @return количество задач, выполняемых в настоящий момент.
+     */
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return количество задач, ожидающих выполнения.
+     */
+    public int getQueuedTaskCount() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    @Override
+    public void execute(final Runnable command) {
+        if (command == null)
+            throw new NullPointerException();
+        final FutureTaskWrapper<?> future = command instanceof FutureTaskWrapper && ((FutureTaskWrapper) command).getExecutor() == this
+                ? (FutureTaskWrapper<?>) command
+                : (FutureTaskWrapper<?>) newTaskFor(command, null);
+        enqueue(future, false);
+    }
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            if (state == RUNNING)
+                state = SHUTDOWN;
+            checkTermination();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> result = new ArrayList<>();
+        lock.lock();
+        try {
+            state = STOP;
+            for (Lane lane : lanes.values()) {
+                result.addAll(lane.queue);
+                lane.queue.clear();
+            }
+            pending = 0;
+            for (FutureTaskWrapper<?> future : processingTasks.keySet()) {
+                final Thread thread = future.thread;
+                if (thread != null)
+                    thread.interrupt();
+            }
+            checkTermination();
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return state != RUNNING;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        lock.lock();
+        try {
+            return state != RUNNING && running == 0 && pending == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!(state != RUNNING && running == 0 && pending == 0)) {
+                if (nanos <= 0)
+                    return false;
+                nanos = termination.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[VirtualThreadTaskExecutor{maxConcurrency:" + maxConcurrency + ", running:" + running + ", pending:" + pending + ", virtual:" + VirtualThreads.isSupported() + "}]";
+    }
+
+
+    /**
+     * Вызывается в потоке задачи непосредственно перед ее выполнением. Предназначено для переопределения в классах-наследниках.
+     *
+     * @param t поток в котором будет выполняться задача.
+     * @param r задача которая будет сейчас выполняться.
+     */
+    protected void beforeExecute(final Thread t, final Runnable r) {
+    }
+
+    /**
+     * Вызывается в потоке задачи по завершении ее выполнения. Предназначено для переопределения в классах-наследниках.
+     *
+     * @param r завершенная задача.
+     * @param t <code>null</code> если задача была завершена без ошибок, иначе ошибка, возникшая при выполнении задачи.
+     */
+    protected void afterExecute(final Runnable r, final Throwable t) {
+    }
+
+    /**
+     * <p>Возвращает пользователя системы с которым ассоциирован в настоящий момент текущий поток выполнения. Вызывается в процессе регистрации новой задачи в очереди на исполнение</p>
+     * Предназначено для переопределения в классах-наследниках.
+     *
+     * @return имя пользователя (аккаунт) от чьего имени выполняется код в текущем потоке.
+     */
+    protected String getCurrentUser() {
+        return null;
+    }
+
+    @Override
+    protected <V> RunnableFuture<V> newTaskFor(final Callable<V> callable) {
+        return new FutureTaskWrapper<>(callable, getCurrentUser());
+    }
+
+    @Override
+    protected <V> RunnableFuture<V> newTaskFor(final Runnable runnable, final V value) {
+        return new FutureTaskWrapper<>(runnable, value, getCurrentUser());
+    }
+
+
+    private boolean enqueue(final FutureTaskWrapper<?> future, final boolean unique) {
+        final List<FutureTaskWrapper<?>> ready;
+        lock.lock();
+        try {
+            if (state != RUNNING)
+                throw new RejectedExecutionException("Executor has been shut down");
+            final String category = future.task.getCategory();
+            Lane lane = lanes.get(category);
+            if (lane == null) {
+                final Integer limit = categoryLimits.get(category);
+                lanes.put(category, lane = new Lane(limit != null ? limit : defaultCategoryLimit));
+            } else if (unique) {
+                for (FutureTaskWrapper<?> f : lane.queue) {
+                    if (f.task.equals(future.task))
+                        return false;
+                }
+            }
+            lane.queue.add(future);
+            pending++;
+            ready = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        start(ready);
+        return true;
+    }
+
+    /**
+     * Извлекает из очередей задачи, которые могут быть запущены с учетом установленных ограничений. Вызывается только при захваченной блокировке.
+     *
+     * @return задачи, для которых должны быть созданы потоки.
+     */
+    private List<FutureTaskWrapper<?>> dispatch() {
+        List<FutureTaskWrapper<?>> ready = null;
+        while (state != STOP && running < maxConcurrency) {
+            Lane best = null;
+            for (Lane lane : lanes.values()) {
+                if (lane.running < lane.limit && !lane.queue.isEmpty() && (best == null || AbstractFutureTaskWrapper.QUEUE_COMPARATOR.compare(lane.queue.peek(), best.queue.peek()) < 0))
+                    best = lane;
+            }
+            if (best == null)
+                break;
+            final FutureTaskWrapper<?> future = best.queue.poll();
+            pending--;
+            if (future.isDone())
+                continue;       // задача была отменена, пока ожидала в очереди.
+            best.running++;
+            running++;
+            future.lane = best;
+            if (ready == null)
+                ready = new ArrayList<>(2);
+            ready.add(future);
+        }
+        return ready;
+    }
+
+    private void start(final List<FutureTaskWrapper<?>> ready) {
+        if (ready == null)
+            return;
+        for (final FutureTaskWrapper<?> future : ready) {
+            try {
+                final Thread thread = threadFactory.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        runTask(future);
+                    }
+                });
+                if (thread == null)
+                    throw new IllegalStateException("Thread factory returned null");
+                thread.start();
+            } catch (RuntimeException | Error e) {
+                future.setException(e);
+                release(future);
+            }
+        }
+    }
+
+    private void runTask(final FutureTaskWrapper<?> future) {
+        final Thread thread = Thread.currentThread();
+        future.thread = thread;
+        future.started();
+        processingTasks.put(future, present);
+        // задача, запущенная одновременно с вызовом shutdownNow(), могла не попасть в перечень прерываемых им задач.
+        if (state == STOP)
+            thread.interrupt();
+        Throwable failure = null;
+        try {
+            beforeExecute(thread, future);
+            future.run();
+            failure = future.failure;
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            future.finished(failure != null);
+            future.thread = null;
+            processingTasks.remove(future);
+            processedTasks.record(future);
+            try {
+                afterExecute(future, failure);
+            } finally {
+                release(future);
+            }
+        }
+    }
+
+    private void release(final FutureTaskWrapper<?> future) {
+        final List<FutureTaskWrapper<?>> ready;
+        lock.lock();
+        try {
+            future.lane.running--;
+            running--;
+            ready = dispatch();
+            checkTermination();
+        } finally {
+            lock.unlock();
+        }
+        start(ready);
+    }
+
+    private void checkTermination() {
+        if (state != RUNNING && running == 0 && pending == 0)
+            termination.signalAll();
+    }
+
+
+    /**
+     * Обертка над задачами данного планировщика.
+     *
+     * @param <V> характеризует тип возвращаемых данных в методе <code>call()</code> задачи.
+     */
+    public final class FutureTaskWrapper<V> extends AbstractFutureTaskWrapper<V> {
+        private volatile Thread thread;         // поток, в котором выполняется задача.
+        private Lane lane;                      // очередь категории задачи (изменяется только при захваченной блокировке планировщика).
+
+        private FutureTaskWrapper(final AbstractTask<V> task, final TaskPriority priority, final String owner) {
+            super(task, counter.incrementAndGet(), priority, owner, TaskState.AWAITING);
+        }
+
+        private FutureTaskWrapper(final Callable<V> task, final String owner) {
+            this(new CallableTaskAdapter<>(task), TaskPriority.MEDIUM, owner);
+        }
+
+        private FutureTaskWrapper(final Runnable task, final V result, final String owner) {
+            this(new RunnableTaskAdapter<>(task, result), TaskPriority.MEDIUM, owner);
+        }
+
+        private VirtualThreadTaskExecutor getExecutor() {
+            return VirtualThreadTaskExecutor.this;
+        }
+    }
+}
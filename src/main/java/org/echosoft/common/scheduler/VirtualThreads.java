@@ -0,0 +1,72 @@
+package org.echosoft.common.scheduler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Обеспечивает создание виртуальных потоков на тех версиях JDK, где они поддерживаются (начиная с java 21).</p>
+ * <p>Поскольку библиотека компилируется для более ранних версий java, обращение к соответствующему API выполняется посредством рефлексии.
+ * На версиях JDK без поддержки виртуальных потоков вместо них создаются обычные потоки-демоны.</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;     // Thread.ofVirtual()
+    private static final Method NAME;           // Thread.Builder.name(String, long)
+    private static final Method FACTORY;        // Thread.Builder.factory()
+
+    static {
+        Method ofVirtual = null, name = null, factory = null;
+        try {
+            final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            ofVirtual.invoke(null);     // в java 19-20 виртуальные потоки доступны только при включенном режиме --enable-preview.
+        } catch (Exception e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return <code>true</code> если текущая JVM поддерживает виртуальные потоки.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Возвращает фабрику виртуальных потоков (или обычных потоков-демонов если JVM не поддерживает виртуальные потоки).
+     *
+     * @param namePrefix префикс имен создаваемых потоков. К нему добавляется порядковый номер потока.
+     * @return фабрика потоков.
+     */
+    public static ThreadFactory newThreadFactory(final String namePrefix) {
+        if (OF_VIRTUAL != null) {
+            try {
+                final Object builder = OF_VIRTUAL.invoke(null);
+                NAME.invoke(builder, namePrefix, 0L);
+                return (ThreadFactory) FACTORY.invoke(builder);
+            } catch (Exception e) {
+                throw new IllegalStateException("Can't create virtual threads factory: " + e.getMessage(), e);
+            }
+        }
+        final AtomicLong counter = new AtomicLong();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, namePrefix + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,617 @@
+package org.echosoft.common.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Планировщик для задач с различными приоритетами выполнения, рассчитанный на большой поток коротких задач.</p>
+ * <p>В отличие от {@link PriorityThreadPoolExecutor}, где все задачи проходят через единственную очередь с блокировкой, здесь для каждого
+ * приоритета ({@link TaskPriority}) используется отдельная неблокирующая очередь. Кроме того, у каждого рабочего потока есть собственные
+ * неблокирующие очереди (по одной на каждый приоритет), в которые помещаются задачи, поставленные в очередь из этого же потока.
+ * Свои задачи поток извлекает в порядке LIFO, а при отсутствии работы забирает (в порядке FIFO) задачи из очередей других потоков.</p>
+ * <p>Очередной приоритет, задачи которого будут выполняться, выбирается по схеме взвешенной очередности: при наличии задач всех приоритетов
+ * на каждые 16 задач с приоритетом {@link TaskPriority#HIGHEST} (при весах по умолчанию) приходится 8 задач с приоритетом {@link TaskPriority#HIGH}
+ * и т.д. вплоть до одной задачи с приоритетом {@link TaskPriority#LOWEST}. Если же первая задача в очереди какого-либо приоритета ожидает
+ * выполнения дольше указанного порога, то она выполняется вне очереди. Таким образом, задачи с низким приоритетом не могут ожидать выполнения бесконечно.</p>
+ * <p>Информация о задачах предоставляется через те же интерфейсы {@link TaskDescriptor} и {@link TaskSnapshot}, что и в {@link PriorityThreadPoolExecutor}.</p>
+ *
+ * @author Anton Sharapov
+ */
+public class WorkStealingPriorityExecutor extends AbstractExecutorService {
+
+    public static final long DEFAULT_AGING_THRESHOLD = 1000;
+
+    private static final int[] DEFAULT_WEIGHTS = {16, 8, 4, 2, 1};
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+    private static final Object present = new Object();
+
+    private final ThreadFactory threadFactory;
+    private final int[] schedule;                                           // последовательность приоритетов, задающая взвешенную очередность их обслуживания.
+    private final long agingThreshold;                                      // нс, время ожидания после которого задача выполняется вне очереди.
+    private final ConcurrentLinkedQueue<FutureTaskWrapper<?>>[] lanes;      // общие очереди задач для каждого приоритета.
+    private final Worker[] workers;
+    private final ConcurrentLinkedQueue<Worker> idleWorkers;
+    private final ThreadLocal<Worker> currentWorker;
+    private final AtomicInteger counter;
+    private final ConcurrentHashMap<FutureTaskWrapper, Object> processingTasks;
+    private final TaskHistory processedTasks;
+    private final AtomicInteger state;
+    private final AtomicBoolean started;
+    private final AtomicInteger liveWorkers;
+    private final CountDownLatch termination;
+    private final AtomicInteger activeCount;
+    private final AtomicLong completedCount;
+    private final AtomicLong stolenCount;
+
+    /**
+     * Создает и инициализирует планировщик задач с весами приоритетов и порогом ожидания задач по умолчанию.
+     *
+     * @param poolSize     количество рабочих потоков.
+     * @param historyLimit определяет максимальное количество выполненых задач информация о которых будет храниться в соответствующем буфере планировщика.
+     */
+    public WorkStealingPriorityExecutor(final int poolSize, final int historyLimit) {
+        this(poolSize, historyLimit, null, DEFAULT_WEIGHTS, DEFAULT_AGING_THRESHOLD);
+    }
+
+    /**
+     * Создает и инициализирует планировщик задач.
+     *
+     * @param poolSize       количество рабочих потоков.
+     * @param historyLimit   определяет максимальное количество выполненых задач информация о которых будет храниться в соответствующем буфере планировщика.
+     * @param threadFactory  используется для создания рабочих потоков. Если не указан, используется {@link Executors#defaultThreadFactory()}.
+     * @param weights        относительные веса каждого из приоритетов (в порядке их объявления в {@link TaskPriority}).
+     * @param agingThreshold время ожидания задачи в очереди (в миллисекундах), по истечении которого она выполняется вне очереди. Значение <code>0</code> отключает данный механизм.
+     */
+    @SuppressWarnings("unchecked")
+    public WorkStealingPriorityExecutor(final int poolSize, final int historyLimit, final ThreadFactory threadFactory, final int[] weights, final long agingThreshold) {
+        if (poolSize <= 0)
+            throw new IllegalArgumentException("Illegal pool size: " + poolSize);
+        if (weights == null || weights.length != PRIORITIES.length)
+            throw new IllegalArgumentException("Weights should be specified for all priorities");
+        if (agingThreshold < 0)
+            throw new IllegalArgumentException("Illegal aging threshold: " + agingThreshold);
+        this.threadFactory = threadFactory != null ? threadFactory : Executors.defaultThreadFactory();
+        this.schedule = makeSchedule(weights);
+        this.agingThreshold = TimeUnit.MILLISECONDS.toNanos(agingThreshold);
+        this.lanes = new ConcurrentLinkedQueue[PRIORITIES.length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.workers = new Worker[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            workers[i] = new Worker(i);
+        }
+        this.idleWorkers = new ConcurrentLinkedQueue<>();
+        this.currentWorker = new ThreadLocal<>();
+        this.counter = new AtomicInteger(0);
+        this.processingTasks = new ConcurrentHashMap<>();
+        this.processedTasks = new TaskHistory(historyLimit);
+        this.state = new AtomicInteger(RUNNING);
+        this.started = new AtomicBoolean(false);
+        this.liveWorkers = new AtomicInteger(0);
+        this.termination = new CountDownLatch(1);
+        this.activeCount = new AtomicInteger(0);
+        this.completedCount = new AtomicLong(0);
+        this.stolenCount = new AtomicLong(0);
+    }
+
+    /**
+     * Копирует в указанный буфер все задачи которые стоят в данный момент в очереди на выполнение.
+     *
+     * @param buf коллекция в которую будут помещены все задачи которые в настоящий момент стоят в очереди на выполнение.
+     */
+    public void collectEnqueuedTasks(final Collection<TaskDescriptor> buf) {
+        for (int p = 0; p < lanes.length; p++) {
+            buf.addAll(lanes[p]);
+            for (Worker worker : workers) {
+                buf.addAll(worker.deques[p]);
+            }
+        }
+    }
+
+    /**
+     * Копирует в указанный буфер все задачи которые выполняются в настоящий момент.
+     *
+     * @param buf коллекция в которую будут помещены все задачи которые выполняются в настоящий момент.
+     */
+    public void collectProcessingTasks(final Collection<TaskDescriptor> buf) {
+        buf.addAll(processingTasks.keySet());
+    }
+
+    /**
+     * Копирует в указанный буфер снапшоты N последних выполнененных задач.
+     *
+     * @param buf коллекция в которую будут помещены срезы состояния последних выполненных задач.
+     */
+    public void collectProcessedTasks(final Collection<TaskSnapshot> buf) {
+        processedTasks.collect(buf);
+    }
+
+    /**
+     * Ставит в очередь на обработку очередную задачу которая должна выполняться с указанным приоритетом.
+     *
+     * @param task     новая задача. Не может быть <code>null</code>.
+     * @param priority приоритет, с которым должна выполняться данная задача. Значение по умолчанию - {@link TaskPriority#MEDIUM}.
+     * @param <V>      тип возвращаемых задачей данных.
+     * @return экземпляр класса {@link FutureTaskWrapper} который позволит всегда быть в курсе текущего состояния данной задачи и управлять ее состоянием.
+     * @throws RejectedExecutionException если работа планировщика уже была остановлена.
+     */
+    public <V> FutureTaskWrapper<V> addTask(final AbstractTask<V> task, final TaskPriority priority) {
+        if (task == null)
+            throw new NullPointerException();
+        final FutureTaskWrapper<V> future = new FutureTaskWrapper<>(task, priority, getCurrentUser());
+        enqueue(future);
+        return future;
+    }
+
+    /**
+     * Ставит в очередь на обработку очередную задачу которая должна выполняться с указанным приоритетом и которой еще нет в очереди на обработку.
+     * Если подобная задача уже присутствует в очереди на обработку то новая подобная задача добавляться в очередь уже не будет и метод вернет <code>null</code>.
+     *
+     * @param task     новая задача. Не может быть <code>null</code>.
+     * @param priority приоритет, с которым должна выполняться данная задача. Значение по умолчанию - {@link TaskPriority#MEDIUM}.
+     * @param <V>      тип возвращаемых задачей данных.
+     * @return экземпляр класса {@link FutureTaskWrapper} который позволит всегда быть в курсе текущего состояния данной задачи и управлять ее состоянием.
+     * @throws RejectedExecutionException если работа планировщика уже была остановлена.
+     */
+    public <V> FutureTaskWrapper<V> addUniqueTask(final AbstractTask<V> task, final TaskPriority priority) {
+        if (task == null)
+            throw new NullPointerException();
+        final List<TaskDescriptor> enqueued = new ArrayList<>();
+        collectEnqueuedTasks(enqueued);
+        for (TaskDescriptor future : enqueued) {
+            if (future.getTask().equals(task))
+                return null;
+        }
+        return addTask(task, priority);
+    }
+
+    /**
+     * @return количество рабочих потоков планировщика.
+     */
+    public int getPoolSize() {
+        return workers.length;
+    }
+
+    /**
+     * @return количество задач, выполняемых в настоящий момент.
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * @return количество задач, ожидающих выполнения. Вычисляется путем обхода всех очередей, поэтому не рекомендуется для частого использования.
+     */
+    public int getQueuedTaskCount() {
+        int count = 0;
+        for (int p = 0; p < lanes.length; p++) {
+            count += lanes[p].size();
+            for (Worker worker : workers) {
+                count += worker.deques[p].size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return общее количество выполненных задач.
+     */
+    public long getCompletedTaskCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * @return количество задач, забранных рабочими потоками из очередей других потоков.
+     */
+    public long getStolenTaskCount() {
+        return stolenCount.get();
+    }
+
+
+    @Override
+    public void execute(final Runnable command) {
+        if (command == null)
+            throw new NullPointerException();
+        final FutureTaskWrapper<?> future = command instanceof FutureTaskWrapper && ((FutureTaskWrapper) command).getExecutor() == this
+                ? (FutureTaskWrapper<?>) command
+                : (FutureTaskWrapper<?>) newTaskFor(command, null);
+        enqueue(future);
+    }
+
+    @Override
+    public void shutdown() {
+        if (!state.compareAndSet(RUNNING, SHUTDOWN))
+            return;
+        if (started.compareAndSet(false, true)) {
+            terminate();
+        } else {
+            for (Worker worker : workers) {
+                worker.wakeup();
+            }
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        state.set(STOP);
+        final List<Runnable> result = new ArrayList<>();
+        for (int p = 0; p < lanes.length; p++) {
+            drain(lanes[p], result);
+            for (Worker worker : workers) {
+                drain(worker.deques[p], result);
+            }
+        }
+        for (Worker worker : workers) {
+            final Thread thread = worker.thread;
+            if (thread != null)
+                thread.interrupt();
+            worker.wakeup();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state.get() != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return termination.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return termination.await(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "[WorkStealingPriorityExecutor{pool:" + workers.length + ", active:" + activeCount + ", completed:" + completedCount + ", stolen:" + stolenCount + ", state:" + state + "}]";
+    }
+
+
+    /**
+     * Вызывается в рабочем потоке непосредственно перед выполнением задачи. Предназначено для переопределения в классах-наследниках.
+     *
+     * @param t поток в котором будет выполняться задача.
+     * @param r задача которая будет сейчас выполняться.
+     */
+    protected void beforeExecute(final Thread t, final Runnable r) {
+    }
+
+    /**
+     * Вызывается в рабочем потоке по завершении выполнения задачи. Предназначено для переопределения в классах-наследниках.
+     *
+     * @param r завершенная задача.
+     * @param t <code>null</code> если задача была завершена без ошибок, иначе ошибка, возникшая при выполнении задачи.
+     */
+    protected void afterExecute(final Runnable r, final Throwable t) {
+    }
+
+    /**
+     * Вызывается после завершения всех рабочих потоков планировщика. Предназначено для переопределения в классах-наследниках.
+     */
+    protected void terminated() {
+    }
+
+    /**
+     * <p>Возвращает пользователя системы с которым ассоциирован в настоящий момент текущий поток выполнения. Вызывается в процессе регистрации новой задачи в очереди на исполнение</p>
+     * Предназначено для переопределения в классах-наследниках.
+     *
+     * @return имя пользователя (аккаунт) от чьего имени выполняется код в текущем потоке.
+     */
+    protected String getCurrentUser() {
+        return null;
+    }
+
+    @Override
+    protected <V> RunnableFuture<V> newTaskFor(final Callable<V> callable) {
+        return new FutureTaskWrapper<>(callable, getCurrentUser());
+    }
+
+    @Override
+    protected <V> RunnableFuture<V> newTaskFor(final Runnable runnable, final V value) {
+        return new FutureTaskWrapper<>(runnable, value, getCurrentUser());
+    }
+
+
+    /**
+     * Строит последовательность приоритетов, в которой каждый приоритет встречается количество раз, равное его весу,
+     * а вхождения различных приоритетов равномерно перемешаны (smooth weighted round-robin).
+     */
+    private static int[] makeSchedule(final int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            if (weight <= 0)
+                throw new IllegalArgumentException("Weights should be positive");
+            total += weight;
+        }
+        final int[] schedule = new int[total];
+        final int[] current = new int[weights.length];
+        for (int k = 0; k < total; k++) {
+            int best = 0;
+            for (int i = 0; i < weights.length; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[best])
+                    best = i;
+            }
+            current[best] -= total;
+            schedule[k] = best;
+        }
+        return schedule;
+    }
+
+    private static void drain(final Queue<FutureTaskWrapper<?>> queue, final List<Runnable> buf) {
+        for (FutureTaskWrapper<?> future; (future = queue.poll()) != null; ) {
+            buf.add(future);
+        }
+    }
+
+    private void enqueue(final FutureTaskWrapper<?> future) {
+        if (state.get() != RUNNING)
+            throw new RejectedExecutionException("Executor has been shut down");
+        if (!started.get() && started.compareAndSet(false, true))
+            start();
+        final int p = future.priority.ordinal();
+        final Worker worker = currentWorker.get();
+        if (worker != null && worker.getExecutor() == this) {
+            worker.deques[p].offerLast(future);
+        } else {
+            lanes[p].offer(future);
+        }
+        if (state.get() != RUNNING && remove(future))
+            throw new RejectedExecutionException("Executor has been shut down");
+        signalWork();
+    }
+
+    private boolean remove(final FutureTaskWrapper<?> future) {
+        final int p = future.priority.ordinal();
+        if (lanes[p].remove(future))
+            return true;
+        for (Worker worker : workers) {
+            if (worker.deques[p].remove(future))
+                return true;
+        }
+        return false;
+    }
+
+    private void start() {
+        liveWorkers.set(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            final Thread thread;
+            try {
+                thread = threadFactory.newThread(workers[i]);
+                if (thread == null)
+                    throw new IllegalStateException("Thread factory returned null");
+                workers[i].thread = thread;
+                thread.start();
+            } catch (RuntimeException | Error e) {
+                state.set(STOP);
+                for (int j = i; j < workers.length; j++) {
+                    workerExited();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void signalWork() {
+        for (Worker worker; (worker = idleWorkers.poll()) != null; ) {
+            if (worker.idle.compareAndSet(true, false)) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    private void workerExited() {
+        if (liveWorkers.decrementAndGet() == 0)
+            terminate();
+    }
+
+    private void terminate() {
+        try {
+            terminated();
+        } finally {
+            termination.countDown();
+        }
+    }
+
+    private void runTask(final FutureTaskWrapper<?> future) {
+        final Thread thread = Thread.currentThread();
+        if (state.get() >= STOP) {
+            thread.interrupt();
+        } else {
+            Thread.interrupted();
+        }
+        future.started();
+        processingTasks.put(future, present);
+        activeCount.incrementAndGet();
+        Throwable failure = null;
+        try {
+            beforeExecute(thread, future);
+            future.run();
+            failure = future.failure;
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            future.finished(failure != null);
+            processingTasks.remove(future);
+            activeCount.decrementAndGet();
+            completedCount.incrementAndGet();
+            processedTasks.record(future);
+            afterExecute(future, failure);
+        }
+    }
+
+
+    /**
+     * Рабочий поток планировщика с собственными очередями задач для каждого приоритета.
+     */
+    private final class Worker implements Runnable {
+        private final int index;
+        private final ConcurrentLinkedDeque<FutureTaskWrapper<?>>[] deques;
+        private final AtomicBoolean idle;           // находится ли поток в очереди ожидающих работы потоков.
+        private volatile Thread thread;
+        private int cursor;                         // текущая позиция в последовательности обслуживания приоритетов.
+
+        @SuppressWarnings("unchecked")
+        private Worker(final int index) {
+            this.index = index;
+            this.deques = new ConcurrentLinkedDeque[PRIORITIES.length];
+            for (int i = 0; i < deques.length; i++) {
+                deques[i] = new ConcurrentLinkedDeque<>();
+            }
+            this.idle = new AtomicBoolean(false);
+        }
+
+        private WorkStealingPriorityExecutor getExecutor() {
+            return WorkStealingPriorityExecutor.this;
+        }
+
+        @Override
+        public void run() {
+            currentWorker.set(this);
+            try {
+                while (true) {
+                    final int s = state.get();
+                    if (s >= STOP)
+                        break;
+                    FutureTaskWrapper<?> future = nextTask();
+                    if (future == null) {
+                        if (s != RUNNING)
+                            break;
+                        if (idle.compareAndSet(false, true))
+                            idleWorkers.offer(this);
+                        // повторная проверка после регистрации в очереди ожидающих потоков исключает потерю сигнала о новой задаче.
+                        future = nextTask();
+                        if (future == null) {
+                            // признак прерывания, оставшийся после выполнения задачи (например, от cancel(true)), не должен мешать ожиданию.
+                            // сбрасывается до проверки состояния, чтобы не потерять прерывание от shutdownNow().
+                            Thread.interrupted();
+                            if (state.get() == RUNNING)
+                                LockSupport.park(this);
+                            continue;
+                        }
+                        if (idle.compareAndSet(true, false))
+                            idleWorkers.remove(this);
+                    }
+                    if (!future.isDone())
+                        runTask(future);
+                }
+            } finally {
+                currentWorker.remove();
+                workerExited();
+            }
+        }
+
+        private void wakeup() {
+            final Thread t = thread;
+            if (t != null)
+                LockSupport.unpark(t);
+        }
+
+        /**
+         * Выбирает очередную задачу с учетом весов приоритетов и времени ожидания задач в очередях.
+         */
+        private FutureTaskWrapper<?> nextTask() {
+            FutureTaskWrapper<?> future;
+            if (agingThreshold > 0) {
+                long now = 0;
+                for (int p = lanes.length - 1; p > 0; p--) {
+                    FutureTaskWrapper<?> head = lanes[p].peek();
+                    if (head != null) {
+                        if (now == 0)
+                            now = System.nanoTime();
+                        if (now - head.enqueueNanos >= agingThreshold && (future = lanes[p].poll()) != null)
+                            return future;
+                    }
+                    head = deques[p].peekFirst();
+                    if (head != null) {
+                        if (now == 0)
+                            now = System.nanoTime();
+                        if (now - head.enqueueNanos >= agingThreshold && (future = deques[p].pollFirst()) != null)
+                            return future;
+                    }
+                }
+            }
+            final int preferred = schedule[cursor];
+            if (++cursor == schedule.length)
+                cursor = 0;
+            if ((future = poll(preferred)) != null)
+                return future;
+            for (int p = 0; p < lanes.length; p++) {
+                if (p != preferred && (future = poll(p)) != null)
+                    return future;
+            }
+            return null;
+        }
+
+        private FutureTaskWrapper<?> poll(final int p) {
+            FutureTaskWrapper<?> future = deques[p].pollLast();
+            if (future != null)
+                return future;
+            future = lanes[p].poll();
+            if (future != null)
+                return future;
+            for (int i = 1; i < workers.length; i++) {
+                final Worker victim = workers[(index + i) % workers.length];
+                future = victim.deques[p].pollFirst();
+                if (future != null) {
+                    stolenCount.incrementAndGet();
+                    return future;
+                }
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     * Обертка над задачами данного планировщика.
+     *
+     * @param <V> характеризует тип возвращаемых данных в методе <code>call()</code> задачи.
+     */
+    public final class FutureTaskWrapper<V> extends AbstractFutureTaskWrapper<V> {
+
+        private FutureTaskWrapper(final AbstractTask<V> task, final TaskPriority priority, final String owner) {
+            super(task, counter.incrementAndGet(), priority, owner, TaskState.AWAITING);
+        }
+
+        private FutureTaskWrapper(final Callable<V> task, final String owner) {
+            this(new CallableTaskAdapter<>(task), TaskPriority.MEDIUM, owner);
+        }
+
+        private FutureTaskWrapper(final Runnable task, final V result, final String owner) {
+            this(new RunnableTaskAdapter<>(task, result), TaskPriority.MEDIUM, owner);
+        }
+
+        private WorkStealingPriorityExecutor getExecutor() {
+            return WorkStealingPriorityExecutor.this;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.echosoft.common.utils;
+
+/**
+ * Содержит вспомогательные методы и таблицы, используемые при преобразовании чисел в текстовое представление и обратно
+ * без создания промежуточных строк.
+ *
+ * @author Anton Sharapov
+ */
+public final class NumberUtil {
+
+    /**
+     * Максимальный показатель степени десяти, представимой в виде <code>long</code>.
+     */
+    public static final int MAX_LONG_POW10 = 18;
+
+    /**
+     * Максимальный показатель степени десяти, точно представимой в виде <code>double</code>.
+     */
+    public static final int MAX_DOUBLE_POW10 = 22;
+
+    private static final long[] LONG_POW10 = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+            10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L, 1000000000000000L,
+            10000000000000000L, 100000000000000000L, 1000000000000000000L
+    };
+    private static final double[] DOUBLE_POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final char[] MIN_LONG = Long.toString(Long.MIN_VALUE).toCharArray();
+    private static final char[] DIGIT_TENS = new char[100];
+    private static final char[] DIGIT_ONES = new char[100];
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_TENS[i] = (char) ('0' + i / 10);
+            DIGIT_ONES[i] = (char) ('0' + i % 10);
+        }
+    }
+
+    private NumberUtil() {
+    }
+
+    /**
+     * @param exp показатель степени, от <code>0</code> до {@link #MAX_LONG_POW10} включительно.
+     * @return 10<sup>exp</sup>.
+     */
+    public static long longPow10(final int exp) {
+        return LONG_POW10[exp];
+    }
+
+    /**
+     * @param exp показатель степени, от <code>0</code> до {@link #MAX_DOUBLE_POW10} включительно.
+     * @return 10<sup>exp</sup>, представленное без погрешности.
+     */
+    public static double doublePow10(final int exp) {
+        return DOUBLE_POW10[exp];
+    }
+
+    /**
+     * Помещает в буфер десятичное представление целого числа (не более 20 символов).
+     *
+     * @return позиция в буфере, следующая за последним помещенным символом.
+     */
+    public static int formatLong(final long value, final char[] buf, int pos) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                for (int i = 0; i < MIN_LONG.length; i++) {
+                    buf[pos++] = MIN_LONG[i];
+                }
+                return pos;
+            }
+            buf[pos++] = '-';
+        }
+        long v = Math.abs(value);
+        int digits = 1;
+        while (digits < 19 && v >= LONG_POW10[digits]) {
+            digits++;
+        }
+        final int end = pos + digits;
+        int i = end;
+        // пока значение не помещается в int, отделяем по две цифры с использованием 64-битной арифметики, далее - 32-битной.
+        while (v > Integer.MAX_VALUE) {
+            final long q = v / 100;
+            final int r = (int) (v - q * 100);
+            buf[--i] = DIGIT_ONES[r];
+            buf[--i] = DIGIT_TENS[r];
+            v = q;
+        }
+        int iv = (int) v;
+        while (iv >= 100) {
+            final int q = iv / 100;
+            final int r = iv - q * 100;
+            buf[--i] = DIGIT_ONES[r];
+            buf[--i] = DIGIT_TENS[r];
+            iv = q;
+        }
+        buf[--i] = DIGIT_ONES[iv];
+        if (iv >= 10)
+            buf[--i] = DIGIT_TENS[iv];
+        return end;
+    }
+}
@@ -0,0 +1,268 @@
+package org.echosoft.common.data.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+/**
+ * Простейшие заглушки объектов JDBC для тестов, не требующих реальной базы данных.
+ *
+ * @author Anton Sharapov
+ */
+final class FakeJdbc {
+
+    private FakeJdbc() {
+    }
+
+    /**
+     * Состояние объектов JDBC, созданных методами данного класса.
+     */
+    static final class State {
+        volatile boolean resultSetClosed;
+        volatile boolean statementClosed;
+        volatile boolean connectionClosed;
+        volatile int fetchSize;
+        volatile int rowsRead;
+        volatile Thread readerThread;
+        final List<String> preparedQueries = new ArrayList<>();
+        final List<List<Map<Integer, Object>>> executedBatches = new ArrayList<>();
+        int closedStatements;
+        final List<String> executedSql = Collections.synchronizedList(new ArrayList<String>());
+        final List<Integer> sqlBatchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger openedConnections = new AtomicInteger();
+        final AtomicInteger commits = new AtomicInteger();
+        final AtomicInteger rollbacks = new AtomicInteger();
+    }
+
+    /**
+     * Источник соединений, каждое из которых работает не в режиме автоматической фиксации транзакций.
+     */
+    static DataSource dataSource(final State state) {
+        return proxy(DataSource.class, new InvocationHandler() {
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if ("getConnection".equals(method.getName())) {
+                    state.openedConnections.incrementAndGet();
+                    return connection(state);
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    static Connection connection(final State state) {
+        return proxy(Connection.class, new InvocationHandler() {
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                switch (method.getName()) {
+                    case "close":
+                        state.connectionClosed = true;
+                        return null;
+                    case "prepareStatement":
+                        state.preparedQueries.add((String) args[0]);
+                        return preparedStatement(state);
+                    case "createStatement":
+                        return statement(state);
+                    case "commit":
+                        state.commits.incrementAndGet();
+                        return null;
+                    case "rollback":
+                        state.rollbacks.incrementAndGet();
+                        return null;
+                    default:
+                        return defaultValue(method);
+                }
+            }
+        });
+    }
+
+    /**
+     * Запрос, который запоминает все выполненные пакеты со значениями параметров каждой записи.
+     */
+    static PreparedStatement preparedStatement(final State state) {
+        return proxy(PreparedStatement.class, new InvocationHandler() {
+            private Map<Integer, Object> params = new TreeMap<>();
+            private List<Map<Integer, Object>> batch = new ArrayList<>();
+            private boolean closed;
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                switch (method.getName()) {
+                    case "clearParameters":
+                        params.clear();
+                        return null;
+                    case "isClosed":
+                        return closed;
+                    case "setObject":
+                        params.put((Integer) args[0], args[1]);
+                        return null;
+                    case "addBatch":
+                        batch.add(params);
+                        params = new TreeMap<>();
+                        return null;
+                    case "executeBatch": {
+                        final int[] result = new int[batch.size()];
+                        Arrays.fill(result, 1);
+                        state.executedBatches.add(batch);
+                        batch = new ArrayList<>();
+                        return result;
+                    }
+                    case "close":
+                        if (!closed)
+                            state.closedStatements++;
+                        closed = true;
+                        return null;
+                    default:
+                        return defaultValue(method);
+                }
+            }
+        });
+    }
+
+    /**
+     * Запрос, который запоминает тексты всех выполненных выражений. Выражения, содержащие слово <code>FAIL</code>, завершаются ошибкой.
+     */
+    static Statement statement(final State state) {
+        return proxy(Statement.class, new InvocationHandler() {
+            private final List<String> batch = new ArrayList<>();
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws SQLException {
+                switch (method.getName()) {
+                    case "close":
+                        state.statementClosed = true;
+                        return null;
+                    case "execute":
+                        if (((String) args[0]).contains("FAIL"))
+                            throw new SQLException("broken statement", "42000", 17);
+                        state.executedSql.add((String) args[0]);
+                        return false;
+                    case "getUpdateCount":
+                        return 1;
+                    case "addBatch":
+                        batch.add((String) args[0]);
+                        return null;
+                    case "executeBatch": {
+                        final List<String> sqls = new ArrayList<>(batch);
+                        batch.clear();
+                        for (int i = 0; i < sqls.size(); i++) {
+                            if (sqls.get(i).contains("FAIL")) {
+                                final int[] counts = new int[i];
+                                Arrays.fill(counts, 1);
+                                throw new BatchUpdateException("broken batch", counts);
+                            }
+                            state.executedSql.add(sqls.get(i));
+                        }
+                        state.sqlBatchSizes.add(sqls.size());
+                        final int[] result = new int[sqls.size()];
+                        Arrays.fill(result, 1);
+                        return result;
+                    }
+                    default:
+                        return defaultValue(method);
+                }
+            }
+        });
+    }
+
+    /**
+     * Курсор по указанному списку записей.
+     *
+     * @param state   состояние курсора.
+     * @param columns имена колонок курсора.
+     * @param rows    записи курсора.
+     */
+    static ResultSet resultSet(final State state, final String[] columns, final List<Object[]> rows) {
+        final ResultSetMetaData md = proxy(ResultSetMetaData.class, new InvocationHandler() {
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                switch (method.getName()) {
+                    case "getColumnCount":
+                        return columns.length;
+                    case "getColumnLabel":
+                    case "getColumnName":
+                        return columns[(Integer) args[0] - 1];
+                    default:
+                        return defaultValue(method);
+                }
+            }
+        });
+        return proxy(ResultSet.class, new InvocationHandler() {
+            private int current = -1;
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws SQLException {
+                switch (method.getName()) {
+                    case "next":
+                        if (state.resultSetClosed)
+                            throw new SQLException("Result set closed");
+                        state.readerThread = Thread.currentThread();
+                        if (current + 1 >= rows.size())
+                            return false;
+                        current++;
+                        state.rowsRead++;
+                        return true;
+                    case "getMetaData":
+                        return md;
+                    case "setFetchSize":
+                        state.fetchSize = (Integer) args[0];
+                        return null;
+                    case "getFetchSize":
+                        return state.fetchSize;
+                    case "close":
+                        state.resultSetClosed = true;
+                        return null;
+                    case "getObject":
+                    case "getString":
+                    case "getLong":
+                    case "getInt": {
+                        final Object value = args[0] instanceof Integer
+                                ? rows.get(current)[(Integer) args[0] - 1]
+                                : rows.get(current)[indexOf(columns, (String) args[0])];
+                        if ("getString".equals(method.getName()))
+                            return value != null ? value.toString() : null;
+                        if ("getLong".equals(method.getName()))
+                            return value != null ? ((Number) value).longValue() : 0L;
+                        if ("getInt".equals(method.getName()))
+                            return value != null ? ((Number) value).intValue() : 0;
+                        return value;
+                    }
+                    default:
+                        return defaultValue(method);
+                }
+            }
+        });
+    }
+
+
+    private static int indexOf(final String[] columns, final String label) throws SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(label))
+                return i;
+        }
+        throw new SQLException("Unknown column: " + label);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(final Class<T> cls, final InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{cls}, handler);
+    }
+
+    private static Object defaultValue(final Method method) {
+        final Class<?> type = method.getReturnType();
+        if (type == boolean.class)
+            return false;
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+package org.echosoft.common.data.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class JdbcBatchWriterTest {
+
+    @Test
+    public void testBatches() throws Exception {
+        final FakeJdbc.State state = new FakeJdbc.State();
+        final ParameterizedSQL sql = new ParameterizedSQL("UPDATE t SET name = :name, amount = :amount WHERE id = :id OR parent = :id");
+        final List<String> events = new ArrayList<>();
+        try (JdbcBatchWriter writer = new JdbcBatchWriter(FakeJdbc.connection(state), sql, 3)) {
+            writer.setListener(new JdbcBatchWriter.BatchListener() {
+                @Override
+                public void onBatch(final int rows, final int updated, final long nanos) {
+                    Assert.assertTrue(nanos >= 0);
+                    events.add(rows + ":" + updated);
+                }
+            });
+            Assert.assertEquals(Arrays.asList("name", "amount", "id"), Arrays.asList(writer.getParamNames()));
+            for (int i = 0; i < 4; i++) {
+                final Map<String, Object> params = new HashMap<>();
+                params.put("id", i);
+                params.put("name", "n" + i);
+                params.put("amount", null);
+                writer.add(params);
+            }
+            writer.addBean(new Row(10, "bean", 2.5));
+            writer.addValues("values", 7, 11);
+            Assert.assertEquals(2, writer.getBatchesCount());
+            Assert.assertEquals(6, writer.getRowsCount());
+            try {
+                writer.add(new HashMap<String, Object>());
+                Assert.fail("Exception expected");
+            } catch (SQLException e) { /* all is ok. */ }
+            try {
+                writer.addValues(1, 2);
+                Assert.fail("Exception expected");
+            } catch (SQLException e) { /* all is ok. */ }
+        }
+        Assert.assertEquals(Arrays.asList("UPDATE t SET name = ?, amount = ? WHERE id = ? OR parent = ?"), state.preparedQueries);
+        Assert.assertEquals(1, state.closedStatements);
+        Assert.assertEquals(Arrays.asList("3:3", "3:3"), events);
+        Assert.assertEquals(2, state.executedBatches.size());
+        final List<Map<Integer, Object>> last = state.executedBatches.get(1);
+        Assert.assertEquals("{1=n3, 2=null, 3=3, 4=3}", last.get(0).toString());
+        Assert.assertEquals("{1=bean, 2=2.5, 3=10, 4=10}", last.get(1).toString());
+        Assert.assertEquals("{1=values, 2=7, 3=11, 4=11}", last.get(2).toString());
+    }
+
+
+    public static final class Row {
+        private final int id;
+        private final String name;
+        private final double amount;
+        public Row(final int id, final String name, final double amount) {
+            this.id = id;
+            this.name = name;
+            this.amount = amount;
+        }
+        public int getId() {
+            return id;
+        }
+        public String getName() {
+            return name;
+        }
+        public double getAmount() {
+            return amount;
+        }
+    }
+}
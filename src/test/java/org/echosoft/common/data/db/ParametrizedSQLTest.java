@@ -1,5 +1,6 @@
 package org.echosoft.common.data.db;
 
+import java.sql.PreparedStatement;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -47,6 +48,55 @@ public class ParametrizedSQLTest {
         }
     }
 
+    @Test
+    public void testCache() throws Exception {
+        final String namedSql = "SELECT * FROM tbl WHERE id = :id AND /* cache test */ state = :state";
+        final long hits = ParameterizedSQL.getCacheHits();
+        final long misses = ParameterizedSQL.getCacheMisses();
+        final ParameterizedSQL psql = ParameterizedSQL.forQuery(namedSql);
+        Assert.assertEquals(new ParameterizedSQL(namedSql), psql);
+        Assert.assertSame(psql, ParameterizedSQL.forQuery(new String(namedSql)));
+        Assert.assertTrue(ParameterizedSQL.getCacheHits() >= hits + 1);
+        Assert.assertTrue(ParameterizedSQL.getCacheMisses() >= misses + 1);
+        try {
+            psql.getParamNames().clear();
+            Assert.fail("Parameter names should be immutable");
+        } catch (UnsupportedOperationException e) { /* all is ok. */ }
+
+        final FakeJdbc.State state = new FakeJdbc.State();
+        try (PreparedStatementCache cache = new PreparedStatementCache(FakeJdbc.connection(state), 2)) {
+            final PreparedStatement s1 = cache.prepare(psql);
+            Assert.assertSame(s1, cache.prepare(psql.getQuery()));
+            final PreparedStatement s2 = cache.prepare("SELECT 2");
+            cache.prepare(psql);                    // запрос s1 становится наиболее востребованным.
+            cache.prepare("SELECT 3");              // вытесняется s2.
+            Assert.assertTrue(s2.isClosed());
+            Assert.assertFalse(s1.isClosed());
+            Assert.assertSame(s1, cache.prepare(psql));
+            s1.close();
+            Assert.assertNotSame(s1, cache.prepare(psql));
+            Assert.assertEquals(3, cache.getHits());
+            Assert.assertEquals(4, cache.getMisses());
+            Assert.assertEquals(1, cache.getEvictions());
+            Assert.assertEquals(2, cache.size());
+        }
+        Assert.assertEquals(4, state.closedStatements);
+        Assert.assertEquals(4, state.preparedQueries.size());
+    }
+
+    @Test
+    public void testCacheEviction() throws Exception {
+        final ParameterizedSQL hot = ParameterizedSQL.forQuery("SELECT * FROM tbl WHERE id = :id /* eviction test */");
+        final long evictions = ParameterizedSQL.getCacheEvictions();
+        for (int i = 0; i < 5000; i++) {
+            ParameterizedSQL.forQuery("SELECT " + i + " FROM tbl WHERE id = :id /* eviction test */");
+            // часто используемый запрос не должен вытесняться из кэша ...
+            Assert.assertSame(hot, ParameterizedSQL.forQuery("SELECT * FROM tbl WHERE id = :id /* eviction test */"));
+            Assert.assertTrue(ParameterizedSQL.getCacheSize() <= 2048);
+        }
+        Assert.assertTrue(ParameterizedSQL.getCacheEvictions() >= evictions + 5000 - 2048);
+    }
+
 
     private static class TestCase {
         private final String namedSQL;
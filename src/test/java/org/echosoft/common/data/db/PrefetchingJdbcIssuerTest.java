@@ -0,0 +1,131 @@
+package org.echosoft.common.data.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class PrefetchingJdbcIssuerTest {
+
+    private static final IndexedRowMapper<String> MAPPER = new IndexedRowMapper<String>("name", "ID") {
+        @Override
+        protected String map(final ResultSet rs, final int[] columns) throws SQLException {
+            return rs.getLong(columns[1]) + ":" + rs.getString(columns[0]);
+        }
+    };
+
+    @Test
+    public void testIteration() throws Exception {
+        final List<Object[]> rows = makeRows(2345);
+        final FakeJdbc.State state = new FakeJdbc.State();
+        final ResultSet rs = FakeJdbc.resultSet(state, new String[]{"ID", "NAME", "AMOUNT"}, rows);
+        final List<String> result = new ArrayList<>();
+        try (PrefetchingJdbcIssuer<String> it = new PrefetchingJdbcIssuer<>(FakeJdbc.connection(state), FakeJdbc.statement(state), rs,
+                MAPPER.bind(rs.getMetaData()), 100, 2, null)) {
+            Assert.assertEquals(100, state.fetchSize);
+            Assert.assertEquals("0:name 0", it.readAhead());
+            while (it.hasNext()) {
+                result.add(it.next());
+            }
+            Assert.assertFalse(it.hasNext());
+            Assert.assertNotSame(Thread.currentThread(), state.readerThread);
+        }
+        Assert.assertEquals(rows.size(), result.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Assert.assertEquals(i + ":name " + i, result.get(i));
+        }
+        Assert.assertTrue(state.resultSetClosed && state.statementClosed && state.connectionClosed);
+    }
+
+    @Test
+    public void testEarlyClose() throws Exception {
+        final FakeJdbc.State state = new FakeJdbc.State();
+        final ResultSet rs = FakeJdbc.resultSet(state, new String[]{"ID", "NAME", "AMOUNT"}, makeRows(100000));
+        final PrefetchingJdbcIssuer<String> it = new PrefetchingJdbcIssuer<>(FakeJdbc.connection(state), FakeJdbc.statement(state), rs,
+                MAPPER.bind(rs.getMetaData()), 10, 3, null);
+        Assert.assertEquals("0:name 0", it.next());
+        Thread.sleep(50);
+        // фоновая задача не должна читать больше чем помещается в очередь.
+        Assert.assertTrue(String.valueOf(state.rowsRead), state.rowsRead <= 10 * 5);
+        it.close();
+        Assert.assertFalse(it.hasNext());
+        Assert.assertTrue(state.rowsRead < 100000);
+        Assert.assertTrue(state.resultSetClosed && state.statementClosed && state.connectionClosed);
+    }
+
+    @Test
+    public void testCloseBeforeStart() throws Exception {
+        final FakeJdbc.State state = new FakeJdbc.State();
+        final ResultSet rs = FakeJdbc.resultSet(state, new String[]{"ID", "NAME", "AMOUNT"}, makeRows(10));
+        final List<Runnable> tasks = new ArrayList<>();
+        // исполнитель, лишь ставящий задачи в очередь: закрытие итератора не должно дожидаться запуска фоновой задачи.
+        final Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                tasks.add(command);
+            }
+        };
+        final PrefetchingJdbcIssuer<String> it = new PrefetchingJdbcIssuer<>(FakeJdbc.connection(state), FakeJdbc.statement(state), rs,
+                MAPPER.bind(rs.getMetaData()), 10, 3, executor);
+        it.close();
+        Assert.assertTrue(state.resultSetClosed && state.statementClosed && state.connectionClosed);
+        Assert.assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        Assert.assertEquals(0, state.rowsRead);
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        final FakeJdbc.State state = new FakeJdbc.State();
+        final ResultSet rs = FakeJdbc.resultSet(state, new String[]{"ID", "NAME", "AMOUNT"}, makeRows(1000));
+        final RowMapper<String> mapper = MAPPER.bind(rs.getMetaData());
+        final int[] count = new int[1];
+        try (PrefetchingJdbcIssuer<String> it = new PrefetchingJdbcIssuer<>(null, null, rs, new RowMapper<String>() {
+            @Override
+            public String map(final ResultSet rs) throws SQLException {
+                if (rs.getLong("ID") == 555)
+                    throw new SQLException("broken row");
+                return mapper.map(rs);
+            }
+        }, 50, 2, null)) {
+            try {
+                while (it.hasNext()) {
+                    it.next();
+                    count[0]++;
+                }
+                Assert.fail("Exception expected");
+            } catch (SQLException e) {
+                Assert.assertEquals("broken row", e.getMessage());
+            }
+        }
+        Assert.assertEquals(555, count[0]);
+
+        try {
+            new IndexedRowMapper<Object>("ID", "UNKNOWN") {
+                @Override
+                protected Object map(final ResultSet rs, final int[] columns) {
+                    return null;
+                }
+            }.bind(rs.getMetaData());
+            Assert.fail("Exception expected");
+        } catch (SQLException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("UNKNOWN"));
+        }
+    }
+
+
+    private static List<Object[]> makeRows(final int count) {
+        final List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{(long) i, "name " + i, i * 10L});
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,149 @@
+package org.echosoft.common.data.db;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.Callable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class QueryTest {
+
+    @Test
+    public void testSeekPredicate() throws Exception {
+        Assert.assertEquals("", ParameterizedSQL.makeSeekPredicate(new SortCriterion[0]));
+        Assert.assertEquals("(id > :seek1)", ParameterizedSQL.makeSeekPredicate(new SortCriterion[]{new SortCriterion("id", true)}));
+
+        final Query query = new Query().setRangeSize(20);
+        query.addSortCriterionLast("t.created", false).addSortCriterionLast("name", true).addSortCriterionLast("id", true);
+        final String predicate = ParameterizedSQL.makeSeekPredicate(query.getSortCriteriaAsArray());
+        Assert.assertEquals("(t.created < :seek1 OR (t.created = :seek1 AND name > :seek2) OR (t.created = :seek1 AND name = :seek2 AND id > :seek3))", predicate);
+
+        final ParameterizedSQL sql = new ParameterizedSQL("SELECT * FROM orders t WHERE " + predicate + " ORDER BY t.created DESC, name, id");
+        Assert.assertEquals(Arrays.asList("seek1", "seek1", "seek2", "seek1", "seek2", "seek3"), sql.getParamNames());
+
+        final Date created = new Date(1234567890L);
+        query.addParam("other", 1).setRangeStart(41);
+        Assert.assertFalse(query.isSeekMode());
+        query.seekAfter(created, "abc", 42L);
+        Assert.assertTrue(query.isSeekMode());
+        Assert.assertEquals(0, query.getRangeStart());
+        Assert.assertEquals(created, query.getParams().get("seek1"));
+        Assert.assertEquals("abc", query.getParams().get("seek2"));
+        Assert.assertEquals(42L, query.getParams().get("seek3"));
+        Assert.assertTrue(sql.compileNonParameterizedQuery(query.getParams()).endsWith("name = 'abc' AND id > 42)) ORDER BY t.created DESC, name, id"));
+
+        query.clearSeek();
+        Assert.assertFalse(query.isSeekMode());
+        Assert.assertEquals(Collections.<String, Object>singletonMap("other", 1), query.getParams());
+
+        try {
+            query.seekAfter("abc", 42L);
+            Assert.fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            // количество значений не соответствует количеству критериев сортировки.
+        }
+        try {
+            ParameterizedSQL.makeSeekPredicate(new SortCriterion[]{new SortCriterion("id; DROP TABLE orders", true)});
+            Assert.fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("DROP"));
+        }
+    }
+
+    @Test
+    public void testContinuation() throws Exception {
+        final Timestamp ts = new Timestamp(1234567890123L);
+        ts.setNanos(123456789);
+        final Object[] values = {"строка", 7, 8L, 1.5d, new BigDecimal("123.4500"), true, ts, new java.sql.Date(86400000L), new Date(5L)};
+        final int[] calls = new int[1];
+        final PagedQueryResult<String> page = new PagedQueryResult<>(Arrays.asList("a", "b"), 2, values, new Callable<Long>() {
+            @Override
+            public Long call() {
+                calls[0]++;
+                return 5L;
+            }
+        }, true);
+        Assert.assertTrue(page.hasMore());
+        Assert.assertEquals(0, calls[0]);
+        Assert.assertEquals(3, page.getPagesCount());
+        Assert.assertEquals(5, page.getTotalSize());
+        Assert.assertEquals(1, calls[0]);
+        Assert.assertTrue(page.isTotalSizeEstimated());
+
+        final Query query = new Query();
+        for (int i = 0; i < values.length; i++) {
+            query.addSortCriterionLast("f" + i, true);
+        }
+        query.continueAfter(page.getContinuationToken());
+        final Object[] decoded = query.getSeekValues();
+        values[1] = 7L;
+        Assert.assertArrayEquals(values, decoded);
+        Assert.assertEquals(Timestamp.class, decoded[6].getClass());
+        Assert.assertEquals(java.sql.Date.class, decoded[7].getClass());
+
+        final PagedQueryResult<String> last = new PagedQueryResult<>(Collections.singletonList("c"), 2, null, null, false);
+        Assert.assertFalse(last.hasMore());
+        Assert.assertNull(last.getContinuationToken());
+        Assert.assertEquals(PagedQueryResult.UNKNOWN_SIZE, last.getTotalSize());
+        Assert.assertEquals(0, last.getPagesCount());
+        query.continueAfter(null);
+        Assert.assertFalse(query.isSeekMode());
+        Assert.assertFalse(query.hasParams());
+
+        try {
+            query.continueAfter(new PagedQueryResult<>(Collections.emptyList(), 2, new Object[]{1L}, null, false).getContinuationToken());
+            Assert.fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            // маркер не соответствует критериям сортировки.
+        }
+        try {
+            query.continueAfter("not a token!");
+            Assert.fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Invalid continuation token", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSeekReset() throws Exception {
+        final Query query = new Query();
+        query.addSortCriterionLast("a", true).addSortCriterionLast("b", false);
+        query.seekAfter(1, 2);
+        Assert.assertEquals(2, query.getParams().size());
+        query.setSortCriteria("a", true);
+        Assert.assertFalse(query.isSeekMode());
+        Assert.assertFalse(query.hasParams());
+
+        // повторный вызов seekAfter не должен оставлять параметры от предыдущих значений.
+        query.addSortCriterionLast("b", true).seekAfter(1, 2);
+        query.toggleSortCriterion("b");
+        query.addSortCriterionFirst("c", true, 2);
+        query.seekAfter(3, 4);
+        Assert.assertEquals(2, query.getParams().size());
+        Assert.assertEquals(3, query.getParams().get("seek1"));
+        query.addSortCriterionLast("a", true);
+        Assert.assertFalse(query.isSeekMode());
+        query.seekAfter(5, 6).toggleSortCriterion("a");
+        Assert.assertNull(query.getSeekValues());
+        Assert.assertFalse(query.hasParams());
+
+        // возврат к выборке по номерам записей также отменяет режим выборки по ключу.
+        query.addParam("other", 1).seekAfter(7, 8).setRangeSize(20);
+        query.selectPage(3, 20);
+        Assert.assertFalse(query.isSeekMode());
+        Assert.assertEquals(41, query.getRangeStart());
+        Assert.assertEquals(1, query.getParams().size());
+        query.seekAfter(9, 10).setRangeStart(61);
+        Assert.assertFalse(query.isSeekMode());
+        Assert.assertEquals(61, query.getRangeStart());
+        Assert.assertNull(query.getParams().get("seek1"));
+        Assert.assertEquals(1, query.getParams().get("other"));
+    }
+}
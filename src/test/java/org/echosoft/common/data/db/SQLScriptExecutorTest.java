@@ -0,0 +1,204 @@
+package org.echosoft.common.data.db;
+
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class SQLScriptExecutorTest {
+
+    private static final String SCRIPT =
+            "CREATE TABLE a (id INT);\n" +
+            "CREATE TABLE b (id INT);\n" +
+            "INSERT INTO a VALUES (1);   -- first row\n" +
+            "insert into a values (2);\n" +
+            "--#group\n" +
+            "INSERT INTO a VALUES (10);\n" +
+            "INSERT INTO a VALUES (11);\n" +
+            "INSERT INTO a VALUES (12);\n" +
+            "UPDATE a SET id = id + 1;\n" +
+            "--#group\n" +
+            "INSERT INTO b VALUES (20);\n" +
+            "--#end\n" +
+            "CREATE INDEX a_idx ON a(id);\n" +
+            "BEGIN\n" +
+            "  NULL;\n" +
+            "END;\n";
+
+    @Test
+    public void testExecution() throws Exception {
+        final FakeJdbc.State state = new FakeJdbc.State();
+        final List<SQLScriptExecutor.ScriptStatement> executed = Collections.synchronizedList(new ArrayList<SQLScriptExecutor.ScriptStatement>());
+        final SQLScriptExecutor executor = new SQLScriptExecutor(FakeJdbc.dataSource(state), 2, null);
+        executor.setListener(new SQLScriptExecutor.Listener() {
+            @Override
+            public void onExecuted(final List<SQLScriptExecutor.ScriptStatement> statements, final long nanos) {
+                Assert.assertTrue(nanos >= 0);
+                executed.addAll(statements);
+            }
+        });
+        Assert.assertEquals(11, executor.execute(new StringReader(SCRIPT)));
+        Assert.assertEquals(11, executor.getStatementsCount());
+        Assert.assertEquals(11, executed.size());
+        Assert.assertEquals(11, state.executedSql.size());
+        Assert.assertEquals("CREATE TABLE a (id INT)", state.executedSql.get(0));
+        Assert.assertEquals("insert into a values (2)", state.executedSql.get(3));
+        Assert.assertEquals("CREATE INDEX a_idx ON a(id)", state.executedSql.get(9));
+        Assert.assertTrue(state.executedSql.get(10).startsWith("BEGIN"));
+        Assert.assertTrue(state.executedSql.indexOf("INSERT INTO a VALUES (10)") < state.executedSql.indexOf("UPDATE a SET id = id + 1"));
+        Assert.assertEquals(3, state.openedConnections.get());
+        Assert.assertEquals(4, state.commits.get());
+        Assert.assertEquals(0, state.rollbacks.get());
+        // пакеты: {1, 2}, {10, 11}, {12, UPDATE}, {20}
+        Assert.assertEquals(4, executor.getBatchesCount());
+        Collections.sort(state.sqlBatchSizes);
+        Assert.assertEquals(Arrays.asList(1, 2, 2, 2), state.sqlBatchSizes);
+
+        for (SQLScriptExecutor.ScriptStatement stmt : executed) {
+            switch (stmt.getStatementNumber()) {
+                case 3:
+                    Assert.assertEquals(2, stmt.getRowNumber());
+                    Assert.assertEquals(0, stmt.getGroup());
+                    Assert.assertTrue(stmt.isDml());
+                    Assert.assertEquals(1, stmt.getUpdateCount());
+                    break;
+                case 8:
+                    Assert.assertEquals("UPDATE a SET id = id + 1", stmt.getSql());
+                    Assert.assertEquals(8, stmt.getRowNumber());
+                    Assert.assertEquals(1, stmt.getGroup());
+                    break;
+                case 9:
+                    Assert.assertEquals(10, stmt.getRowNumber());
+                    Assert.assertEquals(2, stmt.getGroup());
+                    break;
+                case 11:
+                    Assert.assertEquals(13, stmt.getRowNumber());
+                    Assert.assertEquals(0, stmt.getGroup());
+                    Assert.assertFalse(stmt.isDml());
+                    break;
+            }
+        }
+    }
+
+    @Test
+    public void testParallelGroups() throws Exception {
+        final FakeJdbc.State state = new FakeJdbc.State();
+        final CountDownLatch secondGroup = new CountDownLatch(1);
+        final boolean[] overlapped = new boolean[1];
+        final ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            final SQLScriptExecutor executor = new SQLScriptExecutor(FakeJdbc.dataSource(state), 1, pool);
+            executor.setListener(new SQLScriptExecutor.Listener() {
+                @Override
+                public void onExecuted(final List<SQLScriptExecutor.ScriptStatement> statements, final long nanos) {
+                    try {
+                        if (statements.get(0).getGroup() == 1) {
+                            // первая группа не может завершиться раньше, чем начнет выполняться вторая.
+                            overlapped[0] = secondGroup.await(5, TimeUnit.SECONDS);
+                        } else if (statements.get(0).getGroup() == 2) {
+                            secondGroup.countDown();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            Assert.assertEquals(3, executor.execute(new StringReader("--#group\nINSERT INTO a VALUES (1);\n--#group\nINSERT INTO b VALUES (2);\n--#end\nDROP TABLE c;\n--#group\n")));
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertTrue(overlapped[0]);
+        Assert.assertEquals("DROP TABLE c", state.executedSql.get(2));
+    }
+
+    @Test
+    public void testInterruptedWhileFinishing() throws Exception {
+        final FakeJdbc.State state = new FakeJdbc.State();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService pool = Executors.newFixedThreadPool(1);
+        final Throwable[] result = new Throwable[1];
+        try {
+            final SQLScriptExecutor executor = new SQLScriptExecutor(FakeJdbc.dataSource(state), 1, pool);
+            executor.setListener(new SQLScriptExecutor.Listener() {
+                @Override
+                public void onExecuted(final List<SQLScriptExecutor.ScriptStatement> statements, final long nanos) {
+                    if (statements.get(0).getGroup() == 1) {
+                        started.countDown();
+                        try {
+                            release.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            });
+            final Thread thread = new Thread() {
+                public void run() {
+                    try {
+                        executor.execute(new StringReader("--#group\nINSERT INTO a VALUES (1);\nINSERT INTO a VALUES (2);\n--#end\nDROP TABLE a;\n"));
+                    } catch (Throwable e) {
+                        result[0] = e;
+                    }
+                }
+            };
+            thread.start();
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            thread.interrupt();
+            // прерванное ожидание завершения секции должно отменить ее группы и дождаться их остановки ...
+            thread.join(200);
+            Assert.assertTrue(thread.isAlive());
+            release.countDown();
+            thread.join(5000);
+            Assert.assertFalse(thread.isAlive());
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertTrue(String.valueOf(result[0]), result[0] instanceof InterruptedException);
+        Assert.assertEquals(Collections.singletonList("INSERT INTO a VALUES (1)"), state.executedSql);
+        Assert.assertEquals(0, state.commits.get());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        FakeJdbc.State state = new FakeJdbc.State();
+        try {
+            new SQLScriptExecutor(FakeJdbc.dataSource(state)).execute(new StringReader("\n\nCREATE TABLE FAIL (id INT);\nCREATE TABLE b (id INT);"));
+            Assert.fail("Exception expected");
+        } catch (SQLException e) {
+            Assert.assertEquals("Statement #1 (line 3) failed: broken statement", e.getMessage());
+            Assert.assertEquals("42000", e.getSQLState());
+            Assert.assertEquals(17, e.getErrorCode());
+        }
+        Assert.assertTrue(state.executedSql.isEmpty());
+        Assert.assertEquals(1, state.rollbacks.get());
+        Assert.assertTrue(state.connectionClosed);
+
+        state = new FakeJdbc.State();
+        final StringBuilder script = new StringBuilder("--#group\nINSERT INTO a VALUES (1);\nINSERT INTO a VALUES ('FAIL');\n--#group\n");
+        for (int i = 0; i < 10000; i++) {
+            script.append("INSERT INTO b VALUES (").append(i).append(");\n");
+        }
+        script.append("--#end\nDROP TABLE a;\n");
+        try {
+            new SQLScriptExecutor(FakeJdbc.dataSource(state), 10, null).execute(new StringReader(script.toString()));
+            Assert.fail("Exception expected");
+        } catch (SQLException e) {
+            Assert.assertEquals("Statement #2 (line 3) failed: broken batch", e.getMessage());
+        }
+        Assert.assertFalse(state.executedSql.contains("DROP TABLE a"));
+        Assert.assertTrue(state.rollbacks.get() >= 1);
+    }
+}
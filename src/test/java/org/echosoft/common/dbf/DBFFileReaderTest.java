@@ -0,0 +1,225 @@
+package org.echosoft.common.dbf;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class DBFFileReaderTest {
+
+    private static final Charset CHARSET = Charset.forName("cp866");
+
+    @Test
+    public void testSequentialAndSeek() throws Exception {
+        final byte[] content = makeTable(1000);
+        final File file = makeFile(content);
+        try (DBFFileReader reader = new DBFFileReader(file, CHARSET, 1000)) {
+            Assert.assertEquals(1000, reader.getRecordsCount());
+            final DBFReader expected = new DBFReader(new ByteArrayInputStream(content), CHARSET);
+            while (expected.next()) {
+                Assert.assertTrue(reader.next());
+                Assert.assertEquals(expected.getCurrentRecord(), reader.getCurrentRecord());
+                Assert.assertEquals(expected.isRecordDeleted(), reader.isRecordDeleted());
+                for (int i = 0; i < reader.getFields().length; i++) {
+                    Assert.assertEquals(expected.getObject(i), reader.getObject(i));
+                }
+                Assert.assertEquals(expected.getInteger(0).intValue(), reader.getInt(0));
+                Assert.assertEquals(expected.getBigDecimal(2).doubleValue(), reader.getDouble(2), 0);
+                Assert.assertEquals(expected.getBoolean(4) ? 1 : 0, reader.getLong(4));
+            }
+            Assert.assertFalse(reader.next());
+
+            Assert.assertTrue(reader.seek(500));
+            Assert.assertEquals(500, reader.getInt(reader.getFieldIndex("ID")));
+            Assert.assertEquals("Record #499", reader.getString("NAME"));
+            Assert.assertTrue(reader.seek(3));
+            Assert.assertEquals(3L, reader.getLong(0));
+            Assert.assertEquals(new BigDecimal("20.02"), reader.getBigDecimal("AMOUNT"));
+            Assert.assertEquals(20.02, reader.getDouble(2), 0);
+            Assert.assertTrue(reader.next());
+            Assert.assertEquals(4, reader.getInt(0));
+            Assert.assertFalse(reader.seek(1001));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testProjectionAndNulls() throws Exception {
+        final byte[] content = makeTable(10);
+        // во второй записи значения полей ID и AMOUNT отсутствуют, а сама запись помечена как удаленная ...
+        final int headerSize = 32 + 32 * 5 + 1;
+        final int recordSize = 1 + 9 + 40 + 15 + 8 + 1;
+        content[headerSize + recordSize] = 0x2A;
+        Arrays.fill(content, headerSize + recordSize + 1, headerSize + recordSize + 10, (byte) ' ');
+        Arrays.fill(content, headerSize + recordSize + 50, headerSize + recordSize + 65, (byte) ' ');
+        final File file = makeFile(content);
+        try (DBFFileReader reader = new DBFFileReader(file, CHARSET)) {
+            reader.setProjection("AMOUNT", "ID");
+            Assert.assertTrue(reader.seek(2));
+            Assert.assertTrue(reader.isRecordDeleted());
+            Assert.assertTrue(reader.isNull(0));
+            Assert.assertEquals(0, reader.getInt(0));
+            Assert.assertNull(reader.getInteger(0));
+            Assert.assertEquals(0, reader.getDouble(2), 0);
+            try {
+                reader.getString(1);
+                Assert.fail("Field NAME is not projected");
+            } catch (DBFException e) { /* all is ok. */ }
+            Assert.assertTrue(reader.next());
+            Assert.assertFalse(reader.isRecordDeleted());
+            Assert.assertEquals(3, reader.getInt(0));
+            reader.setProjection();
+            Assert.assertEquals("Record #2", reader.getString(1));
+            try {
+                reader.getInt(1);
+                Assert.fail("Field NAME is not a number");
+            } catch (NumberFormatException | DBFException e) { /* all is ok. */ }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testPaddingAndFraction() throws Exception {
+        final byte[] content = makeTable(3);
+        final int headerSize = 32 + 32 * 5 + 1;
+        final int recordSize = 1 + 9 + 40 + 15 + 8 + 1;
+        // в первой записи поля ID и AMOUNT заполнены нулевыми байтами, во второй значения дополнены нулевыми байтами справа ...
+        Arrays.fill(content, headerSize + 1, headerSize + 10, (byte) 0);
+        Arrays.fill(content, headerSize + 50, headerSize + 65, (byte) 0);
+        writeText(content, headerSize + recordSize + 1, "\0\0  42\0\0\0", 9, false);
+        writeText(content, headerSize + recordSize + 50, "  -7.50\0", 15, true);
+        // в третьей записи целочисленное значение содержит нулевую дробную часть ...
+        writeText(content, headerSize + 2 * recordSize + 1, "12.00", 9, true);
+        writeText(content, headerSize + 2 * recordSize + 50, "12.50", 15, true);
+        final File file = makeFile(content);
+        try (DBFFileReader reader = new DBFFileReader(file, CHARSET)) {
+            Assert.assertTrue(reader.next());
+            Assert.assertTrue(reader.isNull(0));
+            Assert.assertNull(reader.getInteger(0));
+            Assert.assertNull(reader.getObject(0));
+            Assert.assertEquals(0, reader.getInt(0));
+            Assert.assertEquals(0, reader.getLong(0));
+            Assert.assertNull(reader.getBigDecimal(2));
+            Assert.assertEquals(0, reader.getDouble(2), 0);
+
+            Assert.assertTrue(reader.next());
+            Assert.assertEquals(Integer.valueOf(42), reader.getInteger(0));
+            Assert.assertEquals(Long.valueOf(42), reader.getObject(0));
+            Assert.assertEquals(42, reader.getInt(0));
+            Assert.assertEquals(42, reader.getLong(0));
+            Assert.assertEquals(new BigDecimal("-7.50"), reader.getBigDecimal(2));
+            Assert.assertEquals(-7.5, reader.getDouble(2), 0);
+
+            Assert.assertTrue(reader.next());
+            Assert.assertEquals(Integer.valueOf(12), reader.getInteger(0));
+            Assert.assertEquals(Long.valueOf(12), reader.getObject(0));
+            Assert.assertEquals(12, reader.getInt(0));
+            Assert.assertEquals(12, reader.getLong(0));
+            try {
+                reader.getLong(2);
+                Assert.fail("Value has a fractional part");
+            } catch (DBFException e) { /* all is ok. */ }
+            try {
+                reader.getInteger(2);
+                Assert.fail("Value has a fractional part");
+            } catch (DBFException e) { /* all is ok. */ }
+            Assert.assertEquals(12.5, reader.getDouble(2), 0);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testTruncatedFile() throws Exception {
+        final byte[] content = makeTable(10);
+        final File file = makeFile(Arrays.copyOf(content, content.length - 100));
+        try (DBFFileReader reader = new DBFFileReader(file, CHARSET)) {
+            Assert.assertTrue(reader.seek(8));
+            try {
+                reader.seek(10);
+                Assert.fail("Premature end of file expected");
+            } catch (DBFException e) { /* all is ok. */ }
+        } finally {
+            file.delete();
+        }
+    }
+
+
+    static File makeFile(final byte[] content) throws Exception {
+        final File file = File.createTempFile("test", ".dbf");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    /**
+     * Формирует содержимое .DBF таблицы (dBASE III) с полями <code>ID N(9)</code>, <code>NAME C(40)</code>, <code>AMOUNT N(15,2)</code>,
+     * <code>CREATED D</code>, <code>ACTIVE L</code> и указанным количеством записей.
+     */
+    static byte[] makeTable(final int records) {
+        final String[] names = {"ID", "NAME", "AMOUNT", "CREATED", "ACTIVE"};
+        final char[] types = {'N', 'C', 'N', 'D', 'L'};
+        final int[] sizes = {9, 40, 15, 8, 1};
+        final int[] precisions = {0, 0, 2, 0, 0};
+        int recordSize = 1;
+        for (int size : sizes) recordSize += size;
+        final int headerSize = 32 + 32 * names.length + 1;
+        final byte[] result = new byte[headerSize + recordSize * records + 1];
+        result[0] = 0x03;
+        result[1] = 120;
+        result[2] = 1;
+        result[3] = 1;
+        writeInt(result, 4, records);
+        result[8] = (byte) headerSize;
+        result[9] = (byte) (headerSize >>> 8);
+        result[10] = (byte) recordSize;
+        result[11] = (byte) (recordSize >>> 8);
+        result[29] = 0x26;
+        for (int i = 0; i < names.length; i++) {
+            final int offset = 32 + 32 * i;
+            final byte[] name = names[i].getBytes(CHARSET);
+            System.arraycopy(name, 0, result, offset, name.length);
+            result[offset + 11] = (byte) types[i];
+            result[offset + 16] = (byte) sizes[i];
+            result[offset + 17] = (byte) precisions[i];
+        }
+        result[headerSize - 1] = 0x0D;
+        int pos = headerSize;
+        for (int r = 0; r < records; r++) {
+            result[pos++] = ' ';
+            pos = writeText(result, pos, Integer.toString(r + 1), sizes[0], true);
+            pos = writeText(result, pos, "Record #" + r, sizes[1], false);
+            pos = writeText(result, pos, (r * 10) + "." + (r % 100 < 10 ? "0" : "") + (r % 100), sizes[2], true);
+            pos = writeText(result, pos, String.format("2020%02d%02d", r % 12 + 1, r % 28 + 1), sizes[3], false);
+            pos = writeText(result, pos, (r & 1) == 0 ? "T" : "F", sizes[4], false);
+        }
+        result[pos] = 0x1A;
+        return result;
+    }
+
+    private static int writeText(final byte[] buf, final int pos, final String value, final int size, final boolean alignRight) {
+        final byte[] data = value.getBytes(CHARSET);
+        Arrays.fill(buf, pos, pos + size, (byte) ' ');
+        System.arraycopy(data, 0, buf, alignRight ? pos + size - data.length : pos, data.length);
+        return pos + size;
+    }
+
+    private static void writeInt(final byte[] buf, final int offset, final int value) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >>> 8);
+        buf[offset + 2] = (byte) (value >>> 16);
+        buf[offset + 3] = (byte) (value >>> 24);
+    }
+}
@@ -0,0 +1,182 @@
+package org.echosoft.common.dbf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.Random;
+
+import org.echosoft.common.utils.StringUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class DBFWriterTest {
+
+    private static final Charset CHARSET = Charset.forName("cp866");
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final File file = File.createTempFile("test", ".dbf");
+        try {
+            final Date date = StringUtil.parseISODate("2020-03-15");
+            try (DBFWriter writer = new DBFWriter(file, CHARSET, 4096)) {
+                Assert.assertEquals(0, writer.addNumericField("ID", 9, 0));
+                Assert.assertEquals(1, writer.addCharField("NAME", 10));
+                Assert.assertEquals(2, writer.addNumericField("AMOUNT", 15, 2));
+                Assert.assertEquals(3, writer.addDateField("CREATED"));
+                Assert.assertEquals(4, writer.addLogicalField("ACTIVE"));
+                for (int i = 0; i < 1000; i++) {
+                    writer.setLong(0, i + 1);
+                    writer.setString(1, "Запись " + i);
+                    writer.setDouble(2, i * 10.25 - 5);
+                    writer.setDate(3, date);
+                    writer.setBoolean(4, (i & 1) == 0);
+                    writer.writeRecord();
+                }
+                // значения, которые не были явно заданы, остаются пустыми ...
+                writer.setObject(writer.getFieldIndex("NAME"), "очень длинное значение");
+                writer.setObject(2, new BigDecimal("-12345.678"));
+                writer.writeRecord();
+                writer.setLong(2, -7);
+                writer.setString(0, " 42 ");
+                writer.writeRecord();
+                try {
+                    writer.addCharField("OTHER", 5);
+                    Assert.fail("Table structure can't be changed");
+                } catch (DBFException e) { /* all is ok. */ }
+                try {
+                    writer.setLong(0, 1234567890L);
+                    Assert.fail("Value doesn't fit into field");
+                } catch (DBFException e) { /* all is ok. */ }
+                try {
+                    writer.setDate(0, date);
+                    Assert.fail("Field ID is not a date");
+                } catch (DBFException e) { /* all is ok. */ }
+                writer.setNull(0);
+                Assert.assertEquals(1002, writer.getRecordsCount());
+            }
+
+            try (InputStream in = new FileInputStream(file)) {
+                final DBFReader reader = new DBFReader(in, Charset.forName("cp1251"));
+                Assert.assertEquals(CHARSET, reader.getCharset());
+                Assert.assertEquals(1002, reader.getRecordsCount());
+                for (int i = 0; i < 1000; i++) {
+                    Assert.assertTrue(reader.next());
+                    Assert.assertFalse(reader.isRecordDeleted());
+                    Assert.assertEquals(Integer.valueOf(i + 1), reader.getInteger("ID"));
+                    Assert.assertEquals("Запись " + i, reader.getString("NAME"));
+                    Assert.assertEquals(BigDecimal.valueOf(i * 10.25 - 5).setScale(2), reader.getBigDecimal("AMOUNT"));
+                    Assert.assertEquals(date, reader.getDate("CREATED"));
+                    Assert.assertEquals((i & 1) == 0, reader.getBoolean("ACTIVE"));
+                }
+                Assert.assertTrue(reader.next());
+                Assert.assertNull(reader.getObject("ID"));
+                Assert.assertEquals("очень длин", reader.getString("NAME"));
+                Assert.assertEquals(new BigDecimal("-12345.68"), reader.getBigDecimal("AMOUNT"));
+                Assert.assertNull(reader.getDate("CREATED"));
+                Assert.assertNull(reader.getBoolean("ACTIVE"));
+                Assert.assertTrue(reader.next());
+                Assert.assertEquals(Integer.valueOf(42), reader.getInteger("ID"));
+                Assert.assertNull(reader.getString("NAME"));
+                Assert.assertEquals(new BigDecimal("-7.00"), reader.getBigDecimal("AMOUNT"));
+                Assert.assertFalse(reader.next());
+            }
+            Assert.assertEquals(32 + 32 * 5 + 1 + 1002 * (1 + 9 + 10 + 15 + 8 + 1) + 1, file.length());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+        final File file = File.createTempFile("test", ".dbf");
+        try {
+            final double[] values = {1.005, 2.675, -1.005, 0.125, -0.125, 1e-9, 12345.0, -0.0, 99999.994};
+            try (DBFWriter writer = new DBFWriter(file, CHARSET, 4096)) {
+                writer.addNumericField("VALUE", 9, 2);
+                writer.addNumericField("COUNT", 5, 0);
+                for (double value : values) {
+                    writer.setDouble(0, value);
+                    writer.setLong(1, 12345);
+                    try {
+                        writer.setLong(1, -12345);
+                        Assert.fail("Value doesn't fit into field");
+                    } catch (DBFException e) { /* all is ok. */ }
+                    try {
+                        writer.setDouble(0, 1e7);
+                        Assert.fail("Value doesn't fit into field");
+                    } catch (DBFException e) { /* all is ok. */ }
+                    writer.writeRecord();
+                }
+            }
+            try (DBFFileReader reader = new DBFFileReader(file, CHARSET)) {
+                for (double value : values) {
+                    Assert.assertTrue(reader.next());
+                    Assert.assertEquals(BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP), reader.getBigDecimal("VALUE"));
+                    Assert.assertEquals(Integer.valueOf(12345), reader.getInteger("COUNT"));
+                }
+                Assert.assertFalse(reader.next());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRounding() throws Exception {
+        final File file = File.createTempFile("test", ".dbf");
+        try {
+            final Random rnd = new Random(42);
+            final double[] values = new double[3000];
+            for (int i = 0; i < values.length; i++) {
+                switch (i % 3) {
+                    case 0: values[i] = (rnd.nextInt(2000000) - 1000000) / 1000.0; break;        // значения на границе округления
+                    case 1: values[i] = (rnd.nextDouble() - 0.5) * 1e6; break;
+                    default: values[i] = (rnd.nextLong() % 100000000000L) / 100000.0;
+                }
+            }
+            try (DBFWriter writer = new DBFWriter(file, CHARSET, 4096)) {
+                writer.addNumericField("V2", 18, 2);
+                writer.addNumericField("V4", 18, 4);
+                for (double value : values) {
+                    writer.setDouble(0, value);
+                    writer.setDouble(1, value);
+                    writer.writeRecord();
+                }
+            }
+            try (DBFFileReader reader = new DBFFileReader(file, CHARSET)) {
+                for (double value : values) {
+                    Assert.assertTrue(reader.next());
+                    Assert.assertEquals(String.valueOf(value), BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP), reader.getBigDecimal("V2"));
+                    Assert.assertEquals(String.valueOf(value), BigDecimal.valueOf(value).setScale(4, RoundingMode.HALF_UP), reader.getBigDecimal("V4"));
+                }
+                Assert.assertFalse(reader.next());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testEmptyTable() throws Exception {
+        final File file = File.createTempFile("test", ".dbf");
+        try {
+            try (DBFWriter writer = new DBFWriter(file, Charset.forName("UTF-8"))) {
+                writer.addCharField("NAME", 200);
+            }
+            try (DBFFileReader reader = new DBFFileReader(file, Charset.forName("UTF-8"))) {
+                Assert.assertEquals(0, reader.getRecordsCount());
+                Assert.assertEquals(200, reader.getFields()[0].getSize());
+                Assert.assertFalse(reader.next());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
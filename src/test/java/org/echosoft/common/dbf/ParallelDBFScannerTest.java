@@ -0,0 +1,138 @@
+package org.echosoft.common.dbf;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.echosoft.common.collections.Consumer;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class ParallelDBFScannerTest {
+
+    private static final Charset CHARSET = Charset.forName("cp866");
+    private static final int HEADER_SIZE = 32 + 32 * 5 + 1;
+    private static final int RECORD_SIZE = 1 + 9 + 40 + 15 + 8 + 1;
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        final int records = 10000;
+        final byte[] content = DBFFileReaderTest.makeTable(records);
+        for (int r = 0; r < records; r += 7) {
+            content[HEADER_SIZE + r * RECORD_SIZE] = 0x2A;
+        }
+        final File file = DBFFileReaderTest.makeFile(content);
+        try {
+            final ParallelDBFScanner scanner = new ParallelDBFScanner(file, CHARSET);
+            Assert.assertEquals(records, scanner.getRecordsCount());
+            scanner.setRangeSize(1000);
+            scanner.setProjection("ID", "CREATED");
+            final BitSet seen = new BitSet();
+            final AtomicLong sum = new AtomicLong();
+            final long cnt = scanner.process(pool, true, new Consumer<DBFFileReader>() {
+                @Override
+                public boolean consume(final DBFFileReader reader) throws Exception {
+                    final int id = reader.getInt(0);
+                    Assert.assertEquals(reader.getCurrentRecord(), id);
+                    Assert.assertNotNull(reader.getDate(3));
+                    synchronized (seen) {
+                        Assert.assertFalse(seen.get(id));
+                        seen.set(id);
+                    }
+                    sum.addAndGet(id);
+                    return true;
+                }
+            });
+            long expectedSum = 0;
+            int expectedCnt = 0;
+            for (int r = 0; r < records; r++) {
+                if (r % 7 != 0) {
+                    expectedSum += r + 1;
+                    expectedCnt++;
+                }
+            }
+            Assert.assertEquals(expectedCnt, cnt);
+            Assert.assertEquals(expectedCnt, seen.cardinality());
+            Assert.assertEquals(expectedSum, sum.get());
+
+            final long all = scanner.process(pool, false, new Consumer<DBFFileReader>() {
+                @Override
+                public boolean consume(final DBFFileReader reader) {
+                    return true;
+                }
+            });
+            Assert.assertEquals(records, all);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testStopAndErrors() throws Exception {
+        final File file = DBFFileReaderTest.makeFile(DBFFileReaderTest.makeTable(5000));
+        try {
+            final ParallelDBFScanner scanner = new ParallelDBFScanner(file, CHARSET);
+            scanner.setRangeSize(1024);
+            final long cnt = scanner.process(pool, false, new Consumer<DBFFileReader>() {
+                @Override
+                public boolean consume(final DBFFileReader reader) {
+                    return reader.getCurrentRecord() % 1024 != 10;
+                }
+            });
+            Assert.assertTrue(String.valueOf(cnt), cnt < 5000);
+            try {
+                scanner.process(pool, false, new Consumer<DBFFileReader>() {
+                    @Override
+                    public boolean consume(final DBFFileReader reader) throws Exception {
+                        return reader.getString("NAME").length() > 0 && reader.getDate(1) != null;
+                    }
+                });
+                Assert.fail("Field NAME can't be converted to date");
+            } catch (DBFException e) { /* all is ok. */ }
+
+            // после выхода из метода обработчик уже не должен вызываться ни одним из потоков пула ...
+            final AtomicInteger active = new AtomicInteger();
+            try {
+                scanner.process(pool, false, new Consumer<DBFFileReader>() {
+                    @Override
+                    public boolean consume(final DBFFileReader reader) throws Exception {
+                        active.incrementAndGet();
+                        try {
+                            if (reader.getCurrentRecord() == 2000)
+                                throw new IllegalStateException("test");
+                            Thread.sleep(1);
+                            return true;
+                        } finally {
+                            active.decrementAndGet();
+                        }
+                    }
+                });
+                Assert.fail("Consumer failure expected");
+            } catch (IllegalStateException e) {
+                Assert.assertEquals("test", e.getMessage());
+            }
+            Assert.assertEquals(0, active.get());
+        } finally {
+            file.delete();
+        }
+    }
+}
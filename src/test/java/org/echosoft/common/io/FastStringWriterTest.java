@@ -48,4 +48,25 @@ public class FastStringWriterTest {
             }
         }
     }
+
+    @Test
+    public void testReset() {
+        final FastStringWriter out = new FastStringWriter(4);
+        out.write("abcdefghij");
+        final int capacity = out.capacity();
+        out.reset();
+        Assert.assertEquals(0, out.length());
+        Assert.assertEquals(capacity, out.capacity());
+        out.write("xyz");
+        Assert.assertEquals("xyz", out.toString());
+
+        out.write("0123456789012345678901234567890123456789");
+        out.reset(64);
+        Assert.assertTrue(out.capacity() >= 43 && out.capacity() <= 64);
+        out.write(new char[100], 0, 100);
+        out.reset(16);
+        Assert.assertEquals(16, out.capacity());
+        out.write("abc");
+        Assert.assertEquals("abc", out.toString());
+    }
 }
@@ -0,0 +1,72 @@
+package org.echosoft.common.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class SegmentedStringWriterTest {
+
+    @Test
+    public void testWrite() throws Exception {
+        final Random rnd = new Random(1);
+        final StringBuilder expected = new StringBuilder();
+        final SegmentedStringWriter out = new SegmentedStringWriter(16);
+        for (int i = 0; i < 2000; i++) {
+            final String text = "chunk-" + i + (i % 7 == 0 ? "0123456789012345678901234567890123456789" : "");
+            switch (rnd.nextInt(5)) {
+                case 0: out.write(text); expected.append(text); break;
+                case 1: out.write(text.toCharArray(), 1, text.length() - 1); expected.append(text, 1, text.length()); break;
+                case 2: out.append(new StringBuilder(text), 2, 5); expected.append(text, 2, 5); break;
+                case 3: out.write(text.charAt(0)); expected.append(text.charAt(0)); break;
+                default: out.write(text, 3, text.length() - 3); expected.append(text, 3, text.length());
+            }
+        }
+        out.write((String) null);
+        expected.append("null");
+        Assert.assertEquals(expected.length(), out.length());
+        Assert.assertEquals(expected.toString(), out.toString());
+        for (int i = 0; i < expected.length(); i += 13) {
+            Assert.assertEquals(expected.charAt(i), out.charAt(i));
+        }
+        Assert.assertEquals(expected.substring(10, 1000), out.subSequence(10, 1000));
+        Assert.assertEquals("", out.subSequence(15, 15));
+        try {
+            out.charAt(out.length());
+            Assert.fail();
+        } catch (IndexOutOfBoundsException e) { /* all is ok. */ }
+
+        final StringWriter sw = new StringWriter();
+        out.writeOut(sw);
+        Assert.assertEquals(expected.toString(), sw.toString());
+
+        out.reset();
+        Assert.assertEquals(0, out.length());
+        out.write("abc");
+        Assert.assertEquals("abc", out.toString());
+    }
+
+    @Test
+    public void testWriteOutEncoded() throws Exception {
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            expected.append("значение 😀 ").append(i).append('\n');
+        }
+        // суррогатные пары оказываются на границах сегментов.
+        for (int segmentSize : new int[]{16, 17, 64}) {
+            final SegmentedStringWriter out = new SegmentedStringWriter(segmentSize);
+            out.write(expected.toString());
+            for (String charset : new String[]{"UTF-8", "UTF-16LE", "cp1251"}) {
+                final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                out.writeOut(buf, Charset.forName(charset));
+                Assert.assertArrayEquals(charset, expected.toString().getBytes(charset), buf.toByteArray());
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.echosoft.common.io;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class UTF8WriterTest {
+
+    private static final String TEXT = "Hello, мир! € 😀 été  ";
+
+    @Test
+    public void testStrings() throws Exception {
+        for (int bufSize = 16; bufSize < 40; bufSize++) {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            final UTF8Writer out = new UTF8Writer(bos, bufSize);
+            for (int i = 0; i < 10; i++) {
+                out.write(TEXT);
+            }
+            out.close();
+            Assert.assertArrayEquals(repeat(TEXT, 10).getBytes(StandardCharsets.UTF_8), bos.toByteArray());
+        }
+    }
+
+    @Test
+    public void testChars() throws Exception {
+        final char[] text = TEXT.toCharArray();
+        for (int offset = 0; offset < text.length; offset++) {
+            for (int len = 0; len < text.length - offset; len++) {
+                final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                final UTF8Writer out = new UTF8Writer(bos, 16);
+                out.write(text, offset, len);
+                out.close();
+                final String expected = new String(text, offset, len);
+                Assert.assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), bos.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testSurrogates() throws Exception {
+        // суррогатная пара разбита между двумя вызовами ...
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final UTF8Writer out = new UTF8Writer(bos);
+        out.write('\uD83D');
+        out.write("\uDE00!");
+        // некорректные суррогатные пары ...
+        out.write("\uD83Da\uDE00");
+        out.write('\uD83D');
+        out.close();
+        Assert.assertEquals("😀!?a??", new String(bos.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBytesAndBuffer() throws Exception {
+        final ByteBuffer target = ByteBuffer.allocate(256);
+        final UTF8Writer out = new UTF8Writer(target);
+        out.write("{");
+        out.writeBytes("\"имя\":".getBytes(StandardCharsets.UTF_8));
+        out.write("\"значение\"}");
+        out.flush();
+        final byte[] result = Arrays.copyOf(target.array(), target.position());
+        Assert.assertEquals("{\"имя\":\"значение\"}", new String(result, StandardCharsets.UTF_8));
+    }
+
+    private static String repeat(final String text, final int cnt) {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < cnt; i++) {
+            buf.append(text);
+        }
+        return buf.toString();
+    }
+}
@@ -1,18 +1,29 @@
 package org.echosoft.common.json;
 
+import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.TreeMap;
 
+import org.echosoft.common.collections.issuers.Issuer;
+import org.echosoft.common.collections.issuers.IteratorIssuer;
 import org.echosoft.common.data.misc.TreeNode;
 import org.echosoft.common.json.beans.Component;
 import org.echosoft.common.json.beans.Data;
 import org.echosoft.common.json.beans.Item;
 import org.echosoft.common.json.introspect.BeanSerializer;
+import org.echosoft.common.json.introspect.HandleMemberAccessor;
 import org.echosoft.common.utils.StringUtil;
 import org.junit.Assert;
 import org.junit.Before;
@@ -22,7 +33,7 @@ import org.junit.Test;
 public class CompactJsonWriterTest {
 
     private static StringWriter sw;
-    private static JsonWriter jw;
+    private static CompactJsonWriter jw;
 
     @Before
     public void before() {
@@ -345,4 +356,290 @@ public class CompactJsonWriterTest {
         jw1.writeObject(params);
         System.out.println(sw.getBuffer().toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPrimitiveProperties() throws Exception {
+        try {
+            jw.writeLongProperty("a", 1L);
+            Assert.fail();
+        } catch (IllegalStateException e) {}
+        jw.beginObject();
+        jw.writeLongProperty("i", 42L);
+        jw.writeDoubleProperty("d", 1.5);
+        jw.writeBooleanProperty("b", true);
+        jw.writeProperty("s", "x");
+        jw.writeBooleanProperty("n", false);
+        jw.endObject();
+        Assert.assertEquals("{\"i\":42,\"d\":1.5,\"b\":true,\"s\":\"x\",\"n\":false}", sw.getBuffer().toString());
+    }
+
+    @Test
+    public void testPrimitivePropertiesFallback() throws Exception {
+        // реализация JsonWriter, не поддерживающая PrimitiveJsonWriter: значения примитивных типов должны упаковываться.
+        final JsonContext ctx = new JsonContext();
+        ctx.setUseMethodHandles(true);
+        final StringWriter out = new StringWriter();
+        final JsonWriter writer = plainWriter(new CompactJsonWriter(ctx, out));
+        final Primitives bean = new Primitives();
+        writer.beginObject();
+        for (String name : new String[]{"l", "d", "bool"}) {
+            HandleMemberAccessor.forField(name, Primitives.class.getField(name), true, ctx).serialize(bean, writer);
+        }
+        writer.endObject();
+        Assert.assertEquals("{\"l\":-9007199254740993,\"d\":0.1,\"bool\":true}", out.toString());
+
+        // значения упаковываются в обертки объявленного типа и не должны попадать к сериализаторам других оберток.
+        ctx.registerSerializer(Long.class, new JsonSerializer<Long>() {
+            public void serialize(final Long src, final JsonWriter jw) throws IOException {
+                jw.getOutputWriter().write("\"L" + src + "\"");
+            }
+        }, false);
+        out.getBuffer().setLength(0);
+        final JsonWriter writer2 = plainWriter(new CompactJsonWriter(ctx, out));
+        writer2.beginObject();
+        for (String name : new String[]{"b", "i", "l"}) {
+            HandleMemberAccessor.forField(name, Primitives.class.getField(name), true, ctx).serialize(bean, writer2);
+        }
+        HandleMemberAccessor.forMethod("s", Primitives.class.getMethod("getS"), true, ctx).serialize(bean, writer2);
+        writer2.endObject();
+        Assert.assertEquals("{\"b\":-1,\"i\":123456,\"l\":\"L-9007199254740993\",\"s\":300}", out.toString());
+    }
+
+    @Test
+    public void testMethodHandles() throws Exception {
+        final Object[] data = {Data.data, new Primitives()};
+        final JsonContext jc1 = new JsonContext();
+        final JsonContext jc2 = new JsonContext();
+        jc2.setUseMethodHandles(true);
+        final JsonContext jc3 = new JsonContext(jc2);
+        jc3.registerSerializer(Integer.class, new JsonSerializer<Integer>() {
+            public void serialize(final Integer src, final JsonWriter jw) throws IOException {
+                jw.getOutputWriter().write("\"#" + src + "\"");
+            }
+        }, false);
+        Assert.assertTrue(jc3.isUseMethodHandles());
+        final JsonContext jc4 = new JsonContext(jc3);
+        jc4.setUseMethodHandles(false);
+
+        final StringWriter sw1 = new StringWriter();
+        new CompactJsonWriter(jc1, sw1).writeObject(data);
+        final StringWriter sw2 = new StringWriter();
+        new CompactJsonWriter(jc2, sw2).writeObject(data);
+        Assert.assertEquals(sw1.toString(), sw2.toString());
+        for (String item : new String[]{"\"b\":-1", "\"bool\":true", "\"c\":\"z\"", "\"d\":0.1", "\"f\":2.5", "\"i\":123456", "\"l\":-9007199254740993", "\"s\":300"}) {
+            Assert.assertTrue(item, sw2.toString().contains(item));
+        }
+
+        final StringWriter sw3 = new StringWriter();
+        new CompactJsonWriter(jc3, sw3).writeObject(data);
+        final StringWriter sw4 = new StringWriter();
+        new CompactJsonWriter(jc4, sw4).writeObject(data);
+        Assert.assertEquals(sw4.toString(), sw3.toString());
+        Assert.assertTrue(sw3.toString().contains("\"i\":\"#123456\""));
+
+        for (JsonContext ctx : new JsonContext[]{jc1, jc2}) {
+            final StringWriter psw = new StringWriter();
+            new PrintableJsonWriter(ctx, psw).writeObject(data);
+            final StringWriter ssw = new StringWriter();
+            new SimpleJsonWriter(ctx, ssw).writeObject(data);
+            if (ctx == jc1) {
+                sw1.getBuffer().setLength(0);
+                sw1.write(psw.toString());
+                sw1.write(ssw.toString());
+            } else {
+                Assert.assertEquals(sw1.toString(), psw.toString() + ssw.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testNumbersAndDates() throws Exception {
+        jw.beginObject();
+        jw.writeProperty("ints", new int[]{0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE});
+        jw.writeProperty("longs", new long[]{Long.MIN_VALUE, Long.MAX_VALUE, 1234567890123L});
+        jw.writeProperty("doubles", new double[]{0.0, -0.0, 1.0, -2.5, 0.001, 9999999.99, 1e7, 1e-4, 0.1 + 0.2, Double.NaN});
+        jw.writeProperty("boxed", new Object[]{(byte) -8, (short) 300, 42, -42L, 3.25, 1.5f});
+        jw.writeProperty("date", StringUtil.parseDate("15.03.2020"));
+        jw.writeProperty("datetime", StringUtil.parseDateTime("15.03.2020 08:05:09"));
+        jw.writeLongProperty("l", -7);
+        jw.writeDoubleProperty("d", 123.456);
+        jw.endObject();
+        Assert.assertEquals("{\"ints\":[0,-1,-2147483648,2147483647],\"longs\":[-9223372036854775808,9223372036854775807,1234567890123]," +
+                "\"doubles\":[0.0,-0.0,1.0,-2.5,0.001,9999999.99,1.0E7,1.0E-4,0.30000000000000004,NaN],\"boxed\":[-8,300,42,-42,3.25,1.5]," +
+                "\"date\":\"2020-03-15\",\"datetime\":\"2020-03-15T08:05:09\",\"l\":-7,\"d\":123.456}", sw.toString());
+
+        final Random rnd = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            final double value = (i & 1) == 0 ? rnd.nextDouble() * 1e6 : Math.round(rnd.nextDouble() * 1e8) / 1000.0;
+            final StringWriter out = new StringWriter();
+            JsonUtil.encodeDouble(value, out);
+            Assert.assertEquals(Double.toString(value), out.toString());
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        jw.beginArray();
+        jw.beginObject();
+        jw.writeProperty("a", 1);       // незавершенное выражение должно отбрасываться.
+        final StringWriter out = new StringWriter();
+        jw.reset(out);
+        jw.beginObject();
+        jw.writeComplexProperty("items");
+        jw.beginArray();
+        jw.writeObject(1);
+        jw.beginObject();
+        jw.endObject();
+        jw.endArray();
+        jw.endObject();
+        Assert.assertEquals("{\"items\":[1,{}]}", out.toString());
+        Assert.assertSame(out, jw.getOutputWriter());
+        try {
+            jw.writeObject(2);
+            Assert.fail();
+        } catch (IllegalStateException e) { /* all is ok. */ }
+
+        final JsonContext ctx = new JsonContext();
+        for (ResettableJsonWriter writer : new ResettableJsonWriter[]{new SimpleJsonWriter(ctx, new StringWriter()), new PrintableJsonWriter(ctx, new StringWriter(), 0)}) {
+            writer.beginArray();
+            writer.writeObject("x");
+            final StringWriter buf = new StringWriter();
+            writer.reset(buf);
+            writer.beginArray();
+            writer.writeObject(new int[]{1, 2});
+            writer.endArray();
+            Assert.assertEquals(writer.getClass().getName(), "[[1,2]]", buf.toString().replaceAll("\\s", ""));
+        }
+    }
+
+    @Test
+    public void testWriterPool() throws Exception {
+        final JsonContext ctx = new JsonContext();
+        final JsonWriterPool pool = new JsonWriterPool(ctx, 16, 256);
+        final Item item = new Item("item2", 2, 5.3);
+        final StringWriter expected = new StringWriter();
+        new CompactJsonWriter(ctx, expected).writeObject(item);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(expected.toString(), pool.toJSON(item));
+            Assert.assertEquals("null", pool.toJSON(null));
+        }
+        final List<Integer> big = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            big.add(i);
+        }
+        Assert.assertEquals(big.toString().replace(" ", ""), pool.toJSON(big));
+        final StringWriter out = new StringWriter();
+        pool.writeTo(item, out);
+        Assert.assertEquals(expected.toString(), out.toString());
+
+        // вложенное обращение к пулу из сериализатора обслуживается отдельным экземпляром.
+        ctx.registerSerializer(Item.class, new JsonSerializer<Item>() {
+            public void serialize(final Item src, final JsonWriter jw) throws IOException, InvocationTargetException, IllegalAccessException {
+                JsonUtil.encodeString(pool.toJSON(src.name), jw.getOutputWriter());
+            }
+        }, false);
+        Assert.assertEquals("[\"\\\"item2\\\"\"]", pool.toJSON(new Object[]{item}));
+
+        // реализации JsonWriter, не поддерживающие ResettableJsonWriter, создаются пулом заново при каждом обращении.
+        ctx.setWriterFactory(new JsonWriterFactory() {
+            public JsonWriter makeJsonWriter(final JsonContext ctx, final Writer out) {
+                return plainWriter(new CompactJsonWriter(ctx, out));
+            }
+        });
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals("[1,2]", pool.toJSON(new int[]{1, 2}));
+        }
+    }
+
+    @Test
+    public void testStreamingSources() throws Exception {
+        final List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < Serializers.STREAM_FLUSH_INTERVAL * 2 + 5; i++) {
+            items.add(i);
+        }
+        final String expected = items.toString().replace(" ", "");
+        final int[] flushes = new int[1];
+        final StringWriter out = new StringWriter() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        final JsonContext ctx = new JsonContext();
+        ctx.makeJsonWriter(out).writeObject(new IteratorIssuer<>(items));
+        Assert.assertEquals(expected, out.toString());
+        Assert.assertEquals(2, flushes[0]);
+
+        out.getBuffer().setLength(0);
+        ctx.makeJsonWriter(out).writeObject(new Iterable<Integer>() {
+            public Iterator<Integer> iterator() {
+                return items.iterator();
+            }
+        });
+        Assert.assertEquals(expected, out.toString());
+        Assert.assertEquals(4, flushes[0]);
+
+        out.getBuffer().setLength(0);
+        ctx.makeJsonWriter(out).writeObject(items);
+        Assert.assertEquals(expected, out.toString());
+        Assert.assertEquals(4, flushes[0]);
+
+        final Exception failure = new Exception("source failure");
+        try {
+            ctx.makeJsonWriter(new StringWriter()).writeObject(new IteratorIssuer<Integer>(items) {
+                @Override
+                public boolean hasNext() {
+                    throw new IllegalStateException(failure);
+                }
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+        try {
+            ctx.makeJsonWriter(new StringWriter()).writeObject(new Issuer<Integer>() {
+                public boolean hasNext() throws Exception {
+                    throw failure;
+                }
+                public Integer next() {
+                    return null;
+                }
+                public void close() {
+                }
+            });
+            Assert.fail();
+        } catch (InvocationTargetException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+    }
+
+    /**
+     * @return реализация {@link JsonWriter}, не поддерживающая дополнительные интерфейсы стандартных реализаций.
+     */
+    private static JsonWriter plainWriter(final JsonWriter target) {
+        return (JsonWriter) Proxy.newProxyInstance(JsonWriter.class.getClassLoader(), new Class<?>[]{JsonWriter.class}, new InvocationHandler() {
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        });
+    }
+
+    public static final class Primitives {
+        public byte b = -1;
+        public boolean bool = true;
+        public char c = 'z';
+        public double d = 0.1;
+        public float f = 2.5f;
+        public int i = 123456;
+        public long l = -9007199254740993L;
+        private short s = 300;
+
+        public short getS() {
+            return s;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.echosoft.common.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.echosoft.common.json.beans.Data;
+import org.echosoft.common.json.beans.Person;
+import org.echosoft.common.json.introspect.BeanSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class JsonContextTest {
+
+    private static final JsonSerializer<Object> CUSTOM =
+            new JsonSerializer<Object>() {
+                public void serialize(final Object src, final JsonWriter jw) throws IOException {
+                    jw.getOutputWriter().write("\"custom\"");
+                }
+            };
+
+    @Test
+    public void testDerivedContexts() throws Exception {
+        final JsonContext parent = new JsonContext();
+        final JsonSerializer<Person> ps = parent.getSerializer(Person.class);
+        Assert.assertTrue(ps instanceof BeanSerializer);
+
+        final JsonContext child = new JsonContext(parent);
+        Assert.assertSame(ps, child.getSerializer(Person.class));
+
+        child.registerSerializer(Person.class, CUSTOM, false);
+        Assert.assertSame(CUSTOM, child.getSerializer(Person.class));
+        Assert.assertSame(ps, parent.getSerializer(Person.class));
+
+        Assert.assertEquals(1, child.removeSerializer(Person.class, false));
+        Assert.assertTrue(child.getSerializer(Person.class) instanceof BeanSerializer);
+        Assert.assertSame(ps, parent.getSerializer(Person.class));
+    }
+
+    @Test
+    public void testHierarchy() throws Exception {
+        final JsonContext ctx = new JsonContext();
+        Assert.assertSame(Serializers.NUMBER, ctx.getSerializer(Integer.class));
+        Assert.assertSame(Serializers.MAP, ctx.getSerializer(java.util.TreeMap.class));
+        Assert.assertSame(Serializers.ITERABLE, ctx.getSerializer(ArrayList.class));
+        Assert.assertSame(Serializers.CHAR_SEQUENCE, ctx.getSerializer(StringBuilder.class));
+        Assert.assertSame(Serializers.STRING, ctx.getSerializer(String.class));
+
+        // правила добавленные после первого обращения должны учитываться ...
+        ctx.registerSerializer(Number.class, CUSTOM, true);
+        Assert.assertSame(CUSTOM, ctx.getSerializer(Integer.class));
+        Assert.assertEquals(4, ctx.removeSerializer(Number.class, true));     // Number и BigDecimal
+        Assert.assertTrue(ctx.getSerializer(Integer.class) instanceof BeanSerializer);
+
+        ctx.registerSerializer(List.class, CUSTOM, true);
+        Assert.assertSame(CUSTOM, ctx.getSerializer(ArrayList.class));
+        Assert.assertSame(Serializers.ITERABLE, ctx.getSerializer(java.util.HashSet.class));
+    }
+
+    @Test
+    public void testConcurrentResolution() throws Exception {
+        final JsonContext ctx = new JsonContext();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Callable<JsonSerializer>> tasks = Collections.nCopies(64, (Callable<JsonSerializer>) new Callable<JsonSerializer>() {
+                public JsonSerializer call() {
+                    return new JsonContext(ctx).getSerializer(Data.C1.class);
+                }
+            });
+            final JsonSerializer expected = ctx.getSerializer(Data.C1.class);
+            for (Future<JsonSerializer> future : executor.invokeAll(tasks)) {
+                Assert.assertSame(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package org.echosoft.common.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.echosoft.common.json.annotate.JsonField;
+import org.echosoft.common.json.beans.Data;
+import org.echosoft.common.utils.StringUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class JsonReaderTest {
+
+    @Test
+    public void testTokens() throws Exception {
+        final JsonReader jr = new JsonReader(new JsonContext(), "{\"a\":1, b : [true,false,null,\"x\\ny\\u0041\"],\n\"\":-1.5e3, c:{}, d:[]}");
+        Assert.assertEquals(JsonToken.BEGIN_OBJECT, jr.next());
+        Assert.assertEquals(JsonToken.FIELD_NAME, jr.next());
+        Assert.assertEquals("a", jr.getText().toString());
+        Assert.assertEquals(JsonToken.NUMBER, jr.next());
+        Assert.assertEquals(1, jr.getInt());
+        Assert.assertEquals(JsonToken.FIELD_NAME, jr.next());
+        Assert.assertTrue(jr.textEquals("b"));
+        Assert.assertEquals(JsonToken.BEGIN_ARRAY, jr.next());
+        Assert.assertEquals(JsonToken.TRUE, jr.next());
+        Assert.assertEquals(JsonToken.FALSE, jr.next());
+        Assert.assertEquals(JsonToken.NULL, jr.next());
+        Assert.assertEquals(JsonToken.STRING, jr.next());
+        Assert.assertEquals("x\nyA", jr.getString());
+        Assert.assertEquals(JsonToken.END_ARRAY, jr.next());
+        Assert.assertEquals(JsonToken.FIELD_NAME, jr.next());
+        Assert.assertEquals("", jr.getString());
+        Assert.assertEquals(JsonToken.NUMBER, jr.next());
+        Assert.assertEquals(-1500.0, jr.getDouble(), 0);
+        Assert.assertEquals(-1500L, jr.getLong());
+        Assert.assertEquals(2, jr.getLine());
+        Assert.assertEquals(JsonToken.FIELD_NAME, jr.next());
+        Assert.assertEquals(JsonToken.BEGIN_OBJECT, jr.next());
+        Assert.assertEquals(JsonToken.END_OBJECT, jr.next());
+        Assert.assertEquals(JsonToken.FIELD_NAME, jr.next());
+        Assert.assertEquals(JsonToken.BEGIN_ARRAY, jr.next());
+        Assert.assertEquals(JsonToken.END_ARRAY, jr.next());
+        Assert.assertEquals(JsonToken.END_OBJECT, jr.next());
+        Assert.assertEquals(JsonToken.EOF, jr.next());
+    }
+
+    @Test
+    public void testSkipValue() throws Exception {
+        final JsonReader jr = new JsonReader(new JsonContext(), "[{\"a\":[1,{\"b\":2}],\"c\":3}, 4]");
+        Assert.assertEquals(JsonToken.BEGIN_ARRAY, jr.next());
+        Assert.assertEquals(JsonToken.BEGIN_OBJECT, jr.next());
+        jr.skipValue();
+        Assert.assertEquals(JsonToken.END_OBJECT, jr.getToken());
+        Assert.assertEquals(JsonToken.NUMBER, jr.next());
+        Assert.assertEquals(4, jr.getInt());
+        Assert.assertEquals(JsonToken.END_ARRAY, jr.next());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        final String[] docs = {"[1,]", "{\"a\" 1}", "{\"a\":1,}", "[1 2]", "\"abc", "[tru]", "{\"a\":\"\\x\"}", "-",
+                // за корневым значением допускаются только пробельные символы ...
+                "1 2", "{} {}", "[1] [2]", "\"a\" null", "true false", "{\"a\":1}}"};
+        for (String doc : docs) {
+            try {
+                final JsonReader jr = new JsonReader(new JsonContext(), doc);
+                while (jr.next() != JsonToken.EOF) {
+                }
+                Assert.fail(doc);
+            } catch (JsonParseException e) {
+                Assert.assertEquals(1, e.getLine());
+            }
+        }
+        try {
+            new JsonReader(new JsonContext(), "\"abc\"").readObject(int.class);
+            Assert.fail();
+        } catch (JsonParseException e) {
+        }
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+        final String[] invalid = {"01", "-01", "1.2.3", "1e", "1e+", "1.", ".5", "-", "--1", "12abc", "1.5x", "0x10", "1-2", "[1e5e5]", "-Inf"};
+        for (String doc : invalid) {
+            try {
+                final JsonReader jr = new JsonReader(new JsonContext(), doc);
+                while (jr.next() != JsonToken.EOF) {
+                }
+                Assert.fail(doc);
+            } catch (JsonParseException e) {
+                Assert.assertEquals(1, e.getLine());
+            }
+        }
+        final String[] valid = {"0", "-0", "7", "-12.50", "1e5", "1E+5", "-2.5e-3", "0.0", "-Infinity", "Infinity", "NaN"};
+        final StringBuilder doc = new StringBuilder("[");
+        for (int i = 0; i < valid.length; i++) {
+            if (i > 0)
+                doc.append(',');
+            doc.append(valid[i]);
+        }
+        doc.append(']');
+        // медленный поток, чтобы числа оказывались на границах подкачиваемых фрагментов ...
+        final JsonReader jr = new JsonReader(new JsonContext(), new StringReader(doc.toString()) {
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) throws IOException {
+                return super.read(cbuf, off, 1);
+            }
+        });
+        Assert.assertEquals(JsonToken.BEGIN_ARRAY, jr.next());
+        for (String value : valid) {
+            Assert.assertEquals(JsonToken.NUMBER, jr.next());
+            Assert.assertEquals(value, jr.getString());
+            Assert.assertEquals(Double.parseDouble(value), jr.getDouble(), 0);
+        }
+        Assert.assertEquals(JsonToken.END_ARRAY, jr.next());
+        Assert.assertEquals(JsonToken.EOF, jr.next());
+    }
+
+    @Test
+    public void testStreamsAndNaturalObjects() throws Exception {
+        final JsonContext ctx = new JsonContext();
+        final StringWriter buf = new StringWriter();
+        final JsonWriter jw = new PrintableJsonWriter(ctx, buf);
+        jw.beginArray();
+        for (int i = 0; i < 50; i++) {
+            jw.writeObject(Data.data);
+            jw.writeObject("long \"escaped\" string with unicode: \u0436\u2028 " + i);
+        }
+        jw.endArray();
+        final String text = buf.toString();
+
+        final Object expected = new JsonReader(ctx, text).readObject(Object.class);
+        Assert.assertTrue(expected instanceof List);
+        Assert.assertEquals(100, ((List) expected).size());
+        // медленный поток, возвращающий данные небольшими порциями ...
+        final Reader slow = new StringReader(text) {
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 3));
+            }
+        };
+        final JsonReader jr = new JsonReader(ctx, slow);
+        Assert.assertEquals(expected, jr.readObject(Object.class));
+        Assert.assertEquals(JsonToken.EOF, jr.next());
+        jr.close();
+    }
+
+    @Test
+    public void testBeans() throws Exception {
+        final Order order = new Order();
+        order.id = 42;
+        order.setName("Заказ \"A\"");
+        order.setCreated(StringUtil.parseISODateTime("2020-01-02T03:04:05"));
+        order.state = State.APPROVED;
+        order.amount = 12.5;
+        order.cost = new BigDecimal("99.95");
+        order.flags = new int[]{1, 2, 3};
+        order.tags = Arrays.asList("x", "y");
+        order.getLines().add(new Line("apple", 3));
+        order.getLines().add(new Line("pear", 5));
+        order.counters.put("a", 1L);
+        order.counters.put("b", null);
+        order.secret = "hidden";
+
+        // алгоритм сериализации имен, переименовывающий свойства бинов (односимвольные ключи ассоциативного массива остаются без изменений) ...
+        final JsonFieldNameSerializer prefixed = new JsonFieldNameSerializer() {
+            @Override
+            public void serialize(final String fieldName, final Writer out) throws IOException {
+                JsonUtil.encodeString(fieldName.length() > 1 ? "x_" + fieldName : fieldName, out);
+            }
+        };
+        for (JsonFieldNameSerializer fns : new JsonFieldNameSerializer[]{Serializers.STANDARD_FIELD_NAME_SERIALIZER, Serializers.COMPACT_FIELDNAME_SERIALIZER, prefixed}) {
+            final JsonContext ctx = new JsonContext();
+            ctx.setFieldNameSerializer(fns);
+            final StringWriter buf = new StringWriter();
+            new CompactJsonWriter(ctx, buf).writeObject(new Order[]{order, null});
+            Assert.assertEquals(fns == prefixed, buf.toString().contains("\"x_price\":"));
+
+            final Order[] result = new JsonReader(ctx, buf.toString()).readObject(Order[].class);
+            Assert.assertEquals(2, result.length);
+            Assert.assertNull(result[1]);
+            final Order restored = result[0];
+            Assert.assertEquals(42, restored.id);
+            Assert.assertEquals(order.getName(), restored.getName());
+            Assert.assertEquals(order.getCreated(), restored.getCreated());
+            Assert.assertEquals(State.APPROVED, restored.state);
+            Assert.assertEquals(12.5, restored.amount, 0);
+            Assert.assertEquals(order.cost, restored.cost);
+            Assert.assertArrayEquals(order.flags, restored.flags);
+            Assert.assertEquals(order.tags, restored.tags);
+            Assert.assertEquals(order.getLines(), restored.getLines());
+            Assert.assertEquals(order.counters, restored.counters);
+            Assert.assertNull(restored.secret);
+        }
+    }
+
+
+    public static enum State {DRAFT, APPROVED}
+
+    public static class Order {
+        public int id;
+        public State state;
+        public double amount;
+        @JsonField(name = "price")
+        public BigDecimal cost;
+        public int[] flags;
+        public List<String> tags;
+        public final Map<String, Long> counters = new LinkedHashMap<>();
+        @JsonField(isTransient = true)
+        public String secret;
+        private String name;
+        private Date created;
+        private final List<Line> lines = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+        public void setName(final String name) {
+            this.name = name;
+        }
+        public Date getCreated() {
+            return created;
+        }
+        public void setCreated(final Date created) {
+            this.created = created;
+        }
+        public List<Line> getLines() {
+            return lines;
+        }
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+    }
+
+    public static class Line {
+        private String product;
+        private int quantity;
+
+        public Line() {
+        }
+        public Line(final String product, final int quantity) {
+            this.product = product;
+            this.quantity = quantity;
+        }
+        public String getProduct() {
+            return product;
+        }
+        public void setProduct(final String product) {
+            this.product = product;
+        }
+        public int getQuantity() {
+            return quantity;
+        }
+        public void setQuantity(final int quantity) {
+            this.quantity = quantity;
+        }
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == null || !getClass().equals(obj.getClass()))
+                return false;
+            final Line other = (Line) obj;
+            return product.equals(other.product) && quantity == other.quantity;
+        }
+        @Override
+        public int hashCode() {
+            return product.hashCode();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.echosoft.common.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.echosoft.common.io.UTF8Writer;
+import org.echosoft.common.json.beans.Address;
+import org.echosoft.common.json.beans.Person;
+import org.echosoft.common.utils.StringUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class UTF8JsonWriterTest {
+
+    @Test
+    public void testFactory() throws Exception {
+        final JsonContext ctx = new JsonContext();
+        final JsonWriter jw1 = Serializers.UTF8_JSON_WRITER_FACTORY.makeJsonWriter(ctx, new UTF8Writer(new ByteArrayOutputStream()));
+        Assert.assertTrue(jw1 instanceof UTF8JsonWriter);
+        final JsonWriter jw2 = Serializers.UTF8_JSON_WRITER_FACTORY.makeJsonWriter(ctx, new StringWriter());
+        Assert.assertEquals(CompactJsonWriter.class, jw2.getClass());
+    }
+
+    @Test
+    public void testCompatibility() throws Exception {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", 1);
+        map.put("имя", "Иванов \"Иван\"\n");
+        map.put("class", "😀");
+        map.put("person", new Person("Петров", "petrov@example.com", StringUtil.parseISODate("2000-01-02"), new Address("Москва", "Москва", "Тверская", 1)));
+        map.put(null, new int[]{1, 2, 3});
+
+        for (JsonFieldNameSerializer fns : new JsonFieldNameSerializer[]{Serializers.STANDARD_FIELD_NAME_SERIALIZER, Serializers.COMPACT_FIELDNAME_SERIALIZER}) {
+            final JsonContext ctx = new JsonContext();
+            ctx.setFieldNameSerializer(fns);
+            final StringWriter expected = new StringWriter();
+            new CompactJsonWriter(ctx, expected).writeObject(map);
+
+            for (int i = 0; i < 2; i++) {
+                final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                final UTF8Writer out = new UTF8Writer(bos, 32);
+                new UTF8JsonWriter(ctx, out).writeObject(map);
+                out.flush();
+                Assert.assertEquals(expected.toString(), new String(bos.toByteArray(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void testFieldNameSerializerChange() throws Exception {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", 1);
+        final JsonContext ctx = new JsonContext();
+        Assert.assertEquals("{\"id\":1}", write(ctx, map));
+        final JsonContext copy = new JsonContext(ctx);
+        ctx.setFieldNameSerializer(Serializers.COMPACT_FIELDNAME_SERIALIZER);
+        Assert.assertEquals("{id:1}", write(ctx, map));
+        Assert.assertEquals("{\"id\":1}", write(copy, map));
+    }
+
+    private static String write(final JsonContext ctx, final Object obj) throws Exception {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final UTF8Writer out = new UTF8Writer(bos, 32);
+        new UTF8JsonWriter(ctx, out).writeObject(obj);
+        out.flush();
+        return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -1,5 +1,7 @@
 package org.echosoft.common.parsers;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 
 import org.junit.Assert;
@@ -126,6 +128,85 @@ public class CSVParserTest {
     }
 
 
+    @Test
+    public void testRecords() throws Exception {
+        final String src =
+                "1, -42 ,\"3.25\", name \r\n" +
+                "\n" +
+                "9223372036854775807,-9223372036854775808,-1.5e-3,\"multi\r\nline \"\"quoted\"\"\"\n" +
+                "x,,1e300,\"unterminated";
+        final CSVParser parser = new CSVParser(new StringReader(src));
+        Assert.assertTrue(parser.nextRecord());
+        CSVRecord record = parser.getRecord();
+        Assert.assertEquals(1, record.getLineNum());
+        Assert.assertEquals(4, record.size());
+        Assert.assertEquals(1, record.getInt(0));
+        Assert.assertEquals(-42L, record.getLong(1));
+        Assert.assertEquals(3.25, record.getDouble(2), 0);
+        Assert.assertEquals("name", record.get(3).toString());
+        Assert.assertEquals('a', record.get(3).charAt(1));
+
+        Assert.assertTrue(parser.nextRecord());
+        Assert.assertEquals(0, parser.getRecord().size());
+
+        Assert.assertTrue(parser.nextRecord());
+        record = parser.getRecord();
+        Assert.assertEquals(Long.MAX_VALUE, record.getLong(0));
+        Assert.assertEquals(Long.MIN_VALUE, record.getLong(1));
+        Assert.assertEquals(-1.5e-3, record.getDouble(2), 0);
+        Assert.assertEquals("multi\r\nline \"quoted\"", record.getString(3));
+        try {
+            record.getInt(0);
+            Assert.fail("Integer overflow expected");
+        } catch (NumberFormatException e) { /* all is ok. */ }
+
+        try {
+            parser.nextRecord();
+            Assert.fail("Unterminated quoted value expected");
+        } catch (IllegalStateException e) { /* all is ok. */ }
+        record = parser.getRecord();
+        Assert.assertEquals(4, record.getLineNum());
+        Assert.assertArrayEquals(new String[]{"x", "", "1e300"}, record.toArray());
+        Assert.assertTrue(record.isEmpty(1));
+        Assert.assertEquals(1e300, record.getDouble(2), 0);
+        try {
+            record.getLong(1);
+            Assert.fail("Empty value is not a number");
+        } catch (NumberFormatException e) { /* all is ok. */ }
+        Assert.assertFalse(parser.nextRecord());
+    }
+
+    @Test
+    public void testSmallBuffer() throws Exception {
+        final StringBuilder src = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            src.append(i).append(",\"value ").append(i).append(" with \"\"quotes\"\" and\nnew line\", ").append(i / 4.0).append(" \r\n");
+        }
+        // медленный поток, возвращающий данные небольшими порциями ...
+        final Reader slow = new StringReader(src.toString()) {
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 7));
+            }
+        };
+        try (CSVParser parser = new CSVParser(slow, ',', '"', 16)) {
+            Assert.assertTrue(parser.nextLine(10));
+            Assert.assertEquals(10, parser.getLineNum());
+            Assert.assertEquals("9", parser.nextToken());
+            for (int i = 10; i < 500; i++) {
+                Assert.assertTrue(parser.nextRecord());
+                final CSVRecord record = parser.getRecord();
+                Assert.assertEquals(i + 1, record.getLineNum());
+                Assert.assertEquals(3, record.size());
+                Assert.assertEquals(i, record.getInt(0));
+                Assert.assertEquals("value " + i + " with \"quotes\" and\nnew line", record.get(1).toString());
+                Assert.assertEquals(i / 4.0, record.getDouble(2), 0);
+            }
+            Assert.assertFalse(parser.nextRecord());
+        }
+    }
+
+
     private void testImpl(final String source, final String[][] expectations, final int skipLines, final boolean verbose) throws Exception {
         try (CSVParser parser = new CSVParser(new StringReader(source), ',')) {
             parser.nextLine(skipLines);
@@ -0,0 +1,73 @@
+package org.echosoft.common.parsers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.Date;
+
+import org.echosoft.common.utils.StringUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class CSVWriterTest {
+
+    @Test
+    public void testFormat() throws Exception {
+        final Date date = StringUtil.parseISODateTime("2021-03-04T05:06:07");
+        final StringWriter out = new StringWriter();
+        try (CSVWriter writer = new CSVWriter(out, ',', '"', 64)) {
+            writer.writeRecord("a", "b c", "", "d,e", "f\"g", null, "h\r\ni");
+            writer.writeInt(0);
+            writer.writeInt(Integer.MIN_VALUE);
+            writer.writeLong(Long.MIN_VALUE);
+            writer.writeLong(Long.MAX_VALUE);
+            writer.writeDouble(-0.0);
+            writer.writeDouble(12345);
+            writer.writeDouble(0.1);
+            writer.writeDouble(1e20);
+            writer.writeBoolean(true);
+            writer.endRecord();
+            writer.writeDate(date);
+            writer.writeDateTime(date);
+            writer.writeNull();
+            writer.endRecord();
+            writer.writeNull();
+            writer.endRecord();
+            writer.endRecord();
+        }
+        Assert.assertEquals(
+                "a,\"b c\",,\"d,e\",\"f\"\"g\",,\"h\r\ni\"\r\n" +
+                "0,-2147483648,-9223372036854775808,9223372036854775807,-0.0,12345.0,0.1,1.0E20,true\r\n" +
+                "2021-03-04,\"2021-03-04 05:06:07\",\r\n" +
+                "\"\"\r\n" +
+                "\r\n", out.toString());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final String[][] data = {
+                {"1", " leading and trailing ", "", "\"quoted\"", "multi\nline"},
+                {""},
+                {},
+                {"жук", "tab\there", ";", ","}
+        };
+        for (char delimiter : new char[]{',', ';', '\t'}) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (CSVWriter writer = new CSVWriter(out, Charset.forName("UTF-8"), delimiter, '"')) {
+                for (String[] record : data) {
+                    writer.writeRecord(record);
+                }
+            }
+            final CSVParser parser = new CSVParser(new StringReader(out.toString("UTF-8")), delimiter);
+            for (String[] record : data) {
+                Assert.assertTrue(parser.nextRecord());
+                Assert.assertArrayEquals(record, parser.getRecord().toArray());
+            }
+            Assert.assertFalse(parser.nextRecord());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.echosoft.common.parsers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.echosoft.common.collections.Consumer;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class ParallelCSVParserTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+        final String content = makeContent(20000);
+        final File file = makeFile(content);
+        try {
+            final List<String> expected = parseSequential(content);
+            for (int chunkSize : new int[]{1, 5000, 1 << 16, 1 << 20}) {
+                final List<String> actual = new ArrayList<>();
+                final long cnt = new ParallelCSVParser(file, UTF8, ',', '"', chunkSize).process(pool, true, new Consumer<CSVRecord>() {
+                    @Override
+                    public boolean consume(final CSVRecord record) {
+                        actual.add(record.getLineNum() + ":" + Arrays.toString(record.toArray()));
+                        return true;
+                    }
+                });
+                Assert.assertEquals("chunk size: " + chunkSize, expected.size(), cnt);
+                Assert.assertEquals("chunk size: " + chunkSize, expected, actual);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testUnordered() throws Exception {
+        final String content = makeContent(20000);
+        final File file = makeFile(content);
+        try {
+            final List<String> expected = parseSequential(content);
+            Collections.sort(expected);
+            final List<String> actual = Collections.synchronizedList(new ArrayList<String>());
+            final long cnt = new ParallelCSVParser(file, UTF8, ',', '"', 8192).process(pool, false, new Consumer<CSVRecord>() {
+                @Override
+                public boolean consume(final CSVRecord record) {
+                    actual.add(record.getLineNum() + ":" + Arrays.toString(record.toArray()));
+                    return true;
+                }
+            });
+            Collections.sort(actual);
+            Assert.assertEquals(expected.size(), cnt);
+            Assert.assertEquals(expected, actual);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        final String content = makeContent(5000) + "1,bad value,2\n" + makeContent(10);
+        final int lines = parseSequential(makeContent(5000)).size();
+        final File file = makeFile(content);
+        try {
+            final int[] delivered = new int[1];
+            try {
+                new ParallelCSVParser(file, UTF8, ',', '"', 4096).process(pool, true, new Consumer<CSVRecord>() {
+                    @Override
+                    public boolean consume(final CSVRecord record) {
+                        delivered[0]++;
+                        return true;
+                    }
+                });
+                Assert.fail("Syntax error expected");
+            } catch (IllegalStateException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("at line " + (lines + 1) + ","));
+            }
+            Assert.assertEquals(lines, delivered[0]);
+
+            final long cnt = new ParallelCSVParser(file, UTF8, ',', '"', 4096).process(pool, true, new Consumer<CSVRecord>() {
+                @Override
+                public boolean consume(final CSVRecord record) {
+                    return record.getLineNum() < 10;
+                }
+            });
+            Assert.assertEquals(10, cnt);
+        } finally {
+            file.delete();
+        }
+        try {
+            new ParallelCSVParser(file, Charset.forName("UTF-16"));
+            Assert.fail("Unsupported charset");
+        } catch (IllegalArgumentException e) { /* all is ok. */ }
+    }
+
+
+    private static String makeContent(final int rows) {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            buf.append(i).append(", \"значение ").append(i);
+            if (i % 3 == 0)
+                buf.append("\r\n\"\"multi\"\"\nline");
+            buf.append("\",").append(i / 8.0).append("\r\n");
+            if (i % 17 == 0)
+                buf.append('\n');
+        }
+        return buf.toString();
+    }
+
+    private static File makeFile(final String content) throws Exception {
+        final File file = File.createTempFile("csv", ".csv");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), UTF8)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static List<String> parseSequential(final String content) throws Exception {
+        final List<String> result = new ArrayList<>();
+        try (CSVParser parser = new CSVParser(new StringReader(content))) {
+            while (parser.nextRecord()) {
+                final CSVRecord record = parser.getRecord();
+                result.add(record.getLineNum() + ":" + Arrays.toString(record.toArray()));
+            }
+        }
+        return result;
+    }
+}
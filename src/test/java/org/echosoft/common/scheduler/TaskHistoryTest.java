@@ -0,0 +1,160 @@
+package org.echosoft.common.scheduler;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class TaskHistoryTest {
+
+    @Test
+    public void testWrapAround() {
+        try {
+            new TaskHistory(0);
+            Assert.fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            // некорректный размер буфера.
+        }
+        final TaskHistory history = new TaskHistory(3);
+        final List<TaskSnapshot> buf = new ArrayList<>();
+        history.collect(buf);
+        Assert.assertTrue(buf.isEmpty());
+
+        history.record(new Descriptor(1, null));
+        history.record(new Descriptor(2, new Date(2000)));
+        history.collect(buf);
+        Assert.assertEquals(2, history.size());
+        Assert.assertEquals(2, buf.size());
+        Assert.assertEquals(1, buf.get(0).getId());
+        Assert.assertNull(buf.get(0).getStartTime());
+        Assert.assertEquals(new Date(2000), buf.get(1).getStartTime());
+        Assert.assertEquals(new Date(1000), buf.get(1).getEnqueueTime());
+        Assert.assertEquals(TaskPriority.HIGH, buf.get(1).getPriority());
+        Assert.assertEquals(TaskState.COMPLETED, buf.get(1).getState());
+        Assert.assertEquals("owner", buf.get(1).getOwner());
+        Assert.assertEquals(2, buf.get(1).getKey());
+        Assert.assertEquals("task 2", buf.get(1).getTitle());
+        Assert.assertEquals(2, buf.get(1).getProgress());
+
+        for (int i = 3; i <= 7; i++) {
+            history.record(new Descriptor(i, new Date(i * 1000)));
+        }
+        buf.clear();
+        history.collect(buf);
+        Assert.assertEquals(3, history.size());
+        Assert.assertEquals(3, buf.size());
+        Assert.assertEquals(5, buf.get(0).getId());
+        Assert.assertEquals(6, buf.get(1).getId());
+        Assert.assertEquals(7, buf.get(2).getId());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final TaskHistory history = new TaskHistory(16);
+        final int writers = 4;
+        final int tasks = 20000;
+        final CountDownLatch finished = new CountDownLatch(writers);
+        final AtomicReference<String> error = new AtomicReference<>();
+        for (int w = 0; w < writers; w++) {
+            final int base = w * tasks;
+            new Thread() {
+                public void run() {
+                    for (int i = 1; i <= tasks; i++) {
+                        history.record(new Descriptor(base + i, new Date(base + i)));
+                    }
+                    finished.countDown();
+                }
+            }.start();
+        }
+        final List<TaskSnapshot> buf = new ArrayList<>();
+        do {
+            buf.clear();
+            history.collect(buf);
+            Assert.assertTrue(buf.size() <= 16);
+            for (TaskSnapshot snapshot : buf) {
+                final int id = snapshot.getId();
+                if (!Integer.valueOf(id).equals(snapshot.getKey()) || !("task " + id).equals(snapshot.getTitle()) ||
+                        snapshot.getProgress() != id % 100 || snapshot.getStartTime().getTime() != id)
+                    error.set("inconsistent snapshot: " + snapshot);
+            }
+        } while (finished.getCount() > 0);
+        Assert.assertNull(error.get());
+        buf.clear();
+        history.collect(buf);
+        Assert.assertEquals(16, buf.size());
+    }
+
+
+    private static final class Descriptor extends FutureTask<Integer> implements TaskDescriptor<Integer> {
+        private final int id;
+        private final Date startTime;
+        private final Task task;
+
+        private Descriptor(final int id, final Date startTime) {
+            this(id, startTime, new Task(id));
+        }
+
+        private Descriptor(final int id, final Date startTime, final Task task) {
+            super(task);
+            this.id = id;
+            this.startTime = startTime;
+            this.task = task;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public TaskPriority getPriority() {
+            return TaskPriority.HIGH;
+        }
+
+        public String getOwner() {
+            return "owner";
+        }
+
+        public Date getEnqueueTime() {
+            return new Date(1000);
+        }
+
+        public Date getStartTime() {
+            return startTime;
+        }
+
+        public Date getFinishTime() {
+            return startTime;
+        }
+
+        public TaskState getState() {
+            return TaskState.COMPLETED;
+        }
+
+        public AbstractTask<Integer> getTask() {
+            return task;
+        }
+
+        public TaskSnapshot makeSnapshot() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class Task extends AbstractTask<Integer> {
+        private Task(final int id) {
+            super(id, "test", "task " + id);
+            setProgress(id % 100);
+        }
+
+        @Override
+        public Integer call() {
+            return 0;
+        }
+    }
+}
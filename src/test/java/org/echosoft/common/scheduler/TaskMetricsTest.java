@@ -0,0 +1,192 @@
+package org.echosoft.common.scheduler;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class TaskMetricsTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long v = 0; v < 1L << 20; v += 1 + v / 7) {
+            final int index = LatencyHistogram.bucketIndex(v);
+            Assert.assertTrue(v <= LatencyHistogram.highestValue(index));
+            if (index > 0)
+                Assert.assertTrue(v > LatencyHistogram.highestValue(index - 1));
+        }
+        Assert.assertEquals(LatencyHistogram.bucketIndex(1L << 44), LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.snapshot().getValueAtPercentile(99));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-5);
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(1001, snapshot.getCount());
+        Assert.assertEquals(1000000, snapshot.getMax());
+        Assert.assertEquals(1000000, snapshot.getValueAtPercentile(100));
+        Assert.assertEquals(0, snapshot.getValueAtPercentile(0));
+        Assert.assertEquals(500000, snapshot.getValueAtPercentile(50), 500000 * 0.035);
+        Assert.assertEquals(990000, snapshot.getValueAtPercentile(99), 990000 * 0.035);
+        Assert.assertEquals(500000, snapshot.getMean(), 1);
+
+        final LatencyHistogram other = new LatencyHistogram();
+        other.record(5000000);
+        final LatencyHistogram.Snapshot merged = snapshot.merge(other.snapshot());
+        Assert.assertEquals(1002, merged.getCount());
+        Assert.assertEquals(5000000, merged.getMax());
+        Assert.assertEquals(1001, snapshot.getCount());
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.snapshot().getMax());
+    }
+
+    @Test
+    public void testMetrics() {
+        final TaskMetrics metrics = new TaskMetrics();
+        metrics.taskSubmitted();
+        metrics.taskSubmitted();
+        metrics.taskSubmitted();
+        metrics.taskRejected();
+        metrics.taskStarted("io", TaskPriority.HIGH, 1000);
+        metrics.taskFinished("io", TaskPriority.HIGH, 5000, false);
+        metrics.taskStarted(null, TaskPriority.LOW, 2000);
+        metrics.taskFinished(null, TaskPriority.LOW, 7000, true);
+
+        final TaskMetrics.Snapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(3, snapshot.getSubmitted());
+        Assert.assertEquals(1, snapshot.getRejected());
+        Assert.assertEquals(2, snapshot.getCompleted());
+        Assert.assertEquals(1, snapshot.getFailed());
+        Assert.assertEquals(2, snapshot.getGroups().size());
+        Assert.assertEquals(java.util.Arrays.asList(null, "io"), snapshot.getCategories());
+        Assert.assertEquals(TaskPriority.LOW, snapshot.getGroups().get(0).getPriority());
+        Assert.assertEquals(1, snapshot.getGroups().get(0).getFailed());
+        Assert.assertEquals(1000, snapshot.getWaitTime("io", null).getMax());
+        Assert.assertEquals(7000, snapshot.getRunTime(null, null).getMax());
+        Assert.assertEquals(2, snapshot.getRunTime(null, null).getCount());
+        Assert.assertNull(snapshot.getRunTime("io", TaskPriority.LOW));
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.snapshot().getSubmitted());
+        Assert.assertTrue(metrics.snapshot().getGroups().isEmpty());
+    }
+
+    @Test
+    public void testExecutorMetrics() throws Exception {
+        final PriorityThreadPoolExecutor executor = new PriorityThreadPoolExecutor(1, 10);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        executor.addTask(new GateTask(started, gate), TaskPriority.HIGH);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        final List<TaskDescriptor<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(executor.addTask(new SimpleTask(i, "io", false), TaskPriority.LOW));
+        }
+        final TaskDescriptor<Integer> failed = executor.addTask(new SimpleTask(5, "cpu", true), TaskPriority.MEDIUM);
+        Thread.sleep(20);
+        gate.countDown();
+        for (TaskDescriptor<Integer> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            Assert.fail("Exception expected");
+        } catch (ExecutionException e) {
+            // задача завершилась с ошибкой.
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        try {
+            executor.addTask(new SimpleTask(6, "io", false), TaskPriority.LOW);
+            Assert.fail("Exception expected");
+        } catch (RejectedExecutionException e) {
+            // планировщик остановлен.
+        }
+
+        Assert.assertEquals(TaskState.FAILED, failed.getState());
+        Assert.assertEquals(7, executor.getSubmittedTaskCount());
+        Assert.assertEquals(1, executor.getRejectedTaskCount());
+        Assert.assertEquals(7, executor.getProcessedTaskCount());
+        Assert.assertEquals(1, executor.getFailedTaskCount());
+        Assert.assertArrayEquals(new String[]{"cpu", "gate", "io"}, executor.getCategories());
+        Assert.assertTrue(executor.getWaitTimePercentile("io", "low", 50) >= 15);
+        Assert.assertTrue(executor.getWaitTimePercentile("gate", null, 50) < 15);
+        Assert.assertEquals(0, executor.getRunTimePercentile("io", "HIGH", 50), 0);
+        Assert.assertTrue(executor.getMetricsReport().contains("io/LOW{completed:5, failed:0"));
+        Assert.assertTrue(executor.getRejectedExecutionHandler() instanceof java.util.concurrent.ThreadPoolExecutor.AbortPolicy);
+    }
+
+    @Test
+    public void testMBeanRegistration() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("org.echosoft.test:type=Scheduler,name=metrics");
+        final PriorityThreadPoolExecutor executor = new PriorityThreadPoolExecutor(2, 10);
+        executor.registerMBean(name.toString());
+        try {
+            executor.registerMBean(name.toString());
+            Assert.fail("Exception expected");
+        } catch (IllegalStateException e) {
+            // уже зарегистрирован.
+        }
+        Assert.assertTrue(server.isRegistered(name));
+        executor.addTask(new SimpleTask(1, "io", false), TaskPriority.MEDIUM).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(1L, server.getAttribute(name, "SubmittedTaskCount"));
+        Assert.assertEquals(0, server.getAttribute(name, "QueueSize"));
+        server.invoke(name, "resetMetrics", new Object[0], new String[0]);
+        Assert.assertEquals(0L, server.getAttribute(name, "SubmittedTaskCount"));
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+
+    private static final class SimpleTask extends AbstractTask<Integer> {
+        private final int key;
+        private final boolean fail;
+        private SimpleTask(final int key, final String category, final boolean fail) {
+            super(key, category, "task " + key);
+            this.key = key;
+            this.fail = fail;
+        }
+        @Override
+        public Integer call() {
+            if (fail)
+                throw new IllegalStateException("task " + key + " failed");
+            return key;
+        }
+    }
+
+    private static final class GateTask extends AbstractTask<Integer> {
+        private final CountDownLatch started;
+        private final CountDownLatch gate;
+        private GateTask(final CountDownLatch started, final CountDownLatch gate) {
+            super(new Object(), "gate", "gate");
+            this.started = started;
+            this.gate = gate;
+        }
+        @Override
+        public Integer call() throws InterruptedException {
+            started.countDown();
+            gate.await(10, TimeUnit.SECONDS);
+            return 0;
+        }
+    }
+}
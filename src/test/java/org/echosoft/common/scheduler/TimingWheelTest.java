@@ -0,0 +1,188 @@
+package org.echosoft.common.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class TimingWheelTest {
+
+    @Test
+    public void testExpirationOrder() throws Exception {
+        final long start = System.nanoTime();
+        final List<Integer> fired = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicReference<String> error = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(8);
+        final TimingWheel<Integer> wheel = new TimingWheel<>("test-timer", 100, TimeUnit.MICROSECONDS, new TimingWheel.Handler<Integer>() {
+            public void expired(final Integer delay) {
+                if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(delay))
+                    error.set("event " + delay + " fired too early");
+                fired.add(delay);
+                latch.countDown();
+            }
+        });
+        // задержки покрывают первые три уровня колеса (такт 0.1 мс, уровни по 6.4 мс, 409.6 мс и 26.2 с).
+        final int[] delays = {450, 3, 0, 120, 7, 30, 500, 1};
+        // ожидаемый порядок определяется фактическими сроками событий: планирование на медленной машине может занять несколько миллисекунд.
+        final TreeMap<Long, Integer> deadlines = new TreeMap<>();
+        for (int delay : delays) {
+            deadlines.put(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay), delay);
+            Assert.assertNotNull(wheel.schedule(delay, delay, TimeUnit.MILLISECONDS));
+        }
+        final TimingWheel<Integer>.Timeout cancelled = wheel.schedule(200, 200, TimeUnit.MILLISECONDS);
+        // события с задержками в несколько миллисекунд могут наступить еще до этих проверок.
+        final int size = wheel.size();
+        Assert.assertTrue(size >= 4 && size <= 9);
+        final List<Integer> pending = new ArrayList<>();
+        wheel.collect(pending);
+        Assert.assertTrue(pending.size() <= size);
+        Assert.assertTrue(pending.containsAll(java.util.Arrays.asList(120, 200, 450, 500)));
+        Assert.assertTrue(cancelled.cancel());
+        Assert.assertFalse(cancelled.cancel());
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(error.get());
+        Assert.assertEquals(new ArrayList<>(deadlines.values()), fired);
+        Assert.assertEquals(0, wheel.size());
+
+        wheel.schedule(-1, 1, TimeUnit.HOURS);
+        wheel.schedule(-2, 1000, TimeUnit.DAYS);
+        final List<Integer> remaining = wheel.stop();
+        Assert.assertEquals(2, remaining.size());
+        Assert.assertNull(wheel.schedule(1, 1, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(8, fired.size());
+    }
+
+    @Test
+    public void testScheduledTasks() throws Exception {
+        final PriorityThreadPoolExecutor executor = new PriorityThreadPoolExecutor(2, 100, 1, TimeUnit.MILLISECONDS);
+        final long start = System.nanoTime();
+        final PriorityThreadPoolExecutor.FutureTaskWrapper<Long> delayed =
+                executor.scheduleTask(new ClockTask(start, null, -1), TaskPriority.HIGH, 50, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(TaskState.SCHEDULED, delayed.getState());
+        Assert.assertTrue(delayed.getDelay(TimeUnit.MILLISECONDS) > 0);
+        Assert.assertFalse(delayed.isPeriodic());
+        final List<TaskDescriptor> scheduled = new ArrayList<>();
+        executor.collectScheduledTasks(scheduled);
+        Assert.assertEquals(1, scheduled.size());
+        Assert.assertTrue(delayed.get(5, TimeUnit.SECONDS) >= TimeUnit.MILLISECONDS.toNanos(50));
+        awaitState(delayed, TaskState.COMPLETED);
+        Assert.assertEquals(0, delayed.getDelay(TimeUnit.MILLISECONDS));
+
+        final AtomicInteger rateRuns = new AtomicInteger();
+        final PriorityThreadPoolExecutor.FutureTaskWrapper<Long> rate =
+                executor.scheduleTaskAtFixedRate(new ClockTask(start, rateRuns, -1), TaskPriority.LOW, 0, 20, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(rate.isPeriodic());
+        final AtomicInteger delayRuns = new AtomicInteger();
+        final PriorityThreadPoolExecutor.FutureTaskWrapper<Long> delay =
+                executor.scheduleTaskWithFixedDelay(new ClockTask(start, delayRuns, 3), TaskPriority.MEDIUM, 10, 10, TimeUnit.MILLISECONDS);
+        try {
+            delay.get(5, TimeUnit.SECONDS);
+            Assert.fail("Exception expected");
+        } catch (ExecutionException e) {
+            // периодическая задача завершилась с ошибкой на третьем запуске и больше не выполняется.
+        }
+        awaitState(delay, TaskState.FAILED);
+        Assert.assertEquals(3, delayRuns.get());
+
+        while (rateRuns.get() < 5) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(rate.cancel(false));
+        Thread.sleep(100);
+        final int runs = rateRuns.get();
+        Thread.sleep(100);
+        Assert.assertEquals(runs, rateRuns.get());
+        Assert.assertTrue(rate.isCancelled());
+
+        final List<TaskSnapshot> processed = new ArrayList<>();
+        executor.collectProcessedTasks(processed);
+        Assert.assertTrue(processed.size() >= 9);
+
+        final PriorityThreadPoolExecutor.FutureTaskWrapper<Long> pending =
+                executor.scheduleTask(new ClockTask(start, null, -1), TaskPriority.HIGH, 1, TimeUnit.HOURS);
+        final PriorityThreadPoolExecutor.FutureTaskWrapper<Long> periodic =
+                executor.scheduleTaskAtFixedRate(new ClockTask(start, null, -1), TaskPriority.HIGH, 1, 1, TimeUnit.HOURS);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertTrue(pending.isCancelled());
+        Assert.assertTrue(periodic.isCancelled());
+        Assert.assertEquals(TaskState.CANCELLED, pending.getState());
+        Assert.assertEquals(TaskState.CANCELLED, periodic.getState());
+        Assert.assertEquals(0, periodic.getDelay(TimeUnit.MILLISECONDS));
+        Assert.assertNotNull(periodic.getFinishTime());
+        try {
+            executor.scheduleTask(new ClockTask(start, null, -1), TaskPriority.HIGH, 1, TimeUnit.SECONDS);
+            Assert.fail("Exception expected");
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // планировщик остановлен.
+        }
+    }
+
+
+    @Test
+    public void testShutdownNow() throws Exception {
+        final PriorityThreadPoolExecutor executor = new PriorityThreadPoolExecutor(1, 100, 1, TimeUnit.MILLISECONDS);
+        final long start = System.nanoTime();
+        final PriorityThreadPoolExecutor.FutureTaskWrapper<Long> pending =
+                executor.scheduleTask(new ClockTask(start, null, -1), TaskPriority.HIGH, 1, TimeUnit.HOURS);
+        final PriorityThreadPoolExecutor.FutureTaskWrapper<Long> periodic =
+                executor.scheduleTaskWithFixedDelay(new ClockTask(start, null, -1), TaskPriority.LOW, 1, 1, TimeUnit.HOURS);
+        final List<Runnable> remaining = executor.shutdownNow();
+        Assert.assertTrue(remaining.contains(pending));
+        Assert.assertTrue(remaining.contains(periodic));
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        // ожидающие результата отложенных задач не должны блокироваться навсегда.
+        for (PriorityThreadPoolExecutor.FutureTaskWrapper<Long> future : java.util.Arrays.asList(pending, periodic)) {
+            Assert.assertTrue(future.isCancelled());
+            Assert.assertEquals(TaskState.CANCELLED, future.getState());
+            try {
+                future.get(1, TimeUnit.SECONDS);
+                Assert.fail("Exception expected");
+            } catch (java.util.concurrent.CancellationException e) {
+                // задача отменена.
+            }
+        }
+        final List<TaskDescriptor> scheduled = new ArrayList<>();
+        executor.collectScheduledTasks(scheduled);
+        Assert.assertTrue(scheduled.isEmpty());
+    }
+
+
+    private static void awaitState(final TaskDescriptor<?> future, final TaskState state) throws InterruptedException {
+        // результат задачи становится доступен чуть раньше, чем планировщик обновляет ее состояние.
+        for (int i = 0; i < 500 && future.getState() != state; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(state, future.getState());
+    }
+
+    private static final class ClockTask extends AbstractTask<Long> {
+        private final long start;
+        private final AtomicInteger runs;
+        private final int failOn;
+        private ClockTask(final long start, final AtomicInteger runs, final int failOn) {
+            super(new Object(), "clock", "clock task");
+            this.start = start;
+            this.runs = runs;
+            this.failOn = failOn;
+        }
+        @Override
+        public Long call() {
+            if (runs != null && runs.incrementAndGet() == failOn)
+                throw new IllegalStateException("failed on run " + failOn);
+            return System.nanoTime() - start;
+        }
+    }
+}
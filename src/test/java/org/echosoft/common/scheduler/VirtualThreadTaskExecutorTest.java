@@ -0,0 +1,192 @@
+package org.echosoft.common.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class VirtualThreadTaskExecutorTest {
+
+    @Test
+    public void testThreadFactory() throws Exception {
+        final ThreadFactory factory = VirtualThreads.newThreadFactory("test-");
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Thread thread = factory.newThread(new Runnable() {
+            public void run() {
+                latch.countDown();
+            }
+        });
+        Assert.assertTrue(thread.getName().startsWith("test-"));
+        if (!VirtualThreads.isSupported())
+            Assert.assertTrue(thread.isDaemon());
+        thread.start();
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCategoryLimits() throws Exception {
+        final VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor(100, 3, 100, null);
+        executor.setCategoryLimit("io", 2);
+        Assert.assertEquals(2, executor.getCategoryLimit("io"));
+        Assert.assertEquals(3, executor.getCategoryLimit("cpu"));
+        final AtomicInteger[] current = {new AtomicInteger(), new AtomicInteger()};
+        final AtomicInteger[] peak = {new AtomicInteger(), new AtomicInteger()};
+        final List<TaskDescriptor<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.addTask(new SleepingTask(i, "io", current[0], peak[0]), TaskPriority.MEDIUM));
+            futures.add(executor.addTask(new SleepingTask(i, "cpu", current[1], peak[1]), TaskPriority.MEDIUM));
+        }
+        for (TaskDescriptor<Integer> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(2, peak[0].get());
+        Assert.assertEquals(3, peak[1].get());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void testPrioritiesAndMonitoring() throws Exception {
+        final VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor(1, 10);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final TaskDescriptor<Integer> g = executor.addTask(new GateTask(started, gate), TaskPriority.LOWEST);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        final List<TaskPriority> order = Collections.synchronizedList(new ArrayList<TaskPriority>());
+        executor.addTask(new RecordingTask(1, TaskPriority.LOW, order), TaskPriority.LOW);
+        executor.addTask(new RecordingTask(2, TaskPriority.HIGHEST, order), TaskPriority.HIGHEST);
+        executor.addTask(new RecordingTask(3, TaskPriority.MEDIUM, order), TaskPriority.MEDIUM);
+        Assert.assertNull(executor.addUniqueTask(new RecordingTask(3, TaskPriority.MEDIUM, order), TaskPriority.HIGH));
+        Assert.assertEquals(3, executor.getQueuedTaskCount());
+        Assert.assertEquals(1, executor.getActiveCount());
+
+        final List<TaskDescriptor> processing = new ArrayList<>();
+        executor.collectProcessingTasks(processing);
+        Assert.assertEquals(1, processing.size());
+        final TaskSnapshot snapshot = processing.get(0).makeSnapshot();
+        Assert.assertEquals(50, snapshot.getProgress());
+        Assert.assertEquals("waiting for gate", snapshot.getStatusLine());
+        Assert.assertEquals(TaskState.PROCESSING, snapshot.getState());
+
+        gate.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, (int) g.get());
+        Assert.assertEquals(java.util.Arrays.asList(TaskPriority.HIGHEST, TaskPriority.MEDIUM, TaskPriority.LOW), order);
+        final List<TaskSnapshot> processed = new ArrayList<>();
+        executor.collectProcessedTasks(processed);
+        Assert.assertEquals(4, processed.size());
+        Assert.assertEquals(100, processed.get(0).getProgress());
+        Assert.assertEquals(TaskState.COMPLETED, processed.get(0).getState());
+    }
+
+    @Test
+    public void testShutdownNow() throws Exception {
+        final VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor(1, 10);
+        final CountDownLatch started = new CountDownLatch(1);
+        final TaskDescriptor<Integer> g = executor.addTask(new GateTask(started, new CountDownLatch(1)), TaskPriority.MEDIUM);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.addTask(new GateTask(new CountDownLatch(1), new CountDownLatch(1)), TaskPriority.MEDIUM);
+        Assert.assertEquals(1, executor.shutdownNow().size());
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals(-1, (int) g.get());
+        try {
+            executor.submit(new RecordingTask(0, TaskPriority.LOW, new ArrayList<TaskPriority>()));
+            Assert.fail("Exception expected");
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // планировщик остановлен.
+        }
+    }
+
+    @Test
+    public void testShutdownNowBeforeTaskStarts() throws Exception {
+        // потоки созданы и запущены планировщиком, но к выполнению задач приступают лишь после вызова shutdownNow().
+        final CountDownLatch release = new CountDownLatch(1);
+        final VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor(1, 1, 10, new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        r.run();
+                    }
+                });
+            }
+        });
+        final TaskDescriptor<Integer> g = executor.addTask(new GateTask(new CountDownLatch(1), new CountDownLatch(1)), TaskPriority.MEDIUM);
+        Assert.assertEquals(0, executor.shutdownNow().size());
+        release.countDown();
+        Assert.assertEquals(-1, (int) g.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+
+    private static final class SleepingTask extends AbstractTask<Integer> {
+        private final AtomicInteger current;
+        private final AtomicInteger peak;
+        private SleepingTask(final int key, final String category, final AtomicInteger current, final AtomicInteger peak) {
+            super(key, category, "sleeping task " + key);
+            this.current = current;
+            this.peak = peak;
+        }
+        @Override
+        public Integer call() throws Exception {
+            final int value = current.incrementAndGet();
+            for (int p = peak.get(); value > p && !peak.compareAndSet(p, value); p = peak.get()) ;
+            Thread.sleep(20);
+            current.decrementAndGet();
+            return value;
+        }
+    }
+
+    private static final class GateTask extends AbstractTask<Integer> {
+        private final CountDownLatch started;
+        private final CountDownLatch gate;
+        private GateTask(final CountDownLatch started, final CountDownLatch gate) {
+            super(new Object(), "test", "gate");
+            this.started = started;
+            this.gate = gate;
+        }
+        @Override
+        public Integer call() {
+            setProgress(50);
+            setStatusLine("waiting for gate");
+            started.countDown();
+            try {
+                gate.await(10, TimeUnit.SECONDS);
+                setProgress(100);
+                return 0;
+            } catch (InterruptedException e) {
+                return -1;
+            }
+        }
+    }
+
+    private static final class RecordingTask extends AbstractTask<TaskPriority> {
+        private final TaskPriority priority;
+        private final List<TaskPriority> order;
+        private RecordingTask(final int key, final TaskPriority priority, final List<TaskPriority> order) {
+            super(key, "test", "task " + key);
+            this.priority = priority;
+            this.order = order;
+        }
+        @Override
+        public TaskPriority call() {
+            order.add(priority);
+            return priority;
+        }
+    }
+}
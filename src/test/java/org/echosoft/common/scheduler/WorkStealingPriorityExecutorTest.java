@@ -0,0 +1,243 @@
+package org.echosoft.common.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Anton Sharapov
+ */
+public class WorkStealingPriorityExecutorTest {
+
+    @Test
+    public void testPriorities() throws Exception {
+        final WorkStealingPriorityExecutor executor = new WorkStealingPriorityExecutor(1, 100, null, new int[]{16, 8, 4, 2, 1}, 0);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<TaskPriority> order = Collections.synchronizedList(new ArrayList<TaskPriority>());
+        awaitProcessing(executor.addTask(new GateTask(gate), TaskPriority.HIGHEST));
+        final List<Future<TaskPriority>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.addTask(new RecordingTask(i, TaskPriority.LOWEST, order), TaskPriority.LOWEST));
+        }
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.addTask(new RecordingTask(i, TaskPriority.HIGHEST, order), TaskPriority.HIGHEST));
+        }
+        Assert.assertEquals(20, executor.getQueuedTaskCount());
+        gate.countDown();
+        for (Future<TaskPriority> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(20, order.size());
+        int highest = 0;
+        for (TaskPriority priority : order.subList(0, 10)) {
+            if (priority == TaskPriority.HIGHEST)
+                highest++;
+        }
+        Assert.assertTrue(order.toString(), highest >= 9);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAging() throws Exception {
+        final WorkStealingPriorityExecutor executor = new WorkStealingPriorityExecutor(1, 100, null, new int[]{16, 8, 4, 2, 1}, 50);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<TaskPriority> order = Collections.synchronizedList(new ArrayList<TaskPriority>());
+        awaitProcessing(executor.addTask(new GateTask(gate), TaskPriority.HIGHEST));
+        executor.addTask(new RecordingTask(0, TaskPriority.LOWEST, order), TaskPriority.LOWEST);
+        Thread.sleep(100);
+        for (int i = 0; i < 100; i++) {
+            executor.addTask(new RecordingTask(i + 1, TaskPriority.HIGHEST, order), TaskPriority.HIGHEST);
+        }
+        gate.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals(101, order.size());
+        Assert.assertEquals(TaskPriority.LOWEST, order.get(0));
+    }
+
+    @Test
+    public void testWorkStealing() throws Exception {
+        final WorkStealingPriorityExecutor executor = new WorkStealingPriorityExecutor(4, 10);
+        final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+        final Future<Integer> parent = executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                final CountDownLatch children = new CountDownLatch(100);
+                for (int i = 0; i < 100; i++) {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            threads.add(Thread.currentThread().getName());
+                            children.countDown();
+                        }
+                    });
+                }
+                // задачи поставлены в собственную очередь данного потока, поэтому выполнить их могут только другие потоки.
+                return children.await(5, TimeUnit.SECONDS) ? 100 : 0;
+            }
+        });
+        Assert.assertEquals(100, (int) parent.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(100, executor.getStolenTaskCount());
+        Assert.assertFalse(threads.isEmpty());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals(101, executor.getCompletedTaskCount());
+    }
+
+    @Test
+    public void testMonitoring() throws Exception {
+        final WorkStealingPriorityExecutor executor = new WorkStealingPriorityExecutor(1, 3);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final TaskDescriptor<Integer> g = executor.addTask(new GateTask(gate), TaskPriority.MEDIUM);
+        awaitProcessing(g);
+        final List<TaskPriority> order = Collections.synchronizedList(new ArrayList<TaskPriority>());
+        final TaskDescriptor<TaskPriority> t1 = executor.addUniqueTask(new RecordingTask(1, TaskPriority.LOW, order), TaskPriority.LOW);
+        Assert.assertNotNull(t1);
+        Assert.assertNull(executor.addUniqueTask(new RecordingTask(1, TaskPriority.LOW, order), TaskPriority.HIGH));
+        final TaskDescriptor<TaskPriority> t2 = executor.addTask(new RecordingTask(-1, TaskPriority.HIGH, order), TaskPriority.HIGH);
+        final List<TaskDescriptor> enqueued = new ArrayList<>();
+        executor.collectEnqueuedTasks(enqueued);
+        Assert.assertEquals(2, enqueued.size());
+        final List<TaskDescriptor> processing = new ArrayList<>();
+        executor.collectProcessingTasks(processing);
+        Assert.assertEquals(Collections.<TaskDescriptor>singletonList(g), processing);
+        Assert.assertEquals(1, executor.getActiveCount());
+        Assert.assertEquals(TaskState.AWAITING, t1.getState());
+        Assert.assertNull(t1.getStartTime());
+
+        gate.countDown();
+        Assert.assertEquals(TaskPriority.LOW, t1.get(5, TimeUnit.SECONDS));
+        try {
+            t2.get(5, TimeUnit.SECONDS);
+            Assert.fail("Exception expected");
+        } catch (java.util.concurrent.ExecutionException e) {
+            Assert.assertEquals("broken task", e.getCause().getMessage());
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals(TaskState.COMPLETED, t1.getState());
+        Assert.assertEquals(TaskState.FAILED, t2.getState());
+        Assert.assertNotNull(t1.getFinishTime());
+
+        final List<TaskSnapshot> processed = new ArrayList<>();
+        executor.collectProcessedTasks(processed);
+        Assert.assertEquals(3, processed.size());
+        Assert.assertEquals(g.getId(), processed.get(0).getId());
+        Assert.assertEquals(TaskState.FAILED, processed.get(1).getState());
+        Assert.assertEquals(TaskPriority.LOW, processed.get(2).getPriority());
+    }
+
+    @Test
+    public void testIdleAfterInterruptedTask() throws Exception {
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final WorkStealingPriorityExecutor executor = new WorkStealingPriorityExecutor(1, 10, new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "interrupted-worker");
+                thread.setDaemon(true);
+                threads.add(thread);
+                return thread;
+            }
+        }, new int[]{16, 8, 4, 2, 1}, WorkStealingPriorityExecutor.DEFAULT_AGING_THRESHOLD);
+        // задача оставляет поток с установленным признаком прерывания, как это бывает при cancel(true), совпавшем с ее завершением.
+        executor.submit(new Runnable() {
+            public void run() {
+                Thread.currentThread().interrupt();
+            }
+        }).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(1, threads.size());
+        Thread.State threadState = null;
+        for (int i = 0; i < 100 && threadState != Thread.State.WAITING; i++) {
+            Thread.sleep(10);
+            threadState = threads.get(0).getState();
+        }
+        Assert.assertEquals(Thread.State.WAITING, threadState);
+        Assert.assertFalse(threads.get(0).isInterrupted());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        WorkStealingPriorityExecutor executor = new WorkStealingPriorityExecutor(2, 10);
+        executor.shutdown();
+        Assert.assertTrue(executor.isShutdown());
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        try {
+            executor.execute(new GateTask(new CountDownLatch(0)).asRunnable());
+            Assert.fail("Exception expected");
+        } catch (RejectedExecutionException e) {
+            // планировщик остановлен.
+        }
+
+        executor = new WorkStealingPriorityExecutor(1, 10);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final TaskDescriptor<Integer> running = executor.addTask(new GateTask(gate), TaskPriority.MEDIUM);
+        awaitProcessing(running);
+        for (int i = 0; i < 5; i++) {
+            executor.addTask(new GateTask(gate), TaskPriority.LOW);
+        }
+        Assert.assertEquals(5, executor.shutdownNow().size());
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertEquals(-1, (int) running.get());
+    }
+
+
+    private static void awaitProcessing(final TaskDescriptor<?> task) throws InterruptedException {
+        while (task.getState() == TaskState.AWAITING) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static final class GateTask extends AbstractTask<Integer> {
+        private final CountDownLatch gate;
+        private GateTask(final CountDownLatch gate) {
+            super(new Object(), "test", "gate");
+            this.gate = gate;
+        }
+        @Override
+        public Integer call() {
+            try {
+                return gate.await(10, TimeUnit.SECONDS) ? 0 : 1;
+            } catch (InterruptedException e) {
+                return -1;
+            }
+        }
+        private Runnable asRunnable() {
+            return new Runnable() {
+                public void run() {
+                    call();
+                }
+            };
+        }
+    }
+
+    private static final class RecordingTask extends AbstractTask<TaskPriority> {
+        private final TaskPriority priority;
+        private final List<TaskPriority> order;
+        private RecordingTask(final int key, final TaskPriority priority, final List<TaskPriority> order) {
+            super(key, "test", "task " + key);
+            this.priority = priority;
+            this.order = order;
+        }
+        @Override
+        public TaskPriority call() {
+            order.add(priority);
+            if ((Integer) getKey() < 0)
+                throw new IllegalStateException("broken task");
+            return priority;
+        }
+    }
+}